@@ -0,0 +1,111 @@
+package com.stevewedig.blog.digraph.alg;
+
+import java.util.*;
+
+import com.google.common.base.Optional;
+import com.stevewedig.blog.util.LambdaLib.Fn1;
+
+/**
+ * Bidirectional breadth first search for reachability queries.
+ *
+ * Searching forward from the start id and backward from the target id, always expanding the
+ * smaller frontier by one level, only explores around both ends of the shortest path (roughly the
+ * square root of a one sided search's work on graphs with uniform branching), and stops as soon as
+ * the frontiers meet or a distance bound is reached.
+ */
+public abstract class ReachabilityLib {
+
+  // ===========================================================================
+  // generic
+  // ===========================================================================
+
+  /**
+   * The number of arcs on the shortest path from one id to another.
+   *
+   * @param fromId The id to search forward from.
+   * @param toId The id to search backward from.
+   * @param maxDistance Paths longer than this aren't searched for (must be non negative).
+   * @param expandForward A function mapping an id to the ids its arcs lead to (e.g. children).
+   * @param expandBackward A function mapping an id to the ids whose arcs lead to it (e.g. parents).
+   * @return The distance, will be absent if there is no path of at most maxDistance arcs.
+   */
+  public static <Id> Optional<Integer> distance(Id fromId, Id toId, int maxDistance,
+      Fn1<Id, ? extends Collection<Id>> expandForward,
+      Fn1<Id, ? extends Collection<Id>> expandBackward) {
+
+    assertMaxDistance(maxDistance);
+
+    if (fromId.equals(toId))
+      return Optional.of(0);
+
+    // id -> distance from the side's start id
+    Map<Id, Integer> forwardDistances = new HashMap<>();
+    Map<Id, Integer> backwardDistances = new HashMap<>();
+
+    forwardDistances.put(fromId, 0);
+    backwardDistances.put(toId, 0);
+
+    List<Id> forwardFrontier = Collections.singletonList(fromId);
+    List<Id> backwardFrontier = Collections.singletonList(toId);
+
+    // paths up to forwardDepth + backwardDepth arcs have all been found
+    int forwardDepth = 0;
+    int backwardDepth = 0;
+
+    int best = Integer.MAX_VALUE;
+
+    while (forwardDepth + backwardDepth < Math.min(best, maxDistance)) {
+
+      if (forwardFrontier.isEmpty() || backwardFrontier.isEmpty())
+        break;
+
+      boolean forward = forwardFrontier.size() <= backwardFrontier.size();
+
+      Map<Id, Integer> distances = forward ? forwardDistances : backwardDistances;
+      Map<Id, Integer> otherDistances = forward ? backwardDistances : forwardDistances;
+      Fn1<Id, ? extends Collection<Id>> expand = forward ? expandForward : expandBackward;
+      int depth = (forward ? forwardDepth : backwardDepth) + 1;
+
+      List<Id> next = new ArrayList<>();
+
+      for (Id id : forward ? forwardFrontier : backwardFrontier)
+        for (Id target : expand.apply(id)) {
+
+          if (distances.containsKey(target))
+            continue;
+
+          distances.put(target, depth);
+          next.add(target);
+
+          Integer otherDistance = otherDistances.get(target);
+
+          if (otherDistance != null)
+            best = Math.min(best, depth + otherDistance);
+        }
+
+      if (forward) {
+        forwardFrontier = next;
+        forwardDepth = depth;
+      } else {
+        backwardFrontier = next;
+        backwardDepth = depth;
+      }
+    }
+
+    // best is still MAX_VALUE if the frontiers never met
+    if (best == Integer.MAX_VALUE || best > maxDistance)
+      return Optional.absent();
+
+    return Optional.of(best);
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static void assertMaxDistance(int maxDistance) {
+    if (maxDistance < 0)
+      throw new AssertionError("maxDistance was negative, maxDistance = " + maxDistance);
+  }
+
+}
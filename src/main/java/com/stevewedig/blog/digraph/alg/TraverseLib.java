@@ -238,8 +238,8 @@ public abstract class TraverseLib {
 
       if (depthFirst)
         // reversed because we want ids.first to end up as open.first
-        for (int i = ids.size() - 1; i >= 0; i--)
-          push1(ids.get(i));
+        for (ListIterator<Id> it = ids.listIterator(ids.size()); it.hasPrevious();)
+          push1(it.previous());
       else
         // forward because we want ids.first to end up as open.last
         for (Id id : ids)
@@ -252,11 +252,9 @@ public abstract class TraverseLib {
 
     private void push1(Id id) {
 
-      if (closed.contains(id))
+      if (!closed.add(id))
         return;
 
-      closed.add(id);
-
       if (depthFirst)
         open.addFirst(id);
       else
@@ -273,4 +271,145 @@ public abstract class TraverseLib {
     }
 
   }
+
+  // ===========================================================================
+  // visitor
+  // ===========================================================================
+
+  /**
+   * Generic depth first traversal, pushing each reached id to a visitor.
+   *
+   * Unlike the iterable traversals (which mark ids as they are queued), this is a true depth first
+   * search, so an id is exited only after everything entered through it.
+   *
+   * @param startIds The initial ids, traversed in order.
+   * @param expand A function mapping an id to the next ids.
+   * @param visitor Entered and exited for each reached id.
+   */
+  public static <Id> void visit(ImmutableList<Id> startIds, Fn1<Id, List<Id>> expand,
+      TraverseVisitor<Id> visitor) {
+
+    Set<Id> closed = new HashSet<>();
+
+    // the path being explored, and the remaining ids each step expanded to
+    LinkedList<Id> path = new LinkedList<>();
+    LinkedList<Iterator<Id>> remaining = new LinkedList<>();
+
+    for (Id startId : startIds) {
+
+      if (!closed.add(startId))
+        continue;
+
+      if (!visitor.enter(startId)) {
+        visitor.exit(startId);
+        continue;
+      }
+
+      path.addFirst(startId);
+      remaining.addFirst(expand.apply(startId).iterator());
+
+      while (!path.isEmpty()) {
+
+        Iterator<Id> ids = remaining.getFirst();
+
+        if (!ids.hasNext()) {
+          remaining.removeFirst();
+          visitor.exit(path.removeFirst());
+          continue;
+        }
+
+        Id id = ids.next();
+
+        if (!closed.add(id))
+          continue;
+
+        if (!visitor.enter(id)) {
+          visitor.exit(id);
+          continue;
+        }
+
+        path.addFirst(id);
+        remaining.addFirst(expand.apply(id).iterator());
+      }
+    }
+  }
+
+  // ===========================================================================
+  // distances
+  // ===========================================================================
+
+  /**
+   * Breadth first traversal up to a number of arcs from the start ids, processed a level (frontier)
+   * at a time, so each id's distance is known when it is reached.
+   * 
+   * @param inclusive Whether to include the start ids (at distance 0).
+   * @param startIds The initial id list.
+   * @param maxDistance Ids further than this many arcs from every start id aren't reached (must be
+   *        non negative).
+   * @param maxSize The traversal stops as soon as this many ids have been reached (must be non
+   *        negative), so only the nearest ids are kept.
+   * @param expand A function mapping an id to the next ids.
+   * @return id -> the number of arcs on the shortest path to it from a start id, in breadth first
+   *         order.
+   */
+  public static <Id> ImmutableMap<Id, Integer> distanceMap(boolean inclusive,
+      ImmutableList<Id> startIds, int maxDistance, int maxSize, Fn1<Id, List<Id>> expand) {
+
+    assertDistanceBounds(maxDistance, maxSize);
+
+    ImmutableMap.Builder<Id, Integer> id__distance = ImmutableMap.builder();
+    int size = 0;
+
+    Set<Id> closed = new HashSet<>();
+    List<Id> frontier = new ArrayList<>();
+
+    for (Id startId : startIds)
+      if (closed.add(startId)) {
+
+        frontier.add(startId);
+
+        if (inclusive && size < maxSize) {
+          id__distance.put(startId, 0);
+          size++;
+        }
+      }
+
+    for (int distance = 1; distance <= maxDistance && size < maxSize; distance++) {
+
+      if (frontier.isEmpty())
+        break;
+
+      List<Id> next = new ArrayList<>();
+
+      for (Id id : frontier)
+        for (Id target : expand.apply(id)) {
+
+          if (!closed.add(target))
+            continue;
+
+          next.add(target);
+          id__distance.put(target, distance);
+
+          if (++size == maxSize)
+            return id__distance.build();
+        }
+
+      frontier = next;
+    }
+
+    return id__distance.build();
+  }
+
+  /**
+   * Assert that distanceMap's bounds are non negative.
+   */
+  public static void assertDistanceBounds(int maxDistance, int maxSize) {
+
+    if (maxDistance < 0)
+      throw new AssertionError("maxDistance was negative, maxDistance = " + maxDistance);
+
+    if (maxSize < 0)
+      throw new AssertionError("maxSize was negative, maxSize = " + maxSize);
+  }
+
 }
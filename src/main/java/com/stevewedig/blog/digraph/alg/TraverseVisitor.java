@@ -0,0 +1,24 @@
+package com.stevewedig.blog.digraph.alg;
+
+/**
+ * Callbacks for a push-style depth first traversal (see TraverseLib.visit).
+ *
+ * Each reachable id is entered once. Every entered id is exited, after all the ids entered through
+ * it have been exited.
+ */
+public interface TraverseVisitor<Id> {
+
+  /**
+   * Called when an id is first reached.
+   *
+   * @return Whether to continue into the ids it expands to. Returning false skips its subtree,
+   *         but ids in that subtree can still be reached through other ids.
+   */
+  boolean enter(Id id);
+
+  /**
+   * Called once the traversal is finished with an entered id.
+   */
+  void exit(Id id);
+
+}
@@ -0,0 +1,65 @@
+package com.stevewedig.blog.digraph.dag_execution;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.*;
+
+/**
+ * A running (or finished) execution of a task for each id in a dag, where an id's task starts once
+ * all of its parents' tasks have completed.
+ */
+public interface DagExecution<Id> {
+
+  // ===========================================================================
+  // waiting
+  // ===========================================================================
+
+  /**
+   * Whether every id has completed, failed, or been cancelled.
+   */
+  boolean isDone();
+
+  /**
+   * Block until the execution is done.
+   */
+  void await() throws InterruptedException;
+
+  /**
+   * Block until the execution is done or the timeout elapses, returning whether it is done.
+   */
+  boolean await(long timeout, TimeUnit unit) throws InterruptedException;
+
+  // ===========================================================================
+  // cancelling
+  // ===========================================================================
+
+  /**
+   * Cancel every id whose task hasn't started (running tasks are allowed to finish).
+   */
+  void cancel();
+
+  // ===========================================================================
+  // results
+  // ===========================================================================
+
+  /**
+   * Whether every id's task has completed without throwing.
+   */
+  boolean succeeded();
+
+  /**
+   * The ids whose tasks have completed without throwing.
+   */
+  ImmutableSet<Id> completedIdSet();
+
+  /**
+   * The ids whose tasks threw, mapped to what they threw.
+   */
+  ImmutableMap<Id, Throwable> id__error();
+
+  /**
+   * The ids that won't run, because an ancestor failed or the execution was cancelled.
+   */
+  ImmutableSet<Id> cancelledIdSet();
+
+}
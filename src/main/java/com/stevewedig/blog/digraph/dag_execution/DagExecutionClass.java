@@ -0,0 +1,355 @@
+package com.stevewedig.blog.digraph.dag_execution;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.id_graph.IdGraphIndex;
+import com.stevewedig.blog.util.LambdaLib.Act1;
+
+/**
+ * An implementation of DagExecution.
+ *
+ * All state is guarded by the execution's monitor. Tasks are only handed to the executor when a
+ * concurrency slot is free, so the ready queue (not the executor's queue) decides what runs next.
+ */
+class DagExecutionClass<Id> implements DagExecution<Id> {
+
+  // ===========================================================================
+  // states
+  // ===========================================================================
+
+  private static final byte waiting = 0;
+  private static final byte ready = 1;
+  private static final byte running = 2;
+  private static final byte completed = 3;
+  private static final byte failed = 4;
+  private static final byte cancelled = 5;
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final IdGraphIndex<Id> idGraphIndex;
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final Act1<Id> task;
+
+  // index -> state
+  private final byte[] states;
+
+  // index -> number of parents that haven't completed
+  private final int[] waitingParentCounts;
+
+  // index -> number of ids on the longest path from the index to a leaf
+  private final int[] heights;
+
+  // ready indexes, highest first
+  private final PriorityQueue<Integer> readyQueue;
+
+  private final Map<Id, Throwable> id__error = new LinkedHashMap<>();
+
+  private final CountDownLatch doneLatch = new CountDownLatch(1);
+
+  private int runningCount = 0;
+  private int finishedCount = 0;
+
+  // whether a thread is currently submitting ready tasks
+  private boolean dispatching = false;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  public DagExecutionClass(IdGraphIndex<Id> idGraphIndex, Executor executor, int maxConcurrency,
+      Act1<Id> task) {
+
+    if (maxConcurrency < 1)
+      throw new AssertionError("maxConcurrency must be positive, maxConcurrency = "
+          + maxConcurrency);
+
+    this.idGraphIndex = idGraphIndex;
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+    this.task = task;
+
+    int idSize = idGraphIndex.idSize();
+
+    states = new byte[idSize];
+    waitingParentCounts = new int[idSize];
+    heights = computeHeights(idGraphIndex);
+
+    readyQueue = new PriorityQueue<>(Math.max(idSize, 1), new Comparator<Integer>() {
+      @Override
+      public int compare(Integer index1, Integer index2) {
+        if (heights[index1] != heights[index2])
+          return heights[index1] > heights[index2] ? -1 : 1;
+        return index1.compareTo(index2);
+      }
+    });
+  }
+
+  // critical path lengths, computed from the leaves up (Kahn's algorithm on the reversed dag)
+  private static int[] computeHeights(IdGraphIndex<?> idGraphIndex) {
+
+    int idSize = idGraphIndex.idSize();
+
+    int[] heights = new int[idSize];
+    int[] childCounts = new int[idSize];
+
+    int[] open = new int[idSize];
+    int openSize = 0;
+
+    for (int index = 0; index < idSize; index++) {
+
+      childCounts[index] = idGraphIndex.childCount(index);
+
+      if (childCounts[index] == 0)
+        open[openSize++] = index;
+    }
+
+    while (openSize > 0) {
+
+      int index = open[--openSize];
+
+      int height = 1;
+      for (int i = 0; i < idGraphIndex.childCount(index); i++)
+        height = Math.max(height, heights[idGraphIndex.childIndex(index, i)] + 1);
+
+      heights[index] = height;
+
+      for (int i = 0; i < idGraphIndex.parentCount(index); i++) {
+
+        int parent = idGraphIndex.parentIndex(index, i);
+
+        if (--childCounts[parent] == 0)
+          open[openSize++] = parent;
+      }
+    }
+
+    return heights;
+  }
+
+  // ===========================================================================
+  // running
+  // ===========================================================================
+
+  void start() {
+
+    synchronized (this) {
+
+      for (int index = 0; index < states.length; index++) {
+
+        waitingParentCounts[index] = idGraphIndex.parentCount(index);
+
+        if (waitingParentCounts[index] == 0) {
+          states[index] = ready;
+          readyQueue.add(index);
+        }
+      }
+
+      checkDone();
+    }
+
+    dispatch();
+  }
+
+  // submit ready tasks while there are free slots (a loop rather than recursion, so executors that
+  // run tasks on the calling thread can't overflow the stack)
+  private void dispatch() {
+
+    synchronized (this) {
+      if (dispatching)
+        return;
+      dispatching = true;
+    }
+
+    while (true) {
+
+      final int index;
+
+      synchronized (this) {
+
+        Integer next = null;
+
+        while (runningCount < maxConcurrency && !readyQueue.isEmpty()) {
+
+          next = readyQueue.poll();
+
+          // cancelled while queued
+          if (states[next] == ready)
+            break;
+
+          next = null;
+        }
+
+        if (next == null) {
+          dispatching = false;
+          return;
+        }
+
+        index = next;
+
+        states[index] = running;
+        runningCount++;
+      }
+
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            runTask(index);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        finish(index, e);
+      }
+    }
+  }
+
+  private void runTask(int index) {
+
+    Throwable error = null;
+
+    try {
+      task.apply(idGraphIndex.id(index));
+    } catch (Throwable e) {
+      error = e;
+    }
+
+    finish(index, error);
+
+    dispatch();
+  }
+
+  private synchronized void finish(int index, Throwable error) {
+
+    runningCount--;
+    finishedCount++;
+
+    if (error == null) {
+
+      states[index] = completed;
+
+      for (int i = 0; i < idGraphIndex.childCount(index); i++) {
+
+        int child = idGraphIndex.childIndex(index, i);
+
+        if (--waitingParentCounts[child] == 0 && states[child] == waiting) {
+          states[child] = ready;
+          readyQueue.add(child);
+        }
+      }
+
+    } else {
+
+      states[index] = failed;
+      id__error.put(idGraphIndex.id(index), error);
+
+      cancelDescendants(index);
+    }
+
+    checkDone();
+  }
+
+  // descendants of a failed id can't have started, since the failed id never completed
+  private void cancelDescendants(int index) {
+
+    Deque<Integer> open = new ArrayDeque<>();
+    open.push(index);
+
+    while (!open.isEmpty()) {
+
+      int current = open.pop();
+
+      for (int i = 0; i < idGraphIndex.childCount(current); i++) {
+
+        int child = idGraphIndex.childIndex(current, i);
+
+        if (states[child] == waiting || states[child] == ready) {
+          states[child] = cancelled;
+          finishedCount++;
+          open.push(child);
+        }
+      }
+    }
+  }
+
+  private void checkDone() {
+    if (finishedCount == states.length && runningCount == 0)
+      doneLatch.countDown();
+  }
+
+  // ===========================================================================
+  // waiting
+  // ===========================================================================
+
+  @Override
+  public boolean isDone() {
+    return doneLatch.getCount() == 0;
+  }
+
+  @Override
+  public void await() throws InterruptedException {
+    doneLatch.await();
+  }
+
+  @Override
+  public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+    return doneLatch.await(timeout, unit);
+  }
+
+  // ===========================================================================
+  // cancelling
+  // ===========================================================================
+
+  @Override
+  public synchronized void cancel() {
+
+    for (int index = 0; index < states.length; index++)
+      if (states[index] == waiting || states[index] == ready) {
+        states[index] = cancelled;
+        finishedCount++;
+      }
+
+    readyQueue.clear();
+
+    checkDone();
+  }
+
+  // ===========================================================================
+  // results
+  // ===========================================================================
+
+  @Override
+  public synchronized boolean succeeded() {
+    return isDone() && id__error.isEmpty() && idSetInState(cancelled).isEmpty();
+  }
+
+  @Override
+  public synchronized ImmutableSet<Id> completedIdSet() {
+    return idSetInState(completed);
+  }
+
+  @Override
+  public synchronized ImmutableMap<Id, Throwable> id__error() {
+    return ImmutableMap.copyOf(id__error);
+  }
+
+  @Override
+  public synchronized ImmutableSet<Id> cancelledIdSet() {
+    return idSetInState(cancelled);
+  }
+
+  private ImmutableSet<Id> idSetInState(byte state) {
+
+    ImmutableSet.Builder<Id> ids = ImmutableSet.builder();
+
+    for (int index = 0; index < states.length; index++)
+      if (states[index] == state)
+        ids.add(idGraphIndex.id(index));
+
+    return ids.build();
+  }
+
+}
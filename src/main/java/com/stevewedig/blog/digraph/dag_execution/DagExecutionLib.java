@@ -0,0 +1,52 @@
+package com.stevewedig.blog.digraph.dag_execution;
+
+import java.util.concurrent.Executor;
+
+import com.stevewedig.blog.digraph.id_graph.IdDag;
+import com.stevewedig.blog.digraph.node_graph.Dag;
+import com.stevewedig.blog.util.LambdaLib.Act1;
+
+/**
+ * A library for running a task per dag id on an Executor, in dependency order (not GWT compatible,
+ * excluded in Blog.gwt.xml).
+ *
+ * An id's task is submitted as soon as all of its parents' tasks have completed. When more ids are
+ * ready than maxConcurrency allows, those on the longest remaining path to a leaf (the critical
+ * path) are submitted first. If a task throws, its descendants are cancelled, while unrelated ids
+ * keep running.
+ */
+public abstract class DagExecutionLib {
+
+  // ===========================================================================
+  // start
+  // ===========================================================================
+
+  /**
+   * Start running a task for each id in a dag, with at most maxConcurrency tasks running at once.
+   */
+  public static <Id> DagExecution<Id> start(IdDag<Id> dag, Executor executor, int maxConcurrency,
+      Act1<Id> task) {
+
+    DagExecutionClass<Id> execution =
+        new DagExecutionClass<>(dag.idGraphIndex(), executor, maxConcurrency, task);
+
+    execution.start();
+
+    return execution;
+  }
+
+  /**
+   * Start running a task for each node in a dag, with at most maxConcurrency tasks running at once.
+   */
+  public static <Id, Node> DagExecution<Id> startNodes(final Dag<Id, Node> dag, Executor executor,
+      int maxConcurrency, final Act1<Node> task) {
+
+    return start(dag, executor, maxConcurrency, new Act1<Id>() {
+      @Override
+      public void apply(Id id) {
+        task.apply(dag.getNode(id));
+      }
+    });
+  }
+
+}
@@ -2,7 +2,8 @@ package com.stevewedig.blog.digraph.id_graph;
 
 import java.util.Set;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
 
 /**
  * A dag containing ids.
@@ -16,6 +17,9 @@ public interface IdDag<Id> extends IdGraph<Id> {
   @Override
   IdDag<Id> filterIdGraph(Set<Id> ids);
 
+  @Override
+  IdDag<Id> filterIdGraphView(Set<Id> ids);
+
   // ===========================================================================
   // ancestors
   // ===========================================================================
@@ -36,6 +40,26 @@ public interface IdDag<Id> extends IdGraph<Id> {
   @Override
   IdDag<Id> descendantIdGraph(Set<Id> ids, boolean inclusive);
 
+  // ===========================================================================
+  // persistent updates
+  // ===========================================================================
+
+  @Override
+  IdDag<Id> withId(Id id);
+
+  @Override
+  IdDag<Id> withoutId(Id id);
+
+  /**
+   * A dag with an arc from parentId to childId, only searching parentId's ancestors to reject
+   * cycles.
+   */
+  @Override
+  IdDag<Id> withArc(Id parentId, Id childId) throws DagCannotHaveCycle;
+
+  @Override
+  IdDag<Id> withoutArc(Id parentId, Id childId);
+
   // ===========================================================================
   // topological sort
   // ===========================================================================
@@ -45,6 +69,23 @@ public interface IdDag<Id> extends IdGraph<Id> {
    */
   ImmutableList<Id> topsortIdList();
 
+  /**
+   * A topological sort grouped into levels, with roots (sources) first. Ids in the same level are
+   * never ancestors of each other, so each level can be processed concurrently.
+   */
+  ImmutableList<ImmutableSet<Id>> topsortLevelList();
+
+  // ===========================================================================
+  // reachability index
+  // ===========================================================================
+
+  /**
+   * The dag's precomputed transitive closure, built on first request. Building it is opt-in: once
+   * built, isAncestorOf/isDescendantOf and the ancestor/descendant id sets are answered from it
+   * instead of by traversal.
+   */
+  IdDagReachabilityIndex<Id> reachabilityIndex();
+
   // ===========================================================================
   // depth first
   // ===========================================================================
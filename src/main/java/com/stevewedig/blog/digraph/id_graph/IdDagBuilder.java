@@ -0,0 +1,59 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.google.common.collect.ImmutableList;
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
+
+/**
+ * Builds an IdDag one id or arc at a time, rejecting cycle creating arcs as they are added.
+ *
+ * A topological order is maintained incrementally (Pearce-Kelly), so an arc that agrees with the
+ * current order is added in O(1), and other arcs only search and reorder the ids between the arc's
+ * endpoints in that order. Building never runs a full topological sort.
+ */
+public interface IdDagBuilder<Id> {
+
+  // ===========================================================================
+  // adding
+  // ===========================================================================
+
+  /**
+   * Add an id (no effect if it was already added).
+   */
+  IdDagBuilder<Id> addId(Id id);
+
+  /**
+   * Add an arc from parentId to childId, adding either id if needed (no effect if the arc was
+   * already added). If the arc would create a cycle the builder is left unchanged.
+   */
+  IdDagBuilder<Id> addArc(Id parentId, Id childId) throws DagCannotHaveCycle;
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  int idSize();
+
+  int arcSize();
+
+  boolean containsId(Id id);
+
+  /**
+   * Whether adding an arc from parentId to childId would create a cycle.
+   */
+  boolean wouldCreateCycle(Id parentId, Id childId);
+
+  /**
+   * The current topological order, with roots (sources) first.
+   */
+  ImmutableList<Id> topsortIdList();
+
+  // ===========================================================================
+  // build
+  // ===========================================================================
+
+  /**
+   * Build an index-backed IdDag (without revalidating it), the builder can keep being used.
+   */
+  IdDag<Id> build();
+
+}
@@ -0,0 +1,302 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
+
+/**
+ * An implementation of IdDagBuilder, using the Pearce-Kelly dynamic topological sort.
+ *
+ * Ids are numbered in insertion order, each index has a position in the topological order (ord),
+ * and arcs are kept in growable int arrays in both directions.
+ *
+ * http://www.doc.ic.ac.uk/~phjk/Publications/DynamicTopoSortAlg-JEA-07.pdf
+ */
+class IdDagBuilderClass<Id> implements IdDagBuilder<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final List<Id> idList = new ArrayList<>();
+  private final Map<Id, Integer> id__index = new HashMap<>();
+
+  // arcs, as (parent index << 32 | child index)
+  private final Set<Long> arcs = new HashSet<>();
+
+  // index -> parent/child indexes (only the first counts[index] entries are used)
+  private int[][] parents = new int[16][];
+  private int[] parentCounts = new int[16];
+  private int[][] children = new int[16][];
+  private int[] childCounts = new int[16];
+
+  // index -> position in the topological order, and position -> index
+  private int[] ord = new int[16];
+  private int[] order = new int[16];
+
+  // search marks, an index is marked when visited[index] == visitEpoch
+  private int[] visited = new int[16];
+  private int visitEpoch = 0;
+
+  // search stack, an index is pushed at most once per search so capacity is enough
+  private int[] stack = new int[16];
+
+  // ===========================================================================
+  // adding
+  // ===========================================================================
+
+  @Override
+  public IdDagBuilder<Id> addId(Id id) {
+    index(id);
+    return this;
+  }
+
+  // the id's index, adding the id at the end of the topological order if needed
+  private int index(Id id) {
+
+    Integer existing = id__index.get(id);
+
+    if (existing != null)
+      return existing;
+
+    int index = idList.size();
+
+    if (index == ord.length)
+      grow(index * 2);
+
+    idList.add(id);
+    id__index.put(id, index);
+
+    parents[index] = new int[2];
+    children[index] = new int[2];
+    ord[index] = index;
+    order[index] = index;
+
+    return index;
+  }
+
+  private void grow(int capacity) {
+    parents = Arrays.copyOf(parents, capacity);
+    parentCounts = Arrays.copyOf(parentCounts, capacity);
+    children = Arrays.copyOf(children, capacity);
+    childCounts = Arrays.copyOf(childCounts, capacity);
+    ord = Arrays.copyOf(ord, capacity);
+    order = Arrays.copyOf(order, capacity);
+    visited = Arrays.copyOf(visited, capacity);
+    stack = new int[capacity];
+  }
+
+  // ===================================
+
+  @Override
+  public IdDagBuilder<Id> addArc(Id parentId, Id childId) throws DagCannotHaveCycle {
+
+    if (parentId.equals(childId))
+      throw new DagCannotHaveCycle("arc = %s -> %s", parentId, childId);
+
+    int parent = index(parentId);
+    int child = index(childId);
+
+    if (!arcs.add(arc(parent, child)))
+      return this;
+
+    // the arc disagrees with the current order, so the affected region must be reordered
+    if (ord[child] < ord[parent]) {
+
+      int lowerBound = ord[child];
+      int upperBound = ord[parent];
+
+      // forward search from the child, a cycle exists iff it reaches the parent
+      List<Integer> forward = new ArrayList<>();
+
+      if (searchForward(child, parent, upperBound, forward)) {
+        arcs.remove(arc(parent, child));
+        throw new DagCannotHaveCycle("arc = %s -> %s", parentId, childId);
+      }
+
+      List<Integer> backward = searchBackward(parent, lowerBound);
+
+      reorder(backward, forward);
+    }
+
+    append(parents, parentCounts, child, parent);
+    append(children, childCounts, parent, child);
+
+    return this;
+  }
+
+  private static long arc(int parent, int child) {
+    return ((long) parent << 32) | (child & 0xffffffffL);
+  }
+
+  private static void append(int[][] lists, int[] counts, int index, int value) {
+
+    if (counts[index] == lists[index].length)
+      lists[index] = Arrays.copyOf(lists[index], counts[index] * 2);
+
+    lists[index][counts[index]++] = value;
+  }
+
+  // ===========================================================================
+  // Pearce-Kelly
+  // ===========================================================================
+
+  // collects the ids reachable from start with ord <= upperBound, returns true if target is found
+  private boolean searchForward(int start, int target, int upperBound, List<Integer> found) {
+
+    visitEpoch++;
+
+    int size = 0;
+    stack[size++] = start;
+    visited[start] = visitEpoch;
+
+    while (size > 0) {
+
+      int index = stack[--size];
+      found.add(index);
+
+      for (int i = 0; i < childCounts[index]; i++) {
+
+        int child = children[index][i];
+
+        if (child == target)
+          return true;
+
+        if (visited[child] != visitEpoch && ord[child] < upperBound) {
+          visited[child] = visitEpoch;
+          stack[size++] = child;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  // collects the ids that reach start with ord > lowerBound
+  private List<Integer> searchBackward(int start, int lowerBound) {
+
+    visitEpoch++;
+
+    List<Integer> found = new ArrayList<>();
+
+    int size = 0;
+    stack[size++] = start;
+    visited[start] = visitEpoch;
+
+    while (size > 0) {
+
+      int index = stack[--size];
+      found.add(index);
+
+      for (int i = 0; i < parentCounts[index]; i++) {
+
+        int parent = parents[index][i];
+
+        if (visited[parent] != visitEpoch && ord[parent] > lowerBound) {
+          visited[parent] = visitEpoch;
+          stack[size++] = parent;
+        }
+      }
+    }
+
+    return found;
+  }
+
+  // the backward ids move before the forward ids, reusing the positions they held between them
+  private void reorder(List<Integer> backward, List<Integer> forward) {
+
+    Comparator<Integer> byOrd = new Comparator<Integer>() {
+      @Override
+      public int compare(Integer index1, Integer index2) {
+        return Integer.compare(ord[index1], ord[index2]);
+      }
+    };
+
+    Collections.sort(backward, byOrd);
+    Collections.sort(forward, byOrd);
+
+    int size = backward.size() + forward.size();
+
+    int[] moved = new int[size];
+    int[] positions = new int[size];
+
+    int n = 0;
+    for (int index : backward)
+      moved[n++] = index;
+    for (int index : forward)
+      moved[n++] = index;
+
+    for (int i = 0; i < size; i++)
+      positions[i] = ord[moved[i]];
+
+    Arrays.sort(positions);
+
+    for (int i = 0; i < size; i++) {
+      ord[moved[i]] = positions[i];
+      order[positions[i]] = moved[i];
+    }
+  }
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  @Override
+  public int idSize() {
+    return idList.size();
+  }
+
+  @Override
+  public int arcSize() {
+    return arcs.size();
+  }
+
+  @Override
+  public boolean containsId(Id id) {
+    return id__index.containsKey(id);
+  }
+
+  @Override
+  public boolean wouldCreateCycle(Id parentId, Id childId) {
+
+    if (parentId.equals(childId))
+      return true;
+
+    Integer parent = id__index.get(parentId);
+    Integer child = id__index.get(childId);
+
+    if (parent == null || child == null || ord[child] > ord[parent])
+      return false;
+
+    return searchForward(child, parent, ord[parent], new ArrayList<Integer>());
+  }
+
+  @Override
+  public ImmutableList<Id> topsortIdList() {
+
+    ImmutableList.Builder<Id> sorted = ImmutableList.builder();
+
+    for (int position = 0; position < idList.size(); position++)
+      sorted.add(idList.get(order[position]));
+
+    return sorted.build();
+  }
+
+  // ===========================================================================
+  // build
+  // ===========================================================================
+
+  @Override
+  public IdDag<Id> build() {
+
+    int idSize = idList.size();
+
+    IdGraphIndex<Id> idGraphIndex =
+        IdGraphIndex.fromParentArrays(ImmutableList.copyOf(idList), Arrays.copyOf(parents, idSize),
+            Arrays.copyOf(parentCounts, idSize));
+
+    return new IdDagClass<>(idGraphIndex, topsortIdList());
+  }
+
+}
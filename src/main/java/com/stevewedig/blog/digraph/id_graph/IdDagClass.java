@@ -16,9 +16,64 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
 
   public IdDagClass(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds) {
 
-    super(idSet, id__parentIds);
+    this(idSet, id__parentIds, true);
+  }
+
+  /**
+   * Create a dag backed by multimaps, skipping validation for subgraphs of dags (which can't
+   * contain a cycle).
+   */
+  IdDagClass(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds,
+      boolean validate) {
+
+    super(idSet, id__parentIds, validate);
+
+    if (validate)
+      validate();
+  }
+
+  /**
+   * Create a dag backed by an IdGraphIndex (its multimaps are only built if requested).
+   */
+  public IdDagClass(IdGraphIndex<Id> idGraphIndex) {
+
+    this(idGraphIndex, true);
+  }
+
+  /**
+   * Create a dag backed by an IdGraphIndex, skipping validation for subgraphs of dags.
+   */
+  IdDagClass(IdGraphIndex<Id> idGraphIndex, boolean validate) {
+
+    super(idGraphIndex);
 
-    validate();
+    if (validate)
+      validate();
+  }
+
+  /**
+   * Create a dag backed by an IdGraphIndex whose topological sort is already known (so it can't
+   * contain a cycle, and doesn't need validating).
+   */
+  IdDagClass(IdGraphIndex<Id> idGraphIndex, ImmutableList<Id> topsortIdList) {
+
+    super(idGraphIndex, topsortIdList);
+  }
+
+  /**
+   * Create a dag backed by an IdGraphTrie (validated incrementally by the update that created it).
+   */
+  IdDagClass(IdGraphTrie<Id> idGraphTrie) {
+
+    super(idGraphTrie);
+  }
+
+  /**
+   * Create a view of a subgraph of a dag (which can't contain a cycle, so isn't validated).
+   */
+  IdDagClass(IdGraph<Id> viewSource, ImmutableSet<Id> idSet) {
+
+    super(viewSource, idSet);
   }
 
   // ===========================================================================
@@ -35,15 +90,96 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
   // ids
   // ===========================================================================
 
+  // subgraphs of a dag are dags, so they aren't revalidated
   @Override
   public IdDag<Id> filterIdGraph(Set<Id> ids) {
-    return IdDagLib.fromParentMap(ids, filterParentMap(ids));
+    if (isIndexed())
+      return new IdDagClass<>(idGraphIndex().filter(ids), false);
+    ImmutableSet<Id> idSet = ImmutableSet.copyOf(ids);
+    return new IdDagClass<>(idSet, filterParentMap(idSet), false);
+  }
+
+  @Override
+  IdGraph<Id> componentIdGraph(IdGraphIndex<Id> componentIndex) {
+    return new IdDagClass<>(componentIndex, false);
+  }
+
+  @Override
+  public IdDag<Id> filterIdGraphView(Set<Id> ids) {
+    return new IdDagClass<>(this, ImmutableSet.copyOf(ids));
+  }
+
+  // ===========================================================================
+  // persistent updates
+  // ===========================================================================
+
+  @Override
+  public IdDag<Id> withId(Id id) {
+    return fromIdGraphTrie(idGraphTrie().withId(id));
+  }
+
+  @Override
+  public IdDag<Id> withoutId(Id id) {
+    return fromIdGraphTrie(idGraphTrie().withoutId(id));
+  }
+
+  @Override
+  public IdDag<Id> withArc(Id parentId, Id childId) throws DagCannotHaveCycle {
+
+    validateArc(parentId, childId);
+
+    return fromIdGraphTrie(idGraphTrie().withArc(parentId, childId));
+  }
+
+  @Override
+  public IdDag<Id> withoutArc(Id parentId, Id childId) {
+    return fromIdGraphTrie(idGraphTrie().withoutArc(parentId, childId));
+  }
+
+  // unchanged tries return this dag, so its cached derived state is kept
+  private IdDag<Id> fromIdGraphTrie(IdGraphTrie<Id> trie) {
+    if (trie == idGraphTrie())
+      return this;
+    return new IdDagClass<>(trie);
+  }
+
+  // ===================================
+
+  /**
+   * Adding an arc creates a cycle exactly when the child is already an ancestor of the parent (or
+   * they are the same id), so only the parent's ancestors need to be searched.
+   */
+  protected void validateArc(Id parentId, Id childId) throws DagCannotHaveCycle {
+
+    IdGraphTrie<Id> trie = idGraphTrie();
+
+    // a child without children (or a parent without parents) can't close a cycle
+    boolean possible =
+        parentId.equals(childId)
+            || (!trie.childIdSet(childId).isEmpty() && !trie.parentIdSet(parentId).isEmpty());
+
+    if (possible && trie.isAncestorOf(childId, parentId))
+      throw new DagCannotHaveCycle("arc = %s -> %s", parentId, childId);
   }
 
   // ===========================================================================
   // ancestors
   // ===========================================================================
 
+  @Override
+  public ImmutableSet<Id> ancestorIdSet(Id id, boolean inclusive) {
+    if (reachabilityIndex != null)
+      return reachabilityIndex.ancestorIdSet(ImmutableList.of(id), inclusive);
+    return super.ancestorIdSet(id, inclusive);
+  }
+
+  @Override
+  public ImmutableSet<Id> ancestorIdSet(Set<Id> ids, boolean inclusive) {
+    if (reachabilityIndex != null)
+      return reachabilityIndex.ancestorIdSet(ids, inclusive);
+    return super.ancestorIdSet(ids, inclusive);
+  }
+
   @Override
   public IdDag<Id> ancestorIdGraph(Id id, boolean inclusive) {
     return ancestorIdGraph(ImmutableSet.of(id), inclusive);
@@ -58,6 +194,27 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
   // descendants
   // ===========================================================================
 
+  @Override
+  public boolean isDescendantOf(Id id, Id potentialAncestor, boolean inclusive) {
+    if (reachabilityIndex != null)
+      return reachabilityIndex.isDescendantOf(id, potentialAncestor, inclusive);
+    return super.isDescendantOf(id, potentialAncestor, inclusive);
+  }
+
+  @Override
+  public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive) {
+    if (reachabilityIndex != null)
+      return reachabilityIndex.descendantIdSet(ImmutableList.of(id), inclusive);
+    return super.descendantIdSet(id, inclusive);
+  }
+
+  @Override
+  public ImmutableSet<Id> descendantIdSet(Set<Id> ids, boolean inclusive) {
+    if (reachabilityIndex != null)
+      return reachabilityIndex.descendantIdSet(ids, inclusive);
+    return super.descendantIdSet(ids, inclusive);
+  }
+
   @Override
   public IdDag<Id> descendantIdGraph(Id id, boolean inclusive) {
     return descendantIdGraph(ImmutableSet.of(id), inclusive);
@@ -77,12 +234,48 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
     return optionalTopsortIdList().get();
   }
 
+  @Override
+  public ImmutableList<ImmutableSet<Id>> topsortLevelList() {
+    if (topsortLevelList == null)
+      synchronized (this) {
+        if (topsortLevelList == null)
+          topsortLevelList = IdGraphTopsortLib.sortLevels(idGraphIndex()).get();
+      }
+    return topsortLevelList;
+  }
+
+  private volatile ImmutableList<ImmutableSet<Id>> topsortLevelList;
+
+  // levels found while validating, so they aren't computed again
+  void setTopsortLevelList(ImmutableList<ImmutableSet<Id>> topsortLevelList) {
+    this.topsortLevelList = topsortLevelList;
+  }
+
+  // ===========================================================================
+  // reachability index
+  // ===========================================================================
+
+  @Override
+  public IdDagReachabilityIndex<Id> reachabilityIndex() {
+    if (reachabilityIndex == null)
+      synchronized (this) {
+        if (reachabilityIndex == null)
+          reachabilityIndex = IdDagReachabilityIndex.fromIndex(idGraphIndex(), topsortIdList());
+      }
+    return reachabilityIndex;
+  }
+
+  // null until requested, the queries above only use it once it exists
+  private volatile IdDagReachabilityIndex<Id> reachabilityIndex;
+
   // ===========================================================================
   // depth first
   // ===========================================================================
 
   @Override
   public Iterable<Id> depthIdIterable() {
+    if (isIndexed())
+      return idGraphIndex().descendantIdIterable(true, true, rootIdSet());
     return traverseIdIterable(true, true, ImmutableList.copyOf(rootIdSet()), childIdListLambda());
   }
 
@@ -91,11 +284,14 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
   @Override
   public ImmutableList<Id> depthIdList() {
     if (depthIdList == null)
-      depthIdList = ImmutableList.copyOf(depthIdIterable());
+      synchronized (this) {
+        if (depthIdList == null)
+          depthIdList = ImmutableList.copyOf(depthIdIterable());
+      }
     return depthIdList;
   }
 
-  private ImmutableList<Id> depthIdList;
+  private volatile ImmutableList<Id> depthIdList;
 
   // ===========================================================================
   // breadth first
@@ -103,6 +299,8 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
 
   @Override
   public Iterable<Id> breadthIdIterable() {
+    if (isIndexed())
+      return idGraphIndex().descendantIdIterable(false, true, rootIdSet());
     return traverseIdIterable(false, true, ImmutableList.copyOf(rootIdSet()), childIdListLambda());
   }
 
@@ -111,10 +309,13 @@ public class IdDagClass<Id> extends IdGraphClass<Id> implements IdDag<Id> {
   @Override
   public ImmutableList<Id> breadthIdList() {
     if (breadthIdList == null)
-      breadthIdList = ImmutableList.copyOf(breadthIdIterable());
+      synchronized (this) {
+        if (breadthIdList == null)
+          breadthIdList = ImmutableList.copyOf(breadthIdIterable());
+      }
     return breadthIdList;
   }
 
-  private ImmutableList<Id> breadthIdList;
+  private volatile ImmutableList<Id> breadthIdList;
 
 }
@@ -83,4 +83,47 @@ public abstract class IdDagLib {
     return fromChildMap(MultimapLib.of(alternatingIdsAndChildIds));
   }
 
+  // ===========================================================================
+  // indexed (compressed sparse row) backend
+  // ===========================================================================
+
+  /**
+   * Create an IdDag backed by an IdGraphIndex.
+   */
+  public static <Id> IdDag<Id> fromIndex(IdGraphIndex<Id> idGraphIndex) {
+    return new IdDagClass<Id>(idGraphIndex);
+  }
+
+  /**
+   * Create an IdDag backed by an IdGraphIndex that is already known to be acyclic (for example one loaded from a validated snapshot), skipping validation entirely.
+   */
+  public static <Id> IdDag<Id> fromTrustedIndex(IdGraphIndex<Id> idGraphIndex) {
+    return new IdDagClass<Id>(idGraphIndex, false);
+  }
+
+  /**
+   * Create an index-backed IdDag from the dag's id set and a mapping from id to parent ids (specified as a multimap).
+   */
+  public static <Id> IdDag<Id> indexedFromParentMap(Set<Id> idSet, Multimap<Id, Id> id__parentIds) {
+    return fromIndex(IdGraphIndex.fromParentMap(idSet, id__parentIds));
+  }
+
+  /**
+   * Create an index-backed IdDag from the dag's id set and a mapping from id to child ids (specified as a multimap).
+   */
+  public static <Id> IdDag<Id> indexedFromChildMap(Set<Id> idSet, Multimap<Id, Id> id__childIds) {
+    return fromIndex(IdGraphIndex.fromChildMap(idSet, id__childIds));
+  }
+
+  // ===========================================================================
+  // incremental builder
+  // ===========================================================================
+
+  /**
+   * Create a builder that adds arcs one at a time, rejecting cycles as they are added.
+   */
+  public static <Id> IdDagBuilder<Id> builder() {
+    return new IdDagBuilderClass<>();
+  }
+
 }
@@ -0,0 +1,343 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * A precomputed transitive closure for an IdDag, so reachability queries don't traverse the dag.
+ *
+ * Ids are numbered by their topological position, so an id's descendants all have larger numbers
+ * and its ancestors smaller ones. Each id stores its descendant and ancestor numbers in whichever
+ * of two compressed forms is smaller: a sorted int array (sparse), or a bitset trimmed to the words
+ * between its lowest and highest number (dense). Closures are built in reverse topological order by
+ * merging the closures of each id's children (and in topological order from its parents).
+ *
+ * Memory is proportional to the size of the closure, so this suits dags with up to ~100k ids and
+ * heavy query loads; see memoryBytes().
+ */
+public class IdDagReachabilityIndex<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  // topological position -> id
+  private final ImmutableList<Id> topsortIdList;
+
+  // id -> topological position
+  private final ImmutableMap<Id, Integer> id__position;
+
+  // position -> descendant positions
+  private final Closure[] descendants;
+
+  // position -> ancestor positions
+  private final Closure[] ancestors;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  private IdDagReachabilityIndex(ImmutableList<Id> topsortIdList,
+      ImmutableMap<Id, Integer> id__position, Closure[] descendants, Closure[] ancestors) {
+    this.topsortIdList = topsortIdList;
+    this.id__position = id__position;
+    this.descendants = descendants;
+    this.ancestors = ancestors;
+  }
+
+  /**
+   * Build the closure of a dag's index (the topological sort must come from the same dag).
+   */
+  static <Id> IdDagReachabilityIndex<Id> fromIndex(IdGraphIndex<Id> idGraphIndex,
+      ImmutableList<Id> topsortIdList) {
+
+    int idSize = topsortIdList.size();
+
+    ImmutableMap.Builder<Id, Integer> id__position = ImmutableMap.builder();
+
+    // index -> position
+    int[] positions = new int[idSize];
+
+    for (int position = 0; position < idSize; position++) {
+      Id id = topsortIdList.get(position);
+      id__position.put(id, position);
+      positions[idGraphIndex.index(id)] = position;
+    }
+
+    Closure[] descendants = new Closure[idSize];
+    Closure[] ancestors = new Closure[idSize];
+
+    Merger merger = new Merger(idSize);
+
+    // children have larger positions, so their closures are already built
+    for (int position = idSize - 1; position >= 0; position--) {
+
+      int index = idGraphIndex.index(topsortIdList.get(position));
+
+      for (int i = 0; i < idGraphIndex.childCount(index); i++) {
+        int child = positions[idGraphIndex.childIndex(index, i)];
+        merger.add(child);
+        merger.addAll(descendants[child]);
+      }
+
+      descendants[position] = merger.build();
+    }
+
+    // parents have smaller positions
+    for (int position = 0; position < idSize; position++) {
+
+      int index = idGraphIndex.index(topsortIdList.get(position));
+
+      for (int i = 0; i < idGraphIndex.parentCount(index); i++) {
+        int parent = positions[idGraphIndex.parentIndex(index, i)];
+        merger.add(parent);
+        merger.addAll(ancestors[parent]);
+      }
+
+      ancestors[position] = merger.build();
+    }
+
+    return new IdDagReachabilityIndex<>(topsortIdList, id__position.build(), descendants,
+        ancestors);
+  }
+
+  // ===========================================================================
+  // queries
+  // ===========================================================================
+
+  /**
+   * Whether an id is a descendant of another id (ids that aren't in the dag are only descendants
+   * of themselves).
+   */
+  public boolean isDescendantOf(Id id, Id potentialAncestor, boolean inclusive) {
+
+    if (id.equals(potentialAncestor))
+      return inclusive;
+
+    Integer position = id__position.get(id);
+    Integer ancestorPosition = id__position.get(potentialAncestor);
+
+    if (position == null || ancestorPosition == null)
+      return false;
+
+    return descendants[ancestorPosition].contains(position);
+  }
+
+  /**
+   * Whether an id is an ancestor of another id.
+   */
+  public boolean isAncestorOf(Id id, Id potentialDescendant, boolean inclusive) {
+    return isDescendantOf(potentialDescendant, id, inclusive);
+  }
+
+  // ===================================
+
+  /**
+   * Getting an id set's ancestor id set (in topological order when there's a single id).
+   */
+  public ImmutableSet<Id> ancestorIdSet(Iterable<Id> ids, boolean inclusive) {
+    return closureIdSet(ids, inclusive, ancestors);
+  }
+
+  /**
+   * Getting an id set's descendant id set (in topological order when there's a single id).
+   */
+  public ImmutableSet<Id> descendantIdSet(Iterable<Id> ids, boolean inclusive) {
+    return closureIdSet(ids, inclusive, descendants);
+  }
+
+  private ImmutableSet<Id> closureIdSet(Iterable<Id> ids, boolean inclusive, Closure[] closures) {
+
+    ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
+
+    for (Id id : ids) {
+
+      if (inclusive)
+        builder.add(id);
+
+      Integer position = id__position.get(id);
+
+      if (position != null)
+        closures[position].addIds(topsortIdList, builder);
+    }
+
+    ImmutableSet<Id> closure = builder.build();
+
+    if (inclusive)
+      return closure;
+
+    // non inclusive queries skip every start id (matching the traversal based sets)
+    return ImmutableSet.copyOf(Sets.difference(closure, ImmutableSet.copyOf(ids)));
+  }
+
+  // ===================================
+
+  /**
+   * The number of ancestor/descendant pairs.
+   */
+  public long pairSize() {
+
+    long pairSize = 0;
+
+    for (Closure closure : descendants)
+      pairSize += closure.size();
+
+    return pairSize;
+  }
+
+  /**
+   * The approximate number of bytes used by the closures (not including the id list and map).
+   */
+  public long memoryBytes() {
+
+    long memoryBytes = 0;
+
+    for (Closure closure : descendants)
+      memoryBytes += closure.memoryBytes();
+
+    for (Closure closure : ancestors)
+      memoryBytes += closure.memoryBytes();
+
+    return memoryBytes;
+  }
+
+  // ===========================================================================
+  // closure
+  // ===========================================================================
+
+  // a set of positions, either sorted (sparse) or as words starting at firstWord (dense)
+  private static class Closure {
+
+    private static final Closure empty = new Closure(new int[0], 0, null, 0);
+
+    private final int[] sorted;
+    private final int firstWord;
+    private final long[] words;
+    private final int size;
+
+    public Closure(int[] sorted, int firstWord, long[] words, int size) {
+      this.sorted = sorted;
+      this.firstWord = firstWord;
+      this.words = words;
+      this.size = size;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public boolean contains(int position) {
+
+      if (sorted != null)
+        return Arrays.binarySearch(sorted, position) >= 0;
+
+      int word = (position >>> 6) - firstWord;
+
+      return word >= 0 && word < words.length && (words[word] & (1L << position)) != 0;
+    }
+
+    public <Id> void addIds(List<Id> topsortIdList, ImmutableSet.Builder<Id> builder) {
+
+      if (sorted != null) {
+        for (int position : sorted)
+          builder.add(topsortIdList.get(position));
+        return;
+      }
+
+      for (int word = 0; word < words.length; word++)
+        for (long bits = words[word]; bits != 0; bits &= bits - 1)
+          builder.add(topsortIdList.get(((firstWord + word) << 6)
+              + Long.numberOfTrailingZeros(bits)));
+    }
+
+    // array contents plus an object header and fields
+    public long memoryBytes() {
+      return 32 + (sorted != null ? 4L * sorted.length : 8L * words.length);
+    }
+  }
+
+  // ===========================================================================
+  // merger
+  // ===========================================================================
+
+  // accumulates one closure at a time in a reusable full width bitset
+  private static class Merger {
+
+    private final long[] words;
+
+    // the range of words touched since the last build
+    private int minWord = Integer.MAX_VALUE;
+    private int maxWord = -1;
+
+    public Merger(int size) {
+      words = new long[(size + 63) >>> 6];
+    }
+
+    public void add(int position) {
+
+      int word = position >>> 6;
+
+      words[word] |= 1L << position;
+
+      minWord = Math.min(minWord, word);
+      maxWord = Math.max(maxWord, word);
+    }
+
+    public void addAll(Closure closure) {
+
+      if (closure.size == 0)
+        return;
+
+      if (closure.sorted != null) {
+        for (int position : closure.sorted)
+          add(position);
+        return;
+      }
+
+      for (int word = 0; word < closure.words.length; word++)
+        words[closure.firstWord + word] |= closure.words[word];
+
+      minWord = Math.min(minWord, closure.firstWord);
+      maxWord = Math.max(maxWord, closure.firstWord + closure.words.length - 1);
+    }
+
+    // compress the accumulated positions and reset
+    public Closure build() {
+
+      if (maxWord < 0)
+        return Closure.empty;
+
+      int size = 0;
+      for (int word = minWord; word <= maxWord; word++)
+        size += Long.bitCount(words[word]);
+
+      int wordCount = maxWord - minWord + 1;
+
+      Closure closure;
+
+      // an int per position vs two ints per word
+      if (size < 2 * wordCount) {
+
+        int[] sorted = new int[size];
+        int n = 0;
+
+        for (int word = minWord; word <= maxWord; word++)
+          for (long bits = words[word]; bits != 0; bits &= bits - 1)
+            sorted[n++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+
+        closure = new Closure(sorted, 0, null, size);
+
+      } else
+        closure = new Closure(null, minWord, Arrays.copyOfRange(words, minWord, maxWord + 1), size);
+
+      Arrays.fill(words, minWord, maxWord + 1, 0L);
+
+      minWord = Integer.MAX_VALUE;
+      maxWord = -1;
+
+      return closure;
+    }
+  }
+
+}
@@ -4,6 +4,7 @@ package com.stevewedig.blog.digraph.id_graph;
 import java.util.*;
 import com.google.common.base.Optional;
 import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.alg.TraverseVisitor;
 import com.stevewedig.blog.util.LambdaLib.Fn1;
 
 /**
@@ -40,6 +41,86 @@ public interface IdGraph<Id> {
    */
   IdGraph<Id> filterIdGraph(Set<Id> ids);
 
+  /**
+   * Like filterIdGraph, but without copying any arcs: parent and child sets are filtered from this
+   * graph as they are requested (useful for small queries against a large subgraph).
+   */
+  IdGraph<Id> filterIdGraphView(Set<Id> ids);
+
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  /**
+   * The dense int-indexed (compressed sparse row) view of the graph's arcs.
+   */
+  IdGraphIndex<Id> idGraphIndex();
+
+  // ===========================================================================
+  // fingerprint
+  // ===========================================================================
+
+  /**
+   * A structural hash of the ids and arcs: equal graphs have equal fingerprints, so hashCode is
+   * derived from it and equals rejects graphs whose fingerprints differ before comparing them.
+   * Computed once in O(V + E), and kept up to date by the persistent updates in O(1) per id or arc.
+   */
+  long fingerprint();
+
+  // ===========================================================================
+  // warming
+  // ===========================================================================
+
+  // Derived structures (child map, roots, topological sort, ...) are computed on first use, at
+  // most once even when threads race for them, and are safely published to every thread.
+
+  /**
+   * Eagerly compute the derived structures most queries use, so that readers of a shared graph
+   * never wait for them. Call it before publishing the graph. Opt-in structures (the reachability
+   * index, condensation, and components) are still only built when requested.
+   */
+  void warm();
+
+  // ===========================================================================
+  // persistent updates
+  // ===========================================================================
+
+  // Updates return a new graph sharing structure with this one, so each update costs O(log n) plus
+  // the size of the touched ids' parent/child sets (after a one time O(V + E) copy for graphs that
+  // weren't themselves created by an update).
+
+  /**
+   * A graph with an id added (this graph if the id is already contained).
+   */
+  IdGraph<Id> withId(Id id);
+
+  /**
+   * A graph with an id and its arcs removed (this graph if the id isn't contained).
+   */
+  IdGraph<Id> withoutId(Id id);
+
+  /**
+   * A graph with an arc from parentId to childId, adding either id if it isn't contained (this
+   * graph if the arc already exists).
+   */
+  IdGraph<Id> withArc(Id parentId, Id childId);
+
+  /**
+   * A graph with the arc from parentId to childId removed (this graph if the arc doesn't exist).
+   */
+  IdGraph<Id> withoutArc(Id parentId, Id childId);
+
+  // ===========================================================================
+  // diff
+  // ===========================================================================
+
+  /**
+   * The ids and arcs added and removed going from this graph to a newer version of it, and the ids
+   * whose ancestors or descendants changed. When both versions share structure (one was derived
+   * from the other by persistent updates) only the changed ids are compared.
+   */
+  IdGraphDiff<Id> diff(IdGraph<Id> newer);
+
   // ===========================================================================
   // parents
   // ===========================================================================
@@ -87,6 +168,12 @@ public interface IdGraph<Id> {
    */
   boolean isAncestorOf(Id id, Id potentialDescendant, boolean inclusive);
 
+  /**
+   * Whether an id is an ancestor of another id at most maxDistance arcs above it (inclusive when
+   * the ids are equal).
+   */
+  boolean isAncestorWithin(Id id, Id potentialDescendant, int maxDistance);
+
   /**
    * Getting an id's ancestor id iterable (its parents, parents' parents, and so on).
    */
@@ -97,6 +184,18 @@ public interface IdGraph<Id> {
    */
   Iterable<Id> ancestorIdIterable(Set<Id> ids, boolean inclusive);
 
+  /**
+   * Getting the ids at most maxDistance arcs above an id, mapped to their distance (nearest first).
+   */
+  ImmutableMap<Id, Integer> ancestorIdDistanceMap(Id id, boolean inclusive, int maxDistance);
+
+  /**
+   * Getting the ids at most maxDistance arcs above an id set, mapped to their distance (nearest
+   * first), stopping as soon as maxSize ids are found.
+   */
+  ImmutableMap<Id, Integer> ancestorIdDistanceMap(Set<Id> ids, boolean inclusive, int maxDistance,
+      int maxSize);
+
   /**
    * Getting an id's ancestor id set (its parents, parents' parents, and so on).
    */
@@ -117,6 +216,16 @@ public interface IdGraph<Id> {
    */
   IdGraph<Id> ancestorIdGraph(Set<Id> ids, boolean inclusive);
 
+  /**
+   * Depth first traversal of an id and its ancestors, pushing each to a visitor.
+   */
+  void visitAncestorIds(Id id, TraverseVisitor<Id> visitor);
+
+  /**
+   * Depth first traversal of an id set and their ancestors, pushing each to a visitor.
+   */
+  void visitAncestorIds(Set<Id> ids, TraverseVisitor<Id> visitor);
+
   // ===========================================================================
   // descendants
   // ===========================================================================
@@ -126,6 +235,12 @@ public interface IdGraph<Id> {
    */
   boolean isDescendantOf(Id id, Id potentialAncestor, boolean inclusive);
 
+  /**
+   * Whether an id is a descendant of another id at most maxDistance arcs below it (inclusive when
+   * the ids are equal).
+   */
+  boolean isDescendantWithin(Id id, Id potentialAncestor, int maxDistance);
+
   /**
    * Getting an id's descendant id iterable (its children, childrens' children, and so on).
    */
@@ -136,6 +251,18 @@ public interface IdGraph<Id> {
    */
   Iterable<Id> descendantIdIterable(Set<Id> ids, boolean inclusive);
 
+  /**
+   * Getting the ids at most maxDistance arcs below an id, mapped to their distance (nearest first).
+   */
+  ImmutableMap<Id, Integer> descendantIdDistanceMap(Id id, boolean inclusive, int maxDistance);
+
+  /**
+   * Getting the ids at most maxDistance arcs below an id set, mapped to their distance (nearest
+   * first), stopping as soon as maxSize ids are found.
+   */
+  ImmutableMap<Id, Integer> descendantIdDistanceMap(Set<Id> ids, boolean inclusive,
+      int maxDistance, int maxSize);
+
   /**
    * Getting an id's descendant id set (its children, childrens' children, and so on).
    */
@@ -157,6 +284,16 @@ public interface IdGraph<Id> {
    */
   IdGraph<Id> descendantIdGraph(Set<Id> ids, boolean inclusive);
 
+  /**
+   * Depth first traversal of an id and its descendants, pushing each to a visitor.
+   */
+  void visitDescendantIds(Id id, TraverseVisitor<Id> visitor);
+
+  /**
+   * Depth first traversal of an id set and their descendants, pushing each to a visitor.
+   */
+  void visitDescendantIds(Set<Id> ids, TraverseVisitor<Id> visitor);
+
   // ===========================================================================
   // roots (sources)
   // ===========================================================================
@@ -200,6 +337,32 @@ public interface IdGraph<Id> {
    */
   Optional<ImmutableList<Id>> optionalTopsortIdList();
 
+  // ===========================================================================
+  // strongly connected components
+  // ===========================================================================
+
+  /**
+   * The strongly connected components and the condensation dag they form (computed once, O(V + E)),
+   * so dag algorithms can be used on cyclic graphs.
+   */
+  IdGraphCondensation<Id> condensation();
+
+  // ===========================================================================
+  // weakly connected components
+  // ===========================================================================
+
+  /**
+   * The weakly connected components (connected when arc directions are ignored), computed once
+   * with union-find.
+   */
+  ImmutableList<ImmutableSet<Id>> weakComponentList();
+
+  /**
+   * Split the graph into one subgraph per weakly connected component (no arcs are lost, since no
+   * arcs connect different components). Subgraphs of dags are dags, see filterIdGraph.
+   */
+  ImmutableList<IdGraph<Id>> componentIdGraphs();
+
   // ===========================================================================
   // generic traversal
   // ===========================================================================
@@ -252,4 +415,13 @@ public interface IdGraph<Id> {
   ImmutableList<Id> traverseIdList(boolean depthFirst, boolean inclusive,
       ImmutableList<Id> startIds, Fn1<Id, List<Id>> expand);
 
+  /**
+   * Generic depth first id traversal, pushing each reached id to a visitor.
+   * 
+   * @param startIds The initial id list.
+   * @param expand A function mapping an id to the next ids.
+   * @param visitor Entered and exited for each reached id (see TraverseVisitor).
+   */
+  void visitIds(ImmutableList<Id> startIds, Fn1<Id, List<Id>> expand, TraverseVisitor<Id> visitor);
+
 }
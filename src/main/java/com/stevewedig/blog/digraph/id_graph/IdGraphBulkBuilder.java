@@ -0,0 +1,72 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.digraph.errors.*;
+
+/**
+ * Builds an index-backed graph from a stream of arcs in either direction, in a single pass.
+ *
+ * Ids are numbered as they are first seen and arcs are appended to presized int arrays, so nothing
+ * is boxed or hashed per arc. Building sorts the arcs into parent and child adjacency arrays
+ * (dropping duplicates) and validates that index directly, so no multimaps are ever built.
+ */
+public interface IdGraphBulkBuilder<Id> {
+
+  // ===========================================================================
+  // adding
+  // ===========================================================================
+
+  /**
+   * Add an id (no effect if it was already added).
+   */
+  IdGraphBulkBuilder<Id> addId(Id id);
+
+  /**
+   * Add an arc from parentId to childId, adding either id if needed (duplicate arcs are dropped
+   * when building).
+   */
+  IdGraphBulkBuilder<Id> addArc(Id parentId, Id childId);
+
+  /**
+   * Add an id and arcs from each of its parent ids to it.
+   */
+  IdGraphBulkBuilder<Id> addParentIds(Id id, Iterable<Id> parentIds);
+
+  /**
+   * Add an id and arcs from it to each of its child ids.
+   */
+  IdGraphBulkBuilder<Id> addChildIds(Id id, Iterable<Id> childIds);
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  int idSize();
+
+  /**
+   * The number of arcs added so far, including duplicates.
+   */
+  int addedArcSize();
+
+  boolean containsId(Id id);
+
+  // ===========================================================================
+  // build
+  // ===========================================================================
+
+  /**
+   * Build an index-backed IdGraph, the builder can keep being used.
+   */
+  IdGraph<Id> buildIdGraph();
+
+  /**
+   * Build an index-backed IdDag, the builder can keep being used.
+   */
+  IdDag<Id> buildIdDag() throws DagCannotHaveCycle;
+
+  /**
+   * Build an index-backed IdTree, the builder can keep being used.
+   */
+  IdTree<Id> buildIdTree() throws DagCannotHaveCycle, TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots, TreeNodesCannotHaveMultipleParents;
+
+}
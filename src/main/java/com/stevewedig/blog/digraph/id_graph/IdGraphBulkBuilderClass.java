@@ -0,0 +1,172 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.util.StrLib;
+
+/**
+ * An implementation of IdGraphBulkBuilder.
+ *
+ * Ids are numbered in insertion order, and each arc is appended to a pair of growable int arrays
+ * (its parent and child indexes), so the only per arc cost is 8 bytes until build.
+ */
+class IdGraphBulkBuilderClass<Id> implements IdGraphBulkBuilder<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final List<Id> idList;
+  private final Map<Id, Integer> id__index;
+
+  // arc k goes from arcParents[k] to arcChildren[k] (only the first arcSize entries are used)
+  private int[] arcParents;
+  private int[] arcChildren;
+  private int arcSize = 0;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  public IdGraphBulkBuilderClass(int expectedIdSize, int expectedArcSize) {
+
+    if (expectedIdSize < 0 || expectedArcSize < 0)
+      throw new AssertionError(StrLib.format("expectedIdSize = %s, expectedArcSize = %s",
+          expectedIdSize, expectedArcSize));
+
+    idList = new ArrayList<>(expectedIdSize);
+    id__index = Maps.newHashMapWithExpectedSize(expectedIdSize);
+
+    arcParents = new int[Math.max(expectedArcSize, 16)];
+    arcChildren = new int[arcParents.length];
+  }
+
+  // ===========================================================================
+  // adding
+  // ===========================================================================
+
+  @Override
+  public IdGraphBulkBuilder<Id> addId(Id id) {
+    index(id);
+    return this;
+  }
+
+  // the id's index, adding the id if needed
+  private int index(Id id) {
+
+    Integer existing = id__index.get(id);
+
+    if (existing != null)
+      return existing;
+
+    if (id == null)
+      throw new NullPointerException();
+
+    int index = idList.size();
+
+    idList.add(id);
+    id__index.put(id, index);
+
+    return index;
+  }
+
+  // ===================================
+
+  @Override
+  public IdGraphBulkBuilder<Id> addArc(Id parentId, Id childId) {
+
+    int parent = index(parentId);
+
+    append(parent, index(childId));
+
+    return this;
+  }
+
+  @Override
+  public IdGraphBulkBuilder<Id> addParentIds(Id id, Iterable<Id> parentIds) {
+
+    int child = index(id);
+
+    for (Id parentId : parentIds)
+      append(index(parentId), child);
+
+    return this;
+  }
+
+  @Override
+  public IdGraphBulkBuilder<Id> addChildIds(Id id, Iterable<Id> childIds) {
+
+    int parent = index(id);
+
+    for (Id childId : childIds)
+      append(parent, index(childId));
+
+    return this;
+  }
+
+  private void append(int parent, int child) {
+
+    if (arcSize == arcParents.length) {
+      arcParents = Arrays.copyOf(arcParents, arcSize * 2);
+      arcChildren = Arrays.copyOf(arcChildren, arcSize * 2);
+    }
+
+    arcParents[arcSize] = parent;
+    arcChildren[arcSize] = child;
+    arcSize++;
+  }
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  @Override
+  public int idSize() {
+    return idList.size();
+  }
+
+  @Override
+  public int addedArcSize() {
+    return arcSize;
+  }
+
+  @Override
+  public boolean containsId(Id id) {
+    return id__index.containsKey(id);
+  }
+
+  // ===========================================================================
+  // build
+  // ===========================================================================
+
+  @Override
+  public IdGraph<Id> buildIdGraph() {
+    return new IdGraphClass<>(index());
+  }
+
+  // validated against the index (a topological sort over its int arrays, which the dag keeps)
+  @Override
+  public IdDag<Id> buildIdDag() throws DagCannotHaveCycle {
+    return new IdDagClass<>(index());
+  }
+
+  @Override
+  public IdTree<Id> buildIdTree() throws DagCannotHaveCycle, TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots, TreeNodesCannotHaveMultipleParents {
+    return new IdTreeClass<>(index());
+  }
+
+  // ===================================
+
+  // sorts the arcs into the parent adjacency (dropping duplicates), the index inverts it into the
+  // child adjacency
+  private IdGraphIndex<Id> index() {
+
+    int[][] parentCsr = IdGraphIndex.parentCsr(idList.size(), arcParents, arcChildren, arcSize);
+
+    return IdGraphIndex.fromParentCsr(ImmutableList.copyOf(idList), parentCsr[0], parentCsr[1]);
+  }
+
+}
@@ -9,6 +9,7 @@ import com.stevewedig.blog.util.*;
 import com.stevewedig.blog.value_objects.ValueMixin;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -31,10 +32,70 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   public IdGraphClass(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds) {
 
+    this(idSet, id__parentIds, true);
+  }
+
+  /**
+   * Create a graph backed by multimaps, skipping validation for subgraphs of valid graphs.
+   */
+  IdGraphClass(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds,
+      boolean validate) {
+
     this.idSet = idSet;
     this.id__parentIds = id__parentIds;
+    this.indexed = false;
+    this.persistent = false;
+    this.viewSource = null;
+
+    if (validate)
+      validate();
+  }
+
+  /**
+   * Create a graph backed by an IdGraphIndex (its multimaps are only built if requested).
+   */
+  public IdGraphClass(IdGraphIndex<Id> idGraphIndex) {
+
+    // the index already rejected unexpected ids while it was built (its id set is only requested
+    // when needed, since off heap indexes build it on the heap)
+    this.idGraphIndex = idGraphIndex;
+    this.indexed = true;
+    this.persistent = false;
+    this.viewSource = null;
+  }
+
+  /**
+   * Create a graph backed by an IdGraphIndex whose topological sort is already known.
+   */
+  IdGraphClass(IdGraphIndex<Id> idGraphIndex, ImmutableList<Id> topsortIdList) {
 
-    validate();
+    this(idGraphIndex);
+
+    this.optionalTopsortIdList = Optional.of(topsortIdList);
+  }
+
+  /**
+   * Create a graph backed by an IdGraphTrie (created by the persistent updates, which have already
+   * validated it).
+   */
+  IdGraphClass(IdGraphTrie<Id> idGraphTrie) {
+
+    this.idGraphTrie = idGraphTrie;
+    this.indexed = false;
+    this.persistent = true;
+    this.viewSource = null;
+  }
+
+  /**
+   * Create a view of the subgraph of viewSource containing only these ids and the arcs between
+   * them (nothing is copied or validated, parent and child sets are filtered when requested).
+   */
+  IdGraphClass(IdGraph<Id> viewSource, ImmutableSet<Id> idSet) {
+
+    this.idSet = idSet;
+    this.indexed = false;
+    this.persistent = false;
+    this.viewSource = viewSource;
   }
 
   // ===========================================================================
@@ -43,13 +104,20 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   private void validate() throws GraphHadUnexpectedIds {
 
+    // a lookup per arc, the id sets in the message are only built if an unexpected id is found
+    for (Map.Entry<Id, Id> entry : id__parentIds().entries())
+      if (!idSet().contains(entry.getKey()) || !idSet().contains(entry.getValue()))
+        throwUnexpectedIds();
+  }
+
+  private void throwUnexpectedIds() throws GraphHadUnexpectedIds {
+
     ImmutableSet<Id> mapIds = MultimapLib.keysAndValues(id__parentIds());
 
     Set<Id> unexpectedIds = Sets.difference(mapIds, idSet());
 
-    if (!unexpectedIds.isEmpty())
-      throw new GraphHadUnexpectedIds("unexpectedIds = %s, mapIds = %s, idSet = %s", unexpectedIds,
-          mapIds, idSet());
+    throw new GraphHadUnexpectedIds("unexpectedIds = %s, mapIds = %s, idSet = %s", unexpectedIds,
+        mapIds, idSet());
   }
 
   // ===========================================================================
@@ -58,15 +126,24 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public ImmutableSet<Id> idSet() {
+    if (idSet == null)
+      synchronized (this) {
+        if (idSet == null)
+          idSet = indexed ? idGraphIndex.idSet() : idGraphTrie().idSet();
+      }
     return idSet;
   }
 
-  private ImmutableSet<Id> idSet;
+  private volatile ImmutableSet<Id> idSet;
 
   // ===================================
 
   @Override
   public int idSize() {
+    if (indexed)
+      return idGraphIndex.idSize();
+    if (persistent)
+      return idGraphTrie().idSize();
     return idSet().size();
   }
 
@@ -86,7 +163,215 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public IdGraph<Id> filterIdGraph(Set<Id> ids) {
-    return IdGraphLib.fromParentMap(ids, filterParentMap(ids));
+    if (indexed)
+      return IdGraphLib.fromIndex(idGraphIndex().filter(ids));
+    ImmutableSet<Id> idSet = ImmutableSet.copyOf(ids);
+    return new IdGraphClass<>(idSet, filterParentMap(idSet), false);
+  }
+
+  @Override
+  public IdGraph<Id> filterIdGraphView(Set<Id> ids) {
+    return new IdGraphClass<>(this, ImmutableSet.copyOf(ids));
+  }
+
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  @Override
+  public IdGraphIndex<Id> idGraphIndex() {
+    if (idGraphIndex == null)
+      synchronized (this) {
+        if (idGraphIndex == null)
+          idGraphIndex = IdGraphIndex.fromParentMap(idSet(), id__parentIds());
+      }
+    return idGraphIndex;
+  }
+
+  private volatile IdGraphIndex<Id> idGraphIndex;
+
+  // ===========================================================================
+  // fingerprint
+  // ===========================================================================
+
+  @Override
+  public long fingerprint() {
+
+    // tries keep their fingerprint up to date as they're updated
+    if (persistent)
+      return idGraphTrie().fingerprint();
+
+    if (fingerprint == null)
+      synchronized (this) {
+        if (fingerprint == null)
+          if (idGraphTrie != null)
+            fingerprint = idGraphTrie.fingerprint();
+          else if (indexed)
+            fingerprint = IdGraphFingerprintLib.fingerprint(idGraphIndex);
+          else
+            fingerprint = IdGraphFingerprintLib.fingerprint(this);
+      }
+    return fingerprint;
+  }
+
+  private volatile Long fingerprint;
+
+  // ===================================
+
+  // equal graphs have equal fingerprints, so a mismatch is rejected without comparing the ids and
+  // arcs (which equal graphs still need)
+  @Override
+  public boolean equals(Object other) {
+
+    if (this == other)
+      return true;
+
+    if (other == null || other.getClass() != getClass())
+      return false;
+
+    IdGraphClass<?> that = (IdGraphClass<?>) other;
+
+    if (idSize() != that.idSize() || fingerprint() != that.fingerprint())
+      return false;
+
+    return super.equals(other);
+  }
+
+  @Override
+  public int hashCode() {
+
+    long fingerprint = fingerprint();
+
+    return (int) (fingerprint ^ (fingerprint >>> 32));
+  }
+
+  // ===========================================================================
+  // warming
+  // ===========================================================================
+
+  // the derived fields are volatile, and computed inside synchronized (this) after checking again,
+  // so each is computed once (derivations that use others just reenter the lock)
+
+  @Override
+  public void warm() {
+    idSet();
+    id__parentIds();
+    id__childIds();
+    rootIdSet();
+    leafIdSet();
+    optionalTopsortIdList();
+  }
+
+  // ===================================
+
+  /**
+   * Whether the graph is backed by its IdGraphIndex rather than by multimaps.
+   */
+  protected boolean isIndexed() {
+    return indexed;
+  }
+
+  private final boolean indexed;
+
+  // ===========================================================================
+  // persistent updates
+  // ===========================================================================
+
+  @Override
+  public IdGraph<Id> withId(Id id) {
+    return fromIdGraphTrie(idGraphTrie().withId(id));
+  }
+
+  @Override
+  public IdGraph<Id> withoutId(Id id) {
+    return fromIdGraphTrie(idGraphTrie().withoutId(id));
+  }
+
+  @Override
+  public IdGraph<Id> withArc(Id parentId, Id childId) {
+    return fromIdGraphTrie(idGraphTrie().withArc(parentId, childId));
+  }
+
+  @Override
+  public IdGraph<Id> withoutArc(Id parentId, Id childId) {
+    return fromIdGraphTrie(idGraphTrie().withoutArc(parentId, childId));
+  }
+
+  // unchanged tries return this graph, so its cached derived state is kept
+  private IdGraph<Id> fromIdGraphTrie(IdGraphTrie<Id> trie) {
+    if (trie == idGraphTrie())
+      return this;
+    return new IdGraphClass<>(trie);
+  }
+
+  // ===================================
+
+  /**
+   * The persistent storage updates are applied to, copied from the graph on first use unless the
+   * graph is backed by it.
+   */
+  IdGraphTrie<Id> idGraphTrie() {
+    if (idGraphTrie == null)
+      synchronized (this) {
+        if (idGraphTrie == null)
+          idGraphTrie = IdGraphTrie.fromIdGraph(this);
+      }
+    return idGraphTrie;
+  }
+
+  private volatile IdGraphTrie<Id> idGraphTrie;
+
+  /**
+   * The graph's IdGraphTrie if it has one, without copying the graph into one (null otherwise).
+   */
+  IdGraphTrie<Id> existingIdGraphTrie() {
+    return idGraphTrie;
+  }
+
+  // ===================================
+
+  /**
+   * Whether the graph is backed by its IdGraphTrie rather than by multimaps.
+   */
+  protected boolean isPersistent() {
+    return persistent;
+  }
+
+  private final boolean persistent;
+
+  // ===========================================================================
+  // diff
+  // ===========================================================================
+
+  @Override
+  public IdGraphDiff<Id> diff(IdGraph<Id> newer) {
+    return IdGraphDiff.between(this, newer);
+  }
+
+  // ===========================================================================
+  // view
+  // ===========================================================================
+
+  /**
+   * Whether the graph is a view of a subgraph of another graph.
+   */
+  protected boolean isView() {
+    return viewSource != null;
+  }
+
+  // the graph this is a view of (null unless the graph is a view)
+  private final IdGraph<Id> viewSource;
+
+  // the ids in this view's idSet
+  private ImmutableSet<Id> filterIdSet(ImmutableSet<Id> ids) {
+
+    ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
+
+    for (Id id : ids)
+      if (idSet().contains(id))
+        builder.add(id);
+
+    return builder.build();
   }
 
   // ===========================================================================
@@ -102,15 +387,31 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public ImmutableSetMultimap<Id, Id> id__parentIds() {
+    if (id__parentIds == null)
+      synchronized (this) {
+        if (id__parentIds == null)
+          if (persistent)
+            id__parentIds = idGraphTrie().id__parentIds();
+          else if (isView())
+            id__parentIds = filterParentMap(idSet());
+          else
+            id__parentIds = idGraphIndex().id__parentIds();
+      }
     return id__parentIds;
   }
 
-  private ImmutableSetMultimap<Id, Id> id__parentIds;
+  private volatile ImmutableSetMultimap<Id, Id> id__parentIds;
 
   // ===================================
 
   @Override
   public ImmutableSet<Id> parentIdSet(Id id) {
+    if (indexed)
+      return idGraphIndex().parentIdSet(id);
+    if (persistent)
+      return idGraphTrie().parentIdSet(id);
+    if (isView())
+      return idSet().contains(id) ? filterIdSet(viewSource.parentIdSet(id)) : ImmutableSet.<Id>of();
     return id__parentIds().get(id);
   }
 
@@ -121,25 +422,33 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
       parentIdListLambda = new Fn1<Id, List<Id>>() {
         @Override
         public List<Id> apply(Id id) {
-          // non-deterministic ordering
-          return ImmutableList.copyOf(parentIdSet(id));
+          if (indexed)
+            return idGraphIndex().parentIdList(id);
+          // non-deterministic ordering (asList is a view, not a copy)
+          return parentIdSet(id).asList();
         }
       };
 
     return parentIdListLambda;
   }
 
-  private Fn1<Id, List<Id>> parentIdListLambda;
+  private volatile Fn1<Id, List<Id>> parentIdListLambda;
 
   // ===================================
 
-  protected SetMultimap<Id, Id> filterParentMap(final Set<Id> ids) {
-    return MultimapLib.filterKeysAndValues(id__parentIds(), new Predicate<Id>() {
-      @Override
-      public boolean apply(Id id) {
-        return ids.contains(id);
-      }
-    });
+  /**
+   * The arcs between these ids, only visiting the ids' own parent sets (O(ids + their arcs)).
+   */
+  protected ImmutableSetMultimap<Id, Id> filterParentMap(ImmutableSet<Id> ids) {
+
+    ImmutableSetMultimap.Builder<Id, Id> builder = ImmutableSetMultimap.builder();
+
+    for (Id id : ids)
+      for (Id parentId : parentIdSet(id))
+        if (ids.contains(parentId))
+          builder.put(id, parentId);
+
+    return builder.build();
   }
 
   // ===========================================================================
@@ -155,26 +464,39 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public ImmutableSetMultimap<Id, Id> id__childIds() {
-    if (id__childIds == null) {
+    if (id__childIds == null)
+      synchronized (this) {
+
+        if (id__childIds == null && indexed)
+          id__childIds = idGraphIndex().id__childIds();
 
-      ImmutableSetMultimap.Builder<Id, Id> builder = ImmutableSetMultimap.builder();
+        if (id__childIds == null) {
 
-      for (Id id : idSet())
-        for (Id parentId : id__parentIds().get(id))
-          builder.put(parentId, id);
+          ImmutableSetMultimap.Builder<Id, Id> builder = ImmutableSetMultimap.builder();
 
-      id__childIds = builder.build();
-    }
+          for (Id id : idSet())
+            for (Id parentId : id__parentIds().get(id))
+              builder.put(parentId, id);
+
+          id__childIds = builder.build();
+        }
+      }
 
     return id__childIds;
   }
 
-  private ImmutableSetMultimap<Id, Id> id__childIds;
+  private volatile ImmutableSetMultimap<Id, Id> id__childIds;
 
   // ===================================
 
   @Override
   public ImmutableSet<Id> childIdSet(Id id) {
+    if (indexed)
+      return idGraphIndex().childIdSet(id);
+    if (persistent)
+      return idGraphTrie().childIdSet(id);
+    if (isView())
+      return idSet().contains(id) ? filterIdSet(viewSource.childIdSet(id)) : ImmutableSet.<Id>of();
     return id__childIds().get(id);
   }
 
@@ -185,15 +507,17 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
       childIdListLambda = new Fn1<Id, List<Id>>() {
         @Override
         public List<Id> apply(Id id) {
-          // non-deterministic ordering
-          return ImmutableList.copyOf(childIdSet(id));
+          if (indexed)
+            return idGraphIndex().childIdList(id);
+          // non-deterministic ordering (asList is a view, not a copy)
+          return childIdSet(id).asList();
         }
       };
 
     return childIdListLambda;
   }
 
-  private Fn1<Id, List<Id>> childIdListLambda;
+  private volatile Fn1<Id, List<Id>> childIdListLambda;
 
   // ===========================================================================
   // ancestors
@@ -204,23 +528,49 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
     return isDescendantOf(potentialDescendant, id, inclusive);
   }
 
+  @Override
+  public boolean isAncestorWithin(Id id, Id potentialDescendant, int maxDistance) {
+    return isDescendantWithin(potentialDescendant, id, maxDistance);
+  }
+
   @Override
   public Iterable<Id> ancestorIdIterable(Id id, boolean inclusive) {
-    return traverseIdIterable(true, inclusive, id, parentIdListLambda());
+    return ancestorIdIterable(ImmutableSet.of(id), inclusive);
   }
 
   @Override
   public Iterable<Id> ancestorIdIterable(Set<Id> ids, boolean inclusive) {
+    if (indexed)
+      return idGraphIndex().ancestorIdIterable(true, inclusive, ids);
     return traverseIdIterable(true, inclusive, ImmutableList.copyOf(ids), parentIdListLambda());
   }
 
+  @Override
+  public ImmutableMap<Id, Integer> ancestorIdDistanceMap(Id id, boolean inclusive,
+      int maxDistance) {
+    return ancestorIdDistanceMap(ImmutableSet.of(id), inclusive, maxDistance, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public ImmutableMap<Id, Integer> ancestorIdDistanceMap(Set<Id> ids, boolean inclusive,
+      int maxDistance, int maxSize) {
+    if (indexed)
+      return idGraphIndex().ancestorIdDistanceMap(ids, inclusive, maxDistance, maxSize);
+    return TraverseLib.distanceMap(inclusive, ImmutableList.copyOf(ids), maxDistance, maxSize,
+        parentIdListLambda());
+  }
+
   @Override
   public ImmutableSet<Id> ancestorIdSet(Id id, boolean inclusive) {
+    if (indexed)
+      return idGraphIndex().ancestorIdSet(ImmutableList.of(id), inclusive);
     return ImmutableSet.copyOf(ancestorIdIterable(id, inclusive));
   }
 
   @Override
   public ImmutableSet<Id> ancestorIdSet(Set<Id> ids, boolean inclusive) {
+    if (indexed)
+      return idGraphIndex().ancestorIdSet(ids, inclusive);
     return ImmutableSet.copyOf(ancestorIdIterable(ids, inclusive));
   }
 
@@ -229,6 +579,19 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
     return ancestorIdGraph(ImmutableSet.of(id), inclusive);
   }
 
+  @Override
+  public void visitAncestorIds(Id id, TraverseVisitor<Id> visitor) {
+    visitAncestorIds(ImmutableSet.of(id), visitor);
+  }
+
+  @Override
+  public void visitAncestorIds(Set<Id> ids, TraverseVisitor<Id> visitor) {
+    if (indexed)
+      idGraphIndex().visitAncestors(ids, visitor);
+    else
+      visitIds(ImmutableList.copyOf(ids), parentIdListLambda(), visitor);
+  }
+
   @Override
   public IdGraph<Id> ancestorIdGraph(Set<Id> ids, boolean inclusive) {
     return filterIdGraph(ancestorIdSet(ids, inclusive));
@@ -240,26 +603,63 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public boolean isDescendantOf(Id id, Id potentialAncestor, boolean inclusive) {
-    return ancestorIdSet(id, inclusive).contains(potentialAncestor);
+
+    if (id.equals(potentialAncestor))
+      return inclusive;
+
+    return isDescendantWithin(id, potentialAncestor, Integer.MAX_VALUE);
+  }
+
+  // searches from both ids, instead of materializing either one's ancestors or descendants
+  @Override
+  public boolean isDescendantWithin(Id id, Id potentialAncestor, int maxDistance) {
+
+    if (indexed)
+      return IdGraphReachabilityLib.distance(idGraphIndex(), potentialAncestor, id, maxDistance)
+          .isPresent();
+
+    return ReachabilityLib.distance(potentialAncestor, id, maxDistance, childIdListLambda(),
+        parentIdListLambda()).isPresent();
   }
 
   @Override
   public Iterable<Id> descendantIdIterable(Id id, boolean inclusive) {
-    return traverseIdIterable(true, inclusive, id, childIdListLambda());
+    return descendantIdIterable(ImmutableSet.of(id), inclusive);
   }
 
   @Override
   public Iterable<Id> descendantIdIterable(Set<Id> ids, boolean inclusive) {
+    if (indexed)
+      return idGraphIndex().descendantIdIterable(true, inclusive, ids);
     return traverseIdIterable(true, inclusive, ImmutableList.copyOf(ids), childIdListLambda());
   }
 
+  @Override
+  public ImmutableMap<Id, Integer> descendantIdDistanceMap(Id id, boolean inclusive,
+      int maxDistance) {
+    return descendantIdDistanceMap(ImmutableSet.of(id), inclusive, maxDistance, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public ImmutableMap<Id, Integer> descendantIdDistanceMap(Set<Id> ids, boolean inclusive,
+      int maxDistance, int maxSize) {
+    if (indexed)
+      return idGraphIndex().descendantIdDistanceMap(ids, inclusive, maxDistance, maxSize);
+    return TraverseLib.distanceMap(inclusive, ImmutableList.copyOf(ids), maxDistance, maxSize,
+        childIdListLambda());
+  }
+
   @Override
   public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive) {
+    if (indexed)
+      return idGraphIndex().descendantIdSet(ImmutableList.of(id), inclusive);
     return ImmutableSet.copyOf(descendantIdIterable(id, inclusive));
   }
 
   @Override
   public ImmutableSet<Id> descendantIdSet(Set<Id> ids, boolean inclusive) {
+    if (indexed)
+      return idGraphIndex().descendantIdSet(ids, inclusive);
     return ImmutableSet.copyOf(descendantIdIterable(ids, inclusive));
   }
 
@@ -268,6 +668,19 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
     return descendantIdGraph(ImmutableSet.of(id), inclusive);
   }
 
+  @Override
+  public void visitDescendantIds(Id id, TraverseVisitor<Id> visitor) {
+    visitDescendantIds(ImmutableSet.of(id), visitor);
+  }
+
+  @Override
+  public void visitDescendantIds(Set<Id> ids, TraverseVisitor<Id> visitor) {
+    if (indexed)
+      idGraphIndex().visitDescendants(ids, visitor);
+    else
+      visitIds(ImmutableList.copyOf(ids), childIdListLambda(), visitor);
+  }
+
   @Override
   public IdGraph<Id> descendantIdGraph(Set<Id> ids, boolean inclusive) {
     return filterIdGraph(descendantIdSet(ids, inclusive));
@@ -286,21 +699,31 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public ImmutableSet<Id> rootIdSet() {
-    if (rootIds == null) {
-
-      ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
-
-      for (Id id : idSet)
-        if (parentIdSet(id).isEmpty())
-          builder.add(id);
-
-      rootIds = builder.build();
-    }
-
+    if (rootIds == null)
+      synchronized (this) {
+        if (rootIds == null) {
+
+          ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
+
+          if (indexed) {
+            IdGraphIndex<Id> index = idGraphIndex();
+            for (int i = 0; i < index.idSize(); i++)
+              if (index.parentCount(i) == 0)
+                builder.add(index.id(i));
+          } else if (persistent)
+            builder.addAll(idGraphTrie().rootIdSet());
+          else
+            for (Id id : idSet())
+              if (parentIdSet(id).isEmpty())
+                builder.add(id);
+
+          rootIds = builder.build();
+        }
+      }
     return rootIds;
   }
 
-  private ImmutableSet<Id> rootIds;
+  private volatile ImmutableSet<Id> rootIds;
 
   // ===========================================================================
   // leaves (sinks)
@@ -315,21 +738,29 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
 
   @Override
   public ImmutableSet<Id> leafIdSet() {
-    if (leafIds == null) {
-
-      ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
-
-      for (Id id : idSet)
-        if (childIdSet(id).isEmpty())
-          builder.add(id);
-
-      leafIds = builder.build();
-    }
-
+    if (leafIds == null)
+      synchronized (this) {
+        if (leafIds == null) {
+
+          ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
+
+          if (indexed) {
+            IdGraphIndex<Id> index = idGraphIndex();
+            for (int i = 0; i < index.idSize(); i++)
+              if (index.childCount(i) == 0)
+                builder.add(index.id(i));
+          } else
+            for (Id id : idSet())
+              if (childIdSet(id).isEmpty())
+                builder.add(id);
+
+          leafIds = builder.build();
+        }
+      }
     return leafIds;
   }
 
-  private ImmutableSet<Id> leafIds;
+  private volatile ImmutableSet<Id> leafIds;
 
   // ===========================================================================
   // topological sort
@@ -338,11 +769,22 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
   @Override
   public Optional<ImmutableList<Id>> optionalTopsortIdList() {
     if (optionalTopsortIdList == null)
-      optionalTopsortIdList = TopsortLib.sort(idSet(), id__parentIds());
+      synchronized (this) {
+        if (optionalTopsortIdList == null)
+          if (indexed)
+            optionalTopsortIdList = IdGraphTopsortLib.sort(idGraphIndex());
+          else
+            optionalTopsortIdList = TopsortLib.sort(idSet(), id__parentIds());
+      }
     return optionalTopsortIdList;
   }
 
-  private Optional<ImmutableList<Id>> optionalTopsortIdList;
+  private volatile Optional<ImmutableList<Id>> optionalTopsortIdList;
+
+  // a topological sort found while validating a subclass, so it isn't computed again
+  void setTopsortIdList(ImmutableList<Id> topsortIdList) {
+    optionalTopsortIdList = Optional.of(topsortIdList);
+  }
 
   // ===================================
 
@@ -351,6 +793,82 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
     return !optionalTopsortIdList().isPresent();
   }
 
+  // ===========================================================================
+  // strongly connected components
+  // ===========================================================================
+
+  @Override
+  public IdGraphCondensation<Id> condensation() {
+    if (condensation == null)
+      synchronized (this) {
+        if (condensation == null)
+          condensation = IdGraphCondensation.fromIndex(idGraphIndex());
+      }
+    return condensation;
+  }
+
+  private volatile IdGraphCondensation<Id> condensation;
+
+  // ===========================================================================
+  // weakly connected components
+  // ===========================================================================
+
+  @Override
+  public ImmutableList<ImmutableSet<Id>> weakComponentList() {
+    if (weakComponentList == null)
+      synchronized (this) {
+        if (weakComponentList == null)
+          weakComponentList =
+              IdGraphComponentLib.componentList(idGraphIndex(), weakComponentNumbers());
+      }
+    return weakComponentList;
+  }
+
+  private volatile ImmutableList<ImmutableSet<Id>> weakComponentList;
+
+  // index -> component number
+  private int[] weakComponentNumbers() {
+    if (weakComponentNumbers == null)
+      synchronized (this) {
+        if (weakComponentNumbers == null)
+          weakComponentNumbers = IdGraphComponentLib.weakComponentNumbers(idGraphIndex());
+      }
+    return weakComponentNumbers;
+  }
+
+  private volatile int[] weakComponentNumbers;
+
+  // ===================================
+
+  @Override
+  public ImmutableList<IdGraph<Id>> componentIdGraphs() {
+
+    // already connected
+    if (weakComponentList().size() == 1)
+      return ImmutableList.<IdGraph<Id>>of(this);
+
+    // each piece only touches its component's ids and arcs, so this is O(V + E) overall
+    ImmutableList.Builder<IdGraph<Id>> componentIdGraphs = ImmutableList.builder();
+
+    if (indexed)
+      for (IdGraphIndex<Id> componentIndex : idGraphIndex().split(weakComponentNumbers(),
+          weakComponentList()))
+        componentIdGraphs.add(componentIdGraph(componentIndex));
+    else
+      for (ImmutableSet<Id> component : weakComponentList())
+        componentIdGraphs.add(filterIdGraph(component));
+
+    return componentIdGraphs.build();
+  }
+
+  /**
+   * Create the graph for one of this graph's weakly connected components (overridden so components
+   * of dags are dags).
+   */
+  IdGraph<Id> componentIdGraph(IdGraphIndex<Id> componentIndex) {
+    return new IdGraphClass<>(componentIndex);
+  }
+
   // ===========================================================================
   // generic traversal
   // ===========================================================================
@@ -385,4 +903,11 @@ public class IdGraphClass<Id> extends ValueMixin implements IdGraph<Id> {
     return ImmutableList.copyOf(traverseIdIterable(depthFirst, inclusive, startIds, expand));
   }
 
+  @Override
+  public void visitIds(ImmutableList<Id> startIds, Fn1<Id, List<Id>> expand,
+      TraverseVisitor<Id> visitor) {
+
+    TraverseLib.visit(startIds, expand, visitor);
+  }
+
 }
@@ -0,0 +1,275 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * Connected components over an IdGraphIndex.
+ */
+public abstract class IdGraphComponentLib {
+
+  // ===========================================================================
+  // strongly connected
+  // ===========================================================================
+
+  // http://en.wikipedia.org/wiki/Tarjan%27s_strongly_connected_components_algorithm
+  //
+  // Written with explicit int array stacks instead of recursion, so long paths can't overflow the
+  // call stack. An id is on the component stack exactly when it has been numbered but not yet
+  // assigned a component.
+
+  /**
+   * Tarjan's strongly connected components over an IdGraphIndex (O(V + E)).
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @return index -> component number, where components are numbered in topological order of the
+   *         condensation (arcs between different components go from lower to higher numbers).
+   */
+  public static int[] strongComponentNumbers(IdGraphIndex<?> idGraphIndex) {
+
+    int idSize = idGraphIndex.idSize();
+
+    // index -> discovery order (-1 until discovered) and lowest order reachable on the stack
+    int[] order = new int[idSize];
+    int[] low = new int[idSize];
+    Arrays.fill(order, -1);
+
+    // index -> component (-1 until assigned), assigned in reverse topological order
+    int[] components = new int[idSize];
+    Arrays.fill(components, -1);
+
+    // ids whose component isn't known yet
+    int[] stack = new int[idSize];
+    int stackSize = 0;
+
+    // the depth first path, with the next child position of each id on it
+    int[] path = new int[idSize];
+    int[] nextChild = new int[idSize];
+    int pathSize = 0;
+
+    int orderCount = 0;
+    int componentCount = 0;
+
+    for (int start = 0; start < idSize; start++) {
+
+      if (order[start] != -1)
+        continue;
+
+      order[start] = low[start] = orderCount++;
+      stack[stackSize++] = start;
+      path[pathSize] = start;
+      nextChild[pathSize++] = 0;
+
+      while (pathSize > 0) {
+
+        int index = path[pathSize - 1];
+        int i = nextChild[pathSize - 1];
+
+        // descend into the next child, or note a back arc into the stack
+        if (i < idGraphIndex.childCount(index)) {
+
+          nextChild[pathSize - 1]++;
+
+          int child = idGraphIndex.childIndex(index, i);
+
+          if (order[child] == -1) {
+            order[child] = low[child] = orderCount++;
+            stack[stackSize++] = child;
+            path[pathSize] = child;
+            nextChild[pathSize++] = 0;
+          } else if (components[child] == -1)
+            low[index] = Math.min(low[index], order[child]);
+
+          continue;
+        }
+
+        // finished with index
+        pathSize--;
+
+        if (pathSize > 0) {
+          int parent = path[pathSize - 1];
+          low[parent] = Math.min(low[parent], low[index]);
+        }
+
+        // index is the first id discovered in its component, which is on the stack above it
+        if (low[index] == order[index]) {
+
+          int member;
+          do {
+            member = stack[--stackSize];
+            components[member] = componentCount;
+          } while (member != index);
+
+          componentCount++;
+        }
+      }
+    }
+
+    // a component is completed after every component it reaches, so reverse the numbering
+    for (int index = 0; index < idSize; index++)
+      components[index] = componentCount - 1 - components[index];
+
+    return components;
+  }
+
+  /**
+   * Strongly connected components over an IdGraphIndex (O(V + E)).
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @return The components in topological order of the condensation (roots first), each in index
+   *         order. Together they partition the graph's ids.
+   */
+  public static <Id> ImmutableList<ImmutableSet<Id>> strongComponentList(
+      IdGraphIndex<Id> idGraphIndex) {
+
+    return componentList(idGraphIndex, strongComponentNumbers(idGraphIndex));
+  }
+
+  // ===========================================================================
+  // weakly connected
+  // ===========================================================================
+
+  // Union-find over int arrays, always linking the larger root under the smaller one, so each
+  // component's root is its smallest index (see IdGraphParallelComponentLib for a concurrent
+  // version that produces the same numbering).
+
+  /**
+   * Weakly connected components (ignoring arc direction) over an IdGraphIndex, using union-find.
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @return index -> component number, where components are numbered in order of their smallest
+   *         index.
+   */
+  public static int[] weakComponentNumbers(IdGraphIndex<?> idGraphIndex) {
+
+    int idSize = idGraphIndex.idSize();
+
+    // index -> parent in the union-find forest (not a graph parent)
+    int[] links = new int[idSize];
+
+    for (int index = 0; index < idSize; index++)
+      links[index] = index;
+
+    for (int index = 0; index < idSize; index++) {
+
+      int parentCount = idGraphIndex.parentCount(index);
+      for (int i = 0; i < parentCount; i++) {
+
+        int root = find(links, index);
+        int parentRoot = find(links, idGraphIndex.parentIndex(index, i));
+
+        if (root < parentRoot)
+          links[parentRoot] = root;
+        else if (parentRoot < root)
+          links[root] = parentRoot;
+      }
+    }
+
+    for (int index = 0; index < idSize; index++)
+      links[index] = find(links, index);
+
+    return numberRoots(links);
+  }
+
+  /**
+   * Weakly connected components (ignoring arc direction) over an IdGraphIndex (O(V + E) in
+   * practice).
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @return The components in order of their first id, each in index order. Together they
+   *         partition the graph's ids.
+   */
+  public static <Id> ImmutableList<ImmutableSet<Id>> weakComponentList(
+      IdGraphIndex<Id> idGraphIndex) {
+
+    return componentList(idGraphIndex, weakComponentNumbers(idGraphIndex));
+  }
+
+  // ===================================
+
+  // the root of an index, halving the path to it along the way
+  private static int find(int[] links, int index) {
+
+    while (links[index] != index) {
+      links[index] = links[links[index]];
+      index = links[index];
+    }
+
+    return index;
+  }
+
+  /**
+   * Number components given each index's root, where roots are the smallest index in their
+   * component (so numbers are assigned in order of each component's smallest index).
+   */
+  static int[] numberRoots(int[] roots) {
+
+    int[] components = new int[roots.length];
+
+    int componentCount = 0;
+
+    for (int index = 0; index < roots.length; index++)
+      if (roots[index] == index)
+        components[index] = componentCount++;
+      else
+        components[index] = components[roots[index]];
+
+    return components;
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  /**
+   * Group ids by component number.
+   *
+   * @return The components in number order, each in index order.
+   */
+  public static <Id> ImmutableList<ImmutableSet<Id>> componentList(IdGraphIndex<Id> idGraphIndex,
+      int[] components) {
+
+    int componentCount = componentCount(components);
+
+    // counting sort the ids by component, keeping index order within each component
+    int[] offsets = new int[componentCount + 1];
+
+    for (int component : components)
+      offsets[component + 1]++;
+
+    for (int component = 0; component < componentCount; component++)
+      offsets[component + 1] += offsets[component];
+
+    int[] cursors = Arrays.copyOf(offsets, componentCount);
+    Object[] sorted = new Object[components.length];
+
+    for (int index = 0; index < components.length; index++)
+      sorted[cursors[components[index]]++] = idGraphIndex.id(index);
+
+    @SuppressWarnings("unchecked")
+    List<Id> sortedIds = (List<Id>) Arrays.asList(sorted);
+
+    ImmutableList.Builder<ImmutableSet<Id>> componentList = ImmutableList.builder();
+
+    for (int component = 0; component < componentCount; component++)
+      componentList.add(ImmutableSet.copyOf(sortedIds.subList(offsets[component],
+          offsets[component + 1])));
+
+    return componentList.build();
+  }
+
+  /**
+   * The number of components, given components numbered from 0 without gaps.
+   */
+  public static int componentCount(int[] components) {
+
+    int componentCount = 0;
+
+    for (int component : components)
+      componentCount = Math.max(componentCount, component + 1);
+
+    return componentCount;
+  }
+
+}
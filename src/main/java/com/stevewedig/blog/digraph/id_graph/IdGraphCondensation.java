@@ -0,0 +1,157 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.Arrays;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.errors.NotContained;
+
+/**
+ * A graph's strongly connected components, and the dag formed by contracting each component to a
+ * single id (its condensation).
+ *
+ * Ids in the same component are all ancestors of each other, and the condensation contains an arc
+ * between two components whenever the graph contains an arc between their ids. So dag algorithms
+ * (topological sort, levels, reachability) can be run on the condensation of a cyclic graph, with
+ * ids mapped to their components.
+ */
+public class IdGraphCondensation<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  // in topological order of the condensation
+  private final ImmutableList<ImmutableSet<Id>> componentList;
+
+  private final ImmutableMap<Id, ImmutableSet<Id>> id__component;
+
+  private final IdDag<ImmutableSet<Id>> idDag;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  private IdGraphCondensation(ImmutableList<ImmutableSet<Id>> componentList,
+      ImmutableMap<Id, ImmutableSet<Id>> id__component, IdDag<ImmutableSet<Id>> idDag) {
+    this.componentList = componentList;
+    this.id__component = id__component;
+    this.idDag = idDag;
+  }
+
+  /**
+   * Condense a graph's index (O(V + E)).
+   */
+  static <Id> IdGraphCondensation<Id> fromIndex(IdGraphIndex<Id> idGraphIndex) {
+
+    int idSize = idGraphIndex.idSize();
+
+    int[] components = IdGraphComponentLib.strongComponentNumbers(idGraphIndex);
+
+    ImmutableList<ImmutableSet<Id>> componentList =
+        IdGraphComponentLib.componentList(idGraphIndex, components);
+
+    int componentCount = componentList.size();
+
+    ImmutableMap.Builder<Id, ImmutableSet<Id>> id__component = ImmutableMap.builder();
+
+    for (int index = 0; index < idSize; index++)
+      id__component.put(idGraphIndex.id(index), componentList.get(components[index]));
+
+    // component -> parent components, deduplicated by remembering the last component each was
+    // added to
+    int[][] parents = new int[componentCount][];
+    int[] parentCounts = new int[componentCount];
+    int[] addedTo = new int[componentCount];
+    Arrays.fill(addedTo, -1);
+
+    int[] buffer = new int[Math.max(componentCount, 1)];
+
+    for (int component = 0; component < componentCount; component++) {
+
+      int parentCount = 0;
+
+      for (Id id : componentList.get(component)) {
+
+        int index = idGraphIndex.index(id);
+
+        for (int i = 0; i < idGraphIndex.parentCount(index); i++) {
+
+          int parent = components[idGraphIndex.parentIndex(index, i)];
+
+          if (parent != component && addedTo[parent] != component) {
+            addedTo[parent] = component;
+            buffer[parentCount++] = parent;
+          }
+        }
+      }
+
+      parents[component] = Arrays.copyOf(buffer, parentCount);
+      parentCounts[component] = parentCount;
+    }
+
+    // components are numbered in topological order, so the dag doesn't need sorting or validating
+    IdGraphIndex<ImmutableSet<Id>> dagIndex =
+        IdGraphIndex.fromParentArrays(componentList, parents, parentCounts);
+
+    IdDag<ImmutableSet<Id>> idDag = new IdDagClass<>(dagIndex, componentList);
+
+    return new IdGraphCondensation<>(componentList, id__component.build(), idDag);
+  }
+
+  // ===========================================================================
+  // components
+  // ===========================================================================
+
+  /**
+   * The strongly connected components, in topological order of the condensation (roots first).
+   */
+  public ImmutableList<ImmutableSet<Id>> componentList() {
+    return componentList;
+  }
+
+  /**
+   * The number of strongly connected components.
+   */
+  public int componentSize() {
+    return componentList.size();
+  }
+
+  /**
+   * Getting the strongly connected component containing an id.
+   */
+  public ImmutableSet<Id> component(Id id) throws NotContained {
+
+    ImmutableSet<Id> component = id__component.get(id);
+
+    if (component == null)
+      throw new NotContained("id = %s", id);
+
+    return component;
+  }
+
+  /**
+   * The mapping from id to the strongly connected component containing it.
+   */
+  public ImmutableMap<Id, ImmutableSet<Id>> id__component() {
+    return id__component;
+  }
+
+  /**
+   * Whether every component is a single id, so the graph is a dag unless it has self arcs.
+   */
+  public boolean isTrivial() {
+    return componentList.size() == id__component.size();
+  }
+
+  // ===========================================================================
+  // condensation
+  // ===========================================================================
+
+  /**
+   * The condensation dag, whose ids are the components (its topological sort is componentList()).
+   */
+  public IdDag<ImmutableSet<Id>> idDag() {
+    return idDag;
+  }
+
+}
@@ -0,0 +1,354 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * The changes going from one version of a graph to a newer one: the ids and arcs added and
+ * removed, and the ids (contained by both versions) whose ancestors or descendants changed.
+ *
+ * Versions backed by IdGraphTries (created by persistent updates, or updated since they were
+ * created) are compared by skipping the trie nodes they share, so a version derived from the other
+ * is compared in time proportional to the updates between them. Other versions are compared id by
+ * id in O(V + E). Ancestors and descendants are only compared when requested, and only near the
+ * changed arcs.
+ */
+public class IdGraphDiff<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final Version<Id> older;
+  private final Version<Id> newer;
+
+  private final ImmutableSet<Id> addedIdSet;
+  private final ImmutableSet<Id> removedIdSet;
+
+  // child id -> parent ids of the added / removed arcs
+  private final ImmutableSetMultimap<Id, Id> addedId__parentIds;
+  private final ImmutableSetMultimap<Id, Id> removedId__parentIds;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  private IdGraphDiff(Version<Id> older, Version<Id> newer, Iterable<Id> changedIds) {
+
+    this.older = older;
+    this.newer = newer;
+
+    ImmutableSet.Builder<Id> addedIds = ImmutableSet.builder();
+    ImmutableSet.Builder<Id> removedIds = ImmutableSet.builder();
+    ImmutableSetMultimap.Builder<Id, Id> addedArcs = ImmutableSetMultimap.builder();
+    ImmutableSetMultimap.Builder<Id, Id> removedArcs = ImmutableSetMultimap.builder();
+
+    // each arc is found from its child, whose parent set changed
+    for (Id id : changedIds) {
+
+      boolean inOlder = older.containsId(id);
+      boolean inNewer = newer.containsId(id);
+
+      if (!inOlder)
+        addedIds.add(id);
+
+      if (!inNewer)
+        removedIds.add(id);
+
+      ImmutableSet<Id> olderParentIds = inOlder ? older.parentIdSet(id) : ImmutableSet.<Id>of();
+      ImmutableSet<Id> newerParentIds = inNewer ? newer.parentIdSet(id) : ImmutableSet.<Id>of();
+
+      for (Id parentId : newerParentIds)
+        if (!olderParentIds.contains(parentId))
+          addedArcs.put(id, parentId);
+
+      for (Id parentId : olderParentIds)
+        if (!newerParentIds.contains(parentId))
+          removedArcs.put(id, parentId);
+    }
+
+    addedIdSet = addedIds.build();
+    removedIdSet = removedIds.build();
+    addedId__parentIds = addedArcs.build();
+    removedId__parentIds = removedArcs.build();
+  }
+
+  /**
+   * Compare two versions of a graph.
+   */
+  static <Id> IdGraphDiff<Id> between(IdGraph<Id> older, IdGraph<Id> newer) {
+
+    IdGraphTrie<Id> olderTrie = existingIdGraphTrie(older);
+    IdGraphTrie<Id> newerTrie = existingIdGraphTrie(newer);
+
+    Version<Id> olderVersion = olderTrie != null ? new TrieVersion<>(olderTrie)
+        : new GraphVersion<>(older);
+    Version<Id> newerVersion = newerTrie != null ? new TrieVersion<>(newerTrie)
+        : new GraphVersion<>(newer);
+
+    if (older == newer)
+      return new IdGraphDiff<>(olderVersion, newerVersion, ImmutableSet.<Id>of());
+
+    if (olderTrie != null && newerTrie != null)
+      return new IdGraphDiff<>(olderVersion, newerVersion, olderTrie.changedIdSet(newerTrie));
+
+    // without shared structure, every id is compared
+    ImmutableSet.Builder<Id> changedIds = ImmutableSet.builder();
+
+    for (Id id : newer.idSet())
+      if (!olderVersion.containsId(id)
+          || !olderVersion.parentIdSet(id).equals(newerVersion.parentIdSet(id)))
+        changedIds.add(id);
+
+    for (Id id : older.idSet())
+      if (!newerVersion.containsId(id))
+        changedIds.add(id);
+
+    return new IdGraphDiff<>(olderVersion, newerVersion, changedIds.build());
+  }
+
+  private static <Id> IdGraphTrie<Id> existingIdGraphTrie(IdGraph<Id> idGraph) {
+
+    if (idGraph instanceof IdGraphClass)
+      return ((IdGraphClass<Id>) idGraph).existingIdGraphTrie();
+
+    return null;
+  }
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  /**
+   * The ids only the newer version contains.
+   */
+  public ImmutableSet<Id> addedIdSet() {
+    return addedIdSet;
+  }
+
+  /**
+   * The ids only the older version contains.
+   */
+  public ImmutableSet<Id> removedIdSet() {
+    return removedIdSet;
+  }
+
+  // ===========================================================================
+  // arcs
+  // ===========================================================================
+
+  /**
+   * The arcs only the newer version contains, as a mapping from child id to parent ids (like
+   * IdGraph.id__parentIds).
+   */
+  public ImmutableSetMultimap<Id, Id> addedId__parentIds() {
+    return addedId__parentIds;
+  }
+
+  /**
+   * The arcs only the older version contains, as a mapping from child id to parent ids (like
+   * IdGraph.id__parentIds).
+   */
+  public ImmutableSetMultimap<Id, Id> removedId__parentIds() {
+    return removedId__parentIds;
+  }
+
+  /**
+   * Whether the versions have the same ids and arcs.
+   */
+  public boolean isEmpty() {
+    return addedIdSet.isEmpty() && removedIdSet.isEmpty() && addedId__parentIds.isEmpty()
+        && removedId__parentIds.isEmpty();
+  }
+
+  // ===========================================================================
+  // ancestors / descendants
+  // ===========================================================================
+
+  /**
+   * The ids contained by both versions whose ancestors changed (computed once, comparing only the
+   * ancestors of the changed arcs' descendants).
+   */
+  public ImmutableSet<Id> changedAncestorIdSet() {
+    if (changedAncestorIds == null)
+      synchronized (this) {
+        if (changedAncestorIds == null)
+          changedAncestorIds = computeChangedAncestorIdSet();
+      }
+    return changedAncestorIds;
+  }
+
+  private volatile ImmutableSet<Id> changedAncestorIds;
+
+  /**
+   * The ids contained by both versions whose descendants changed (computed once, searching only the
+   * ancestors of the changed arcs' ids).
+   */
+  public ImmutableSet<Id> changedDescendantIdSet() {
+    if (changedDescendantIds == null)
+      synchronized (this) {
+        if (changedDescendantIds == null)
+          changedDescendantIds = computeChangedDescendantIdSet();
+      }
+    return changedDescendantIds;
+  }
+
+  private volatile ImmutableSet<Id> changedDescendantIds;
+
+  // ===================================
+
+  // an id's ancestors can only change if it is a descendant (inclusive) of a changed arc's child in
+  // the version containing the arc, so only those ids' ancestors are compared
+  private ImmutableSet<Id> computeChangedAncestorIdSet() {
+
+    Set<Id> candidates = new LinkedHashSet<>();
+
+    candidates.addAll(reachable(older, removedId__parentIds.keySet(), false));
+    candidates.addAll(reachable(newer, addedId__parentIds.keySet(), false));
+
+    ImmutableSet.Builder<Id> changedIds = ImmutableSet.builder();
+
+    for (Id id : candidates)
+      if (older.containsId(id) && newer.containsId(id))
+        if (!reachable(older, ImmutableSet.of(id), true).equals(
+            reachable(newer, ImmutableSet.of(id), true)))
+          changedIds.add(id);
+
+    return changedIds.build();
+  }
+
+  // comparing descendants the same way would traverse everything below the changed arcs (all ids,
+  // for an arc below a root), so instead: an id's descendants grew iff an added arc leads from one
+  // of its descendants (inclusive) in both versions to an id that isn't one of its older
+  // descendants, and shrank iff a removed arc does the same for its newer descendants
+  private ImmutableSet<Id> computeChangedDescendantIdSet() {
+
+    Map<Id, Set<Id>> olderAncestors = new HashMap<>();
+    Map<Id, Set<Id>> newerAncestors = new HashMap<>();
+
+    ImmutableSet.Builder<Id> changedIds = ImmutableSet.builder();
+
+    for (Map.Entry<Id, Id> arc : addedId__parentIds.entries())
+      addChangedDescendantIds(arc.getValue(), ancestors(older, olderAncestors, arc.getKey()),
+          olderAncestors, newerAncestors, changedIds);
+
+    for (Map.Entry<Id, Id> arc : removedId__parentIds.entries())
+      addChangedDescendantIds(arc.getValue(), ancestors(newer, newerAncestors, arc.getKey()),
+          olderAncestors, newerAncestors, changedIds);
+
+    return changedIds.build();
+  }
+
+  // the ids with the parent id as a descendant (inclusive) in both versions, but not the child
+  private void addChangedDescendantIds(Id parentId, Set<Id> childAncestors,
+      Map<Id, Set<Id>> olderAncestors, Map<Id, Set<Id>> newerAncestors,
+      ImmutableSet.Builder<Id> changedIds) {
+
+    Set<Id> newerParentAncestors = ancestors(newer, newerAncestors, parentId);
+
+    for (Id id : ancestors(older, olderAncestors, parentId))
+      if (newerParentAncestors.contains(id) && !childAncestors.contains(id))
+        changedIds.add(id);
+  }
+
+  // an id's ancestors (inclusive) in a version, remembered since arcs often share ids
+  private static <Id> Set<Id> ancestors(Version<Id> version, Map<Id, Set<Id>> id__ancestorIds,
+      Id id) {
+
+    Set<Id> ancestorIds = id__ancestorIds.get(id);
+
+    if (ancestorIds == null) {
+      ancestorIds = reachable(version, ImmutableSet.of(id), true);
+      id__ancestorIds.put(id, ancestorIds);
+    }
+
+    return ancestorIds;
+  }
+
+  // the ids a version reaches from the contained start ids (inclusive), going up or down
+  private static <Id> Set<Id> reachable(Version<Id> version, Collection<Id> startIds, boolean up) {
+
+    Set<Id> seen = new HashSet<>();
+    LinkedList<Id> open = new LinkedList<>();
+
+    for (Id startId : startIds)
+      if (version.containsId(startId) && seen.add(startId))
+        open.addFirst(startId);
+
+    while (!open.isEmpty()) {
+
+      Id id = open.removeFirst();
+
+      for (Id nextId : up ? version.parentIdSet(id) : version.childIdSet(id))
+        if (seen.add(nextId))
+          open.addFirst(nextId);
+    }
+
+    return seen;
+  }
+
+  // ===========================================================================
+  // versions
+  // ===========================================================================
+
+  // what the diff reads from each version (tries answer without copying, graphs through IdGraph)
+  private abstract static class Version<Id> {
+
+    abstract boolean containsId(Id id);
+
+    // only called for contained ids
+    abstract ImmutableSet<Id> parentIdSet(Id id);
+
+    abstract ImmutableSet<Id> childIdSet(Id id);
+  }
+
+  private static class TrieVersion<Id> extends Version<Id> {
+
+    private final IdGraphTrie<Id> trie;
+
+    public TrieVersion(IdGraphTrie<Id> trie) {
+      this.trie = trie;
+    }
+
+    @Override
+    boolean containsId(Id id) {
+      return trie.containsId(id);
+    }
+
+    @Override
+    ImmutableSet<Id> parentIdSet(Id id) {
+      return trie.parentIdSet(id);
+    }
+
+    @Override
+    ImmutableSet<Id> childIdSet(Id id) {
+      return trie.childIdSet(id);
+    }
+  }
+
+  private static class GraphVersion<Id> extends Version<Id> {
+
+    private final IdGraph<Id> idGraph;
+
+    public GraphVersion(IdGraph<Id> idGraph) {
+      this.idGraph = idGraph;
+    }
+
+    @Override
+    boolean containsId(Id id) {
+      return idGraph.idSet().contains(id);
+    }
+
+    @Override
+    ImmutableSet<Id> parentIdSet(Id id) {
+      return idGraph.parentIdSet(id);
+    }
+
+    @Override
+    ImmutableSet<Id> childIdSet(Id id) {
+      return idGraph.childIdSet(id);
+    }
+  }
+
+}
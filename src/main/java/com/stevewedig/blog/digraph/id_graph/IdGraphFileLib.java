@@ -0,0 +1,477 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.translate.ParseError;
+import com.stevewedig.blog.translate.Parser;
+import com.stevewedig.blog.translate.Writer;
+
+/**
+ * Saving IdGraphs, IdDags, and IdTrees to a compact binary file, and loading them back by memory
+ * mapping the file (not GWT compatible, excluded in Blog.gwt.xml).
+ *
+ * The file holds a flag recording which validation the graph passed, the id table (each id written
+ * as a length prefixed UTF-8 string), then each id's parent indexes, sorted and gap encoded as
+ * varints (so most arcs take a byte or two). Dags and trees are written in topological order.
+ *
+ * Loading decodes the mapped file straight into an IdGraphIndex (no multimaps, no sorting), and
+ * trusts the validation flag, so a saved dag or tree isn't revalidated and its topological sort is
+ * the id table's order.
+ */
+public abstract class IdGraphFileLib {
+
+  // "IDG" followed by the format version
+  private static final int magic = 0x49444701;
+
+  // which validation the saved graph passed
+  static final byte graphKind = 0;
+  static final byte dagKind = 1;
+  static final byte treeKind = 2;
+
+  static final Charset utf8 = Charset.forName("UTF-8");
+
+  // ===========================================================================
+  // write
+  // ===========================================================================
+
+  /**
+   * Save a graph (recording whether it's a validated IdDag or IdTree).
+   *
+   * @param graph The graph to save.
+   * @param idWriter Converts ids to strings (which idParser must convert back when loading).
+   * @param file The file to create or overwrite.
+   */
+  public static <Id> void write(IdGraph<Id> graph, Writer<String, Id> idWriter, File file)
+      throws IOException {
+
+    IdGraphIndex<Id> idGraphIndex = graph.idGraphIndex();
+
+    byte kind = graphKind;
+    ImmutableList<Id> idList = idGraphIndex.idList();
+
+    if (graph instanceof IdDag) {
+      kind = graph instanceof IdTree ? treeKind : dagKind;
+      idList = ((IdDag<Id>) graph).topsortIdList();
+    }
+
+    int idSize = idList.size();
+
+    // position in the file <-> index
+    int[] indexes = new int[idSize];
+    int[] positions = new int[idSize];
+
+    for (int position = 0; position < idSize; position++) {
+      int index = idGraphIndex.index(idList.get(position));
+      indexes[position] = index;
+      positions[index] = position;
+    }
+
+    Output out = new Output(new FileOutputStream(file));
+
+    try {
+
+      out.writeBytes(ByteBuffer.allocate(4).putInt(magic).array());
+      out.writeByte(kind);
+      out.writeVarint(idSize);
+      out.writeVarint(idGraphIndex.arcSize());
+
+      for (Id id : idList) {
+        byte[] bytes = idWriter.write(id).getBytes(utf8);
+        out.writeVarint(bytes.length);
+        out.writeBytes(bytes);
+      }
+
+      writeParents(out, idGraphIndex, indexes, positions);
+
+    } finally {
+      out.close();
+    }
+  }
+
+  // ===================================
+
+  // each id's parent count, then its sorted parent positions as gaps
+  private static void writeParents(Output out, IdGraphIndex<?> idGraphIndex, int[] indexes,
+      int[] positions) throws IOException {
+
+    int[] parents = new int[16];
+
+    for (int index : indexes) {
+
+      int parentCount = idGraphIndex.parentCount(index);
+
+      if (parents.length < parentCount)
+        parents = new int[parentCount];
+
+      for (int i = 0; i < parentCount; i++)
+        parents[i] = positions[idGraphIndex.parentIndex(index, i)];
+
+      sort(parents, parentCount);
+
+      out.writeVarint(parentCount);
+
+      int previous = 0;
+      for (int i = 0; i < parentCount; i++) {
+        out.writeVarint(parents[i] - previous);
+        previous = parents[i];
+      }
+    }
+  }
+
+  // ===================================
+
+  // most ids have a few parents, which insertion sort handles faster than Arrays.sort's setup
+  private static void sort(int[] values, int size) {
+
+    if (size > 32) {
+      Arrays.sort(values, 0, size);
+      return;
+    }
+
+    for (int i = 1; i < size; i++) {
+
+      int value = values[i];
+
+      int j = i - 1;
+      while (j >= 0 && values[j] > value) {
+        values[j + 1] = values[j];
+        j--;
+      }
+
+      values[j + 1] = value;
+    }
+  }
+
+  // ===================================
+
+  // buffers bytes for a stream (without BufferedOutputStream's synchronized single byte writes)
+  private static class Output {
+
+    private final OutputStream stream;
+    private final byte[] buffer = new byte[1 << 16];
+    private int size = 0;
+
+    public Output(OutputStream stream) {
+      this.stream = stream;
+    }
+
+    public void writeByte(int b) throws IOException {
+      if (size == buffer.length)
+        flush();
+      buffer[size++] = (byte) b;
+    }
+
+    public void writeBytes(byte[] bytes) throws IOException {
+      for (byte b : bytes)
+        writeByte(b);
+    }
+
+    // 7 bits per byte, low bits first, high bit set on all but the last byte
+    public void writeVarint(int value) throws IOException {
+
+      while ((value & ~0x7F) != 0) {
+        writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+
+      writeByte(value);
+    }
+
+    private void flush() throws IOException {
+      stream.write(buffer, 0, size);
+      size = 0;
+    }
+
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        stream.close();
+      }
+    }
+  }
+
+  // ===========================================================================
+  // read
+  // ===========================================================================
+
+  /**
+   * Load a graph saved by write (with its topological sort, if it was saved as a dag or tree).
+   *
+   * @param file The saved file.
+   * @param idParser Converts strings back to ids.
+   * @return An index-backed graph.
+   */
+  public static <Id> IdGraph<Id> readIdGraph(File file, Parser<String, Id> idParser)
+      throws IOException, ParseError {
+
+    Loaded<Id> loaded = load(file, idParser);
+
+    if (loaded.kind == graphKind)
+      return new IdGraphClass<Id>(loaded.idGraphIndex);
+
+    return new IdGraphClass<Id>(loaded.idGraphIndex, loaded.idGraphIndex.idList());
+  }
+
+  /**
+   * Load a dag saved by write (only validated if it wasn't saved as a dag or tree).
+   *
+   * @param file The saved file.
+   * @param idParser Converts strings back to ids.
+   * @return An index-backed dag.
+   */
+  public static <Id> IdDag<Id> readIdDag(File file, Parser<String, Id> idParser)
+      throws IOException, ParseError, DagCannotHaveCycle {
+
+    Loaded<Id> loaded = load(file, idParser);
+
+    if (loaded.kind == graphKind)
+      return new IdDagClass<Id>(loaded.idGraphIndex);
+
+    return new IdDagClass<Id>(loaded.idGraphIndex, loaded.idGraphIndex.idList());
+  }
+
+  /**
+   * Load a tree saved by write (only validated if it wasn't saved as a tree).
+   *
+   * @param file The saved file.
+   * @param idParser Converts strings back to ids.
+   * @return An index-backed tree.
+   */
+  public static <Id> IdTree<Id> readIdTree(File file, Parser<String, Id> idParser)
+      throws IOException, ParseError, DagCannotHaveCycle, TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots, TreeNodesCannotHaveMultipleParents {
+
+    Loaded<Id> loaded = load(file, idParser);
+
+    return new IdTreeClass<Id>(loaded.idGraphIndex, loaded.kind != treeKind);
+  }
+
+  // ===================================
+
+  private static class Loaded<Id> {
+
+    private final byte kind;
+    private final IdGraphIndex<Id> idGraphIndex;
+
+    public Loaded(byte kind, IdGraphIndex<Id> idGraphIndex) {
+      this.kind = kind;
+      this.idGraphIndex = idGraphIndex;
+    }
+  }
+
+  private static <Id> Loaded<Id> load(File file, Parser<String, Id> idParser) throws IOException,
+      ParseError {
+
+    ByteBuffer buffer = map(file);
+
+    try {
+      return decode(buffer, idParser);
+    } catch (BufferUnderflowException e) {
+      throw new ParseError("file was truncated, file = %s", file);
+    }
+  }
+
+  private static <Id> Loaded<Id> decode(ByteBuffer buffer, Parser<String, Id> idParser)
+      throws ParseError {
+
+    byte kind = readKind(buffer);
+
+    int idSize = readSize(buffer);
+    int arcSize = readSize(buffer);
+
+    checkSizes(buffer, idSize, arcSize);
+
+    // id table
+    Object[] ids = new Object[idSize];
+    byte[] bytes = new byte[64];
+
+    for (int index = 0; index < idSize; index++) {
+
+      int length = readSize(buffer);
+
+      if (length > buffer.remaining())
+        throw new BufferUnderflowException();
+
+      if (bytes.length < length)
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+
+      buffer.get(bytes, 0, length);
+
+      ids[index] = idParser.parse(new String(bytes, 0, length, utf8));
+    }
+
+    @SuppressWarnings("unchecked")
+    ImmutableList<Id> idList = (ImmutableList<Id>) ImmutableList.copyOf(ids);
+
+    // parent arcs, decoded directly into compressed sparse row arrays
+    int[] parentOffsets = new int[idSize + 1];
+    int[] parentIndexes = new int[arcSize];
+
+    int cursor = 0;
+
+    for (int index = 0; index < idSize; index++) {
+
+      parentOffsets[index] = cursor;
+
+      int parentCount = readParentCount(buffer, arcSize - cursor);
+
+      readParents(buffer, index, idSize, parentCount, parentIndexes, cursor);
+
+      cursor += parentCount;
+    }
+
+    parentOffsets[idSize] = cursor;
+
+    checkArcSize(arcSize, cursor);
+
+    // indexing the id table rejects duplicate ids
+    try {
+      return new Loaded<Id>(kind, IdGraphIndex.fromParentCsr(idList, parentOffsets,
+          parentIndexes));
+    } catch (IllegalArgumentException e) {
+      throw new ParseError(e);
+    }
+  }
+
+  // ===========================================================================
+  // format (shared with IdGraphOffHeapLib)
+  // ===========================================================================
+
+  /**
+   * Map a file into memory (the mapping stays valid after the file is closed).
+   */
+  static MappedByteBuffer map(File file) throws IOException {
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Read the magic number and the kind of graph that was saved.
+   */
+  static byte readKind(ByteBuffer buffer) throws ParseError {
+
+    int fileMagic = buffer.getInt();
+    if (fileMagic != magic)
+      throw new ParseError("not a saved graph (or a different version), magic = %s", fileMagic);
+
+    byte kind = buffer.get();
+    if (kind != graphKind && kind != dagKind && kind != treeKind)
+      throw new ParseError("unknown graph kind, kind = %s", kind);
+
+    return kind;
+  }
+
+  /**
+   * Read a varint that must not be negative.
+   */
+  static int readSize(ByteBuffer buffer) throws ParseError {
+
+    int size = readVarint(buffer);
+
+    if (size < 0)
+      throw new ParseError("invalid size, size = %s", size);
+
+    return size;
+  }
+
+  /**
+   * Check the declared sizes against the bytes left before anything is allocated for them (each id
+   * takes at least a length byte and a parent count byte, and each arc at least a gap byte), so a
+   * corrupt header can't request huge arrays.
+   */
+  static void checkSizes(ByteBuffer buffer, int idSize, int arcSize) throws ParseError {
+    if (2L * idSize + arcSize > buffer.remaining())
+      throw new ParseError("sizes exceed the file, idSize = %s, arcSize = %s, remaining = %s",
+          idSize, arcSize, buffer.remaining());
+  }
+
+  /**
+   * Read an id's parent count, which must not exceed the arcs that haven't been read yet.
+   */
+  static int readParentCount(ByteBuffer buffer, int remainingArcSize) throws ParseError {
+
+    int parentCount = readSize(buffer);
+
+    if (parentCount > remainingArcSize)
+      throw new ParseError("more arcs than declared, parentCount = %s, remainingArcSize = %s",
+          parentCount, remainingArcSize);
+
+    return parentCount;
+  }
+
+  /**
+   * Read an id's gap encoded parent indexes into parents[from ... from + parentCount), checking
+   * they are increasing and in range.
+   */
+  static void readParents(ByteBuffer buffer, int index, int idSize, int parentCount,
+      int[] parents, int from) throws ParseError {
+
+    int parent = 0;
+
+    for (int i = 0; i < parentCount; i++) {
+
+      int gap = readVarint(buffer);
+
+      parent += gap;
+
+      if (gap < 0 || (gap == 0 && i > 0) || parent < 0 || parent >= idSize)
+        throw new ParseError("invalid parent index, index = %s, parent = %s", index, parent);
+
+      parents[from + i] = parent;
+    }
+  }
+
+  /**
+   * Check that the declared arc size matched the arcs read.
+   */
+  static void checkArcSize(int arcSize, int readArcSize) throws ParseError {
+    if (readArcSize != arcSize)
+      throw new ParseError("fewer arcs than declared, arcSize = %s, readArcSize = %s", arcSize,
+          readArcSize);
+  }
+
+  // ===================================
+
+  // only the shortest encoding of each value is accepted (which is what write produces), so a
+  // varint's width follows from its value (IdGraphOffHeapLib relies on this to find id bytes)
+  private static int readVarint(ByteBuffer buffer) throws ParseError {
+
+    int value = 0;
+
+    for (int shift = 0; shift < 32; shift += 7) {
+
+      byte b = buffer.get();
+
+      // the 5th byte only has room for the top 4 bits
+      if (shift == 28 && (b & 0x70) != 0)
+        throw new ParseError("varint had bits beyond 32, byte = %s", b);
+
+      value |= (b & 0x7F) << shift;
+
+      if (b >= 0) {
+
+        if (b == 0 && shift > 0)
+          throw new ParseError("varint was padded with a trailing zero byte");
+
+        return value;
+      }
+    }
+
+    throw new ParseError("varint was too long");
+  }
+
+}
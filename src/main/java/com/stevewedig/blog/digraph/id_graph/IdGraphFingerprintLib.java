@@ -0,0 +1,85 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+/**
+ * A library for computing the structural fingerprints of IdGraphs (see IdGraph.fingerprint).
+ *
+ * A fingerprint is the sum of a hash of each id and a hash of each arc. Addition is order
+ * independent, so equal graphs have equal fingerprints however they were built (without sorting
+ * ids, which needn't be Comparable), and adding or removing an id or arc adds or subtracts a term.
+ */
+abstract class IdGraphFingerprintLib {
+
+  // ===========================================================================
+  // terms
+  // ===========================================================================
+
+  /**
+   * The term an id adds to a fingerprint.
+   */
+  static long idHash(Object id) {
+    return mix(id.hashCode() + 0x9E3779B97F4A7C15L);
+  }
+
+  /**
+   * The term an arc adds to a fingerprint, given the idHash of its parent and child (arcs in
+   * opposite directions have different terms).
+   */
+  static long arcHash(long parentHash, long childHash) {
+    return mix(parentHash + ((childHash << 29) | (childHash >>> 35)) * 0xC2B2AE3D27D4EB4FL);
+  }
+
+  // murmur3's 64 bit finalizer, so every input bit affects every output bit
+  private static long mix(long z) {
+    z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+    z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return z ^ (z >>> 33);
+  }
+
+  // ===========================================================================
+  // fingerprints
+  // ===========================================================================
+
+  /**
+   * Compute a graph's fingerprint from its parent sets (O(V + E)).
+   */
+  static <Id> long fingerprint(IdGraph<Id> idGraph) {
+
+    long fingerprint = 0;
+
+    for (Id id : idGraph.idSet()) {
+
+      long idHash = idHash(id);
+
+      fingerprint += idHash;
+
+      for (Id parentId : idGraph.parentIdSet(id))
+        fingerprint += arcHash(idHash(parentId), idHash);
+    }
+
+    return fingerprint;
+  }
+
+  /**
+   * Compute a graph's fingerprint from its index, hashing each id once (O(V + E)).
+   */
+  static <Id> long fingerprint(IdGraphIndex<Id> index) {
+
+    int idSize = index.idSize();
+
+    long[] idHashes = new long[idSize];
+
+    long fingerprint = 0;
+
+    for (int i = 0; i < idSize; i++) {
+      idHashes[i] = idHash(index.id(i));
+      fingerprint += idHashes[i];
+    }
+
+    for (int i = 0; i < idSize; i++)
+      for (int p = 0; p < index.parentCount(i); p++)
+        fingerprint += arcHash(idHashes[index.parentIndex(i, p)], idHashes[i]);
+
+    return fingerprint;
+  }
+
+}
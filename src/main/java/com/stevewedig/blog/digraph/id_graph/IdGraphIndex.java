@@ -0,0 +1,1140 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.alg.*;
+import com.stevewedig.blog.digraph.errors.GraphHadUnexpectedIds;
+import com.stevewedig.blog.errors.*;
+
+/**
+ * A dense int-indexed view of a digraph's arc structure.
+ *
+ * Each id is mapped to an index in [0, idSize), and parent/child arcs are stored in compressed
+ * sparse row (CSR) form: the parents of index i are parentIndexes[parentOffsets[i] ...
+ * parentOffsets[i + 1]), and likewise for children. This costs 8 bytes per arc, and traversals
+ * read contiguous int arrays instead of chasing multimap entries.
+ *
+ * The ids and arcs are kept in int arrays and immutable collections on the heap, unless the index
+ * was created by IdGraphOffHeapLib, which keeps them in direct buffers instead.
+ */
+public class IdGraphIndex<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final IdTable<Id> idTable;
+
+  private final ArcTable parentArcs;
+  private final ArcTable childArcs;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  IdGraphIndex(IdTable<Id> idTable, ArcTable parentArcs, ArcTable childArcs) {
+
+    this.idTable = idTable;
+    this.parentArcs = parentArcs;
+    this.childArcs = childArcs;
+  }
+
+  private IdGraphIndex(ImmutableList<Id> idList, ImmutableMap<Id, Integer> id__index,
+      int[] parentOffsets, int[] parentIndexes, int[] childOffsets, int[] childIndexes) {
+
+    this(new HeapIdTable<Id>(idList, id__index), new HeapArcTable(parentOffsets, parentIndexes),
+        new HeapArcTable(childOffsets, childIndexes));
+  }
+
+  // ===========================================================================
+  // storage
+  // ===========================================================================
+
+  /**
+   * Where an index keeps its ids.
+   */
+  static abstract class IdTable<Id> {
+
+    abstract int size();
+
+    abstract Id id(int index);
+
+    // -1 if the id isn't indexed
+    abstract int index(Id id);
+
+    abstract ImmutableList<Id> idList();
+
+    abstract ImmutableSet<Id> idSet();
+  }
+
+  /**
+   * Where an index keeps the arcs in one direction: the targets of index i are target(offset(i))
+   * ... target(offset(i + 1) - 1).
+   */
+  static abstract class ArcTable {
+
+    abstract int offset(int index);
+
+    abstract int target(int k);
+
+    abstract int size();
+  }
+
+  // ===================================
+
+  private static class HeapIdTable<Id> extends IdTable<Id> {
+
+    private final ImmutableList<Id> idList;
+    private final ImmutableMap<Id, Integer> id__index;
+
+    public HeapIdTable(ImmutableList<Id> idList, ImmutableMap<Id, Integer> id__index) {
+      this.idList = idList;
+      this.id__index = id__index;
+    }
+
+    @Override
+    int size() {
+      return idList.size();
+    }
+
+    @Override
+    Id id(int index) {
+      return idList.get(index);
+    }
+
+    @Override
+    int index(Id id) {
+      Integer index = id__index.get(id);
+      return index == null ? -1 : index;
+    }
+
+    @Override
+    ImmutableList<Id> idList() {
+      return idList;
+    }
+
+    @Override
+    ImmutableSet<Id> idSet() {
+      return id__index.keySet();
+    }
+  }
+
+  private static class HeapArcTable extends ArcTable {
+
+    private final int[] offsets;
+    private final int[] targets;
+
+    public HeapArcTable(int[] offsets, int[] targets) {
+      this.offsets = offsets;
+      this.targets = targets;
+    }
+
+    @Override
+    int offset(int index) {
+      return offsets[index];
+    }
+
+    @Override
+    int target(int k) {
+      return targets[k];
+    }
+
+    @Override
+    int size() {
+      return targets.length;
+    }
+  }
+
+  // ===========================================================================
+  // fromParentMap / fromChildMap
+  // ===========================================================================
+
+  /**
+   * Index a digraph from its id set and a mapping from id to parent ids.
+   */
+  public static <Id> IdGraphIndex<Id> fromParentMap(Set<Id> idSet, Multimap<Id, Id> id__parentIds)
+      throws GraphHadUnexpectedIds {
+
+    ImmutableList<Id> idList = ImmutableList.copyOf(idSet);
+    ImmutableMap<Id, Integer> id__index = indexMap(idList);
+
+    int[][] parentCsr = compress(idList, id__index, id__parentIds);
+    int[][] childCsr = invert(parentCsr[0], parentCsr[1]);
+
+    return new IdGraphIndex<Id>(idList, id__index, parentCsr[0], parentCsr[1], childCsr[0],
+        childCsr[1]);
+  }
+
+  /**
+   * Index a digraph from its id set and a mapping from id to child ids.
+   */
+  public static <Id> IdGraphIndex<Id> fromChildMap(Set<Id> idSet, Multimap<Id, Id> id__childIds)
+      throws GraphHadUnexpectedIds {
+
+    ImmutableList<Id> idList = ImmutableList.copyOf(idSet);
+    ImmutableMap<Id, Integer> id__index = indexMap(idList);
+
+    int[][] childCsr = compress(idList, id__index, id__childIds);
+    int[][] parentCsr = invert(childCsr[0], childCsr[1]);
+
+    return new IdGraphIndex<Id>(idList, id__index, parentCsr[0], parentCsr[1], childCsr[0],
+        childCsr[1]);
+  }
+
+  /**
+   * Index a digraph whose parent arcs are already int arrays (parents[i][0 ... parentCounts[i]) are
+   * the parent indexes of idList[i], without duplicates).
+   */
+  static <Id> IdGraphIndex<Id> fromParentArrays(ImmutableList<Id> idList, int[][] parents,
+      int[] parentCounts) {
+
+    int idSize = idList.size();
+
+    int[] parentOffsets = new int[idSize + 1];
+
+    for (int index = 0; index < idSize; index++)
+      parentOffsets[index + 1] = parentOffsets[index] + parentCounts[index];
+
+    int[] parentIndexes = new int[parentOffsets[idSize]];
+
+    for (int index = 0; index < idSize; index++)
+      System.arraycopy(parents[index], 0, parentIndexes, parentOffsets[index],
+          parentCounts[index]);
+
+    return fromParentCsr(idList, parentOffsets, parentIndexes);
+  }
+
+  /**
+   * Index a digraph whose parent arcs are already compressed (the parents of idList[i] are
+   * parentIndexes[parentOffsets[i] ... parentOffsets[i + 1]), without duplicates). The arrays are
+   * used directly, not copied.
+   */
+  static <Id> IdGraphIndex<Id> fromParentCsr(ImmutableList<Id> idList, int[] parentOffsets,
+      int[] parentIndexes) {
+
+    int[][] childCsr = invert(parentOffsets, parentIndexes);
+
+    return new IdGraphIndex<Id>(idList, indexMap(idList), parentOffsets, parentIndexes,
+        childCsr[0], childCsr[1]);
+  }
+
+  /**
+   * Index a digraph whose ids are kept in a custom table and whose arcs are already compressed in
+   * both directions. The arrays are used directly, not copied.
+   */
+  static <Id> IdGraphIndex<Id> fromCsr(IdTable<Id> idTable, int[] parentOffsets,
+      int[] parentIndexes, int[] childOffsets, int[] childIndexes) {
+
+    return new IdGraphIndex<Id>(idTable, new HeapArcTable(parentOffsets, parentIndexes),
+        new HeapArcTable(childOffsets, childIndexes));
+  }
+
+  // ===================================
+
+  // sorts arcs (arc k goes from arcParents[k] to arcChildren[k]) by child into the parent
+  // adjacency with a counting sort, then drops duplicates in place, returns {offsets, indexes}
+  static int[][] parentCsr(int idSize, int[] arcParents, int[] arcChildren, int arcSize) {
+
+    int[] parentOffsets = new int[idSize + 1];
+
+    for (int k = 0; k < arcSize; k++)
+      parentOffsets[arcChildren[k] + 1]++;
+
+    for (int index = 0; index < idSize; index++)
+      parentOffsets[index + 1] += parentOffsets[index];
+
+    int[] parentIndexes = new int[arcSize];
+    int[] cursors = Arrays.copyOf(parentOffsets, idSize);
+
+    for (int k = 0; k < arcSize; k++)
+      parentIndexes[cursors[arcChildren[k]]++] = arcParents[k];
+
+    // lastChild[parent] == child means the arc was already kept (deduplication without sets)
+    int[] lastChild = cursors;
+    Arrays.fill(lastChild, -1);
+
+    int cursor = 0;
+
+    for (int child = 0; child < idSize; child++) {
+
+      int from = parentOffsets[child];
+      int to = parentOffsets[child + 1];
+
+      parentOffsets[child] = cursor;
+
+      for (int k = from; k < to; k++) {
+
+        int parent = parentIndexes[k];
+
+        if (lastChild[parent] == child)
+          continue;
+
+        lastChild[parent] = child;
+        parentIndexes[cursor++] = parent;
+      }
+    }
+
+    parentOffsets[idSize] = cursor;
+
+    if (cursor != arcSize)
+      parentIndexes = Arrays.copyOf(parentIndexes, cursor);
+
+    return new int[][] {parentOffsets, parentIndexes};
+  }
+
+  // ===================================
+
+  private static <Id> ImmutableMap<Id, Integer> indexMap(ImmutableList<Id> idList) {
+
+    ImmutableMap.Builder<Id, Integer> id__index = ImmutableMap.builder();
+
+    for (int index = 0; index < idList.size(); index++)
+      id__index.put(idList.get(index), index);
+
+    return id__index.build();
+  }
+
+  // ===================================
+
+  // returns {offsets, targets}, dropping duplicate arcs (possible with non-set multimaps)
+  private static <Id> int[][] compress(ImmutableList<Id> idList,
+      ImmutableMap<Id, Integer> id__index, Multimap<Id, Id> id__targetIds) {
+
+    for (Id id : id__targetIds.keySet())
+      if (!id__index.containsKey(id))
+        throw new GraphHadUnexpectedIds("unexpectedId = %s, idSet = %s", id, id__index.keySet());
+
+    int idSize = idList.size();
+
+    int[] offsets = new int[idSize + 1];
+    int[] targets = new int[id__targetIds.size()];
+
+    // lastSource[target] == source means the arc was already added (deduplication without sets)
+    int[] lastSource = new int[idSize];
+    Arrays.fill(lastSource, -1);
+
+    int cursor = 0;
+
+    for (int source = 0; source < idSize; source++) {
+
+      offsets[source] = cursor;
+
+      for (Id targetId : id__targetIds.get(idList.get(source))) {
+
+        Integer target = id__index.get(targetId);
+
+        if (target == null)
+          throw new GraphHadUnexpectedIds("unexpectedId = %s, idSet = %s", targetId,
+              id__index.keySet());
+
+        if (lastSource[target] == source)
+          continue;
+
+        lastSource[target] = source;
+        targets[cursor++] = target;
+      }
+    }
+
+    offsets[idSize] = cursor;
+
+    if (cursor != targets.length)
+      targets = Arrays.copyOf(targets, cursor);
+
+    return new int[][] {offsets, targets};
+  }
+
+  // ===================================
+
+  // reverses the arcs of {offsets, targets} using a counting sort, returns {offsets, targets}
+  static int[][] invert(int[] offsets, int[] targets) {
+
+    int idSize = offsets.length - 1;
+
+    int[] invertedOffsets = new int[idSize + 1];
+    int[] invertedTargets = new int[targets.length];
+
+    for (int target : targets)
+      invertedOffsets[target + 1]++;
+
+    for (int index = 0; index < idSize; index++)
+      invertedOffsets[index + 1] += invertedOffsets[index];
+
+    int[] cursors = Arrays.copyOf(invertedOffsets, idSize);
+
+    for (int source = 0; source < idSize; source++)
+      for (int k = offsets[source]; k < offsets[source + 1]; k++)
+        invertedTargets[cursors[targets[k]]++] = source;
+
+    return new int[][] {invertedOffsets, invertedTargets};
+  }
+
+  // ===========================================================================
+  // filter
+  // ===========================================================================
+
+  /**
+   * Index the subgraph containing only these ids and the arcs between them.
+   */
+  public IdGraphIndex<Id> filter(Set<Id> ids) {
+
+    ImmutableList<Id> subIdList = ImmutableList.copyOf(ids);
+    ImmutableMap<Id, Integer> subId__index = indexMap(subIdList);
+
+    int subIdSize = subIdList.size();
+
+    int[] subParentOffsets = new int[subIdSize + 1];
+    int[] subParentIndexes = new int[0];
+
+    // first pass counts, second pass fills
+    for (int pass = 0; pass < 2; pass++) {
+
+      int cursor = 0;
+
+      for (int subIndex = 0; subIndex < subIdSize; subIndex++) {
+
+        subParentOffsets[subIndex] = cursor;
+
+        int index = idTable.index(subIdList.get(subIndex));
+
+        if (index == -1)
+          continue;
+
+        for (int k = parentArcs.offset(index); k < parentArcs.offset(index + 1); k++) {
+
+          Integer subParentIndex = subId__index.get(idTable.id(parentArcs.target(k)));
+
+          if (subParentIndex == null)
+            continue;
+
+          if (pass == 1)
+            subParentIndexes[cursor] = subParentIndex;
+
+          cursor++;
+        }
+      }
+
+      subParentOffsets[subIdSize] = cursor;
+
+      if (pass == 0)
+        subParentIndexes = new int[cursor];
+    }
+
+    int[][] subChildCsr = invert(subParentOffsets, subParentIndexes);
+
+    return new IdGraphIndex<Id>(subIdList, subId__index, subParentOffsets, subParentIndexes,
+        subChildCsr[0], subChildCsr[1]);
+  }
+
+  /**
+   * Index each part of a partition that no arc crosses (such as the weakly connected components),
+   * in one pass over the arcs without looking up parent ids.
+   *
+   * @param parts index -> part number.
+   * @param partList The ids in each part, in part number order.
+   */
+  public ImmutableList<IdGraphIndex<Id>> split(int[] parts,
+      ImmutableList<ImmutableSet<Id>> partList) {
+
+    // index -> index within its part
+    int[] subIndexes = new int[idSize()];
+
+    for (ImmutableSet<Id> part : partList) {
+      int subIndex = 0;
+      for (Id id : part)
+        subIndexes[index(id)] = subIndex++;
+    }
+
+    ImmutableList.Builder<IdGraphIndex<Id>> subIndexList = ImmutableList.builder();
+
+    for (int partNumber = 0; partNumber < partList.size(); partNumber++) {
+
+      ImmutableList<Id> subIdList = partList.get(partNumber).asList();
+      int subIdSize = subIdList.size();
+
+      // sub index -> index
+      int[] indexes = new int[subIdSize];
+      int[] subParentOffsets = new int[subIdSize + 1];
+
+      for (int subIndex = 0; subIndex < subIdSize; subIndex++) {
+        int index = indexes[subIndex] = index(subIdList.get(subIndex));
+        subParentOffsets[subIndex + 1] = subParentOffsets[subIndex] + parentCount(index);
+      }
+
+      int[] subParentIndexes = new int[subParentOffsets[subIdSize]];
+      int cursor = 0;
+
+      for (int subIndex = 0; subIndex < subIdSize; subIndex++) {
+
+        int index = indexes[subIndex];
+
+        for (int k = parentArcs.offset(index); k < parentArcs.offset(index + 1); k++) {
+
+          int parentIndex = parentArcs.target(k);
+
+          if (parts[parentIndex] != partNumber)
+            throw new AssertionError("arc crosses parts, childId = " + id(index) + ", parentId = "
+                + id(parentIndex));
+
+          subParentIndexes[cursor++] = subIndexes[parentIndex];
+        }
+      }
+
+      int[][] subChildCsr = invert(subParentOffsets, subParentIndexes);
+
+      subIndexList.add(new IdGraphIndex<Id>(subIdList, indexMap(subIdList), subParentOffsets,
+          subParentIndexes, subChildCsr[0], subChildCsr[1]));
+    }
+
+    return subIndexList.build();
+  }
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  /**
+   * The number of ids.
+   */
+  public int idSize() {
+    return idTable.size();
+  }
+
+  /**
+   * The number of arcs.
+   */
+  public int arcSize() {
+    return parentArcs.size();
+  }
+
+  /**
+   * The ids in index order (built on the heap when first requested, if the index is off heap).
+   */
+  public ImmutableList<Id> idList() {
+    return idTable.idList();
+  }
+
+  /**
+   * The set of ids (iterates in index order, built on the heap when first requested, if the index
+   * is off heap).
+   */
+  public ImmutableSet<Id> idSet() {
+    return idTable.idSet();
+  }
+
+  /**
+   * Whether the index contains an id.
+   */
+  public boolean containsId(Id id) {
+    return idTable.index(id) != -1;
+  }
+
+  /**
+   * Getting an id's index.
+   */
+  public int index(Id id) throws NotContained {
+
+    int index = idTable.index(id);
+
+    if (index == -1)
+      throw new NotContained("id = %s", id);
+
+    return index;
+  }
+
+  /**
+   * Getting an id's index, or -1 if it isn't indexed (one lookup, instead of containsId and index).
+   */
+  public int indexOf(Id id) {
+    return idTable.index(id);
+  }
+
+  /**
+   * Getting the id at an index.
+   */
+  public Id id(int index) {
+    return idTable.id(index);
+  }
+
+  // ===========================================================================
+  // parents
+  // ===========================================================================
+
+  /**
+   * The number of parents of the id at an index.
+   */
+  public int parentCount(int index) {
+    return parentArcs.offset(index + 1) - parentArcs.offset(index);
+  }
+
+  /**
+   * The index of the i-th parent of the id at an index.
+   */
+  public int parentIndex(int index, int i) {
+    return parentArcs.target(parentArcs.offset(index) + i);
+  }
+
+  /**
+   * Getting an id's parent ids (empty if the id isn't indexed, matching Multimap.get).
+   */
+  public ImmutableSet<Id> parentIdSet(Id id) {
+    return ImmutableSet.copyOf(parentIdList(id));
+  }
+
+  /**
+   * Getting an id's parent ids as a list.
+   */
+  public ImmutableList<Id> parentIdList(Id id) {
+
+    int index = idTable.index(id);
+
+    if (index == -1)
+      return ImmutableList.of();
+
+    return idList(parentArcs, index);
+  }
+
+  /**
+   * The mapping from id to parent ids.
+   */
+  public ImmutableSetMultimap<Id, Id> id__parentIds() {
+    return multimap(parentArcs);
+  }
+
+  // ===========================================================================
+  // children
+  // ===========================================================================
+
+  /**
+   * The number of children of the id at an index.
+   */
+  public int childCount(int index) {
+    return childArcs.offset(index + 1) - childArcs.offset(index);
+  }
+
+  /**
+   * The index of the i-th child of the id at an index.
+   */
+  public int childIndex(int index, int i) {
+    return childArcs.target(childArcs.offset(index) + i);
+  }
+
+  /**
+   * Getting an id's child ids (empty if the id isn't indexed, matching Multimap.get).
+   */
+  public ImmutableSet<Id> childIdSet(Id id) {
+    return ImmutableSet.copyOf(childIdList(id));
+  }
+
+  /**
+   * Getting an id's child ids as a list.
+   */
+  public ImmutableList<Id> childIdList(Id id) {
+
+    int index = idTable.index(id);
+
+    if (index == -1)
+      return ImmutableList.of();
+
+    return idList(childArcs, index);
+  }
+
+  /**
+   * The mapping from id to child ids.
+   */
+  public ImmutableSetMultimap<Id, Id> id__childIds() {
+    return multimap(childArcs);
+  }
+
+  // ===========================================================================
+  // ancestors / descendants
+  // ===========================================================================
+
+  /**
+   * Getting the ancestor id set of some ids (their parents, parents' parents, and so on).
+   */
+  public ImmutableSet<Id> ancestorIdSet(Iterable<Id> ids, boolean inclusive) {
+    return ImmutableSet.copyOf(ancestorIdIterable(true, inclusive, ids));
+  }
+
+  /**
+   * Getting the descendant id set of some ids (their children, childrens' children, and so on).
+   */
+  public ImmutableSet<Id> descendantIdSet(Iterable<Id> ids, boolean inclusive) {
+    return ImmutableSet.copyOf(descendantIdIterable(true, inclusive, ids));
+  }
+
+  // ===========================================================================
+  // traversal
+  // ===========================================================================
+
+  /**
+   * Traversing the ancestors of some ids, in the same order as TraverseLib.idIterable expanding
+   * with parentIdList (start ids that aren't indexed are included when inclusive).
+   *
+   * The open list is an int array, visited ids are tracked in a bitset, and parents are read
+   * straight from the int arrays, so nothing is allocated per id.
+   */
+  public Iterable<Id> ancestorIdIterable(boolean depthFirst, boolean inclusive,
+      Iterable<Id> startIds) {
+    return traverseIdIterable(depthFirst, inclusive, startIds, parentArcs);
+  }
+
+  /**
+   * Traversing the descendants of some ids, in the same order as TraverseLib.idIterable expanding
+   * with childIdList (see ancestorIdIterable).
+   */
+  public Iterable<Id> descendantIdIterable(boolean depthFirst, boolean inclusive,
+      Iterable<Id> startIds) {
+    return traverseIdIterable(depthFirst, inclusive, startIds, childArcs);
+  }
+
+  private Iterable<Id> traverseIdIterable(final boolean depthFirst, final boolean inclusive,
+      final Iterable<Id> startIds, final ArcTable arcs) {
+
+    final ImmutableList<Id> startIdList = ImmutableList.copyOf(startIds);
+
+    return new Iterable<Id>() {
+      @Override
+      public Iterator<Id> iterator() {
+        return new TraverseIterator(depthFirst, inclusive, startIdList, arcs);
+      }
+    };
+  }
+
+  // ===================================
+
+  /**
+   * Depth first traversal of the ancestors of some ids, pushing each to a visitor (see
+   * TraverseLib.visit).
+   */
+  public void visitAncestors(Iterable<Id> startIds, TraverseVisitor<Id> visitor) {
+    visit(startIds, visitor, parentArcs);
+  }
+
+  /**
+   * Depth first traversal of the descendants of some ids, pushing each to a visitor (see
+   * TraverseLib.visit).
+   */
+  public void visitDescendants(Iterable<Id> startIds, TraverseVisitor<Id> visitor) {
+    visit(startIds, visitor, childArcs);
+  }
+
+  // the path being explored is a stack of indexes, each with a cursor into its targets
+  private void visit(Iterable<Id> startIds, TraverseVisitor<Id> visitor, ArcTable arcs) {
+
+    long[] closed = new long[bitsetSize(idSize())];
+    Set<Id> closedUnindexed = new HashSet<>();
+
+    int[] path = new int[16];
+    int[] cursors = new int[16];
+
+    for (Id startId : startIds) {
+
+      int startIndex = idTable.index(startId);
+
+      // not indexed, so there is nothing to expand
+      if (startIndex == -1) {
+        if (closedUnindexed.add(startId)) {
+          visitor.enter(startId);
+          visitor.exit(startId);
+        }
+        continue;
+      }
+
+      if (!close(closed, startIndex))
+        continue;
+
+      if (!visitor.enter(startId)) {
+        visitor.exit(startId);
+        continue;
+      }
+
+      path[0] = startIndex;
+      cursors[0] = arcs.offset(startIndex);
+      int pathSize = 1;
+
+      while (pathSize > 0) {
+
+        int index = path[pathSize - 1];
+
+        if (cursors[pathSize - 1] == arcs.offset(index + 1)) {
+          pathSize--;
+          visitor.exit(idTable.id(index));
+          continue;
+        }
+
+        int target = arcs.target(cursors[pathSize - 1]++);
+
+        if (!close(closed, target))
+          continue;
+
+        Id targetId = idTable.id(target);
+
+        if (!visitor.enter(targetId)) {
+          visitor.exit(targetId);
+          continue;
+        }
+
+        if (pathSize == path.length) {
+          path = Arrays.copyOf(path, pathSize * 2);
+          cursors = Arrays.copyOf(cursors, pathSize * 2);
+        }
+
+        path[pathSize] = target;
+        cursors[pathSize] = arcs.offset(target);
+        pathSize++;
+      }
+    }
+  }
+
+  // ===================================
+
+  /**
+   * The ancestors of some ids at most maxDistance arcs away, mapped to their distance, in the same
+   * order as TraverseLib.distanceMap expanding with parentIdList (start ids that aren't indexed are
+   * included when inclusive).
+   *
+   * Each level's frontier is an int array and reached ids are tracked in a bitset, so ids are only
+   * looked up when they're added to the result.
+   */
+  public ImmutableMap<Id, Integer> ancestorIdDistanceMap(Iterable<Id> startIds, boolean inclusive,
+      int maxDistance, int maxSize) {
+    return distanceMap(startIds, inclusive, maxDistance, maxSize, parentArcs);
+  }
+
+  /**
+   * The descendants of some ids at most maxDistance arcs away, mapped to their distance (see
+   * ancestorIdDistanceMap).
+   */
+  public ImmutableMap<Id, Integer> descendantIdDistanceMap(Iterable<Id> startIds,
+      boolean inclusive, int maxDistance, int maxSize) {
+    return distanceMap(startIds, inclusive, maxDistance, maxSize, childArcs);
+  }
+
+  private ImmutableMap<Id, Integer> distanceMap(Iterable<Id> startIds, boolean inclusive,
+      int maxDistance, int maxSize, ArcTable arcs) {
+
+    TraverseLib.assertDistanceBounds(maxDistance, maxSize);
+
+    ImmutableMap.Builder<Id, Integer> id__distance = ImmutableMap.builder();
+    int size = 0;
+
+    // bounded queries usually reach a small part of the graph, so start with a hash set
+    ClosedSet closed = new ClosedSet(idSize());
+    Set<Id> closedUnindexed = new HashSet<>();
+
+    int[] frontier = new int[16];
+    int frontierSize = 0;
+
+    for (Id startId : startIds) {
+
+      int startIndex = idTable.index(startId);
+
+      // not indexed, so there is nothing to expand
+      if (startIndex == -1) {
+        if (!closedUnindexed.add(startId))
+          continue;
+      } else {
+        if (!closed.add(startIndex))
+          continue;
+        if (frontierSize == frontier.length)
+          frontier = Arrays.copyOf(frontier, frontierSize * 2);
+        frontier[frontierSize++] = startIndex;
+      }
+
+      if (inclusive && size < maxSize) {
+        id__distance.put(startId, 0);
+        size++;
+      }
+    }
+
+    int[] next = new int[16];
+
+    for (int distance = 1; distance <= maxDistance && size < maxSize; distance++) {
+
+      if (frontierSize == 0)
+        break;
+
+      int nextSize = 0;
+
+      for (int n = 0; n < frontierSize; n++) {
+
+        int index = frontier[n];
+
+        for (int k = arcs.offset(index); k < arcs.offset(index + 1); k++) {
+
+          int target = arcs.target(k);
+
+          if (!closed.add(target))
+            continue;
+
+          if (nextSize == next.length)
+            next = Arrays.copyOf(next, nextSize * 2);
+          next[nextSize++] = target;
+
+          id__distance.put(idTable.id(target), distance);
+
+          if (++size == maxSize)
+            return id__distance.build();
+        }
+      }
+
+      int[] swap = frontier;
+      frontier = next;
+      next = swap;
+      frontierSize = nextSize;
+    }
+
+    return id__distance.build();
+  }
+
+  // ===================================
+
+  // matches TraverseLib's iterator: ids are closed when they are queued, depth first pushes each
+  // expansion reversed (so the first target is next), and non inclusive traversals skip every start
+  // id; open entries are indexes, or -(i + 1) for the i-th start id that isn't indexed
+  private class TraverseIterator implements Iterator<Id> {
+
+    private final boolean depthFirst;
+    private final boolean inclusive;
+    private final ArcTable arcs;
+
+    private final long[] closed;
+    private final long[] starts;
+    private final List<Id> unindexedStartIds = new ArrayList<>();
+
+    // depth first pops from the end, breadth first reads from head (entries are never requeued, so
+    // the array never needs to wrap around)
+    private int[] open = new int[16];
+    private int head = 0;
+    private int end = 0;
+
+    // lookahead for hasNext()
+    private Id nextId = null;
+
+    public TraverseIterator(boolean depthFirst, boolean inclusive, ImmutableList<Id> startIds,
+        ArcTable arcs) {
+
+      this.depthFirst = depthFirst;
+      this.inclusive = inclusive;
+      this.arcs = arcs;
+
+      closed = new long[bitsetSize(idSize())];
+      starts = inclusive ? null : new long[bitsetSize(idSize())];
+
+      int[] startEntries = new int[startIds.size()];
+
+      for (int i = 0; i < startIds.size(); i++) {
+
+        Id startId = startIds.get(i);
+        int index = idTable.index(startId);
+
+        if (index != -1) {
+          startEntries[i] = index;
+          if (!inclusive)
+            close(starts, index);
+        } else if (unindexedStartIds.contains(startId))
+          startEntries[i] = -(unindexedStartIds.indexOf(startId) + 1);
+        else {
+          unindexedStartIds.add(startId);
+          startEntries[i] = -unindexedStartIds.size();
+        }
+      }
+
+      if (depthFirst)
+        for (int i = startEntries.length - 1; i >= 0; i--)
+          push(startEntries[i]);
+      else
+        for (int entry : startEntries)
+          push(entry);
+    }
+
+    private void push(int entry) {
+
+      if (entry >= 0 && !close(closed, entry))
+        return;
+
+      // unindexed start ids are closed by the open list itself
+      if (entry < 0)
+        for (int n = 0; n < end; n++)
+          if (open[n] == entry)
+            return;
+
+      if (end == open.length)
+        open = Arrays.copyOf(open, end * 2);
+
+      open[end++] = entry;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+      while (nextId == null && head < end) {
+
+        int entry = depthFirst ? open[--end] : open[head++];
+
+        if (entry < 0) {
+          if (inclusive)
+            nextId = unindexedStartIds.get(-entry - 1);
+          continue;
+        }
+
+        if (depthFirst)
+          for (int k = arcs.offset(entry + 1) - 1; k >= arcs.offset(entry); k--)
+            push(arcs.target(k));
+        else
+          for (int k = arcs.offset(entry); k < arcs.offset(entry + 1); k++)
+            push(arcs.target(k));
+
+        if (inclusive || !isClosed(starts, entry))
+          nextId = idTable.id(entry);
+      }
+
+      return nextId != null;
+    }
+
+    @Override
+    public Id next() {
+
+      if (!hasNext())
+        throw new NoSuchElementException();
+
+      Id id = nextId;
+
+      nextId = null;
+
+      return id;
+    }
+
+    @Override
+    public void remove() {
+      throw new NotImplemented();
+    }
+  }
+
+  // ===================================
+
+  // a set of indexes, hashed (linear probing) while small and a bitset once that would be smaller,
+  // so small traversals of large graphs don't allocate a bit per id
+  static class ClosedSet {
+
+    private final int idSize;
+
+    // index + 1, 0 for empty slots
+    private int[] table = new int[16];
+    private int size = 0;
+
+    private long[] bitset = null;
+
+    public ClosedSet(int idSize) {
+      this.idSize = idSize;
+    }
+
+    // returns false if the index was already contained
+    public boolean add(int index) {
+
+      if (bitset != null)
+        return close(bitset, index);
+
+      int hash = index * 0x9E3779B9;
+      int mask = table.length - 1;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+
+      while (table[slot] != 0) {
+        if (table[slot] == index + 1)
+          return false;
+        slot = (slot + 1) & mask;
+      }
+
+      table[slot] = index + 1;
+      size++;
+
+      // keep the load under half
+      if (2 * size > table.length) {
+
+        int[] oldTable = table;
+
+        // 32 bits per table slot vs 1 bit per id
+        if (64L * oldTable.length > idSize) {
+
+          bitset = new long[bitsetSize(idSize)];
+
+          for (int entry : oldTable)
+            if (entry != 0)
+              close(bitset, entry - 1);
+
+          table = null;
+
+        } else {
+
+          table = new int[oldTable.length * 2];
+          size = 0;
+
+          for (int entry : oldTable)
+            if (entry != 0)
+              add(entry - 1);
+        }
+      }
+
+      return true;
+    }
+  }
+
+  // ===================================
+
+  static int bitsetSize(int size) {
+    return (size + 63) >>> 6;
+  }
+
+  static boolean isClosed(long[] bitset, int index) {
+    return (bitset[index >>> 6] & (1L << index)) != 0;
+  }
+
+  // returns false if the index was already closed
+  static boolean close(long[] bitset, int index) {
+
+    if (isClosed(bitset, index))
+      return false;
+
+    bitset[index >>> 6] |= 1L << index;
+
+    return true;
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private ImmutableList<Id> idList(ArcTable arcs, int index) {
+
+    int start = arcs.offset(index);
+    int end = arcs.offset(index + 1);
+
+    if (start == end)
+      return ImmutableList.of();
+
+    ImmutableList.Builder<Id> ids = ImmutableList.builder();
+
+    for (int k = start; k < end; k++)
+      ids.add(idTable.id(arcs.target(k)));
+
+    return ids.build();
+  }
+
+  private ImmutableSetMultimap<Id, Id> multimap(ArcTable arcs) {
+
+    ImmutableSetMultimap.Builder<Id, Id> builder = ImmutableSetMultimap.builder();
+
+    for (int index = 0; index < idTable.size(); index++) {
+
+      Id id = idTable.id(index);
+
+      for (int k = arcs.offset(index); k < arcs.offset(index + 1); k++)
+        builder.put(id, idTable.id(arcs.target(k)));
+    }
+
+    return builder.build();
+  }
+
+}
@@ -83,4 +83,48 @@ public abstract class IdGraphLib {
     return fromChildMap(MultimapLib.of(alternatingIdsAndChildIds));
   }
 
+  // ===========================================================================
+  // indexed (compressed sparse row) backend
+  // ===========================================================================
+
+  /**
+   * Create an IdGraph backed by an IdGraphIndex.
+   */
+  public static <Id> IdGraph<Id> fromIndex(IdGraphIndex<Id> idGraphIndex) {
+    return new IdGraphClass<Id>(idGraphIndex);
+  }
+
+  /**
+   * Create an index-backed IdGraph from the graph's id set and a mapping from id to parent ids (specified as a multimap).
+   */
+  public static <Id> IdGraph<Id> indexedFromParentMap(Set<Id> idSet, Multimap<Id, Id> id__parentIds) {
+    return fromIndex(IdGraphIndex.fromParentMap(idSet, id__parentIds));
+  }
+
+  /**
+   * Create an index-backed IdGraph from the graph's id set and a mapping from id to child ids (specified as a multimap).
+   */
+  public static <Id> IdGraph<Id> indexedFromChildMap(Set<Id> idSet, Multimap<Id, Id> id__childIds) {
+    return fromIndex(IdGraphIndex.fromChildMap(idSet, id__childIds));
+  }
+
+  // ===========================================================================
+  // bulk builder
+  // ===========================================================================
+
+  /**
+   * Create a builder that streams in ids and arcs (from either direction) and builds an index in a
+   * single pass.
+   */
+  public static <Id> IdGraphBulkBuilder<Id> bulkBuilder() {
+    return bulkBuilder(16, 16);
+  }
+
+  /**
+   * Create a bulk builder presized for this many ids and arcs.
+   */
+  public static <Id> IdGraphBulkBuilder<Id> bulkBuilder(int expectedIdSize, int expectedArcSize) {
+    return new IdGraphBulkBuilderClass<>(expectedIdSize, expectedArcSize);
+  }
+
 }
@@ -0,0 +1,520 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.io.*;
+import java.nio.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.translate.Format;
+import com.stevewedig.blog.translate.ParseError;
+
+/**
+ * Creating IdGraphs, IdDags, and IdTrees whose ids and arcs are kept off the heap, in direct or
+ * memory mapped buffers (not GWT compatible, excluded in Blog.gwt.xml).
+ *
+ * An off heap IdGraphIndex keeps the same compressed sparse row arcs as a heap one, in direct int
+ * buffers, and keeps its ids as UTF-8 strings written by a Format, along with an open addressing
+ * hash table from id to index. So the garbage collector sees a few buffer objects per graph,
+ * instead of several objects per id and arc. The read API is unchanged, but ids are parsed each
+ * time they're read, and idList / idSet (and anything built from them, like equality) build a
+ * heap copy when first requested.
+ *
+ * The Format must write each id as a distinct string that it parses back to an equal id. Each
+ * buffer holds at most 2^31 bytes (so around 500 million arcs), and direct buffers count against
+ * -XX:MaxDirectMemorySize rather than the heap.
+ */
+public abstract class IdGraphOffHeapLib {
+
+  // ===========================================================================
+  // from heap graphs
+  // ===========================================================================
+
+  /**
+   * Copy an index off the heap.
+   *
+   * @param idGraphIndex The index to copy.
+   * @param idFormat Converts ids to and from the strings stored off the heap.
+   * @return An index with the same ids, indexes, and arcs.
+   */
+  public static <Id> IdGraphIndex<Id> offHeapIndex(IdGraphIndex<Id> idGraphIndex,
+      Format<Id> idFormat) {
+
+    int idSize = idGraphIndex.idSize();
+    int arcSize = idGraphIndex.arcSize();
+
+    // ids
+    byte[][] idBytesList = new byte[idSize][];
+    long byteSize = 0;
+
+    for (int index = 0; index < idSize; index++) {
+      idBytesList[index] = idFormat.write(idGraphIndex.id(index)).getBytes(IdGraphFileLib.utf8);
+      byteSize += varintSize(idBytesList[index].length) + idBytesList[index].length;
+    }
+
+    if (byteSize > Integer.MAX_VALUE)
+      throw new AssertionError("ids were too large for a buffer, byteSize = " + byteSize);
+
+    ByteBuffer idBytes = ByteBuffer.allocateDirect((int) byteSize);
+    IntBuffer idPositions = intBuffer(idSize);
+
+    for (int index = 0; index < idSize; index++) {
+      idPositions.put(index, idBytes.position());
+      putVarint(idBytes, idBytesList[index].length);
+      idBytes.put(idBytesList[index]);
+    }
+
+    OffHeapIdTable<Id> idTable = new OffHeapIdTable<Id>(idFormat, idSize, idBytes, idPositions);
+
+    int duplicateIndex = idTable.hashIds();
+    if (duplicateIndex != -1)
+      throw new AssertionError("id format wrote the same string for different ids, id = "
+          + idGraphIndex.id(duplicateIndex));
+
+    // arcs
+    IntBuffer parentOffsets = intBuffer(idSize + 1);
+    IntBuffer parentIndexes = intBuffer(arcSize);
+    IntBuffer childOffsets = intBuffer(idSize + 1);
+    IntBuffer childIndexes = intBuffer(arcSize);
+
+    int parentCursor = 0;
+    int childCursor = 0;
+
+    for (int index = 0; index < idSize; index++) {
+
+      parentOffsets.put(index, parentCursor);
+      for (int i = 0; i < idGraphIndex.parentCount(index); i++)
+        parentIndexes.put(parentCursor++, idGraphIndex.parentIndex(index, i));
+
+      childOffsets.put(index, childCursor);
+      for (int i = 0; i < idGraphIndex.childCount(index); i++)
+        childIndexes.put(childCursor++, idGraphIndex.childIndex(index, i));
+    }
+
+    parentOffsets.put(idSize, parentCursor);
+    childOffsets.put(idSize, childCursor);
+
+    return new IdGraphIndex<Id>(idTable, new OffHeapArcTable(parentOffsets, parentIndexes),
+        new OffHeapArcTable(childOffsets, childIndexes));
+  }
+
+  /**
+   * Copy a graph off the heap.
+   */
+  public static <Id> IdGraph<Id> offHeapIdGraph(IdGraph<Id> graph, Format<Id> idFormat) {
+    return new IdGraphClass<Id>(offHeapIndex(graph.idGraphIndex(), idFormat));
+  }
+
+  /**
+   * Copy a dag off the heap (without revalidating it).
+   */
+  public static <Id> IdDag<Id> offHeapIdDag(IdDag<Id> dag, Format<Id> idFormat) {
+    return new IdDagClass<Id>(offHeapIndex(dag.idGraphIndex(), idFormat), false);
+  }
+
+  /**
+   * Copy a tree off the heap (without revalidating it).
+   */
+  public static <Id> IdTree<Id> offHeapIdTree(IdTree<Id> tree, Format<Id> idFormat) {
+    return new IdTreeClass<Id>(offHeapIndex(tree.idGraphIndex(), idFormat), false);
+  }
+
+  // ===========================================================================
+  // from files
+  // ===========================================================================
+
+  /**
+   * Load a graph saved by IdGraphFileLib.write off the heap, without building it on the heap
+   * first. The ids are read straight from the memory mapped file, and the arcs are decoded into
+   * direct buffers.
+   *
+   * @param file The saved file.
+   * @param idFormat Converts ids to and from the strings in the file.
+   * @return An off heap graph.
+   */
+  public static <Id> IdGraph<Id> readIdGraph(File file, Format<Id> idFormat) throws IOException,
+      ParseError {
+
+    return new IdGraphClass<Id>(load(file, idFormat).idGraphIndex);
+  }
+
+  /**
+   * Load a dag saved by IdGraphFileLib.write off the heap (only validated if it wasn't saved as a
+   * dag or tree).
+   */
+  public static <Id> IdDag<Id> readIdDag(File file, Format<Id> idFormat) throws IOException,
+      ParseError, DagCannotHaveCycle {
+
+    Loaded<Id> loaded = load(file, idFormat);
+
+    return new IdDagClass<Id>(loaded.idGraphIndex, loaded.kind == IdGraphFileLib.graphKind);
+  }
+
+  /**
+   * Load a tree saved by IdGraphFileLib.write off the heap (only validated if it wasn't saved as a
+   * tree).
+   */
+  public static <Id> IdTree<Id> readIdTree(File file, Format<Id> idFormat) throws IOException,
+      ParseError, DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+
+    Loaded<Id> loaded = load(file, idFormat);
+
+    return new IdTreeClass<Id>(loaded.idGraphIndex, loaded.kind != IdGraphFileLib.treeKind);
+  }
+
+  // ===================================
+
+  private static class Loaded<Id> {
+
+    private final byte kind;
+    private final IdGraphIndex<Id> idGraphIndex;
+
+    public Loaded(byte kind, IdGraphIndex<Id> idGraphIndex) {
+      this.kind = kind;
+      this.idGraphIndex = idGraphIndex;
+    }
+  }
+
+  private static <Id> Loaded<Id> load(File file, Format<Id> idFormat) throws IOException,
+      ParseError {
+
+    ByteBuffer buffer = IdGraphFileLib.map(file);
+
+    try {
+      return decode(buffer, idFormat);
+    } catch (BufferUnderflowException e) {
+      throw new ParseError("file was truncated, file = %s", file);
+    }
+  }
+
+  private static <Id> Loaded<Id> decode(ByteBuffer buffer, Format<Id> idFormat)
+      throws ParseError {
+
+    byte kind = IdGraphFileLib.readKind(buffer);
+
+    int idSize = IdGraphFileLib.readSize(buffer);
+    int arcSize = IdGraphFileLib.readSize(buffer);
+
+    IdGraphFileLib.checkSizes(buffer, idSize, arcSize);
+
+    // the id table is used in place, so only each id's position is recorded
+    int idStart = buffer.position();
+    IntBuffer idPositions = intBuffer(idSize);
+
+    for (int index = 0; index < idSize; index++) {
+      idPositions.put(index, buffer.position() - idStart);
+      int length = IdGraphFileLib.readSize(buffer);
+
+      if (length > buffer.remaining())
+        throw new BufferUnderflowException();
+
+      buffer.position(buffer.position() + length);
+    }
+
+    ByteBuffer idBytes = buffer.duplicate();
+    idBytes.position(idStart);
+    idBytes.limit(buffer.position());
+
+    OffHeapIdTable<Id> idTable =
+        new OffHeapIdTable<Id>(idFormat, idSize, idBytes.slice(), idPositions);
+
+    int duplicateIndex = idTable.hashIds();
+    if (duplicateIndex != -1)
+      throw new ParseError("id table contained duplicate ids, id = %s", idTable
+          .id(duplicateIndex));
+
+    // parent arcs
+    IntBuffer parentOffsets = intBuffer(idSize + 1);
+    IntBuffer parentIndexes = intBuffer(arcSize);
+
+    int[] parents = new int[16];
+    int cursor = 0;
+
+    for (int index = 0; index < idSize; index++) {
+
+      parentOffsets.put(index, cursor);
+
+      int parentCount = IdGraphFileLib.readParentCount(buffer, arcSize - cursor);
+
+      if (parents.length < parentCount)
+        parents = new int[Math.max(parentCount, parents.length * 2)];
+
+      IdGraphFileLib.readParents(buffer, index, idSize, parentCount, parents, 0);
+
+      for (int i = 0; i < parentCount; i++)
+        parentIndexes.put(cursor++, parents[i]);
+    }
+
+    parentOffsets.put(idSize, cursor);
+
+    IdGraphFileLib.checkArcSize(arcSize, cursor);
+
+    // child arcs, by a counting sort that uses the offsets as cursors (moving each to the next
+    // offset), then shifts them back
+    IntBuffer childOffsets = intBuffer(idSize + 1);
+    IntBuffer childIndexes = intBuffer(arcSize);
+
+    for (int k = 0; k < arcSize; k++) {
+      int parent = parentIndexes.get(k);
+      childOffsets.put(parent + 1, childOffsets.get(parent + 1) + 1);
+    }
+
+    for (int index = 0; index < idSize; index++)
+      childOffsets.put(index + 1, childOffsets.get(index + 1) + childOffsets.get(index));
+
+    for (int index = 0; index < idSize; index++)
+      for (int k = parentOffsets.get(index); k < parentOffsets.get(index + 1); k++) {
+        int parent = parentIndexes.get(k);
+        int childCursor = childOffsets.get(parent);
+        childIndexes.put(childCursor, index);
+        childOffsets.put(parent, childCursor + 1);
+      }
+
+    for (int index = idSize; index > 0; index--)
+      childOffsets.put(index, childOffsets.get(index - 1));
+    childOffsets.put(0, 0);
+
+    return new Loaded<Id>(kind, new IdGraphIndex<Id>(idTable, new OffHeapArcTable(parentOffsets,
+        parentIndexes), new OffHeapArcTable(childOffsets, childIndexes)));
+  }
+
+  // ===========================================================================
+  // storage
+  // ===========================================================================
+
+  // ids are varint length prefixed UTF-8 strings in idBytes, starting at idPositions[index], and
+  // slots is an open addressing hash table (linear probing) of index + 1, 0 for empty slots
+  private static class OffHeapIdTable<Id> extends IdGraphIndex.IdTable<Id> {
+
+    private final Format<Id> idFormat;
+    private final int size;
+    private final ByteBuffer idBytes;
+    private final IntBuffer idPositions;
+
+    private final IntBuffer slots;
+    private final int mask;
+
+    public OffHeapIdTable(Format<Id> idFormat, int size, ByteBuffer idBytes,
+        IntBuffer idPositions) {
+
+      this.idFormat = idFormat;
+      this.size = size;
+      this.idBytes = idBytes;
+      this.idPositions = idPositions;
+
+      // keep the load at most half
+      int slotSize = 1;
+      while (slotSize < 2L * size)
+        slotSize *= 2;
+
+      this.slots = intBuffer(slotSize);
+      this.mask = slotSize - 1;
+    }
+
+    // fills the hash table, returns the index of a duplicate id, or -1 if they were distinct
+    public int hashIds() {
+
+      for (int index = 0; index < size; index++) {
+
+        int position = idPositions.get(index);
+        int length = getVarint(idBytes, position);
+        int start = position + varintSize(length);
+
+        int slot = hash(idBytes, start, length) & mask;
+
+        while (slots.get(slot) != 0) {
+          if (equalBytes(slots.get(slot) - 1, idBytes, start, length))
+            return index;
+          slot = (slot + 1) & mask;
+        }
+
+        slots.put(slot, index + 1);
+      }
+
+      return -1;
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    Id id(int index) {
+
+      if (index < 0 || index >= size)
+        throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
+
+      int position = idPositions.get(index);
+      int length = getVarint(idBytes, position);
+      int start = position + varintSize(length);
+
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++)
+        bytes[i] = idBytes.get(start + i);
+
+      return idFormat.parse(new String(bytes, IdGraphFileLib.utf8));
+    }
+
+    @Override
+    int index(Id id) {
+
+      byte[] bytes = idFormat.write(id).getBytes(IdGraphFileLib.utf8);
+      ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+
+      int slot = hash(wrapped, 0, bytes.length) & mask;
+
+      while (slots.get(slot) != 0) {
+        if (equalBytes(slots.get(slot) - 1, wrapped, 0, bytes.length))
+          return slots.get(slot) - 1;
+        slot = (slot + 1) & mask;
+      }
+
+      return -1;
+    }
+
+    // whether the id at an index is these bytes
+    private boolean equalBytes(int index, ByteBuffer bytes, int start, int length) {
+
+      int position = idPositions.get(index);
+      int indexLength = getVarint(idBytes, position);
+
+      if (indexLength != length)
+        return false;
+
+      int indexStart = position + varintSize(length);
+
+      for (int i = 0; i < length; i++)
+        if (idBytes.get(indexStart + i) != bytes.get(start + i))
+          return false;
+
+      return true;
+    }
+
+    @Override
+    ImmutableList<Id> idList() {
+      if (idList == null)
+        synchronized (this) {
+          if (idList == null) {
+            ImmutableList.Builder<Id> builder = ImmutableList.builder();
+            for (int index = 0; index < size; index++)
+              builder.add(id(index));
+            idList = builder.build();
+          }
+        }
+      return idList;
+    }
+
+    private volatile ImmutableList<Id> idList;
+
+    @Override
+    ImmutableSet<Id> idSet() {
+      if (idSet == null)
+        synchronized (this) {
+          if (idSet == null)
+            idSet = ImmutableSet.copyOf(idList());
+        }
+      return idSet;
+    }
+
+    private volatile ImmutableSet<Id> idSet;
+  }
+
+  // ===================================
+
+  private static class OffHeapArcTable extends IdGraphIndex.ArcTable {
+
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+
+    public OffHeapArcTable(IntBuffer offsets, IntBuffer targets) {
+      this.offsets = offsets;
+      this.targets = targets;
+    }
+
+    @Override
+    int offset(int index) {
+      return offsets.get(index);
+    }
+
+    @Override
+    int target(int k) {
+      return targets.get(k);
+    }
+
+    @Override
+    int size() {
+      return targets.capacity();
+    }
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  // reads use absolute positions only, so buffers can be shared by concurrent readers
+  private static IntBuffer intBuffer(int size) {
+
+    if (size > Integer.MAX_VALUE / 4)
+      throw new AssertionError("too large for a buffer, size = " + size);
+
+    return ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  // FNV-1a, then a final mix (stable across runs, unlike the ids' own hash codes)
+  private static int hash(ByteBuffer bytes, int start, int length) {
+
+    int hash = 0x811C9DC5;
+
+    for (int i = 0; i < length; i++) {
+      hash ^= bytes.get(start + i);
+      hash *= 0x01000193;
+    }
+
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+
+    return hash;
+  }
+
+  private static int varintSize(int value) {
+
+    int size = 1;
+
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+
+    return size;
+  }
+
+  private static void putVarint(ByteBuffer buffer, int value) {
+
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+
+    buffer.put((byte) value);
+  }
+
+  // the ids were checked while loading (each length prefix is minimal, so varintSize gives its
+  // width), so this doesn't need to reject malformed varints
+  private static int getVarint(ByteBuffer buffer, int position) {
+
+    int value = 0;
+
+    for (int shift = 0;; shift += 7) {
+
+      byte b = buffer.get(position++);
+
+      value |= (b & 0x7F) << shift;
+
+      if (b >= 0)
+        return value;
+    }
+  }
+
+}
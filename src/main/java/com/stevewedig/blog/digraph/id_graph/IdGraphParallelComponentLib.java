@@ -0,0 +1,212 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.google.common.collect.*;
+
+/**
+ * Weakly connected components using a concurrent union-find (not GWT compatible, excluded in
+ * Blog.gwt.xml).
+ *
+ * Index ranges are split across the pool's workers, which union each id with its parents. The
+ * union-find links live in an AtomicIntegerArray and are only changed by compareAndSet, so there are
+ * no locks: a link only ever points to a smaller index, so racing path halvings can't form a cycle,
+ * and a root is only linked by the worker whose compareAndSet succeeds (the others retry). Results
+ * are identical to IdGraphComponentLib.weakComponentNumbers, because each component's root is its
+ * smallest index either way.
+ */
+public abstract class IdGraphParallelComponentLib {
+
+  // index ranges smaller than this are processed on the calling thread
+  private static final int sequentialThreshold = 2048;
+
+  // ===========================================================================
+  // weakly connected
+  // ===========================================================================
+
+  /**
+   * Parallel weakly connected components, see IdGraphComponentLib.weakComponentNumbers.
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @param pool The pool used to process large graphs.
+   * @return index -> component number, where components are numbered in order of their smallest
+   *         index.
+   */
+  public static int[] weakComponentNumbers(IdGraphIndex<?> idGraphIndex, ForkJoinPool pool) {
+
+    int idSize = idGraphIndex.idSize();
+
+    // index -> parent in the union-find forest (not a graph parent)
+    AtomicIntegerArray links = new AtomicIntegerArray(idSize);
+
+    for (int index = 0; index < idSize; index++)
+      links.set(index, index);
+
+    invoke(pool, new UnionTask(idGraphIndex, links, 0, idSize));
+
+    // every union is done, so roots are final
+    int[] roots = new int[idSize];
+
+    invoke(pool, new RootTask(links, roots, 0, idSize));
+
+    return IdGraphComponentLib.numberRoots(roots);
+  }
+
+  /**
+   * Parallel weakly connected components, see IdGraphComponentLib.weakComponentList.
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @param pool The pool used to process large graphs.
+   * @return The components in order of their first id, each in index order.
+   */
+  public static <Id> ImmutableList<ImmutableSet<Id>> weakComponentList(
+      IdGraphIndex<Id> idGraphIndex, ForkJoinPool pool) {
+
+    return IdGraphComponentLib.componentList(idGraphIndex,
+        weakComponentNumbers(idGraphIndex, pool));
+  }
+
+  // ===========================================================================
+  // union-find
+  // ===========================================================================
+
+  // the root of an index, halving the path to it along the way (a failed halving just means
+  // another worker already shortened the path)
+  private static int find(AtomicIntegerArray links, int index) {
+
+    while (true) {
+
+      int link = links.get(index);
+
+      if (link == index)
+        return index;
+
+      int nextLink = links.get(link);
+
+      if (link != nextLink)
+        links.compareAndSet(index, link, nextLink);
+
+      index = link;
+    }
+  }
+
+  private static void union(AtomicIntegerArray links, int a, int b) {
+
+    while (true) {
+
+      a = find(links, a);
+      b = find(links, b);
+
+      if (a == b)
+        return;
+
+      // link the larger root under the smaller one, retrying if it stopped being a root
+      if (a < b) {
+        if (links.compareAndSet(b, b, a))
+          return;
+      } else if (links.compareAndSet(a, a, b))
+        return;
+    }
+  }
+
+  // ===========================================================================
+  // tasks
+  // ===========================================================================
+
+  private static void invoke(ForkJoinPool pool, RangeTask task) {
+    if (task.size() < sequentialThreshold)
+      task.compute();
+    else
+      pool.invoke(task);
+  }
+
+  @SuppressWarnings("serial")
+  private static abstract class RangeTask extends RecursiveAction {
+
+    protected final int from;
+    protected final int to;
+
+    public RangeTask(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    public int size() {
+      return to - from;
+    }
+
+    protected abstract RangeTask subtask(int from, int to);
+
+    protected abstract void computeRange();
+
+    @Override
+    protected void compute() {
+
+      if (size() > sequentialThreshold) {
+
+        int middle = (from + to) >>> 1;
+
+        invokeAll(subtask(from, middle), subtask(middle, to));
+
+        return;
+      }
+
+      computeRange();
+    }
+  }
+
+  // unions ids [from, to) with their parents
+  @SuppressWarnings("serial")
+  private static class UnionTask extends RangeTask {
+
+    private final IdGraphIndex<?> idGraphIndex;
+    private final AtomicIntegerArray links;
+
+    public UnionTask(IdGraphIndex<?> idGraphIndex, AtomicIntegerArray links, int from, int to) {
+      super(from, to);
+      this.idGraphIndex = idGraphIndex;
+      this.links = links;
+    }
+
+    @Override
+    protected RangeTask subtask(int from, int to) {
+      return new UnionTask(idGraphIndex, links, from, to);
+    }
+
+    @Override
+    protected void computeRange() {
+      for (int index = from; index < to; index++) {
+        int parentCount = idGraphIndex.parentCount(index);
+        for (int i = 0; i < parentCount; i++)
+          union(links, index, idGraphIndex.parentIndex(index, i));
+      }
+    }
+  }
+
+  // copies the roots of ids [from, to)
+  @SuppressWarnings("serial")
+  private static class RootTask extends RangeTask {
+
+    private final AtomicIntegerArray links;
+    private final int[] roots;
+
+    public RootTask(AtomicIntegerArray links, int[] roots, int from, int to) {
+      super(from, to);
+      this.links = links;
+      this.roots = roots;
+    }
+
+    @Override
+    protected RangeTask subtask(int from, int to) {
+      return new RootTask(links, roots, from, to);
+    }
+
+    @Override
+    protected void computeRange() {
+      for (int index = from; index < to; index++)
+        roots[index] = find(links, index);
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+
+/**
+ * Creates index-backed dags and trees, validating them across a fork/join pool (not GWT
+ * compatible, excluded in Blog.gwt.xml).
+ *
+ * The only traversal is IdGraphParallelTopsortLib's level synchronous sort, which checks for
+ * cycles, and whose levels and order the result keeps. A tree's other invariants follow from it:
+ * the first level is the root set, and once there is a single root, some id has multiple parents
+ * iff there are more than idSize - 1 arcs.
+ */
+public abstract class IdGraphParallelLib {
+
+  // ===========================================================================
+  // dag
+  // ===========================================================================
+
+  /**
+   * Create an index-backed IdDag, checking for cycles in parallel.
+   *
+   * @param idGraphIndex The indexed arc structure of your dag.
+   * @param pool The pool used to process large topological sort levels.
+   * @return The dag, with its topological sort (and levels) already computed.
+   */
+  public static <Id> IdDag<Id> idDag(IdGraphIndex<Id> idGraphIndex, ForkJoinPool pool)
+      throws DagCannotHaveCycle {
+
+    ImmutableList<ImmutableSet<Id>> levels = levels(idGraphIndex, pool);
+
+    IdDagClass<Id> dag = new IdDagClass<>(idGraphIndex, concat(levels));
+    dag.setTopsortLevelList(levels);
+
+    return dag;
+  }
+
+  // ===========================================================================
+  // tree
+  // ===========================================================================
+
+  /**
+   * Create an index-backed IdTree, checking for cycles in parallel (errors have the same
+   * precedence as IdTreeLib.fromIndex).
+   *
+   * @param idGraphIndex The indexed arc structure of your tree.
+   * @param pool The pool used to process large topological sort levels.
+   * @return The tree, with its topological sort (and levels) already computed.
+   */
+  public static <Id> IdTree<Id> idTree(IdGraphIndex<Id> idGraphIndex, ForkJoinPool pool)
+      throws DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+
+    ImmutableList<ImmutableSet<Id>> levels = levels(idGraphIndex, pool);
+
+    int idSize = idGraphIndex.idSize();
+
+    if (idSize == 0)
+      throw new TreeCannotBeEmpty();
+
+    if (levels.get(0).size() > 1)
+      throw new TreeCannotHaveMultipleRoots("rootIds = %s", levels.get(0));
+
+    // only searched for when it's known to exist
+    if (idGraphIndex.arcSize() != idSize - 1)
+      for (int index = 0; index < idSize; index++)
+        if (idGraphIndex.parentCount(index) >= 2) {
+          Id id = idGraphIndex.id(index);
+          throw new TreeNodesCannotHaveMultipleParents("id = %s, parentIds = %s", id,
+              idGraphIndex.parentIdSet(id));
+        }
+
+    IdTreeClass<Id> tree = new IdTreeClass<>(idGraphIndex, concat(levels));
+    tree.setTopsortLevelList(levels);
+
+    return tree;
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static <Id> ImmutableList<ImmutableSet<Id>> levels(IdGraphIndex<Id> idGraphIndex,
+      ForkJoinPool pool) throws DagCannotHaveCycle {
+
+    Optional<ImmutableList<ImmutableSet<Id>>> levels =
+        IdGraphParallelTopsortLib.sortLevels(idGraphIndex, pool);
+
+    if (!levels.isPresent())
+      throw new DagCannotHaveCycle();
+
+    return levels.get();
+  }
+
+  private static <Id> ImmutableList<Id> concat(ImmutableList<ImmutableSet<Id>> levels) {
+
+    ImmutableList.Builder<Id> sorted = ImmutableList.builder();
+
+    for (ImmutableSet<Id> level : levels)
+      sorted.addAll(level);
+
+    return sorted.build();
+  }
+
+}
@@ -0,0 +1,185 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.*;
+
+/**
+ * Level synchronous topological sort using fork/join (not GWT compatible, excluded in
+ * Blog.gwt.xml).
+ *
+ * Each frontier level is split across the pool's workers, and children are opened by atomically
+ * decrementing their parent counts, so a child is opened by whichever parent closes last. Results
+ * are identical to IdGraphTopsortLib.sortLevels, because each level is sorted into index order.
+ */
+public abstract class IdGraphParallelTopsortLib {
+
+  // frontiers smaller than this are processed on the calling thread
+  private static final int sequentialThreshold = 2048;
+
+  // ===========================================================================
+  // sort
+  // ===========================================================================
+
+  /**
+   * Parallel topological sort grouped into levels (antichains), see IdGraphTopsortLib.sortLevels.
+   *
+   * @param idGraphIndex The indexed dependency structure of your dag.
+   * @param pool The pool used to process large frontiers.
+   * @return The levels with roots (sources) first, each in index order, will be absent if the graph
+   *         is cyclic.
+   */
+  public static <Id> Optional<ImmutableList<ImmutableSet<Id>>> sortLevels(
+      IdGraphIndex<Id> idGraphIndex, ForkJoinPool pool) {
+
+    int idSize = idGraphIndex.idSize();
+
+    // parent counts
+    AtomicIntegerArray parentCounts = new AtomicIntegerArray(idSize);
+
+    // the graph's roots (sources) form the first frontier
+    int[] frontier = new int[idSize];
+    int frontierSize = 0;
+
+    for (int index = 0; index < idSize; index++) {
+
+      int parentCount = idGraphIndex.parentCount(index);
+      parentCounts.set(index, parentCount);
+
+      if (parentCount == 0)
+        frontier[frontierSize++] = index;
+    }
+
+    List<int[]> levels = new ArrayList<>();
+    int closedCount = 0;
+
+    int[] next = new int[idSize];
+    AtomicInteger nextSize = new AtomicInteger();
+
+    // loop: close the whole frontier, the children it opens form the next frontier
+    while (frontierSize > 0) {
+
+      levels.add(Arrays.copyOf(frontier, frontierSize));
+      closedCount += frontierSize;
+
+      nextSize.set(0);
+
+      LevelTask task =
+          new LevelTask(idGraphIndex, parentCounts, frontier, 0, frontierSize, next, nextSize);
+
+      if (frontierSize < sequentialThreshold)
+        task.compute();
+      else
+        pool.invoke(task);
+
+      int[] swap = frontier;
+      frontier = next;
+      next = swap;
+      frontierSize = nextSize.get();
+    }
+
+    // if we're missing any ids there is a cycle
+    if (closedCount != idSize)
+      return Optional.absent();
+
+    return Optional.of(IdGraphTopsortLib.levelIdSetList(idGraphIndex, levels));
+  }
+
+  /**
+   * Parallel topological sort, the concatenation of sortLevels.
+   *
+   * @param idGraphIndex The indexed dependency structure of your dag.
+   * @param pool The pool used to process large frontiers.
+   * @return A topological sort of ids with roots (sources) at the start, will be absent if the
+   *         graph is cyclic.
+   */
+  public static <Id> Optional<ImmutableList<Id>> sort(IdGraphIndex<Id> idGraphIndex,
+      ForkJoinPool pool) {
+
+    Optional<ImmutableList<ImmutableSet<Id>>> levels = sortLevels(idGraphIndex, pool);
+
+    if (!levels.isPresent())
+      return Optional.absent();
+
+    ImmutableList.Builder<Id> sorted = ImmutableList.builder();
+
+    for (ImmutableSet<Id> level : levels.get())
+      sorted.addAll(level);
+
+    return Optional.of(sorted.build());
+  }
+
+  // ===========================================================================
+  // level task
+  // ===========================================================================
+
+  // closes frontier[from, to), appending the children it opens to next
+  @SuppressWarnings("serial")
+  private static class LevelTask extends RecursiveAction {
+
+    private final IdGraphIndex<?> idGraphIndex;
+    private final AtomicIntegerArray parentCounts;
+    private final int[] frontier;
+    private final int from;
+    private final int to;
+    private final int[] next;
+    private final AtomicInteger nextSize;
+
+    public LevelTask(IdGraphIndex<?> idGraphIndex, AtomicIntegerArray parentCounts,
+        int[] frontier, int from, int to, int[] next, AtomicInteger nextSize) {
+      this.idGraphIndex = idGraphIndex;
+      this.parentCounts = parentCounts;
+      this.frontier = frontier;
+      this.from = from;
+      this.to = to;
+      this.next = next;
+      this.nextSize = nextSize;
+    }
+
+    @Override
+    protected void compute() {
+
+      if (to - from > sequentialThreshold) {
+
+        int middle = (from + to) >>> 1;
+
+        invokeAll(new LevelTask(idGraphIndex, parentCounts, frontier, from, middle, next, nextSize),
+            new LevelTask(idGraphIndex, parentCounts, frontier, middle, to, next, nextSize));
+
+        return;
+      }
+
+      // collected locally, then copied into a reserved range of next
+      int[] opened = new int[16];
+      int openedSize = 0;
+
+      for (int n = from; n < to; n++) {
+
+        int index = frontier[n];
+
+        int childCount = idGraphIndex.childCount(index);
+        for (int i = 0; i < childCount; i++) {
+
+          int child = idGraphIndex.childIndex(index, i);
+
+          if (parentCounts.decrementAndGet(child) == 0) {
+
+            if (openedSize == opened.length)
+              opened = Arrays.copyOf(opened, openedSize * 2);
+
+            opened[openedSize++] = child;
+          }
+        }
+      }
+
+      if (openedSize > 0) {
+        int start = nextSize.getAndAdd(openedSize);
+        System.arraycopy(opened, 0, next, start, openedSize);
+      }
+    }
+  }
+
+}
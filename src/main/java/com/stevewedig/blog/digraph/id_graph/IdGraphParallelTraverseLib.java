@@ -0,0 +1,386 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.google.common.collect.*;
+
+/**
+ * Direction optimizing parallel breadth first search using fork/join (not GWT compatible, excluded
+ * in Blog.gwt.xml).
+ *
+ * Levels are expanded top down (each frontier id claims its unreached targets) while the frontier
+ * is small, and bottom up (each unreached id looks for a source in the frontier, stopping at the
+ * first one) while the frontier's arcs outnumber a fraction of the unexplored arcs, which skips
+ * most arc checks on the middle levels of low diameter graphs.
+ *
+ * Either way a level is split across the pool's workers: top down claims ids by compareAndSet on a
+ * shared bitset, while bottom up gives each worker whole bitset words, so it only writes its own.
+ *
+ * http://www.scottbeamer.net/pubs/beamer-sc2012.pdf
+ */
+public abstract class IdGraphParallelTraverseLib {
+
+  // frontiers (and bottom up id ranges) smaller than this are processed on the calling thread
+  private static final int sequentialThreshold = 2048;
+
+  // switch to bottom up when frontier arcs > unexplored arcs / alpha
+  private static final int alpha = 14;
+
+  // switch back to top down when frontier size < id size / beta
+  private static final int beta = 24;
+
+  // ===========================================================================
+  // traverse
+  // ===========================================================================
+
+  /**
+   * Parallel version of IdGraphIndex.descendantIdSet (the same ids, in index order).
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @param startIds The ids to traverse from (included when inclusive, even if they aren't
+   *        indexed).
+   * @param inclusive Whether to include the start ids.
+   * @param pool The pool used to process large levels (its parallelism bounds the speedup).
+   * @return The ids reachable from the start ids.
+   */
+  public static <Id> ImmutableSet<Id> descendantIdSet(IdGraphIndex<Id> idGraphIndex,
+      Iterable<Id> startIds, boolean inclusive, ForkJoinPool pool) {
+
+    return reachedIdSet(idGraphIndex, startIds, inclusive, pool, true);
+  }
+
+  /**
+   * Parallel version of IdGraphIndex.ancestorIdSet (the same ids, in index order).
+   *
+   * @param idGraphIndex The indexed arc structure of your graph.
+   * @param startIds The ids to traverse from (included when inclusive, even if they aren't
+   *        indexed).
+   * @param inclusive Whether to include the start ids.
+   * @param pool The pool used to process large levels (its parallelism bounds the speedup).
+   * @return The ids that reach the start ids.
+   */
+  public static <Id> ImmutableSet<Id> ancestorIdSet(IdGraphIndex<Id> idGraphIndex,
+      Iterable<Id> startIds, boolean inclusive, ForkJoinPool pool) {
+
+    return reachedIdSet(idGraphIndex, startIds, inclusive, pool, false);
+  }
+
+  // ===================================
+
+  private static <Id> ImmutableSet<Id> reachedIdSet(IdGraphIndex<Id> idGraphIndex,
+      Iterable<Id> startIds, boolean inclusive, ForkJoinPool pool, boolean down) {
+
+    Arcs arcs = new Arcs(idGraphIndex, down);
+
+    int idSize = idGraphIndex.idSize();
+    int wordSize = (idSize + 63) >>> 6;
+
+    AtomicLongArray reached = new AtomicLongArray(wordSize);
+    long[] starts = new long[wordSize];
+    Set<Id> unindexedStartIds = new LinkedHashSet<>();
+
+    int[] frontier = new int[idSize];
+    int frontierSize = 0;
+
+    for (Id startId : startIds) {
+
+      if (!idGraphIndex.containsId(startId)) {
+        unindexedStartIds.add(startId);
+        continue;
+      }
+
+      int index = idGraphIndex.index(startId);
+
+      starts[index >>> 6] |= 1L << index;
+
+      if (claim(reached, index))
+        frontier[frontierSize++] = index;
+    }
+
+    int[] next = new int[idSize];
+    AtomicInteger nextSize = new AtomicInteger();
+
+    long[] frontierBits = new long[wordSize];
+
+    long unexploredArcs = idGraphIndex.arcSize();
+    boolean bottomUp = false;
+
+    // loop: expand the whole frontier, the ids it reaches form the next frontier
+    while (frontierSize > 0) {
+
+      long frontierArcs = 0;
+      for (int n = 0; n < frontierSize; n++)
+        frontierArcs += arcs.forwardCount(frontier[n]);
+
+      unexploredArcs -= frontierArcs;
+
+      if (!bottomUp && frontierArcs > unexploredArcs / alpha)
+        bottomUp = true;
+      else if (bottomUp && frontierSize < idSize / beta)
+        bottomUp = false;
+
+      nextSize.set(0);
+
+      if (bottomUp) {
+
+        Arrays.fill(frontierBits, 0);
+        for (int n = 0; n < frontierSize; n++)
+          frontierBits[frontier[n] >>> 6] |= 1L << frontier[n];
+
+        invoke(pool, new BottomUpTask(arcs, reached, frontierBits, 0, wordSize, next, nextSize),
+            idSize);
+
+      } else
+        invoke(pool, new TopDownTask(arcs, reached, frontier, 0, frontierSize, next, nextSize),
+            frontierSize);
+
+      int[] swap = frontier;
+      frontier = next;
+      next = swap;
+      frontierSize = nextSize.get();
+    }
+
+    // collect in index order, skipping the start ids unless inclusive
+    ImmutableSet.Builder<Id> reachedIds = ImmutableSet.builder();
+
+    for (int word = 0; word < wordSize; word++) {
+
+      long bits = reached.get(word);
+
+      if (!inclusive)
+        bits &= ~starts[word];
+
+      while (bits != 0) {
+        reachedIds.add(idGraphIndex.id((word << 6) + Long.numberOfTrailingZeros(bits)));
+        bits &= bits - 1;
+      }
+    }
+
+    if (inclusive)
+      reachedIds.addAll(unindexedStartIds);
+
+    return reachedIds.build();
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static void invoke(ForkJoinPool pool, RecursiveAction task, int size) {
+    if (size < sequentialThreshold)
+      task.invoke();
+    else
+      pool.invoke(task);
+  }
+
+  // returns false if the index was already reached
+  private static boolean claim(AtomicLongArray reached, int index) {
+
+    int word = index >>> 6;
+    long bit = 1L << index;
+
+    while (true) {
+
+      long bits = reached.get(word);
+
+      if ((bits & bit) != 0)
+        return false;
+
+      if (reached.compareAndSet(word, bits, bits | bit))
+        return true;
+    }
+  }
+
+  // the arcs in the traversal's direction (forward) and against it (backward)
+  private static class Arcs {
+
+    private final IdGraphIndex<?> idGraphIndex;
+    private final boolean down;
+
+    public Arcs(IdGraphIndex<?> idGraphIndex, boolean down) {
+      this.idGraphIndex = idGraphIndex;
+      this.down = down;
+    }
+
+    public int forwardCount(int index) {
+      return down ? idGraphIndex.childCount(index) : idGraphIndex.parentCount(index);
+    }
+
+    public int forwardTarget(int index, int i) {
+      return down ? idGraphIndex.childIndex(index, i) : idGraphIndex.parentIndex(index, i);
+    }
+
+    public int backwardCount(int index) {
+      return down ? idGraphIndex.parentCount(index) : idGraphIndex.childCount(index);
+    }
+
+    public int backwardTarget(int index, int i) {
+      return down ? idGraphIndex.parentIndex(index, i) : idGraphIndex.childIndex(index, i);
+    }
+  }
+
+  // copies the indexes a task reached into a reserved range of next
+  private static void append(int[] reachedIndexes, int reachedSize, int[] next,
+      AtomicInteger nextSize) {
+
+    if (reachedSize > 0) {
+      int start = nextSize.getAndAdd(reachedSize);
+      System.arraycopy(reachedIndexes, 0, next, start, reachedSize);
+    }
+  }
+
+  // ===========================================================================
+  // top down task
+  // ===========================================================================
+
+  // expands frontier[from, to), claiming unreached targets for next
+  @SuppressWarnings("serial")
+  private static class TopDownTask extends RecursiveAction {
+
+    private final Arcs arcs;
+    private final AtomicLongArray reached;
+    private final int[] frontier;
+    private final int from;
+    private final int to;
+    private final int[] next;
+    private final AtomicInteger nextSize;
+
+    public TopDownTask(Arcs arcs, AtomicLongArray reached, int[] frontier, int from, int to,
+        int[] next, AtomicInteger nextSize) {
+      this.arcs = arcs;
+      this.reached = reached;
+      this.frontier = frontier;
+      this.from = from;
+      this.to = to;
+      this.next = next;
+      this.nextSize = nextSize;
+    }
+
+    @Override
+    protected void compute() {
+
+      if (to - from > sequentialThreshold) {
+
+        int middle = (from + to) >>> 1;
+
+        invokeAll(new TopDownTask(arcs, reached, frontier, from, middle, next, nextSize),
+            new TopDownTask(arcs, reached, frontier, middle, to, next, nextSize));
+
+        return;
+      }
+
+      // collected locally, then copied into a reserved range of next
+      int[] reachedIndexes = new int[16];
+      int reachedSize = 0;
+
+      for (int n = from; n < to; n++) {
+
+        int index = frontier[n];
+
+        int count = arcs.forwardCount(index);
+        for (int i = 0; i < count; i++) {
+
+          int target = arcs.forwardTarget(index, i);
+
+          if (claim(reached, target)) {
+
+            if (reachedSize == reachedIndexes.length)
+              reachedIndexes = Arrays.copyOf(reachedIndexes, reachedSize * 2);
+
+            reachedIndexes[reachedSize++] = target;
+          }
+        }
+      }
+
+      append(reachedIndexes, reachedSize, next, nextSize);
+    }
+  }
+
+  // ===========================================================================
+  // bottom up task
+  // ===========================================================================
+
+  // checks the unreached ids in bitset words [fromWord, toWord) for a source in the frontier
+  @SuppressWarnings("serial")
+  private static class BottomUpTask extends RecursiveAction {
+
+    private final Arcs arcs;
+    private final AtomicLongArray reached;
+    private final long[] frontierBits;
+    private final int fromWord;
+    private final int toWord;
+    private final int[] next;
+    private final AtomicInteger nextSize;
+
+    public BottomUpTask(Arcs arcs, AtomicLongArray reached, long[] frontierBits, int fromWord,
+        int toWord, int[] next, AtomicInteger nextSize) {
+      this.arcs = arcs;
+      this.reached = reached;
+      this.frontierBits = frontierBits;
+      this.fromWord = fromWord;
+      this.toWord = toWord;
+      this.next = next;
+      this.nextSize = nextSize;
+    }
+
+    @Override
+    protected void compute() {
+
+      if ((toWord - fromWord) << 6 > sequentialThreshold) {
+
+        int middle = (fromWord + toWord) >>> 1;
+
+        invokeAll(new BottomUpTask(arcs, reached, frontierBits, fromWord, middle, next, nextSize),
+            new BottomUpTask(arcs, reached, frontierBits, middle, toWord, next, nextSize));
+
+        return;
+      }
+
+      int idSize = arcs.idGraphIndex.idSize();
+
+      int[] reachedIndexes = new int[16];
+      int reachedSize = 0;
+
+      for (int word = fromWord; word < toWord; word++) {
+
+        // this task owns the word, and nothing else writes it during a bottom up level
+        long bits = reached.get(word);
+        long unreached = ~bits;
+
+        while (unreached != 0) {
+
+          int index = (word << 6) + Long.numberOfTrailingZeros(unreached);
+          unreached &= unreached - 1;
+
+          // past the last id (in the last word)
+          if (index >= idSize)
+            break;
+
+          int count = arcs.backwardCount(index);
+          for (int i = 0; i < count; i++) {
+
+            int source = arcs.backwardTarget(index, i);
+
+            if ((frontierBits[source >>> 6] & (1L << source)) != 0) {
+
+              bits |= 1L << index;
+
+              if (reachedSize == reachedIndexes.length)
+                reachedIndexes = Arrays.copyOf(reachedIndexes, reachedSize * 2);
+
+              reachedIndexes[reachedSize++] = index;
+              break;
+            }
+          }
+        }
+
+        reached.set(word, bits);
+      }
+
+      append(reachedIndexes, reachedSize, next, nextSize);
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.base.Optional;
+
+/**
+ * Bidirectional breadth first search over an IdGraphIndex (the same search as ReachabilityLib's
+ * generic distance, kept next to the index so the generic algorithms don't depend on id_graph).
+ */
+public abstract class IdGraphReachabilityLib {
+
+  // ===========================================================================
+  // distance
+  // ===========================================================================
+
+  /**
+   * The number of arcs on the shortest path from one id to another, following child arcs (see
+   * ReachabilityLib.distance).
+   *
+   * Ids that aren't indexed can only reach themselves.
+   */
+  public static <Id> Optional<Integer> distance(IdGraphIndex<Id> idGraphIndex, Id fromId, Id toId,
+      int maxDistance) {
+
+    assertMaxDistance(maxDistance);
+
+    if (fromId.equals(toId))
+      return Optional.of(0);
+
+    if (!idGraphIndex.containsId(fromId) || !idGraphIndex.containsId(toId))
+      return Optional.absent();
+
+    int from = idGraphIndex.index(fromId);
+    int to = idGraphIndex.index(toId);
+
+    // index -> distance from the side's start index
+    Map<Integer, Integer> forwardDistances = new HashMap<>();
+    Map<Integer, Integer> backwardDistances = new HashMap<>();
+
+    forwardDistances.put(from, 0);
+    backwardDistances.put(to, 0);
+
+    int[] forwardFrontier = {from};
+    int forwardSize = 1;
+    int[] backwardFrontier = {to};
+    int backwardSize = 1;
+
+    int forwardDepth = 0;
+    int backwardDepth = 0;
+
+    int best = Integer.MAX_VALUE;
+
+    while (forwardDepth + backwardDepth < Math.min(best, maxDistance)) {
+
+      if (forwardSize == 0 || backwardSize == 0)
+        break;
+
+      boolean forward = forwardSize <= backwardSize;
+
+      Map<Integer, Integer> distances = forward ? forwardDistances : backwardDistances;
+      Map<Integer, Integer> otherDistances = forward ? backwardDistances : forwardDistances;
+      int[] frontier = forward ? forwardFrontier : backwardFrontier;
+      int frontierSize = forward ? forwardSize : backwardSize;
+      int depth = (forward ? forwardDepth : backwardDepth) + 1;
+
+      int[] next = new int[Math.max(16, frontierSize)];
+      int nextSize = 0;
+
+      for (int n = 0; n < frontierSize; n++) {
+
+        int index = frontier[n];
+
+        int count = forward ? idGraphIndex.childCount(index) : idGraphIndex.parentCount(index);
+
+        for (int i = 0; i < count; i++) {
+
+          int target =
+              forward ? idGraphIndex.childIndex(index, i) : idGraphIndex.parentIndex(index, i);
+
+          if (distances.containsKey(target))
+            continue;
+
+          distances.put(target, depth);
+
+          if (nextSize == next.length)
+            next = Arrays.copyOf(next, nextSize * 2);
+
+          next[nextSize++] = target;
+
+          Integer otherDistance = otherDistances.get(target);
+
+          if (otherDistance != null)
+            best = Math.min(best, depth + otherDistance);
+        }
+      }
+
+      if (forward) {
+        forwardFrontier = next;
+        forwardSize = nextSize;
+        forwardDepth = depth;
+      } else {
+        backwardFrontier = next;
+        backwardSize = nextSize;
+        backwardDepth = depth;
+      }
+    }
+
+    // best is still MAX_VALUE if the frontiers never met
+    if (best == Integer.MAX_VALUE || best > maxDistance)
+      return Optional.absent();
+
+    return Optional.of(best);
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static void assertMaxDistance(int maxDistance) {
+    if (maxDistance < 0)
+      throw new AssertionError("maxDistance was negative, maxDistance = " + maxDistance);
+  }
+
+}
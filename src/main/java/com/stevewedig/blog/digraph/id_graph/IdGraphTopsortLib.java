@@ -0,0 +1,172 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.*;
+
+/**
+ * Topological sort over an IdGraphIndex (the same algorithm as TopsortLib's generic sort, kept
+ * next to the index so the generic algorithms don't depend on id_graph).
+ */
+public abstract class IdGraphTopsortLib {
+
+  // ===========================================================================
+  // sort
+  // ===========================================================================
+
+  /**
+   * Topological sort over an IdGraphIndex, using int arrays instead of boxed counts.
+   * 
+   * @param idGraphIndex The indexed dependency structure of your dag.
+   * @return A topological sort of ids with roots (sources) at the start, will be absent if the
+   *         graph is cyclic.
+   */
+  public static <Id> Optional<ImmutableList<Id>> sort(IdGraphIndex<Id> idGraphIndex) {
+
+    int idSize = idGraphIndex.idSize();
+
+    // building a topologically sorted id list
+    ImmutableList.Builder<Id> sorted = ImmutableList.builder();
+    int closedCount = 0;
+
+    // ids are opened when their parents are all closed (int array used as a stack)
+    int[] open = new int[idSize];
+    int openSize = 0;
+
+    // parent counts
+    int[] parentCounts = new int[idSize];
+    for (int index = 0; index < idSize; index++) {
+
+      parentCounts[index] = idGraphIndex.parentCount(index);
+
+      // the graph's roots (sources) form the initial open set
+      if (parentCounts[index] == 0)
+        open[openSize++] = index;
+    }
+
+    // loop: close an open id and see if that opens any of its children
+    while (openSize > 0) {
+
+      int index = open[--openSize];
+
+      // close
+      sorted.add(idGraphIndex.id(index));
+      closedCount++;
+
+      // update parent counts of children, and open if now 0
+      int childCount = idGraphIndex.childCount(index);
+      for (int i = 0; i < childCount; i++) {
+
+        int child = idGraphIndex.childIndex(index, i);
+
+        if (--parentCounts[child] == 0)
+          open[openSize++] = child;
+      }
+    }
+
+    // if we're missing any ids there is a cycle
+    if (closedCount != idSize)
+      return Optional.absent();
+
+    // return the topologically sorted id list
+    return Optional.of(sorted.build());
+  }
+
+  // ===========================================================================
+  // levels
+  // ===========================================================================
+
+  /**
+   * Topological sort grouped into levels, where an id's level is the length of the longest path
+   * to it from a root (source). Ids in the same level are never ancestors of each other (each level
+   * is an antichain), so they can be processed concurrently once earlier levels are done.
+   * 
+   * @param idGraphIndex The indexed dependency structure of your dag.
+   * @return The levels with roots (sources) first, each in index order, will be absent if the graph
+   *         is cyclic.
+   */
+  public static <Id> Optional<ImmutableList<ImmutableSet<Id>>> sortLevels(
+      IdGraphIndex<Id> idGraphIndex) {
+
+    int idSize = idGraphIndex.idSize();
+
+    // parent counts
+    int[] parentCounts = new int[idSize];
+
+    // the graph's roots (sources) form the first frontier
+    int[] frontier = new int[idSize];
+    int frontierSize = 0;
+
+    for (int index = 0; index < idSize; index++) {
+
+      parentCounts[index] = idGraphIndex.parentCount(index);
+
+      if (parentCounts[index] == 0)
+        frontier[frontierSize++] = index;
+    }
+
+    List<int[]> levels = new ArrayList<>();
+    int closedCount = 0;
+
+    int[] next = new int[idSize];
+
+    // loop: close the whole frontier, the children it opens form the next frontier
+    while (frontierSize > 0) {
+
+      levels.add(Arrays.copyOf(frontier, frontierSize));
+      closedCount += frontierSize;
+
+      int nextSize = 0;
+
+      for (int n = 0; n < frontierSize; n++) {
+
+        int index = frontier[n];
+
+        int childCount = idGraphIndex.childCount(index);
+        for (int i = 0; i < childCount; i++) {
+
+          int child = idGraphIndex.childIndex(index, i);
+
+          if (--parentCounts[child] == 0)
+            next[nextSize++] = child;
+        }
+      }
+
+      int[] swap = frontier;
+      frontier = next;
+      next = swap;
+      frontierSize = nextSize;
+    }
+
+    // if we're missing any ids there is a cycle
+    if (closedCount != idSize)
+      return Optional.absent();
+
+    return Optional.of(levelIdSetList(idGraphIndex, levels));
+  }
+
+  /**
+   * Convert levels of indexes into levels of ids, each sorted into index order.
+   */
+  static <Id> ImmutableList<ImmutableSet<Id>> levelIdSetList(IdGraphIndex<Id> idGraphIndex,
+      List<int[]> levels) {
+
+    ImmutableList.Builder<ImmutableSet<Id>> levelIdSets = ImmutableList.builder();
+
+    for (int[] level : levels) {
+
+      Arrays.sort(level);
+
+      ImmutableSet.Builder<Id> levelIds = ImmutableSet.builder();
+
+      for (int index : level)
+        levelIds.add(idGraphIndex.id(index));
+
+      levelIdSets.add(levelIds.build());
+    }
+
+    return levelIdSets.build();
+  }
+
+}
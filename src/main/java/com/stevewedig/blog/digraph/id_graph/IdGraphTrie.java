@@ -0,0 +1,265 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.util.HashTrie;
+
+/**
+ * Persistent storage for an IdGraph, used by the withArc/withoutArc/withId/withoutId updates.
+ *
+ * Each id maps to its parent and child sets in HashTries, so an update copies O(log n) trie nodes
+ * plus the adjacency sets of the ids it touches, and shares everything else with the graph it was
+ * derived from. Root ids are tracked as well, so trees can find their root without a scan, and so
+ * is the graph's fingerprint (see IdGraphFingerprintLib), which each update adjusts by its terms.
+ */
+class IdGraphTrie<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final HashTrie<Id, ImmutableSet<Id>> id__parentIds;
+
+  private final HashTrie<Id, ImmutableSet<Id>> id__childIds;
+
+  // root id -> root id
+  private final HashTrie<Id, Id> rootIds;
+
+  private final long fingerprint;
+
+  private IdGraphTrie(HashTrie<Id, ImmutableSet<Id>> id__parentIds,
+      HashTrie<Id, ImmutableSet<Id>> id__childIds, HashTrie<Id, Id> rootIds, long fingerprint) {
+    this.id__parentIds = id__parentIds;
+    this.id__childIds = id__childIds;
+    this.rootIds = rootIds;
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Copy a graph into a trie (O(V + E), done once before the first update).
+   */
+  public static <Id> IdGraphTrie<Id> fromIdGraph(IdGraph<Id> idGraph) {
+
+    HashTrie<Id, ImmutableSet<Id>> id__parentIds = HashTrie.of();
+    HashTrie<Id, ImmutableSet<Id>> id__childIds = HashTrie.of();
+    HashTrie<Id, Id> rootIds = HashTrie.of();
+    long fingerprint = 0;
+
+    for (Id id : idGraph.idSet()) {
+
+      ImmutableSet<Id> parentIds = idGraph.parentIdSet(id);
+
+      id__parentIds = id__parentIds.with(id, parentIds);
+      id__childIds = id__childIds.with(id, idGraph.childIdSet(id));
+
+      if (parentIds.isEmpty())
+        rootIds = rootIds.with(id, id);
+
+      fingerprint += IdGraphFingerprintLib.idHash(id);
+
+      for (Id parentId : parentIds)
+        fingerprint += arcHash(parentId, id);
+    }
+
+    return new IdGraphTrie<>(id__parentIds, id__childIds, rootIds, fingerprint);
+  }
+
+  // ===========================================================================
+  // queries
+  // ===========================================================================
+
+  public int idSize() {
+    return id__parentIds.size();
+  }
+
+  public boolean containsId(Id id) {
+    return id__parentIds.containsKey(id);
+  }
+
+  /**
+   * An id's parent ids (empty if the id isn't contained, like ImmutableSetMultimap.get).
+   */
+  public ImmutableSet<Id> parentIdSet(Id id) {
+    ImmutableSet<Id> parentIds = id__parentIds.get(id);
+    return parentIds == null ? ImmutableSet.<Id>of() : parentIds;
+  }
+
+  /**
+   * An id's child ids (empty if the id isn't contained, like ImmutableSetMultimap.get).
+   */
+  public ImmutableSet<Id> childIdSet(Id id) {
+    ImmutableSet<Id> childIds = id__childIds.get(id);
+    return childIds == null ? ImmutableSet.<Id>of() : childIds;
+  }
+
+  /**
+   * Whether an id is an ancestor of another id (inclusive), searching only the other id's ancestors
+   * and stopping as soon as the id is found.
+   */
+  public boolean isAncestorOf(Id ancestorId, Id id) {
+
+    LinkedList<Id> open = new LinkedList<>();
+    Set<Id> seen = new HashSet<>();
+
+    open.addFirst(id);
+    seen.add(id);
+
+    while (!open.isEmpty()) {
+
+      Id current = open.removeFirst();
+
+      if (current.equals(ancestorId))
+        return true;
+
+      for (Id parentId : parentIdSet(current))
+        if (seen.add(parentId))
+          open.addFirst(parentId);
+    }
+
+    return false;
+  }
+
+  // ===================================
+
+  public int rootSize() {
+    return rootIds.size();
+  }
+
+  public ImmutableSet<Id> rootIdSet() {
+    return rootIds.keySet();
+  }
+
+  // ===================================
+
+  public long fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * The ids whose parent sets differ from another trie's, including ids only one contains (in time
+   * proportional to the differences when the tries share structure, see HashTrie.changedKeySet).
+   */
+  public ImmutableSet<Id> changedIdSet(IdGraphTrie<Id> other) {
+    return id__parentIds.changedKeySet(other.id__parentIds);
+  }
+
+  // ===================================
+
+  /**
+   * Copy the ids into an ImmutableSet (O(V)).
+   */
+  public ImmutableSet<Id> idSet() {
+    return id__parentIds.keySet();
+  }
+
+  /**
+   * Copy the parent structure into an ImmutableSetMultimap (O(V + E)).
+   */
+  public ImmutableSetMultimap<Id, Id> id__parentIds() {
+
+    ImmutableSetMultimap.Builder<Id, Id> builder = ImmutableSetMultimap.builder();
+
+    for (Id id : idSet())
+      builder.putAll(id, parentIdSet(id));
+
+    return builder.build();
+  }
+
+  // ===========================================================================
+  // updates
+  // ===========================================================================
+
+  /**
+   * A trie with an id (returns this trie if the id is already contained).
+   */
+  public IdGraphTrie<Id> withId(Id id) {
+
+    if (containsId(id))
+      return this;
+
+    ImmutableSet<Id> none = ImmutableSet.of();
+
+    return new IdGraphTrie<>(id__parentIds.with(id, none), id__childIds.with(id, none),
+        rootIds.with(id, id), fingerprint + IdGraphFingerprintLib.idHash(id));
+  }
+
+  /**
+   * A trie without an id or the arcs touching it (returns this trie if the id isn't contained).
+   */
+  public IdGraphTrie<Id> withoutId(Id id) {
+
+    if (!containsId(id))
+      return this;
+
+    IdGraphTrie<Id> trie = this;
+
+    for (Id parentId : parentIdSet(id))
+      trie = trie.withoutArc(parentId, id);
+
+    for (Id childId : childIdSet(id))
+      trie = trie.withoutArc(id, childId);
+
+    return new IdGraphTrie<>(trie.id__parentIds.without(id), trie.id__childIds.without(id),
+        trie.rootIds.without(id), trie.fingerprint - IdGraphFingerprintLib.idHash(id));
+  }
+
+  // ===================================
+
+  /**
+   * A trie with an arc from parentId to childId, adding either id if it isn't contained (returns
+   * this trie if the arc already exists).
+   */
+  public IdGraphTrie<Id> withArc(Id parentId, Id childId) {
+
+    if (childIdSet(parentId).contains(childId))
+      return this;
+
+    IdGraphTrie<Id> trie = withId(parentId).withId(childId);
+
+    ImmutableSet<Id> parentIds =
+        ImmutableSet.<Id>builder().addAll(trie.parentIdSet(childId)).add(parentId).build();
+
+    ImmutableSet<Id> childIds =
+        ImmutableSet.<Id>builder().addAll(trie.childIdSet(parentId)).add(childId).build();
+
+    return new IdGraphTrie<>(trie.id__parentIds.with(childId, parentIds), trie.id__childIds.with(
+        parentId, childIds), trie.rootIds.without(childId), trie.fingerprint + arcHash(parentId,
+        childId));
+  }
+
+  /**
+   * A trie without the arc from parentId to childId, keeping both ids (returns this trie if the arc
+   * doesn't exist).
+   */
+  public IdGraphTrie<Id> withoutArc(Id parentId, Id childId) {
+
+    if (!childIdSet(parentId).contains(childId))
+      return this;
+
+    ImmutableSet<Id> parentIds = without(parentIdSet(childId), parentId);
+    ImmutableSet<Id> childIds = without(childIdSet(parentId), childId);
+
+    HashTrie<Id, Id> newRootIds = parentIds.isEmpty() ? rootIds.with(childId, childId) : rootIds;
+
+    return new IdGraphTrie<>(id__parentIds.with(childId, parentIds), id__childIds.with(parentId,
+        childIds), newRootIds, fingerprint - arcHash(parentId, childId));
+  }
+
+  private static <Id> long arcHash(Id parentId, Id childId) {
+    return IdGraphFingerprintLib.arcHash(IdGraphFingerprintLib.idHash(parentId),
+        IdGraphFingerprintLib.idHash(childId));
+  }
+
+  private static <Id> ImmutableSet<Id> without(ImmutableSet<Id> ids, Id removedId) {
+
+    ImmutableSet.Builder<Id> builder = ImmutableSet.builder();
+
+    for (Id id : ids)
+      if (!id.equals(removedId))
+        builder.add(id);
+
+    return builder.build();
+  }
+
+}
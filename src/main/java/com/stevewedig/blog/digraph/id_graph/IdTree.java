@@ -4,6 +4,7 @@ import java.util.*;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
 
 /**
  * A tree containing ids.
@@ -28,6 +29,42 @@ public interface IdTree<Id> extends IdDag<Id> {
 
   IdTree<Id> descendantIdTree(Id id);
 
+  /**
+   * Selecting the ids in a set which are descendants of an id (a bulk isDescendantOf).
+   */
+  ImmutableSet<Id> filterDescendantIds(Set<Id> ids, Id ancestorId, boolean inclusive);
+
+  /**
+   * Getting an id's descendant id set, limited to descendants at most maxDistance arcs below it.
+   */
+  ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive, int maxDistance);
+
+  // ===========================================================================
+  // persistent updates
+  // ===========================================================================
+
+  // updates that would leave multiple roots (e.g. adding an unconnected id, or removing an arc)
+  // throw TreeCannotHaveMultipleRoots, use withMovedId to move a subtree
+
+  @Override
+  IdTree<Id> withId(Id id) throws TreeCannotHaveMultipleRoots;
+
+  @Override
+  IdTree<Id> withoutId(Id id) throws TreeCannotBeEmpty, TreeCannotHaveMultipleRoots;
+
+  @Override
+  IdTree<Id> withArc(Id parentId, Id childId) throws DagCannotHaveCycle,
+      TreeNodesCannotHaveMultipleParents, TreeCannotHaveMultipleRoots;
+
+  @Override
+  IdTree<Id> withoutArc(Id parentId, Id childId) throws TreeCannotHaveMultipleRoots;
+
+  /**
+   * A tree with an id (and its subtree) moved under a new parent id, in O(depth + log n).
+   */
+  IdTree<Id> withMovedId(Id id, Id newParentId) throws DagCannotHaveCycle,
+      TreeCannotHaveMultipleRoots;
+
   // ===========================================================================
   // root
   // ===========================================================================
@@ -55,6 +92,41 @@ public interface IdTree<Id> extends IdDag<Id> {
    */
   ImmutableList<Id> ancestorIdList(Id id, boolean inclusive);
 
+  // ===========================================================================
+  // lowest common ancestor
+  // ===========================================================================
+
+  /**
+   * The lowest common ancestor of two ids, so the deepest id that is an ancestor of both (an id is
+   * considered its own ancestor).
+   */
+  Id lowestCommonAncestor(Id id1, Id id2);
+
+  /**
+   * The lowest common ancestor of a non-empty id set.
+   */
+  Id lowestCommonAncestor(Set<Id> ids);
+
+  /**
+   * The lowest common ancestor of each pair of ids at the same position in two equal size lists.
+   */
+  ImmutableList<Id> lowestCommonAncestorList(List<Id> ids1, List<Id> ids2);
+
+  // ===========================================================================
+  // paths
+  // ===========================================================================
+
+  /**
+   * The number of arcs on the path between two ids.
+   */
+  int distance(Id id1, Id id2);
+
+  /**
+   * The ids on the path between two ids, climbing from fromId to the lowest common ancestor and
+   * then descending to toId.
+   */
+  ImmutableList<Id> pathIdList(Id fromId, Id toId);
+
   // ===========================================================================
   // depth
   // ===========================================================================
@@ -79,4 +151,16 @@ public interface IdTree<Id> extends IdDag<Id> {
    */
   Id leastDeep(Set<Id> ids);
 
+  // ===================================
+
+  /**
+   * The ids at a depth (empty if no ids are that deep).
+   */
+  ImmutableSet<Id> levelIdSet(int depth);
+
+  /**
+   * The ids at each depth, starting with the root (a level order view of the tree).
+   */
+  ImmutableList<ImmutableSet<Id>> levelIdSetList();
+
 }
@@ -18,40 +18,257 @@ public class IdTreeClass<Id> extends IdDagClass<Id> implements IdTree<Id> {
 
   public IdTreeClass(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds) {
 
-    super(idSet, id__parentIds);
+    this(idSet, id__parentIds, true);
+  }
+
+  /**
+   * Create a tree backed by multimaps, skipping validation for subtrees of trees.
+   */
+  IdTreeClass(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds,
+      boolean validate) {
+
+    super(idSet, id__parentIds, validate);
+
+    if (validate)
+      validate();
+  }
+
+  /**
+   * Create a tree backed by an IdGraphIndex (its multimaps are only built if requested).
+   */
+  public IdTreeClass(IdGraphIndex<Id> idGraphIndex) {
 
-    validate();
+    this(idGraphIndex, true);
+  }
+
+  /**
+   * Create a tree backed by an IdGraphIndex, skipping validation for subtrees of trees.
+   */
+  IdTreeClass(IdGraphIndex<Id> idGraphIndex, boolean validate) {
+
+    // the dag's cycle check is part of validateIndex
+    super(idGraphIndex, false);
+
+    if (validate)
+      validateIndex();
+  }
+
+  /**
+   * Create a tree backed by an IdGraphIndex that is already known to be a tree, with its
+   * topological sort (so nothing is validated).
+   */
+  IdTreeClass(IdGraphIndex<Id> idGraphIndex, ImmutableList<Id> topsortIdList) {
+
+    super(idGraphIndex, topsortIdList);
+  }
+
+  /**
+   * Create a tree backed by an IdGraphTrie (validated incrementally by the update that created it).
+   */
+  IdTreeClass(IdGraphTrie<Id> idGraphTrie) {
+
+    super(idGraphTrie);
   }
 
   // ===========================================================================
   // validate
   // ===========================================================================
 
+  // the root count and parent set sizes are checked in one pass over the ids (the dag has already
+  // checked for cycles)
   private void validate() throws TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
       TreeNodesCannotHaveMultipleParents {
 
-    if (idSet().size() == 0)
+    if (idSet().isEmpty())
       throw new TreeCannotBeEmpty();
 
-    if (rootIdSet().size() > 1)
-      throw new TreeCannotHaveMultipleRoots("rootIds = %s", rootIdSet());
+    int rootSize = 0;
+    Id multipleParentId = null;
 
     for (Id id : idSet()) {
 
-      ImmutableSet<Id> parentIds = id__parentIds().get(id);
+      int parentSize = id__parentIds().get(id).size();
 
-      if (parentIds.size() >= 2)
-        throw new TreeNodesCannotHaveMultipleParents("id = %s, parentIds = %s", id, parentIds);
+      if (parentSize == 0)
+        rootSize++;
+      else if (parentSize >= 2 && multipleParentId == null)
+        multipleParentId = id;
     }
+
+    if (rootSize > 1)
+      throw new TreeCannotHaveMultipleRoots("rootIds = %s", rootIdSet());
+
+    if (multipleParentId != null)
+      throw new TreeNodesCannotHaveMultipleParents("id = %s, parentIds = %s", multipleParentId,
+          id__parentIds().get(multipleParentId));
+  }
+
+  // the roots and ids with multiple parents are found while the topological sort (which checks
+  // for cycles) reads the parent counts, so each invariant is computed once, in one pass, and the
+  // sort is kept (errors have the same precedence as validating the dag first)
+  private void validateIndex() throws DagCannotHaveCycle, TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots, TreeNodesCannotHaveMultipleParents {
+
+    IdGraphIndex<Id> index = idGraphIndex();
+
+    int idSize = index.idSize();
+
+    ImmutableList.Builder<Id> sorted = ImmutableList.builder();
+    int closedCount = 0;
+
+    // ids are opened when their parents are all closed (int array used as a stack)
+    int[] open = new int[idSize];
+    int openSize = 0;
+
+    int[] parentCounts = new int[idSize];
+    int multipleParentIndex = -1;
+
+    for (int i = 0; i < idSize; i++) {
+
+      parentCounts[i] = index.parentCount(i);
+
+      if (parentCounts[i] == 0)
+        open[openSize++] = i;
+      else if (parentCounts[i] >= 2 && multipleParentIndex == -1)
+        multipleParentIndex = i;
+    }
+
+    int rootSize = openSize;
+
+    // loop: close an open id and see if that opens any of its children
+    while (openSize > 0) {
+
+      int i = open[--openSize];
+
+      sorted.add(index.id(i));
+      closedCount++;
+
+      int childCount = index.childCount(i);
+      for (int c = 0; c < childCount; c++) {
+
+        int child = index.childIndex(i, c);
+
+        if (--parentCounts[child] == 0)
+          open[openSize++] = child;
+      }
+    }
+
+    if (closedCount != idSize)
+      throw new DagCannotHaveCycle();
+
+    if (idSize == 0)
+      throw new TreeCannotBeEmpty();
+
+    if (rootSize > 1)
+      throw new TreeCannotHaveMultipleRoots("rootIds = %s", rootIdSet());
+
+    if (multipleParentIndex != -1) {
+      Id id = index.id(multipleParentIndex);
+      throw new TreeNodesCannotHaveMultipleParents("id = %s, parentIds = %s", id,
+          index.parentIdSet(id));
+    }
+
+    setTopsortIdList(sorted.build());
+  }
+
+  // only the root count can change in ways not already checked by each update
+  private static <Id> void validateRoots(IdGraphTrie<Id> trie) throws TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots {
+
+    if (trie.idSize() == 0)
+      throw new TreeCannotBeEmpty();
+
+    if (trie.rootSize() > 1)
+      throw new TreeCannotHaveMultipleRoots("rootIds = %s", trie.rootIdSet());
   }
 
   // ===========================================================================
   // ids
   // ===========================================================================
 
-  // not public because an arbitrary set of ids won't necessarily create a tree
-  private IdTree<Id> filterIdTree(Set<Id> ids) {
-    return IdTreeLib.fromParentMap(ids, filterParentMap(ids));
+  // not public because an arbitrary set of ids won't necessarily create a tree, the callers only
+  // pass ancestor closures and subtrees (which can't contain cycles or nodes with multiple parents),
+  // so only the root count is revalidated
+  private IdTree<Id> filterIdTree(Set<Id> ids) throws TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots {
+
+    if (ids.isEmpty())
+      throw new TreeCannotBeEmpty();
+
+    IdTree<Id> tree;
+
+    if (isIndexed())
+      tree = new IdTreeClass<>(idGraphIndex().filter(ids), false);
+    else {
+      ImmutableSet<Id> idSet = ImmutableSet.copyOf(ids);
+      tree = new IdTreeClass<>(idSet, filterParentMap(idSet), false);
+    }
+
+    // ids that aren't in this tree would be extra roots
+    if (tree.rootIdSet().size() > 1)
+      throw new TreeCannotHaveMultipleRoots("rootIds = %s", tree.rootIdSet());
+
+    return tree;
+  }
+
+  // ===========================================================================
+  // persistent updates
+  // ===========================================================================
+
+  @Override
+  public IdTree<Id> withId(Id id) throws TreeCannotHaveMultipleRoots {
+    return fromIdGraphTrie(idGraphTrie().withId(id));
+  }
+
+  @Override
+  public IdTree<Id> withoutId(Id id) throws TreeCannotBeEmpty, TreeCannotHaveMultipleRoots {
+    return fromIdGraphTrie(idGraphTrie().withoutId(id));
+  }
+
+  @Override
+  public IdTree<Id> withArc(Id parentId, Id childId) throws DagCannotHaveCycle,
+      TreeNodesCannotHaveMultipleParents, TreeCannotHaveMultipleRoots {
+
+    validateArc(parentId, childId);
+
+    IdGraphTrie<Id> trie = idGraphTrie().withArc(parentId, childId);
+
+    ImmutableSet<Id> parentIds = trie.parentIdSet(childId);
+
+    if (parentIds.size() >= 2)
+      throw new TreeNodesCannotHaveMultipleParents("id = %s, parentIds = %s", childId, parentIds);
+
+    return fromIdGraphTrie(trie);
+  }
+
+  @Override
+  public IdTree<Id> withoutArc(Id parentId, Id childId) throws TreeCannotHaveMultipleRoots {
+    return fromIdGraphTrie(idGraphTrie().withoutArc(parentId, childId));
+  }
+
+  @Override
+  public IdTree<Id> withMovedId(Id id, Id newParentId) throws DagCannotHaveCycle,
+      TreeCannotHaveMultipleRoots {
+
+    validateArc(newParentId, id);
+
+    IdGraphTrie<Id> trie = idGraphTrie();
+
+    for (Id oldParentId : trie.parentIdSet(id))
+      trie = trie.withoutArc(oldParentId, id);
+
+    return fromIdGraphTrie(trie.withArc(newParentId, id));
+  }
+
+  // unchanged tries return this tree, so its cached derived state is kept
+  private IdTree<Id> fromIdGraphTrie(IdGraphTrie<Id> trie) {
+
+    if (trie == idGraphTrie())
+      return this;
+
+    validateRoots(trie);
+
+    return new IdTreeClass<>(trie);
   }
 
   // ===========================================================================
@@ -88,6 +305,7 @@ public class IdTreeClass<Id> extends IdDagClass<Id> implements IdTree<Id> {
   @Override
   public ImmutableList<Id> ancestorIdList(Id id, boolean inclusive) {
 
+    // collected from the id up to the root, then reversed (inserting at the front is quadratic)
     List<Id> ancestorIds = new ArrayList<>();
     if (inclusive)
       ancestorIds.add(id);
@@ -101,21 +319,114 @@ public class IdTreeClass<Id> extends IdDagClass<Id> implements IdTree<Id> {
         break;
 
       currentId = parentId.get();
-      ancestorIds.add(0, currentId);
+      ancestorIds.add(currentId);
     }
 
-    return ImmutableList.copyOf(ancestorIds);
+    return ImmutableList.copyOf(ancestorIds).reverse();
+  }
+
+  // ===========================================================================
+  // lowest common ancestor
+  // ===========================================================================
+
+  @Override
+  public Id lowestCommonAncestor(Id id1, Id id2) {
+    return idTreeIndex().lowestCommonAncestor(id1, id2);
+  }
+
+  @Override
+  public Id lowestCommonAncestor(Set<Id> ids) {
+
+    CollectLib.assertNotEmpty(ids);
+
+    return idTreeIndex().lowestCommonAncestor(ids);
+  }
+
+  @Override
+  public ImmutableList<Id> lowestCommonAncestorList(List<Id> ids1, List<Id> ids2) {
+    return idTreeIndex().lowestCommonAncestorList(ids1, ids2);
+  }
+
+  // ===========================================================================
+  // paths
+  // ===========================================================================
+
+  @Override
+  public int distance(Id id1, Id id2) {
+    return idTreeIndex().distance(id1, id2);
+  }
+
+  @Override
+  public ImmutableList<Id> pathIdList(Id fromId, Id toId) {
+    return idTreeIndex().pathIdList(fromId, toId);
   }
 
   // ===========================================================================
   // descendants
   // ===========================================================================
 
+  @Override
+  public boolean isDescendantOf(Id id, Id potentialAncestor, boolean inclusive) {
+    return idTreeIndex().isDescendantOf(id, potentialAncestor, inclusive);
+  }
+
+  @Override
+  public boolean isDescendantWithin(Id id, Id potentialAncestor, int maxDistance) {
+
+    if (maxDistance < 0)
+      throw new AssertionError("maxDistance was negative, maxDistance = " + maxDistance);
+
+    if (!isDescendantOf(id, potentialAncestor, true))
+      return false;
+
+    return id.equals(potentialAncestor) || depth(id) - depth(potentialAncestor) <= maxDistance;
+  }
+
+  @Override
+  public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive) {
+    return idTreeIndex().descendantIdSet(id, inclusive);
+  }
+
+  @Override
+  public ImmutableSet<Id> filterDescendantIds(Set<Id> ids, Id ancestorId, boolean inclusive) {
+    return idTreeIndex().filterDescendantIds(ids, ancestorId, inclusive);
+  }
+
+  @Override
+  public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive, int maxDistance) {
+    return idTreeIndex().descendantIdSet(id, inclusive, maxDistance);
+  }
+
+  // ===================================
+
   @Override
   public IdTree<Id> descendantIdTree(Id id) {
     return filterIdTree(descendantIdSet(id, true));
   }
 
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  // pre-order interval labels, computed once on first use
+  private IdTreeIndex<Id> idTreeIndex() {
+    if (idTreeIndex == null)
+      synchronized (this) {
+        if (idTreeIndex == null)
+          idTreeIndex = new IdTreeIndex<Id>(idGraphIndex(), rootId());
+      }
+    return idTreeIndex;
+  }
+
+  private volatile IdTreeIndex<Id> idTreeIndex;
+
+  // descendant queries use the pre-order labels
+  @Override
+  public void warm() {
+    super.warm();
+    idTreeIndex();
+  }
+
   // ===========================================================================
   // root
   // ===========================================================================
@@ -131,31 +442,16 @@ public class IdTreeClass<Id> extends IdDagClass<Id> implements IdTree<Id> {
 
   @Override
   public int depth(Id id) {
-    return ancestorIdList(id, false).size();
+    return idTreeIndex().depth(id);
   }
 
   // ===================================
 
   @Override
   public int maxDepth() {
-    if (maxDepth == null) {
-
-      maxDepth = 0;
-
-      for (Id id : idSet()) {
-
-        int depth = depth(id);
-
-        if (depth > maxDepth)
-          maxDepth = depth;
-      }
-    }
-
-    return maxDepth;
+    return idTreeIndex().maxDepth();
   }
 
-  private Integer maxDepth;
-
   // ===================================
 
   @Override
@@ -203,4 +499,16 @@ public class IdTreeClass<Id> extends IdDagClass<Id> implements IdTree<Id> {
 
   }
 
+  // ===================================
+
+  @Override
+  public ImmutableSet<Id> levelIdSet(int depth) {
+    return idTreeIndex().levelIdSet(depth);
+  }
+
+  @Override
+  public ImmutableList<ImmutableSet<Id>> levelIdSetList() {
+    return idTreeIndex().levelIdSetList();
+  }
+
 }
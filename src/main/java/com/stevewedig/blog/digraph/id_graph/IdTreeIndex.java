@@ -0,0 +1,460 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * Int-indexed labels for an IdTree, computed once from its IdGraphIndex.
+ *
+ * Ids are numbered in pre-order (enter), and each id also records the last pre-order number in its
+ * subtree (exit). An id's descendants are exactly the ids whose enter number falls within its
+ * [enter, exit] interval, so ancestor/descendant checks are two integer comparisons and subtrees
+ * are contiguous slices of the pre-order.
+ */
+class IdTreeIndex<Id> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final IdGraphIndex<Id> idGraphIndex;
+
+  // index -> pre-order number
+  private final int[] enter;
+
+  // index -> last pre-order number in the index's subtree
+  private final int[] exit;
+
+  // pre-order number -> index
+  private final int[] preorder;
+
+  // index -> parent index (the root is its own parent)
+  private final int[] parent;
+
+  // index -> number of ancestors
+  private final int[] depth;
+
+  // level order: indexes grouped by depth, in pre-order within each depth
+  private final int[] levelOrder;
+
+  // depth -> start of the depth's indexes in levelOrder (with a final entry for the end)
+  private final int[] levelOffsets;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  public IdTreeIndex(IdGraphIndex<Id> idGraphIndex, Id rootId) {
+
+    this.idGraphIndex = idGraphIndex;
+
+    int idSize = idGraphIndex.idSize();
+
+    enter = new int[idSize];
+    exit = new int[idSize];
+    preorder = new int[idSize];
+    parent = new int[idSize];
+    depth = new int[idSize];
+
+    // iterative depth first traversal, so deep trees can't overflow the call stack
+    int[] open = new int[idSize];
+    int openSize = 0;
+    int counter = 0;
+
+    int root = idGraphIndex.index(rootId);
+    parent[root] = root;
+
+    open[openSize++] = root;
+
+    while (openSize > 0) {
+
+      int index = open[--openSize];
+
+      enter[index] = counter;
+      preorder[counter++] = index;
+
+      // parents are entered before their children
+      if (index != root) {
+        parent[index] = idGraphIndex.parentIndex(index, 0);
+        depth[index] = depth[parent[index]] + 1;
+      }
+
+      // reversed so the first child is entered first
+      for (int i = idGraphIndex.childCount(index) - 1; i >= 0; i--)
+        open[openSize++] = idGraphIndex.childIndex(index, i);
+    }
+
+    // subtree sizes accumulate from the end of the pre-order (children before their parent)
+    int[] subtreeSize = new int[idSize];
+
+    for (int n = idSize - 1; n >= 0; n--) {
+
+      int index = preorder[n];
+
+      subtreeSize[index]++;
+
+      if (index != root)
+        subtreeSize[parent[index]] += subtreeSize[index];
+    }
+
+    for (int index = 0; index < idSize; index++)
+      exit[index] = enter[index] + subtreeSize[index] - 1;
+
+    // counting sort of the pre-order by depth, which keeps each depth in pre-order
+    int maxDepth = 0;
+    for (int index = 0; index < idSize; index++)
+      if (depth[index] > maxDepth)
+        maxDepth = depth[index];
+
+    levelOffsets = new int[maxDepth + 2];
+
+    for (int index = 0; index < idSize; index++)
+      levelOffsets[depth[index] + 1]++;
+
+    for (int d = 0; d <= maxDepth; d++)
+      levelOffsets[d + 1] += levelOffsets[d];
+
+    levelOrder = new int[idSize];
+
+    int[] levelFill = Arrays.copyOf(levelOffsets, maxDepth + 1);
+
+    for (int n = 0; n < idSize; n++) {
+      int index = preorder[n];
+      levelOrder[levelFill[depth[index]]++] = index;
+    }
+  }
+
+  // ===========================================================================
+  // descendants
+  // ===========================================================================
+
+  /**
+   * Whether an id is a descendant of another id.
+   */
+  public boolean isDescendantOf(Id id, Id potentialAncestor, boolean inclusive) {
+
+    if (!idGraphIndex.containsId(id) || !idGraphIndex.containsId(potentialAncestor))
+      return inclusive && id.equals(potentialAncestor);
+
+    return isDescendantOf(idGraphIndex.index(id), idGraphIndex.index(potentialAncestor),
+        inclusive);
+  }
+
+  /**
+   * Whether the id at an index is a descendant of the id at another index.
+   */
+  public boolean isDescendantOf(int index, int potentialAncestor, boolean inclusive) {
+
+    if (index == potentialAncestor)
+      return inclusive;
+
+    return enter[potentialAncestor] <= enter[index] && enter[index] <= exit[potentialAncestor];
+  }
+
+  // ===================================
+
+  /**
+   * Getting an id's descendant id set, as a slice of the pre-order.
+   */
+  public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive) {
+
+    if (!idGraphIndex.containsId(id))
+      return inclusive ? ImmutableSet.of(id) : ImmutableSet.<Id>of();
+
+    int index = idGraphIndex.index(id);
+
+    ImmutableSet.Builder<Id> descendantIds = ImmutableSet.builder();
+
+    for (int n = inclusive ? enter[index] : enter[index] + 1; n <= exit[index]; n++)
+      descendantIds.add(idGraphIndex.id(preorder[n]));
+
+    return descendantIds.build();
+  }
+
+  // ===================================
+
+  /**
+   * Selecting the ids in a set which are descendants of an id.
+   */
+  public ImmutableSet<Id> filterDescendantIds(Set<Id> ids, Id ancestorId, boolean inclusive) {
+
+    ImmutableSet.Builder<Id> descendantIds = ImmutableSet.builder();
+
+    if (!idGraphIndex.containsId(ancestorId)) {
+      if (inclusive && ids.contains(ancestorId))
+        descendantIds.add(ancestorId);
+      return descendantIds.build();
+    }
+
+    int ancestor = idGraphIndex.index(ancestorId);
+
+    for (Id id : ids)
+      if (idGraphIndex.containsId(id)
+          && isDescendantOf(idGraphIndex.index(id), ancestor, inclusive))
+        descendantIds.add(id);
+
+    return descendantIds.build();
+  }
+
+  // ===================================
+
+  /**
+   * Getting an id's descendant id set, limited to descendants at most maxDistance arcs below it.
+   *
+   * Within a depth, an id's descendants are a contiguous run of the level order (found by binary
+   * search), so the cost is proportional to the number of depths searched plus the result size.
+   */
+  public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive, int maxDistance) {
+
+    if (maxDistance < 0)
+      throw new AssertionError("maxDistance was negative, maxDistance = " + maxDistance);
+
+    if (!idGraphIndex.containsId(id))
+      return inclusive ? ImmutableSet.of(id) : ImmutableSet.<Id>of();
+
+    int index = idGraphIndex.index(id);
+
+    ImmutableSet.Builder<Id> descendantIds = ImmutableSet.builder();
+
+    int firstDepth = inclusive ? depth[index] : depth[index] + 1;
+    // compared before adding, so large distances (Integer.MAX_VALUE for unbounded) don't overflow
+    int lastDepth =
+        maxDistance >= maxDepth() - depth[index] ? maxDepth() : depth[index] + maxDistance;
+
+    for (int d = firstDepth; d <= lastDepth; d++) {
+
+      for (int n = firstInSubtree(d, index); n < levelOffsets[d + 1]; n++) {
+
+        int descendant = levelOrder[n];
+
+        if (enter[descendant] > exit[index])
+          break;
+
+        descendantIds.add(idGraphIndex.id(descendant));
+      }
+    }
+
+    return descendantIds.build();
+  }
+
+  // the position of the first index at a depth entered no earlier than an ancestor index
+  private int firstInSubtree(int d, int ancestor) {
+
+    int low = levelOffsets[d];
+    int high = levelOffsets[d + 1];
+
+    while (low < high) {
+
+      int middle = (low + high) >>> 1;
+
+      if (enter[levelOrder[middle]] < enter[ancestor])
+        low = middle + 1;
+      else
+        high = middle;
+    }
+
+    return low;
+  }
+
+  // ===========================================================================
+  // depth
+  // ===========================================================================
+
+  /**
+   * The number of ancestors an id has.
+   */
+  public int depth(Id id) {
+    return depth[idGraphIndex.index(id)];
+  }
+
+  /**
+   * The maximum depth in the tree.
+   */
+  public int maxDepth() {
+    return levelOffsets.length - 2;
+  }
+
+  // ===================================
+
+  /**
+   * The ids at a depth, in pre-order (empty if no ids are that deep).
+   */
+  public ImmutableSet<Id> levelIdSet(int d) {
+
+    if (d < 0 || d > maxDepth())
+      return ImmutableSet.of();
+
+    ImmutableSet.Builder<Id> levelIds = ImmutableSet.builder();
+
+    for (int n = levelOffsets[d]; n < levelOffsets[d + 1]; n++)
+      levelIds.add(idGraphIndex.id(levelOrder[n]));
+
+    return levelIds.build();
+  }
+
+  /**
+   * The ids at each depth, starting with the root.
+   */
+  public ImmutableList<ImmutableSet<Id>> levelIdSetList() {
+
+    ImmutableList.Builder<ImmutableSet<Id>> levels = ImmutableList.builder();
+
+    for (int d = 0; d <= maxDepth(); d++)
+      levels.add(levelIdSet(d));
+
+    return levels.build();
+  }
+
+  // ===========================================================================
+  // lowest common ancestor
+  // ===========================================================================
+
+  /**
+   * The lowest common ancestor of two ids (inclusive, so an id is its own ancestor).
+   */
+  public Id lowestCommonAncestor(Id id1, Id id2) {
+    return idGraphIndex.id(lowestCommonAncestor(idGraphIndex.index(id1), idGraphIndex.index(id2)));
+  }
+
+  /**
+   * The lowest common ancestor of a non-empty id set.
+   */
+  public Id lowestCommonAncestor(Set<Id> ids) {
+
+    Iterator<Id> iterator = ids.iterator();
+
+    int ancestor = idGraphIndex.index(iterator.next());
+
+    while (iterator.hasNext())
+      ancestor = lowestCommonAncestor(ancestor, idGraphIndex.index(iterator.next()));
+
+    return idGraphIndex.id(ancestor);
+  }
+
+  /**
+   * The lowest common ancestor of each pair of ids at the same position in two lists.
+   */
+  public ImmutableList<Id> lowestCommonAncestorList(List<Id> ids1, List<Id> ids2) {
+
+    if (ids1.size() != ids2.size())
+      throw new AssertionError("list sizes were not equal, sizes were " + ids1.size() + " and "
+          + ids2.size());
+
+    ImmutableList.Builder<Id> ancestors = ImmutableList.builder();
+
+    for (int i = 0; i < ids1.size(); i++)
+      ancestors.add(lowestCommonAncestor(ids1.get(i), ids2.get(i)));
+
+    return ancestors.build();
+  }
+
+  // ===================================
+
+  // binary lifting: climb from index1 in power of 2 jumps while staying below the answer
+  private int lowestCommonAncestor(int index1, int index2) {
+
+    if (isDescendantOf(index2, index1, true))
+      return index1;
+
+    if (isDescendantOf(index1, index2, true))
+      return index2;
+
+    int[][] jumps = jumps();
+
+    for (int k = jumps.length - 1; k >= 0; k--) {
+
+      int jump = jumps[k][index1];
+
+      if (!isDescendantOf(index2, jump, true))
+        index1 = jump;
+    }
+
+    return parent[index1];
+  }
+
+  // ===================================
+
+  // jumps[k][index] is the index's 2^k-th ancestor (or the root), built on first use
+  private int[][] jumps() {
+    if (jumps == null)
+      synchronized (this) {
+        if (jumps == null) {
+
+          int idSize = parent.length;
+
+          int levels = 1;
+          while ((1 << levels) < idSize)
+            levels++;
+
+          int[][] table = new int[levels][];
+
+          table[0] = parent;
+
+          for (int k = 1; k < levels; k++) {
+
+            int[] previous = table[k - 1];
+            int[] current = new int[idSize];
+
+            for (int index = 0; index < idSize; index++)
+              current[index] = previous[previous[index]];
+
+            table[k] = current;
+          }
+
+          jumps = table;
+        }
+      }
+    return jumps;
+  }
+
+  private volatile int[][] jumps;
+
+  // ===========================================================================
+  // paths
+  // ===========================================================================
+
+  /**
+   * The number of arcs on the path between two ids.
+   */
+  public int distance(Id id1, Id id2) {
+
+    int index1 = idGraphIndex.index(id1);
+    int index2 = idGraphIndex.index(id2);
+
+    int ancestor = lowestCommonAncestor(index1, index2);
+
+    return depth[index1] + depth[index2] - 2 * depth[ancestor];
+  }
+
+  /**
+   * The ids on the path between two ids, starting with fromId, climbing to their lowest common
+   * ancestor, and descending to toId.
+   */
+  public ImmutableList<Id> pathIdList(Id fromId, Id toId) {
+
+    int from = idGraphIndex.index(fromId);
+    int to = idGraphIndex.index(toId);
+
+    int ancestor = lowestCommonAncestor(from, to);
+
+    ImmutableList.Builder<Id> path = ImmutableList.builder();
+
+    for (int index = from; index != ancestor; index = parent[index])
+      path.add(idGraphIndex.id(index));
+
+    path.add(idGraphIndex.id(ancestor));
+
+    int[] descending = new int[depth[to] - depth[ancestor]];
+
+    int n = descending.length;
+    for (int index = to; index != ancestor; index = parent[index])
+      descending[--n] = index;
+
+    for (int index : descending)
+      path.add(idGraphIndex.id(index));
+
+    return path.build();
+  }
+
+}
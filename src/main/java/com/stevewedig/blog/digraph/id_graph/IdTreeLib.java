@@ -83,4 +83,36 @@ public abstract class IdTreeLib {
     return fromChildMap(MultimapLib.of(alternatingIdsAndChildIds));
   }
 
+  // ===========================================================================
+  // indexed (compressed sparse row) backend
+  // ===========================================================================
+
+  /**
+   * Create an IdTree backed by an IdGraphIndex.
+   */
+  public static <Id> IdTree<Id> fromIndex(IdGraphIndex<Id> idGraphIndex) {
+    return new IdTreeClass<Id>(idGraphIndex);
+  }
+
+  /**
+   * Create an IdTree backed by an IdGraphIndex that is already known to be a tree (for example one loaded from a validated snapshot), skipping validation entirely.
+   */
+  public static <Id> IdTree<Id> fromTrustedIndex(IdGraphIndex<Id> idGraphIndex) {
+    return new IdTreeClass<Id>(idGraphIndex, false);
+  }
+
+  /**
+   * Create an index-backed IdTree from the tree's id set and a mapping from id to parent ids (specified as a multimap).
+   */
+  public static <Id> IdTree<Id> indexedFromParentMap(Set<Id> idSet, Multimap<Id, Id> id__parentIds) {
+    return fromIndex(IdGraphIndex.fromParentMap(idSet, id__parentIds));
+  }
+
+  /**
+   * Create an index-backed IdTree from the tree's id set and a mapping from id to child ids (specified as a multimap).
+   */
+  public static <Id> IdTree<Id> indexedFromChildMap(Set<Id> idSet, Multimap<Id, Id> id__childIds) {
+    return fromIndex(IdGraphIndex.fromChildMap(idSet, id__childIds));
+  }
+
 }
@@ -0,0 +1,31 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.util.IntIterator;
+
+/**
+ * A dag containing int ids (see IntIdGraph).
+ */
+public interface IntIdDag extends IntIdGraph {
+
+  // ===========================================================================
+  // topological sort
+  // ===========================================================================
+
+  /**
+   * A topological sort of the ids (parents before children, a copy).
+   */
+  int[] topsortIdArray();
+
+  /**
+   * Iterating a topological sort of the ids.
+   */
+  IntIterator topsortIdIterator();
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  IdDag<Integer> idGraph();
+
+}
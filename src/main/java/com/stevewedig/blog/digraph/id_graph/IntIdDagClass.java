@@ -0,0 +1,55 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
+import com.stevewedig.blog.util.IntIterator;
+
+/**
+ * An implementation of IntIdDag.
+ */
+public class IntIdDagClass extends IntIdGraphClass implements IntIdDag {
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a dag (see IntIdGraphClass), validated unless it is already known to be a dag.
+   */
+  IntIdDagClass(int[] ids, int[] parentOffsets, int[] parentIndexes, boolean validate)
+      throws DagCannotHaveCycle {
+
+    super(ids, parentOffsets, parentIndexes);
+
+    if (validate)
+      validateDag();
+  }
+
+  // ===========================================================================
+  // topological sort
+  // ===========================================================================
+
+  @Override
+  public int[] topsortIdArray() {
+    return super.topsortIdArray();
+  }
+
+  @Override
+  public IntIterator topsortIdIterator() {
+    return super.topsortIdIterator();
+  }
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  public IdDag<Integer> idGraph() {
+    return (IdDag<Integer>) super.idGraph();
+  }
+
+  @Override
+  IdGraph<Integer> createIdGraph(IdGraphIndex<Integer> idGraphIndex) {
+    return new IdDagClass<Integer>(idGraphIndex, topsortIdList());
+  }
+
+}
@@ -0,0 +1,182 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.errors.NotContained;
+import com.stevewedig.blog.util.*;
+
+/**
+ * A digraph containing int ids, specialized so ids, arcs, and traversals are never boxed.
+ *
+ * Ids are kept sorted in an int array, and arcs are int arrays of indexes into it, so each id costs
+ * 4 bytes plus 8 bytes per arc. Methods throw NotContained for ids that aren't in the graph.
+ */
+public interface IntIdGraph {
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  /**
+   * The number of ids.
+   */
+  int idSize();
+
+  /**
+   * The number of arcs.
+   */
+  int arcSize();
+
+  boolean containsId(int id);
+
+  /**
+   * The ids in ascending order (a copy).
+   */
+  int[] idArray();
+
+  /**
+   * Iterating the ids in ascending order.
+   */
+  IntIterator idIterator();
+
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  /**
+   * An id's index, its position in idArray.
+   */
+  int index(int id) throws NotContained;
+
+  /**
+   * The id at an index.
+   */
+  int id(int index);
+
+  // ===========================================================================
+  // parents
+  // ===========================================================================
+
+  /**
+   * Whether an id is a parent of another id.
+   */
+  boolean isParentOf(int id, int potentialChild);
+
+  int parentCount(int id);
+
+  /**
+   * Getting an id's parent ids, in ascending order.
+   */
+  int[] parentIdArray(int id);
+
+  // ===========================================================================
+  // children
+  // ===========================================================================
+
+  /**
+   * Whether an id is a child of another id.
+   */
+  boolean isChildOf(int id, int potentialParent);
+
+  int childCount(int id);
+
+  /**
+   * Getting an id's child ids, in ascending order.
+   */
+  int[] childIdArray(int id);
+
+  // ===========================================================================
+  // ancestors
+  // ===========================================================================
+
+  /**
+   * Whether an id is an ancestor of another id.
+   */
+  boolean isAncestorOf(int id, int potentialDescendant, boolean inclusive);
+
+  /**
+   * Iterating an id's ancestor ids, depth first (the same order as IdGraph.ancestorIdIterable).
+   */
+  IntIterator ancestorIdIterator(int id, boolean inclusive);
+
+  /**
+   * Iterating some ids' ancestor ids, depth first.
+   */
+  IntIterator ancestorIdIterator(int[] ids, boolean inclusive);
+
+  /**
+   * Getting an id's ancestor ids, depth first.
+   */
+  int[] ancestorIdArray(int id, boolean inclusive);
+
+  // ===========================================================================
+  // descendants
+  // ===========================================================================
+
+  /**
+   * Whether an id is a descendant of another id.
+   */
+  boolean isDescendantOf(int id, int potentialAncestor, boolean inclusive);
+
+  /**
+   * Iterating an id's descendant ids, depth first (the same order as
+   * IdGraph.descendantIdIterable).
+   */
+  IntIterator descendantIdIterator(int id, boolean inclusive);
+
+  /**
+   * Iterating some ids' descendant ids, depth first.
+   */
+  IntIterator descendantIdIterator(int[] ids, boolean inclusive);
+
+  /**
+   * Getting an id's descendant ids, depth first.
+   */
+  int[] descendantIdArray(int id, boolean inclusive);
+
+  // ===========================================================================
+  // roots
+  // ===========================================================================
+
+  /**
+   * Whether an id is a root (has no parents).
+   */
+  boolean isRoot(int id);
+
+  /**
+   * The root ids, in ascending order.
+   */
+  int[] rootIdArray();
+
+  // ===========================================================================
+  // leaves
+  // ===========================================================================
+
+  /**
+   * Whether an id is a leaf (has no children).
+   */
+  boolean isLeaf(int id);
+
+  /**
+   * The leaf ids, in ascending order.
+   */
+  int[] leafIdArray();
+
+  // ===========================================================================
+  // cycles
+  // ===========================================================================
+
+  /**
+   * Whether the graph contains a cycle.
+   */
+  boolean containsCycle();
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  /**
+   * The generic graph with the same ids and arcs. It shares this graph's arrays (ids are boxed as
+   * they are read), so converting doesn't copy any arcs.
+   */
+  IdGraph<Integer> idGraph();
+
+}
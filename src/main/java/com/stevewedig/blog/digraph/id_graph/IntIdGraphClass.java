@@ -0,0 +1,401 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.google.common.primitives.*;
+import com.stevewedig.blog.errors.NotContained;
+import com.stevewedig.blog.util.*;
+
+/**
+ * An implementation of IntIdGraph.
+ */
+public class IntIdGraphClass extends PrimitiveIdGraphClass implements IntIdGraph {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  // sorted, without duplicates
+  private final int[] ids;
+
+  // the arrays are compared as lists, so equal graphs are equal
+  @Override
+  public Object[] fields() {
+    return array("ids", Ints.asList(ids), "parentOffsets", Ints.asList(parentOffsets),
+        "parentIndexes", Ints.asList(parentIndexes));
+  }
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a graph from its sorted ids (without duplicates) and its parent arcs (see
+   * PrimitiveIdGraphClass). The arrays are used directly, not copied.
+   */
+  IntIdGraphClass(int[] ids, int[] parentOffsets, int[] parentIndexes) {
+
+    super(parentOffsets, parentIndexes);
+
+    this.ids = ids;
+  }
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  @Override
+  Object boxedId(int index) {
+    return ids[index];
+  }
+
+  @Override
+  public boolean containsId(int id) {
+    return Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  @Override
+  public int[] idArray() {
+    return ids.clone();
+  }
+
+  @Override
+  public IntIterator idIterator() {
+    return new IntIterator() {
+
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < ids.length;
+      }
+
+      @Override
+      public int nextInt() {
+
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        return ids[index++];
+      }
+    };
+  }
+
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  @Override
+  public int index(int id) throws NotContained {
+
+    int index = Arrays.binarySearch(ids, id);
+
+    if (index < 0)
+      throw new NotContained("id = %s", id);
+
+    return index;
+  }
+
+  @Override
+  public int id(int index) {
+    return ids[index];
+  }
+
+  // ===================================
+
+  private int[] indexes(int[] ids) {
+
+    int[] indexes = new int[ids.length];
+
+    for (int i = 0; i < ids.length; i++)
+      indexes[i] = index(ids[i]);
+
+    return indexes;
+  }
+
+  private int[] ids(int[] indexes, int from, int to) {
+
+    int[] ids = new int[to - from];
+
+    for (int k = from; k < to; k++)
+      ids[k - from] = this.ids[indexes[k]];
+
+    return ids;
+  }
+
+  private int[] ids(IntIterator indexes) {
+
+    int[] ids = new int[16];
+    int size = 0;
+
+    while (indexes.hasNext()) {
+
+      if (size == ids.length)
+        ids = Arrays.copyOf(ids, size * 2);
+
+      ids[size++] = this.ids[indexes.nextInt()];
+    }
+
+    return Arrays.copyOf(ids, size);
+  }
+
+  private IntIterator idIterator(final IntIterator indexes) {
+    return new IntIterator() {
+
+      @Override
+      public boolean hasNext() {
+        return indexes.hasNext();
+      }
+
+      @Override
+      public int nextInt() {
+        return ids[indexes.nextInt()];
+      }
+    };
+  }
+
+  // ===========================================================================
+  // parents
+  // ===========================================================================
+
+  @Override
+  public boolean isParentOf(int id, int potentialChild) {
+    return indexIsParentOf(index(id), index(potentialChild));
+  }
+
+  @Override
+  public int parentCount(int id) {
+    return indexParentCount(index(id));
+  }
+
+  @Override
+  public int[] parentIdArray(int id) {
+
+    int index = index(id);
+
+    return ids(parentIndexes, parentOffsets[index], parentOffsets[index + 1]);
+  }
+
+  // ===========================================================================
+  // children
+  // ===========================================================================
+
+  @Override
+  public boolean isChildOf(int id, int potentialParent) {
+    return isParentOf(potentialParent, id);
+  }
+
+  @Override
+  public int childCount(int id) {
+    return indexChildCount(index(id));
+  }
+
+  @Override
+  public int[] childIdArray(int id) {
+
+    int index = index(id);
+
+    return ids(childIndexes, childOffsets[index], childOffsets[index + 1]);
+  }
+
+  // ===========================================================================
+  // ancestors
+  // ===========================================================================
+
+  @Override
+  public boolean isAncestorOf(int id, int potentialDescendant, boolean inclusive) {
+    return isDescendantOf(potentialDescendant, id, inclusive);
+  }
+
+  @Override
+  public IntIterator ancestorIdIterator(int id, boolean inclusive) {
+    return ancestorIdIterator(new int[] {id}, inclusive);
+  }
+
+  @Override
+  public IntIterator ancestorIdIterator(int[] ids, boolean inclusive) {
+    return idIterator(traverse(indexes(ids), inclusive, true));
+  }
+
+  @Override
+  public int[] ancestorIdArray(int id, boolean inclusive) {
+    return ids(traverse(new int[] {index(id)}, inclusive, true));
+  }
+
+  // ===========================================================================
+  // descendants
+  // ===========================================================================
+
+  @Override
+  public boolean isDescendantOf(int id, int potentialAncestor, boolean inclusive) {
+    return indexIsDescendantOf(index(id), index(potentialAncestor), inclusive);
+  }
+
+  @Override
+  public IntIterator descendantIdIterator(int id, boolean inclusive) {
+    return descendantIdIterator(new int[] {id}, inclusive);
+  }
+
+  @Override
+  public IntIterator descendantIdIterator(int[] ids, boolean inclusive) {
+    return idIterator(traverse(indexes(ids), inclusive, false));
+  }
+
+  @Override
+  public int[] descendantIdArray(int id, boolean inclusive) {
+    return ids(traverse(new int[] {index(id)}, inclusive, false));
+  }
+
+  // ===========================================================================
+  // roots
+  // ===========================================================================
+
+  @Override
+  public boolean isRoot(int id) {
+    return indexParentCount(index(id)) == 0;
+  }
+
+  @Override
+  public int[] rootIdArray() {
+
+    int[] rootIndexes = rootIndexes();
+
+    return ids(rootIndexes, 0, rootIndexes.length);
+  }
+
+  // ===========================================================================
+  // leaves
+  // ===========================================================================
+
+  @Override
+  public boolean isLeaf(int id) {
+    return indexChildCount(index(id)) == 0;
+  }
+
+  @Override
+  public int[] leafIdArray() {
+
+    int[] leafIndexes = leafIndexes();
+
+    return ids(leafIndexes, 0, leafIndexes.length);
+  }
+
+  // ===========================================================================
+  // topological sort (used by IntIdDagClass)
+  // ===========================================================================
+
+  int[] topsortIdArray() {
+
+    int[] topsortIndexes = topsortIndexes();
+
+    return ids(topsortIndexes, 0, topsortIndexes.length);
+  }
+
+  IntIterator topsortIdIterator() {
+
+    final int[] topsortIndexes = topsortIndexes();
+
+    return idIterator(new IntIterator() {
+
+      private int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < topsortIndexes.length;
+      }
+
+      @Override
+      public int nextInt() {
+
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        return topsortIndexes[i++];
+      }
+    });
+  }
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  public IdGraph<Integer> idGraph() {
+    if (idGraph == null)
+      synchronized (this) {
+        if (idGraph == null)
+          idGraph = createIdGraph(IdGraphIndex.fromCsr(new IntIdTable(ids), parentOffsets,
+              parentIndexes, childOffsets, childIndexes));
+      }
+    return idGraph;
+  }
+
+  private volatile IdGraph<Integer> idGraph;
+
+  // overridden by dags and trees, which pass on their topological sort so it isn't recomputed
+  IdGraph<Integer> createIdGraph(IdGraphIndex<Integer> idGraphIndex) {
+    return new IdGraphClass<Integer>(idGraphIndex);
+  }
+
+  ImmutableList<Integer> topsortIdList() {
+    return ImmutableList.copyOf(Ints.asList(topsortIdArray()));
+  }
+
+  // ===================================
+
+  // a sorted int array, ids are only boxed as they are read
+  private static class IntIdTable extends IdGraphIndex.IdTable<Integer> {
+
+    private final int[] ids;
+
+    public IntIdTable(int[] ids) {
+      this.ids = ids;
+    }
+
+    @Override
+    int size() {
+      return ids.length;
+    }
+
+    @Override
+    Integer id(int index) {
+      return ids[index];
+    }
+
+    @Override
+    int index(Integer id) {
+
+      if (id == null)
+        return -1;
+
+      int index = Arrays.binarySearch(ids, id);
+      return index < 0 ? -1 : index;
+    }
+
+    @Override
+    ImmutableList<Integer> idList() {
+      if (idList == null)
+        synchronized (this) {
+          if (idList == null)
+            idList = ImmutableList.copyOf(Ints.asList(ids));
+        }
+      return idList;
+    }
+
+    private volatile ImmutableList<Integer> idList;
+
+    @Override
+    ImmutableSet<Integer> idSet() {
+      if (idSet == null)
+        synchronized (this) {
+          if (idSet == null)
+            idSet = ImmutableSet.copyOf(idList());
+        }
+      return idSet;
+    }
+
+    private volatile ImmutableSet<Integer> idSet;
+  }
+
+}
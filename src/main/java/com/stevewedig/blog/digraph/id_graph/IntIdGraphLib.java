@@ -0,0 +1,224 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.Arrays;
+
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.util.StrLib;
+
+/**
+ * A library for creating IntIdGraphs, IntIdDags, and IntIdTrees.
+ */
+public abstract class IntIdGraphLib {
+
+  // ===========================================================================
+  // fromArcs
+  // ===========================================================================
+
+  /**
+   * Create a IntIdGraph from its ids and arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), duplicate ids and arcs are dropped.
+   */
+  public static IntIdGraph fromArcs(int[] ids, int[] arcParentIds, int[] arcChildIds)
+      throws GraphHadUnexpectedIds {
+
+    Parts parts = parts(ids, arcParentIds, arcChildIds);
+
+    return new IntIdGraphClass(parts.ids, parts.parentOffsets, parts.parentIndexes);
+  }
+
+  /**
+   * Create a IntIdGraph from its arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), assuming all ids are in an arc.
+   */
+  public static IntIdGraph fromArcs(int[] arcParentIds, int[] arcChildIds) {
+    return fromArcs(concat(arcParentIds, arcChildIds), arcParentIds, arcChildIds);
+  }
+
+  // ===================================
+
+  /**
+   * Create a IntIdDag from its ids and arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), duplicate ids and arcs are dropped.
+   */
+  public static IntIdDag dagFromArcs(int[] ids, int[] arcParentIds, int[] arcChildIds)
+      throws GraphHadUnexpectedIds, DagCannotHaveCycle {
+
+    Parts parts = parts(ids, arcParentIds, arcChildIds);
+
+    return new IntIdDagClass(parts.ids, parts.parentOffsets, parts.parentIndexes, true);
+  }
+
+  /**
+   * Create a IntIdDag from its arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), assuming all ids are in an arc.
+   */
+  public static IntIdDag dagFromArcs(int[] arcParentIds, int[] arcChildIds)
+      throws DagCannotHaveCycle {
+    return dagFromArcs(concat(arcParentIds, arcChildIds), arcParentIds, arcChildIds);
+  }
+
+  // ===================================
+
+  /**
+   * Create a IntIdTree from its ids and arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), duplicate ids and arcs are dropped.
+   */
+  public static IntIdTree treeFromArcs(int[] ids, int[] arcParentIds, int[] arcChildIds)
+      throws GraphHadUnexpectedIds, DagCannotHaveCycle, TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots, TreeNodesCannotHaveMultipleParents {
+
+    Parts parts = parts(ids, arcParentIds, arcChildIds);
+
+    return new IntIdTreeClass(parts.ids, parts.parentOffsets, parts.parentIndexes, true);
+  }
+
+  /**
+   * Create a IntIdTree from its arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), assuming all ids are in an arc.
+   */
+  public static IntIdTree treeFromArcs(int[] arcParentIds, int[] arcChildIds)
+      throws DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+    return treeFromArcs(concat(arcParentIds, arcChildIds), arcParentIds, arcChildIds);
+  }
+
+  // ===========================================================================
+  // fromIdGraph
+  // ===========================================================================
+
+  /**
+   * Create a IntIdGraph with the same ids and arcs as an IdGraph (reading its index, so no multimaps are built).
+   */
+  public static IntIdGraph fromIdGraph(IdGraph<Integer> idGraph) {
+
+    Parts parts = parts(idGraph.idGraphIndex());
+
+    return new IntIdGraphClass(parts.ids, parts.parentOffsets, parts.parentIndexes);
+  }
+
+  /**
+   * Create a IntIdDag with the same ids and arcs as an IdDag (which isn't validated again).
+   */
+  public static IntIdDag fromIdDag(IdDag<Integer> idDag) {
+
+    Parts parts = parts(idDag.idGraphIndex());
+
+    return new IntIdDagClass(parts.ids, parts.parentOffsets, parts.parentIndexes, false);
+  }
+
+  /**
+   * Create a IntIdTree with the same ids and arcs as an IdTree (which isn't validated again).
+   */
+  public static IntIdTree fromIdTree(IdTree<Integer> idTree) {
+
+    Parts parts = parts(idTree.idGraphIndex());
+
+    return new IntIdTreeClass(parts.ids, parts.parentOffsets, parts.parentIndexes, false);
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  // sorted ids and parent arcs between their indexes
+  private static class Parts {
+
+    private final int[] ids;
+    private final int[] parentOffsets;
+    private final int[] parentIndexes;
+
+    public Parts(int[] ids, int[] arcParents, int[] arcChildren, int arcSize) {
+
+      this.ids = ids;
+
+      int[][] parentCsr = IdGraphIndex.parentCsr(ids.length, arcParents, arcChildren, arcSize);
+
+      parentOffsets = parentCsr[0];
+      parentIndexes = parentCsr[1];
+    }
+  }
+
+  private static Parts parts(int[] ids, int[] arcParentIds, int[] arcChildIds)
+      throws GraphHadUnexpectedIds {
+
+    if (arcParentIds.length != arcChildIds.length)
+      throw new AssertionError(StrLib.format("arcParentIds.length = %s, arcChildIds.length = %s",
+          arcParentIds.length, arcChildIds.length));
+
+    int[] sortedIds = sortedDistinct(ids);
+
+    int arcSize = arcParentIds.length;
+
+    int[] arcParents = new int[arcSize];
+    int[] arcChildren = new int[arcSize];
+
+    for (int k = 0; k < arcSize; k++) {
+      arcParents[k] = index(sortedIds, arcParentIds[k]);
+      arcChildren[k] = index(sortedIds, arcChildIds[k]);
+    }
+
+    return new Parts(sortedIds, arcParents, arcChildren, arcSize);
+  }
+
+  // the index's ids are sorted, and its arcs are renumbered to match
+  private static Parts parts(IdGraphIndex<Integer> index) {
+
+    int idSize = index.idSize();
+
+    int[] ids = new int[idSize];
+
+    for (int i = 0; i < idSize; i++)
+      ids[i] = index.id(i);
+
+    int[] sortedIds = sortedDistinct(ids);
+
+    // old index -> new index
+    int[] renumbered = new int[idSize];
+
+    for (int i = 0; i < idSize; i++)
+      renumbered[i] = Arrays.binarySearch(sortedIds, ids[i]);
+
+    int[] arcParents = new int[index.arcSize()];
+    int[] arcChildren = new int[index.arcSize()];
+    int arcSize = 0;
+
+    for (int i = 0; i < idSize; i++)
+      for (int p = 0; p < index.parentCount(i); p++) {
+        arcParents[arcSize] = renumbered[index.parentIndex(i, p)];
+        arcChildren[arcSize] = renumbered[i];
+        arcSize++;
+      }
+
+    return new Parts(sortedIds, arcParents, arcChildren, arcSize);
+  }
+
+  // ===================================
+
+  private static int[] sortedDistinct(int[] ids) {
+
+    int[] sorted = ids.clone();
+    Arrays.sort(sorted);
+
+    int size = 0;
+
+    for (int i = 0; i < sorted.length; i++)
+      if (size == 0 || sorted[size - 1] != sorted[i])
+        sorted[size++] = sorted[i];
+
+    return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+  }
+
+  private static int index(int[] sortedIds, int id) throws GraphHadUnexpectedIds {
+
+    int index = Arrays.binarySearch(sortedIds, id);
+
+    if (index < 0)
+      throw new GraphHadUnexpectedIds("unexpectedId = %s", id);
+
+    return index;
+  }
+
+  private static int[] concat(int[] ids1, int[] ids2) {
+
+    int[] ids = Arrays.copyOf(ids1, ids1.length + ids2.length);
+
+    System.arraycopy(ids2, 0, ids, ids1.length, ids2.length);
+
+    return ids;
+  }
+
+}
@@ -0,0 +1,44 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.errors.NotContained;
+
+/**
+ * A tree containing int ids (see IntIdGraph).
+ */
+public interface IntIdTree extends IntIdDag {
+
+  // ===========================================================================
+  // root
+  // ===========================================================================
+
+  /**
+   * The tree's root id.
+   */
+  int rootId();
+
+  // ===========================================================================
+  // parent
+  // ===========================================================================
+
+  /**
+   * Getting an id's parent id (throws NotContained for the root, check isRoot first).
+   */
+  int parentId(int id) throws NotContained;
+
+  // ===========================================================================
+  // depth
+  // ===========================================================================
+
+  /**
+   * The number of ancestors an id has (the root has depth 0).
+   */
+  int depth(int id);
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  IdTree<Integer> idGraph();
+
+}
@@ -0,0 +1,85 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.errors.NotContained;
+
+/**
+ * An implementation of IntIdTree.
+ */
+public class IntIdTreeClass extends IntIdDagClass implements IntIdTree {
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a tree (see IntIdGraphClass), validated unless it is already known to be a tree.
+   */
+  IntIdTreeClass(int[] ids, int[] parentOffsets, int[] parentIndexes, boolean validate)
+      throws DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+
+    super(ids, parentOffsets, parentIndexes, false);
+
+    if (validate)
+      validateTree();
+  }
+
+  // ===========================================================================
+  // root
+  // ===========================================================================
+
+  @Override
+  public int rootId() {
+    return id(rootIndexes()[0]);
+  }
+
+  // ===========================================================================
+  // parent
+  // ===========================================================================
+
+  @Override
+  public int parentId(int id) throws NotContained {
+
+    int index = index(id);
+
+    if (indexParentCount(index) == 0)
+      throw new NotContained("rootId = %s has no parent", id);
+
+    return id(treeParentIndex(index));
+  }
+
+  // ===========================================================================
+  // ancestors / descendants
+  // ===========================================================================
+
+  // walks up from the id, instead of searching down from the ancestor
+  @Override
+  boolean indexIsDescendantOf(int index, int potentialAncestor, boolean inclusive) {
+    return treeIsDescendantOf(index, potentialAncestor, inclusive);
+  }
+
+  // ===========================================================================
+  // depth
+  // ===========================================================================
+
+  @Override
+  public int depth(int id) {
+    return treeDepth(index(id));
+  }
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  public IdTree<Integer> idGraph() {
+    return (IdTree<Integer>) super.idGraph();
+  }
+
+  @Override
+  IdGraph<Integer> createIdGraph(IdGraphIndex<Integer> idGraphIndex) {
+    return new IdTreeClass<Integer>(idGraphIndex, topsortIdList());
+  }
+
+}
@@ -0,0 +1,31 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.util.LongIterator;
+
+/**
+ * A dag containing long ids (see LongIdGraph).
+ */
+public interface LongIdDag extends LongIdGraph {
+
+  // ===========================================================================
+  // topological sort
+  // ===========================================================================
+
+  /**
+   * A topological sort of the ids (parents before children, a copy).
+   */
+  long[] topsortIdArray();
+
+  /**
+   * Iterating a topological sort of the ids.
+   */
+  LongIterator topsortIdIterator();
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  IdDag<Long> idGraph();
+
+}
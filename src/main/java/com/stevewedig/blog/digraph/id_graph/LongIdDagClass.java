@@ -0,0 +1,55 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
+import com.stevewedig.blog.util.LongIterator;
+
+/**
+ * An implementation of LongIdDag.
+ */
+public class LongIdDagClass extends LongIdGraphClass implements LongIdDag {
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a dag (see LongIdGraphClass), validated unless it is already known to be a dag.
+   */
+  LongIdDagClass(long[] ids, int[] parentOffsets, int[] parentIndexes, boolean validate)
+      throws DagCannotHaveCycle {
+
+    super(ids, parentOffsets, parentIndexes);
+
+    if (validate)
+      validateDag();
+  }
+
+  // ===========================================================================
+  // topological sort
+  // ===========================================================================
+
+  @Override
+  public long[] topsortIdArray() {
+    return super.topsortIdArray();
+  }
+
+  @Override
+  public LongIterator topsortIdIterator() {
+    return super.topsortIdIterator();
+  }
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  public IdDag<Long> idGraph() {
+    return (IdDag<Long>) super.idGraph();
+  }
+
+  @Override
+  IdGraph<Long> createIdGraph(IdGraphIndex<Long> idGraphIndex) {
+    return new IdDagClass<Long>(idGraphIndex, topsortIdList());
+  }
+
+}
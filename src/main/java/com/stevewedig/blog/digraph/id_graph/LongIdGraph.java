@@ -0,0 +1,182 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.errors.NotContained;
+import com.stevewedig.blog.util.*;
+
+/**
+ * A digraph containing long ids, specialized so ids, arcs, and traversals are never boxed.
+ *
+ * Ids are kept sorted in a long array, and arcs are int arrays of indexes into it, so each id costs
+ * 8 bytes plus 8 bytes per arc. Methods throw NotContained for ids that aren't in the graph.
+ */
+public interface LongIdGraph {
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  /**
+   * The number of ids.
+   */
+  int idSize();
+
+  /**
+   * The number of arcs.
+   */
+  int arcSize();
+
+  boolean containsId(long id);
+
+  /**
+   * The ids in ascending order (a copy).
+   */
+  long[] idArray();
+
+  /**
+   * Iterating the ids in ascending order.
+   */
+  LongIterator idIterator();
+
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  /**
+   * An id's index, its position in idArray.
+   */
+  int index(long id) throws NotContained;
+
+  /**
+   * The id at an index.
+   */
+  long id(int index);
+
+  // ===========================================================================
+  // parents
+  // ===========================================================================
+
+  /**
+   * Whether an id is a parent of another id.
+   */
+  boolean isParentOf(long id, long potentialChild);
+
+  int parentCount(long id);
+
+  /**
+   * Getting an id's parent ids, in ascending order.
+   */
+  long[] parentIdArray(long id);
+
+  // ===========================================================================
+  // children
+  // ===========================================================================
+
+  /**
+   * Whether an id is a child of another id.
+   */
+  boolean isChildOf(long id, long potentialParent);
+
+  int childCount(long id);
+
+  /**
+   * Getting an id's child ids, in ascending order.
+   */
+  long[] childIdArray(long id);
+
+  // ===========================================================================
+  // ancestors
+  // ===========================================================================
+
+  /**
+   * Whether an id is an ancestor of another id.
+   */
+  boolean isAncestorOf(long id, long potentialDescendant, boolean inclusive);
+
+  /**
+   * Iterating an id's ancestor ids, depth first (the same order as IdGraph.ancestorIdIterable).
+   */
+  LongIterator ancestorIdIterator(long id, boolean inclusive);
+
+  /**
+   * Iterating some ids' ancestor ids, depth first.
+   */
+  LongIterator ancestorIdIterator(long[] ids, boolean inclusive);
+
+  /**
+   * Getting an id's ancestor ids, depth first.
+   */
+  long[] ancestorIdArray(long id, boolean inclusive);
+
+  // ===========================================================================
+  // descendants
+  // ===========================================================================
+
+  /**
+   * Whether an id is a descendant of another id.
+   */
+  boolean isDescendantOf(long id, long potentialAncestor, boolean inclusive);
+
+  /**
+   * Iterating an id's descendant ids, depth first (the same order as
+   * IdGraph.descendantIdIterable).
+   */
+  LongIterator descendantIdIterator(long id, boolean inclusive);
+
+  /**
+   * Iterating some ids' descendant ids, depth first.
+   */
+  LongIterator descendantIdIterator(long[] ids, boolean inclusive);
+
+  /**
+   * Getting an id's descendant ids, depth first.
+   */
+  long[] descendantIdArray(long id, boolean inclusive);
+
+  // ===========================================================================
+  // roots
+  // ===========================================================================
+
+  /**
+   * Whether an id is a root (has no parents).
+   */
+  boolean isRoot(long id);
+
+  /**
+   * The root ids, in ascending order.
+   */
+  long[] rootIdArray();
+
+  // ===========================================================================
+  // leaves
+  // ===========================================================================
+
+  /**
+   * Whether an id is a leaf (has no children).
+   */
+  boolean isLeaf(long id);
+
+  /**
+   * The leaf ids, in ascending order.
+   */
+  long[] leafIdArray();
+
+  // ===========================================================================
+  // cycles
+  // ===========================================================================
+
+  /**
+   * Whether the graph contains a cycle.
+   */
+  boolean containsCycle();
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  /**
+   * The generic graph with the same ids and arcs. It shares this graph's arrays (ids are boxed as
+   * they are read), so converting doesn't copy any arcs.
+   */
+  IdGraph<Long> idGraph();
+
+}
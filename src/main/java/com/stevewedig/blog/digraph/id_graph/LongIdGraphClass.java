@@ -0,0 +1,401 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.google.common.primitives.*;
+import com.stevewedig.blog.errors.NotContained;
+import com.stevewedig.blog.util.*;
+
+/**
+ * An implementation of LongIdGraph.
+ */
+public class LongIdGraphClass extends PrimitiveIdGraphClass implements LongIdGraph {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  // sorted, without duplicates
+  private final long[] ids;
+
+  // the arrays are compared as lists, so equal graphs are equal
+  @Override
+  public Object[] fields() {
+    return array("ids", Longs.asList(ids), "parentOffsets", Ints.asList(parentOffsets),
+        "parentIndexes", Ints.asList(parentIndexes));
+  }
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a graph from its sorted ids (without duplicates) and its parent arcs (see
+   * PrimitiveIdGraphClass). The arrays are used directly, not copied.
+   */
+  LongIdGraphClass(long[] ids, int[] parentOffsets, int[] parentIndexes) {
+
+    super(parentOffsets, parentIndexes);
+
+    this.ids = ids;
+  }
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  @Override
+  Object boxedId(int index) {
+    return ids[index];
+  }
+
+  @Override
+  public boolean containsId(long id) {
+    return Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  @Override
+  public long[] idArray() {
+    return ids.clone();
+  }
+
+  @Override
+  public LongIterator idIterator() {
+    return new LongIterator() {
+
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < ids.length;
+      }
+
+      @Override
+      public long nextLong() {
+
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        return ids[index++];
+      }
+    };
+  }
+
+  // ===========================================================================
+  // index
+  // ===========================================================================
+
+  @Override
+  public int index(long id) throws NotContained {
+
+    int index = Arrays.binarySearch(ids, id);
+
+    if (index < 0)
+      throw new NotContained("id = %s", id);
+
+    return index;
+  }
+
+  @Override
+  public long id(int index) {
+    return ids[index];
+  }
+
+  // ===================================
+
+  private int[] indexes(long[] ids) {
+
+    int[] indexes = new int[ids.length];
+
+    for (int i = 0; i < ids.length; i++)
+      indexes[i] = index(ids[i]);
+
+    return indexes;
+  }
+
+  private long[] ids(int[] indexes, int from, int to) {
+
+    long[] ids = new long[to - from];
+
+    for (int k = from; k < to; k++)
+      ids[k - from] = this.ids[indexes[k]];
+
+    return ids;
+  }
+
+  private long[] ids(IntIterator indexes) {
+
+    long[] ids = new long[16];
+    int size = 0;
+
+    while (indexes.hasNext()) {
+
+      if (size == ids.length)
+        ids = Arrays.copyOf(ids, size * 2);
+
+      ids[size++] = this.ids[indexes.nextInt()];
+    }
+
+    return Arrays.copyOf(ids, size);
+  }
+
+  private LongIterator idIterator(final IntIterator indexes) {
+    return new LongIterator() {
+
+      @Override
+      public boolean hasNext() {
+        return indexes.hasNext();
+      }
+
+      @Override
+      public long nextLong() {
+        return ids[indexes.nextInt()];
+      }
+    };
+  }
+
+  // ===========================================================================
+  // parents
+  // ===========================================================================
+
+  @Override
+  public boolean isParentOf(long id, long potentialChild) {
+    return indexIsParentOf(index(id), index(potentialChild));
+  }
+
+  @Override
+  public int parentCount(long id) {
+    return indexParentCount(index(id));
+  }
+
+  @Override
+  public long[] parentIdArray(long id) {
+
+    int index = index(id);
+
+    return ids(parentIndexes, parentOffsets[index], parentOffsets[index + 1]);
+  }
+
+  // ===========================================================================
+  // children
+  // ===========================================================================
+
+  @Override
+  public boolean isChildOf(long id, long potentialParent) {
+    return isParentOf(potentialParent, id);
+  }
+
+  @Override
+  public int childCount(long id) {
+    return indexChildCount(index(id));
+  }
+
+  @Override
+  public long[] childIdArray(long id) {
+
+    int index = index(id);
+
+    return ids(childIndexes, childOffsets[index], childOffsets[index + 1]);
+  }
+
+  // ===========================================================================
+  // ancestors
+  // ===========================================================================
+
+  @Override
+  public boolean isAncestorOf(long id, long potentialDescendant, boolean inclusive) {
+    return isDescendantOf(potentialDescendant, id, inclusive);
+  }
+
+  @Override
+  public LongIterator ancestorIdIterator(long id, boolean inclusive) {
+    return ancestorIdIterator(new long[] {id}, inclusive);
+  }
+
+  @Override
+  public LongIterator ancestorIdIterator(long[] ids, boolean inclusive) {
+    return idIterator(traverse(indexes(ids), inclusive, true));
+  }
+
+  @Override
+  public long[] ancestorIdArray(long id, boolean inclusive) {
+    return ids(traverse(new int[] {index(id)}, inclusive, true));
+  }
+
+  // ===========================================================================
+  // descendants
+  // ===========================================================================
+
+  @Override
+  public boolean isDescendantOf(long id, long potentialAncestor, boolean inclusive) {
+    return indexIsDescendantOf(index(id), index(potentialAncestor), inclusive);
+  }
+
+  @Override
+  public LongIterator descendantIdIterator(long id, boolean inclusive) {
+    return descendantIdIterator(new long[] {id}, inclusive);
+  }
+
+  @Override
+  public LongIterator descendantIdIterator(long[] ids, boolean inclusive) {
+    return idIterator(traverse(indexes(ids), inclusive, false));
+  }
+
+  @Override
+  public long[] descendantIdArray(long id, boolean inclusive) {
+    return ids(traverse(new int[] {index(id)}, inclusive, false));
+  }
+
+  // ===========================================================================
+  // roots
+  // ===========================================================================
+
+  @Override
+  public boolean isRoot(long id) {
+    return indexParentCount(index(id)) == 0;
+  }
+
+  @Override
+  public long[] rootIdArray() {
+
+    int[] rootIndexes = rootIndexes();
+
+    return ids(rootIndexes, 0, rootIndexes.length);
+  }
+
+  // ===========================================================================
+  // leaves
+  // ===========================================================================
+
+  @Override
+  public boolean isLeaf(long id) {
+    return indexChildCount(index(id)) == 0;
+  }
+
+  @Override
+  public long[] leafIdArray() {
+
+    int[] leafIndexes = leafIndexes();
+
+    return ids(leafIndexes, 0, leafIndexes.length);
+  }
+
+  // ===========================================================================
+  // topological sort (used by LongIdDagClass)
+  // ===========================================================================
+
+  long[] topsortIdArray() {
+
+    int[] topsortIndexes = topsortIndexes();
+
+    return ids(topsortIndexes, 0, topsortIndexes.length);
+  }
+
+  LongIterator topsortIdIterator() {
+
+    final int[] topsortIndexes = topsortIndexes();
+
+    return idIterator(new IntIterator() {
+
+      private int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < topsortIndexes.length;
+      }
+
+      @Override
+      public int nextInt() {
+
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        return topsortIndexes[i++];
+      }
+    });
+  }
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  public IdGraph<Long> idGraph() {
+    if (idGraph == null)
+      synchronized (this) {
+        if (idGraph == null)
+          idGraph = createIdGraph(IdGraphIndex.fromCsr(new LongIdTable(ids), parentOffsets,
+              parentIndexes, childOffsets, childIndexes));
+      }
+    return idGraph;
+  }
+
+  private volatile IdGraph<Long> idGraph;
+
+  // overridden by dags and trees, which pass on their topological sort so it isn't recomputed
+  IdGraph<Long> createIdGraph(IdGraphIndex<Long> idGraphIndex) {
+    return new IdGraphClass<Long>(idGraphIndex);
+  }
+
+  ImmutableList<Long> topsortIdList() {
+    return ImmutableList.copyOf(Longs.asList(topsortIdArray()));
+  }
+
+  // ===================================
+
+  // a sorted long array, ids are only boxed as they are read
+  private static class LongIdTable extends IdGraphIndex.IdTable<Long> {
+
+    private final long[] ids;
+
+    public LongIdTable(long[] ids) {
+      this.ids = ids;
+    }
+
+    @Override
+    int size() {
+      return ids.length;
+    }
+
+    @Override
+    Long id(int index) {
+      return ids[index];
+    }
+
+    @Override
+    int index(Long id) {
+
+      if (id == null)
+        return -1;
+
+      int index = Arrays.binarySearch(ids, id);
+      return index < 0 ? -1 : index;
+    }
+
+    @Override
+    ImmutableList<Long> idList() {
+      if (idList == null)
+        synchronized (this) {
+          if (idList == null)
+            idList = ImmutableList.copyOf(Longs.asList(ids));
+        }
+      return idList;
+    }
+
+    private volatile ImmutableList<Long> idList;
+
+    @Override
+    ImmutableSet<Long> idSet() {
+      if (idSet == null)
+        synchronized (this) {
+          if (idSet == null)
+            idSet = ImmutableSet.copyOf(idList());
+        }
+      return idSet;
+    }
+
+    private volatile ImmutableSet<Long> idSet;
+  }
+
+}
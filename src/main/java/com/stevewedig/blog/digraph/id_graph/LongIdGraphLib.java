@@ -0,0 +1,224 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.Arrays;
+
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.util.StrLib;
+
+/**
+ * A library for creating LongIdGraphs, LongIdDags, and LongIdTrees.
+ */
+public abstract class LongIdGraphLib {
+
+  // ===========================================================================
+  // fromArcs
+  // ===========================================================================
+
+  /**
+   * Create a LongIdGraph from its ids and arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), duplicate ids and arcs are dropped.
+   */
+  public static LongIdGraph fromArcs(long[] ids, long[] arcParentIds, long[] arcChildIds)
+      throws GraphHadUnexpectedIds {
+
+    Parts parts = parts(ids, arcParentIds, arcChildIds);
+
+    return new LongIdGraphClass(parts.ids, parts.parentOffsets, parts.parentIndexes);
+  }
+
+  /**
+   * Create a LongIdGraph from its arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), assuming all ids are in an arc.
+   */
+  public static LongIdGraph fromArcs(long[] arcParentIds, long[] arcChildIds) {
+    return fromArcs(concat(arcParentIds, arcChildIds), arcParentIds, arcChildIds);
+  }
+
+  // ===================================
+
+  /**
+   * Create a LongIdDag from its ids and arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), duplicate ids and arcs are dropped.
+   */
+  public static LongIdDag dagFromArcs(long[] ids, long[] arcParentIds, long[] arcChildIds)
+      throws GraphHadUnexpectedIds, DagCannotHaveCycle {
+
+    Parts parts = parts(ids, arcParentIds, arcChildIds);
+
+    return new LongIdDagClass(parts.ids, parts.parentOffsets, parts.parentIndexes, true);
+  }
+
+  /**
+   * Create a LongIdDag from its arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), assuming all ids are in an arc.
+   */
+  public static LongIdDag dagFromArcs(long[] arcParentIds, long[] arcChildIds)
+      throws DagCannotHaveCycle {
+    return dagFromArcs(concat(arcParentIds, arcChildIds), arcParentIds, arcChildIds);
+  }
+
+  // ===================================
+
+  /**
+   * Create a LongIdTree from its ids and arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), duplicate ids and arcs are dropped.
+   */
+  public static LongIdTree treeFromArcs(long[] ids, long[] arcParentIds, long[] arcChildIds)
+      throws GraphHadUnexpectedIds, DagCannotHaveCycle, TreeCannotBeEmpty,
+      TreeCannotHaveMultipleRoots, TreeNodesCannotHaveMultipleParents {
+
+    Parts parts = parts(ids, arcParentIds, arcChildIds);
+
+    return new LongIdTreeClass(parts.ids, parts.parentOffsets, parts.parentIndexes, true);
+  }
+
+  /**
+   * Create a LongIdTree from its arcs (arc k goes from arcParentIds[k] to arcChildIds[k]), assuming all ids are in an arc.
+   */
+  public static LongIdTree treeFromArcs(long[] arcParentIds, long[] arcChildIds)
+      throws DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+    return treeFromArcs(concat(arcParentIds, arcChildIds), arcParentIds, arcChildIds);
+  }
+
+  // ===========================================================================
+  // fromIdGraph
+  // ===========================================================================
+
+  /**
+   * Create a LongIdGraph with the same ids and arcs as an IdGraph (reading its index, so no multimaps are built).
+   */
+  public static LongIdGraph fromIdGraph(IdGraph<Long> idGraph) {
+
+    Parts parts = parts(idGraph.idGraphIndex());
+
+    return new LongIdGraphClass(parts.ids, parts.parentOffsets, parts.parentIndexes);
+  }
+
+  /**
+   * Create a LongIdDag with the same ids and arcs as an IdDag (which isn't validated again).
+   */
+  public static LongIdDag fromIdDag(IdDag<Long> idDag) {
+
+    Parts parts = parts(idDag.idGraphIndex());
+
+    return new LongIdDagClass(parts.ids, parts.parentOffsets, parts.parentIndexes, false);
+  }
+
+  /**
+   * Create a LongIdTree with the same ids and arcs as an IdTree (which isn't validated again).
+   */
+  public static LongIdTree fromIdTree(IdTree<Long> idTree) {
+
+    Parts parts = parts(idTree.idGraphIndex());
+
+    return new LongIdTreeClass(parts.ids, parts.parentOffsets, parts.parentIndexes, false);
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  // sorted ids and parent arcs between their indexes
+  private static class Parts {
+
+    private final long[] ids;
+    private final int[] parentOffsets;
+    private final int[] parentIndexes;
+
+    public Parts(long[] ids, int[] arcParents, int[] arcChildren, int arcSize) {
+
+      this.ids = ids;
+
+      int[][] parentCsr = IdGraphIndex.parentCsr(ids.length, arcParents, arcChildren, arcSize);
+
+      parentOffsets = parentCsr[0];
+      parentIndexes = parentCsr[1];
+    }
+  }
+
+  private static Parts parts(long[] ids, long[] arcParentIds, long[] arcChildIds)
+      throws GraphHadUnexpectedIds {
+
+    if (arcParentIds.length != arcChildIds.length)
+      throw new AssertionError(StrLib.format("arcParentIds.length = %s, arcChildIds.length = %s",
+          arcParentIds.length, arcChildIds.length));
+
+    long[] sortedIds = sortedDistinct(ids);
+
+    int arcSize = arcParentIds.length;
+
+    int[] arcParents = new int[arcSize];
+    int[] arcChildren = new int[arcSize];
+
+    for (int k = 0; k < arcSize; k++) {
+      arcParents[k] = index(sortedIds, arcParentIds[k]);
+      arcChildren[k] = index(sortedIds, arcChildIds[k]);
+    }
+
+    return new Parts(sortedIds, arcParents, arcChildren, arcSize);
+  }
+
+  // the index's ids are sorted, and its arcs are renumbered to match
+  private static Parts parts(IdGraphIndex<Long> index) {
+
+    int idSize = index.idSize();
+
+    long[] ids = new long[idSize];
+
+    for (int i = 0; i < idSize; i++)
+      ids[i] = index.id(i);
+
+    long[] sortedIds = sortedDistinct(ids);
+
+    // old index -> new index
+    int[] renumbered = new int[idSize];
+
+    for (int i = 0; i < idSize; i++)
+      renumbered[i] = Arrays.binarySearch(sortedIds, ids[i]);
+
+    int[] arcParents = new int[index.arcSize()];
+    int[] arcChildren = new int[index.arcSize()];
+    int arcSize = 0;
+
+    for (int i = 0; i < idSize; i++)
+      for (int p = 0; p < index.parentCount(i); p++) {
+        arcParents[arcSize] = renumbered[index.parentIndex(i, p)];
+        arcChildren[arcSize] = renumbered[i];
+        arcSize++;
+      }
+
+    return new Parts(sortedIds, arcParents, arcChildren, arcSize);
+  }
+
+  // ===================================
+
+  private static long[] sortedDistinct(long[] ids) {
+
+    long[] sorted = ids.clone();
+    Arrays.sort(sorted);
+
+    int size = 0;
+
+    for (int i = 0; i < sorted.length; i++)
+      if (size == 0 || sorted[size - 1] != sorted[i])
+        sorted[size++] = sorted[i];
+
+    return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+  }
+
+  private static int index(long[] sortedIds, long id) throws GraphHadUnexpectedIds {
+
+    int index = Arrays.binarySearch(sortedIds, id);
+
+    if (index < 0)
+      throw new GraphHadUnexpectedIds("unexpectedId = %s", id);
+
+    return index;
+  }
+
+  private static long[] concat(long[] ids1, long[] ids2) {
+
+    long[] ids = Arrays.copyOf(ids1, ids1.length + ids2.length);
+
+    System.arraycopy(ids2, 0, ids, ids1.length, ids2.length);
+
+    return ids;
+  }
+
+}
@@ -0,0 +1,44 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.errors.NotContained;
+
+/**
+ * A tree containing long ids (see LongIdGraph).
+ */
+public interface LongIdTree extends LongIdDag {
+
+  // ===========================================================================
+  // root
+  // ===========================================================================
+
+  /**
+   * The tree's root id.
+   */
+  long rootId();
+
+  // ===========================================================================
+  // parent
+  // ===========================================================================
+
+  /**
+   * Getting an id's parent id (throws NotContained for the root, check isRoot first).
+   */
+  long parentId(long id) throws NotContained;
+
+  // ===========================================================================
+  // depth
+  // ===========================================================================
+
+  /**
+   * The number of ancestors an id has (the root has depth 0).
+   */
+  int depth(long id);
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  IdTree<Long> idGraph();
+
+}
@@ -0,0 +1,85 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.errors.NotContained;
+
+/**
+ * An implementation of LongIdTree.
+ */
+public class LongIdTreeClass extends LongIdDagClass implements LongIdTree {
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a tree (see LongIdGraphClass), validated unless it is already known to be a tree.
+   */
+  LongIdTreeClass(long[] ids, int[] parentOffsets, int[] parentIndexes, boolean validate)
+      throws DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+
+    super(ids, parentOffsets, parentIndexes, false);
+
+    if (validate)
+      validateTree();
+  }
+
+  // ===========================================================================
+  // root
+  // ===========================================================================
+
+  @Override
+  public long rootId() {
+    return id(rootIndexes()[0]);
+  }
+
+  // ===========================================================================
+  // parent
+  // ===========================================================================
+
+  @Override
+  public long parentId(long id) throws NotContained {
+
+    int index = index(id);
+
+    if (indexParentCount(index) == 0)
+      throw new NotContained("rootId = %s has no parent", id);
+
+    return id(treeParentIndex(index));
+  }
+
+  // ===========================================================================
+  // ancestors / descendants
+  // ===========================================================================
+
+  // walks up from the id, instead of searching down from the ancestor
+  @Override
+  boolean indexIsDescendantOf(int index, int potentialAncestor, boolean inclusive) {
+    return treeIsDescendantOf(index, potentialAncestor, inclusive);
+  }
+
+  // ===========================================================================
+  // depth
+  // ===========================================================================
+
+  @Override
+  public int depth(long id) {
+    return treeDepth(index(id));
+  }
+
+  // ===========================================================================
+  // conversion
+  // ===========================================================================
+
+  @Override
+  public IdTree<Long> idGraph() {
+    return (IdTree<Long>) super.idGraph();
+  }
+
+  @Override
+  IdGraph<Long> createIdGraph(IdGraphIndex<Long> idGraphIndex) {
+    return new IdTreeClass<Long>(idGraphIndex, topsortIdList());
+  }
+
+}
@@ -0,0 +1,401 @@
+package com.stevewedig.blog.digraph.id_graph;
+
+import java.util.*;
+
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.util.IntIterator;
+import com.stevewedig.blog.value_objects.ValueMixin;
+
+/**
+ * The int-indexed arcs shared by LongIdGraphClass and IntIdGraphClass.
+ *
+ * Subclasses keep their ids sorted in a primitive array, so an id's index is its position in that
+ * array. Arcs are stored in compressed sparse row form (as in IdGraphIndex), with each index's
+ * parents and children in ascending order, so equal graphs have equal arrays. Everything here works
+ * on indexes, and subclasses only translate ids at the edges, so nothing is boxed.
+ */
+abstract class PrimitiveIdGraphClass extends ValueMixin {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  // the parents of index i are parentIndexes[parentOffsets[i] ... parentOffsets[i + 1])
+  final int[] parentOffsets;
+  final int[] parentIndexes;
+
+  // the children of index i are childIndexes[childOffsets[i] ... childOffsets[i + 1])
+  final int[] childOffsets;
+  final int[] childIndexes;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a graph from its parent arcs (without duplicates). The arrays are used directly, and
+   * each index's parents are sorted in place.
+   */
+  PrimitiveIdGraphClass(int[] parentOffsets, int[] parentIndexes) {
+
+    for (int index = 0; index < parentOffsets.length - 1; index++)
+      Arrays.sort(parentIndexes, parentOffsets[index], parentOffsets[index + 1]);
+
+    this.parentOffsets = parentOffsets;
+    this.parentIndexes = parentIndexes;
+
+    // inverting visits sources in ascending order, so each index's children come out sorted
+    int[][] childCsr = IdGraphIndex.invert(parentOffsets, parentIndexes);
+
+    childOffsets = childCsr[0];
+    childIndexes = childCsr[1];
+  }
+
+  // ===================================
+  // validate
+  // ===================================
+
+  void validateDag() throws DagCannotHaveCycle {
+
+    if (topsortIndexes() == null)
+      throw new DagCannotHaveCycle();
+  }
+
+  // same precedence as IdTreeClass
+  void validateTree() throws DagCannotHaveCycle, TreeCannotBeEmpty, TreeCannotHaveMultipleRoots,
+      TreeNodesCannotHaveMultipleParents {
+
+    validateDag();
+
+    int idSize = idSize();
+
+    if (idSize == 0)
+      throw new TreeCannotBeEmpty();
+
+    int[] rootIndexes = rootIndexes();
+
+    if (rootIndexes.length > 1)
+      throw new TreeCannotHaveMultipleRoots("rootIds = %s", boxedIds(rootIndexes));
+
+    for (int index = 0; index < idSize; index++)
+      if (indexParentCount(index) >= 2)
+        throw new TreeNodesCannotHaveMultipleParents("id = %s, parentIds = %s", boxedId(index),
+            boxedIds(Arrays.copyOfRange(parentIndexes, parentOffsets[index],
+                parentOffsets[index + 1])));
+  }
+
+  // ===========================================================================
+  // ids
+  // ===========================================================================
+
+  /**
+   * The id at an index, boxed (only used for error messages).
+   */
+  abstract Object boxedId(int index);
+
+  private List<Object> boxedIds(int[] indexes) {
+
+    List<Object> ids = new ArrayList<>();
+
+    for (int index : indexes)
+      ids.add(boxedId(index));
+
+    return ids;
+  }
+
+  public int idSize() {
+    return parentOffsets.length - 1;
+  }
+
+  public int arcSize() {
+    return parentIndexes.length;
+  }
+
+  // ===========================================================================
+  // parents / children
+  // ===========================================================================
+
+  int indexParentCount(int index) {
+    return parentOffsets[index + 1] - parentOffsets[index];
+  }
+
+  int indexChildCount(int index) {
+    return childOffsets[index + 1] - childOffsets[index];
+  }
+
+  boolean indexIsParentOf(int index, int potentialChild) {
+    return containsIndex(parentIndexes, parentOffsets[potentialChild],
+        parentOffsets[potentialChild + 1], index);
+  }
+
+  // the only parent of a tree index (the root has none, so callers check first)
+  int treeParentIndex(int index) {
+    return parentIndexes[parentOffsets[index]];
+  }
+
+  // binary search of a sorted range
+  private static boolean containsIndex(int[] indexes, int from, int to, int index) {
+
+    int low = from;
+    int high = to - 1;
+
+    while (low <= high) {
+
+      int middle = (low + high) >>> 1;
+
+      if (indexes[middle] < index)
+        low = middle + 1;
+      else if (indexes[middle] > index)
+        high = middle - 1;
+      else
+        return true;
+    }
+
+    return false;
+  }
+
+  // ===========================================================================
+  // ancestors / descendants
+  // ===========================================================================
+
+  /**
+   * Whether a descendant is reachable from an ancestor, searching from the ancestor (see
+   * IdGraph.isDescendantOf).
+   */
+  boolean indexIsDescendantOf(int index, int potentialAncestor, boolean inclusive) {
+
+    if (index == potentialAncestor)
+      return inclusive;
+
+    IntIterator descendants = traverse(new int[] {potentialAncestor}, false, false);
+
+    while (descendants.hasNext())
+      if (descendants.nextInt() == index)
+        return true;
+
+    return false;
+  }
+
+  // walks up from the index, so it costs the index's depth (trees only)
+  boolean treeIsDescendantOf(int index, int potentialAncestor, boolean inclusive) {
+
+    if (index == potentialAncestor)
+      return inclusive;
+
+    while (indexParentCount(index) != 0) {
+
+      index = treeParentIndex(index);
+
+      if (index == potentialAncestor)
+        return true;
+    }
+
+    return false;
+  }
+
+  // the number of ancestors of a tree index
+  int treeDepth(int index) {
+
+    int depth = 0;
+
+    while (indexParentCount(index) != 0) {
+      index = treeParentIndex(index);
+      depth++;
+    }
+
+    return depth;
+  }
+
+  // ===================================
+
+  /**
+   * Depth first traversal of the ancestors (or descendants) of some indexes, in the same order as
+   * IdGraphIndex.ancestorIdIterable (or descendantIdIterable).
+   */
+  IntIterator traverse(int[] startIndexes, boolean inclusive, boolean ancestors) {
+
+    if (ancestors)
+      return new TraverseIterator(startIndexes, inclusive, parentOffsets, parentIndexes);
+    else
+      return new TraverseIterator(startIndexes, inclusive, childOffsets, childIndexes);
+  }
+
+  // matches IdGraphIndex's iterator: indexes are closed when they are pushed, each expansion is
+  // pushed reversed (so the first target is next), and non inclusive traversals skip every start
+  // index; closed indexes are hashed until a bitset would be smaller, so traversing a small part of
+  // a large graph doesn't allocate a bit per id
+  private class TraverseIterator implements IntIterator {
+
+    private final int[] offsets;
+    private final int[] targets;
+
+    private final IdGraphIndex.ClosedSet closed = new IdGraphIndex.ClosedSet(idSize());
+
+    // sorted, or null if inclusive
+    private final int[] starts;
+
+    private int[] open = new int[16];
+    private int openSize = 0;
+
+    // lookahead for hasNext(), -1 if there isn't one yet
+    private int next = -1;
+
+    public TraverseIterator(int[] startIndexes, boolean inclusive, int[] offsets, int[] targets) {
+
+      this.offsets = offsets;
+      this.targets = targets;
+
+      if (inclusive)
+        starts = null;
+      else {
+        starts = startIndexes.clone();
+        Arrays.sort(starts);
+      }
+
+      for (int i = startIndexes.length - 1; i >= 0; i--)
+        push(startIndexes[i]);
+    }
+
+    private void push(int index) {
+
+      if (!closed.add(index))
+        return;
+
+      if (openSize == open.length)
+        open = Arrays.copyOf(open, openSize * 2);
+
+      open[openSize++] = index;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+      while (next == -1 && openSize > 0) {
+
+        int index = open[--openSize];
+
+        for (int k = offsets[index + 1] - 1; k >= offsets[index]; k--)
+          push(targets[k]);
+
+        if (starts == null || !containsIndex(starts, 0, starts.length, index))
+          next = index;
+      }
+
+      return next != -1;
+    }
+
+    @Override
+    public int nextInt() {
+
+      if (!hasNext())
+        throw new NoSuchElementException();
+
+      int index = next;
+
+      next = -1;
+
+      return index;
+    }
+  }
+
+  // ===========================================================================
+  // roots / leaves
+  // ===========================================================================
+
+  int[] rootIndexes() {
+    if (rootIndexes == null)
+      synchronized (this) {
+        if (rootIndexes == null)
+          rootIndexes = emptyIndexes(parentOffsets);
+      }
+    return rootIndexes;
+  }
+
+  private volatile int[] rootIndexes;
+
+  int[] leafIndexes() {
+    if (leafIndexes == null)
+      synchronized (this) {
+        if (leafIndexes == null)
+          leafIndexes = emptyIndexes(childOffsets);
+      }
+    return leafIndexes;
+  }
+
+  private volatile int[] leafIndexes;
+
+  // the indexes without any targets
+  private static int[] emptyIndexes(int[] offsets) {
+
+    int[] indexes = new int[offsets.length - 1];
+    int size = 0;
+
+    for (int index = 0; index < offsets.length - 1; index++)
+      if (offsets[index + 1] == offsets[index])
+        indexes[size++] = index;
+
+    return Arrays.copyOf(indexes, size);
+  }
+
+  // ===========================================================================
+  // cycles
+  // ===========================================================================
+
+  public boolean containsCycle() {
+    return topsortIndexes() == null;
+  }
+
+  /**
+   * A topological sort of the indexes (parents before children), or null if there is a cycle.
+   */
+  int[] topsortIndexes() {
+    if (topsortIndexes == null)
+      synchronized (this) {
+        if (topsortIndexes == null)
+          topsortIndexes = topsort();
+      }
+    return topsortIndexes == CYCLE ? null : topsortIndexes;
+  }
+
+  private volatile int[] topsortIndexes;
+
+  // marks that the topsort was computed and there is a cycle
+  private static final int[] CYCLE = new int[0];
+
+  // ids are opened when their parents are all closed (int array used as a stack)
+  private int[] topsort() {
+
+    int idSize = idSize();
+
+    int[] sorted = new int[idSize];
+    int sortedSize = 0;
+
+    int[] open = new int[idSize];
+    int openSize = 0;
+
+    int[] parentCounts = new int[idSize];
+
+    for (int index = 0; index < idSize; index++) {
+
+      parentCounts[index] = indexParentCount(index);
+
+      if (parentCounts[index] == 0)
+        open[openSize++] = index;
+    }
+
+    // loop: close an open id and see if that opens any of its children
+    while (openSize > 0) {
+
+      int index = open[--openSize];
+
+      sorted[sortedSize++] = index;
+
+      for (int k = childOffsets[index]; k < childOffsets[index + 1]; k++)
+        if (--parentCounts[childIndexes[k]] == 0)
+          open[openSize++] = childIndexes[k];
+    }
+
+    return sortedSize == idSize ? sorted : CYCLE;
+  }
+
+}
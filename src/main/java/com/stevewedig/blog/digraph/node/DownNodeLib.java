@@ -1,5 +1,7 @@
 package com.stevewedig.blog.digraph.node;
 
+import java.util.Collection;
+
 import com.google.common.collect.*;
 import com.stevewedig.blog.digraph.errors.NodeIdConflict;
 import com.stevewedig.blog.digraph.id_graph.*;
@@ -101,36 +103,35 @@ public abstract class DownNodeLib {
    * Create an IdGraph from a DownNode iterable.
    */
   public static <Id, Node extends DownNode<Id>> IdGraph<Id> nodes__idGraph(Iterable<Node> nodes) {
-
-    ImmutableSet<Id> ids = node__ids(nodes);
-
-    ImmutableSetMultimap<Id, Id> id__parentIds = nodes__parentMap(nodes);
-
-    return IdGraphLib.fromParentMap(ids, id__parentIds);
+    return nodes__bulkBuilder(nodes).buildIdGraph();
   }
 
   /**
    * Create an IdDag from a DownNode iterable.
    */
   public static <Id, Node extends DownNode<Id>> IdDag<Id> nodes__idDag(ImmutableSet<Node> nodes) {
-
-    ImmutableSet<Id> ids = node__ids(nodes);
-
-    ImmutableSetMultimap<Id, Id> id__parentIds = nodes__parentMap(nodes);
-
-    return IdDagLib.fromParentMap(ids, id__parentIds);
+    return nodes__bulkBuilder(nodes).buildIdDag();
   }
 
   /**
    * Create an IdTree from a DownNode iterable.
    */
   public static <Id, Node extends DownNode<Id>> IdTree<Id> nodes__idTree(ImmutableSet<Node> nodes) {
+    return nodes__bulkBuilder(nodes).buildIdTree();
+  }
+
+  // streams the nodes' arcs into a builder in a single pass (no intermediate multimaps)
+  private static <Id, Node extends DownNode<Id>> IdGraphBulkBuilder<Id> nodes__bulkBuilder(
+      Iterable<Node> nodes) {
+
+    int nodeSize = nodes instanceof Collection ? ((Collection<?>) nodes).size() : 16;
 
-    ImmutableSet<Id> ids = node__ids(nodes);
+    IdGraphBulkBuilder<Id> builder = IdGraphLib.bulkBuilder(nodeSize, nodeSize);
 
-    ImmutableSetMultimap<Id, Id> id__parentIds = nodes__parentMap(nodes);
+    for (Node node : nodes)
+      builder.addChildIds(node.id(), node.childIds());
 
-    return IdTreeLib.fromParentMap(ids, id__parentIds);
+    return builder;
   }
 
 }
@@ -25,6 +25,11 @@ public class DagClass<Id, Node> extends GraphClass<Id, Node> implements Dag<Id,
     this.idDag = idDag;
   }
 
+  DagClass(IdDag<Id> idDag, NodeTable<Id, Node> nodeTable, boolean allowPartial) {
+    super(idDag, nodeTable, allowPartial);
+    this.idDag = idDag;
+  }
+
   // ===========================================================================
   // idDag
   // ===========================================================================
@@ -43,6 +48,11 @@ public class DagClass<Id, Node> extends GraphClass<Id, Node> implements Dag<Id,
     return idDag.filterIdGraph(ids);
   }
 
+  @Override
+  public IdDag<Id> filterIdGraphView(Set<Id> ids) {
+    return idDag.filterIdGraphView(ids);
+  }
+
   // ===========================================================================
   // ancestors
   // ===========================================================================
@@ -71,6 +81,30 @@ public class DagClass<Id, Node> extends GraphClass<Id, Node> implements Dag<Id,
     return idDag.descendantIdGraph(ids, inclusive);
   }
 
+  // ===========================================================================
+  // persistent updates (nodes aren't carried over)
+  // ===========================================================================
+
+  @Override
+  public IdDag<Id> withId(Id id) {
+    return idDag.withId(id);
+  }
+
+  @Override
+  public IdDag<Id> withoutId(Id id) {
+    return idDag.withoutId(id);
+  }
+
+  @Override
+  public IdDag<Id> withArc(Id parentId, Id childId) {
+    return idDag.withArc(parentId, childId);
+  }
+
+  @Override
+  public IdDag<Id> withoutArc(Id parentId, Id childId) {
+    return idDag.withoutArc(parentId, childId);
+  }
+
   // ===========================================================================
   // topological sort
   // ===========================================================================
@@ -80,11 +114,25 @@ public class DagClass<Id, Node> extends GraphClass<Id, Node> implements Dag<Id,
     return idDag.topsortIdList();
   }
 
+  @Override
+  public ImmutableList<ImmutableSet<Id>> topsortLevelList() {
+    return idDag.topsortLevelList();
+  }
+
   @Override
   public ImmutableList<Node> topsortNodeList() {
     return optionalTopsortNodeList().get();
   }
 
+  // ===========================================================================
+  // reachability index
+  // ===========================================================================
+
+  @Override
+  public IdDagReachabilityIndex<Id> reachabilityIndex() {
+    return idDag.reachabilityIndex();
+  }
+
   // ===========================================================================
   // depth first
   // ===========================================================================
@@ -111,11 +159,14 @@ public class DagClass<Id, Node> extends GraphClass<Id, Node> implements Dag<Id,
   @Override
   public ImmutableList<Node> depthNodeList() {
     if (depthNodeList == null)
-      depthNodeList = transformList(depthIdList(), false);
+      synchronized (this) {
+        if (depthNodeList == null)
+          depthNodeList = transformList(depthIdList(), false);
+      }
     return depthNodeList;
   }
 
-  private ImmutableList<Node> depthNodeList;
+  private volatile ImmutableList<Node> depthNodeList;
 
   // ===========================================================================
   // breadth first
@@ -143,10 +194,13 @@ public class DagClass<Id, Node> extends GraphClass<Id, Node> implements Dag<Id,
   @Override
   public ImmutableList<Node> breadthNodeList() {
     if (breadthNodeList == null)
-      breadthNodeList = transformList(breadthIdList(), false);
+      synchronized (this) {
+        if (breadthNodeList == null)
+          breadthNodeList = transformList(breadthIdList(), false);
+      }
     return breadthNodeList;
   }
 
-  private ImmutableList<Node> breadthNodeList;
+  private volatile ImmutableList<Node> breadthNodeList;
 
 }
@@ -1,5 +1,6 @@
 package com.stevewedig.blog.digraph.node_graph;
 
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableBiMap;
@@ -29,6 +30,14 @@ public abstract class DagLib {
     return new DagClass<>(idDag, id__node, false);
   }
 
+  /**
+   * Create a Dag from the nested IdDag (the arc structure) and a node for each id, keeping the nodes in an array aligned with the IdDag's index instead of a bimap (which is only built if requested). Each id must have a distinct node.
+   */
+  public static <Id, Node> Dag<Id, Node> indexedDag(IdDag<Id> idDag, Map<Id, Node> id__node) {
+
+    return new DagClass<>(idDag, NodeTable.fromMap(idDag.idGraphIndex(), id__node), false);
+  }
+
   // ===========================================================================
   // dag from up nodes
   // ===========================================================================
@@ -40,9 +49,8 @@ public abstract class DagLib {
 
     IdDag<Id> idDag = UpNodeLib.nodes__idDag(nodeSet);
 
-    ImmutableBiMap<Id, Node> id__node = UpNodeLib.nodes__nodeMap(nodeSet);
-
-    return dag(idDag, id__node);
+    // the nodes are placed at their ids' indexes, so they aren't hashed into a bimap
+    return new DagClass<>(idDag, NodeTable.fromNodes(idDag.idGraphIndex(), nodeSet), false);
   }
 
   /**
@@ -80,9 +88,8 @@ public abstract class DagLib {
 
     IdDag<Id> idDag = DownNodeLib.nodes__idDag(nodeSet);
 
-    ImmutableBiMap<Id, Node> id__node = DownNodeLib.nodes__nodeMap(nodeSet);
-
-    return dag(idDag, id__node);
+    // the nodes are placed at their ids' indexes, so they aren't hashed into a bimap
+    return new DagClass<>(idDag, NodeTable.fromNodes(idDag.idGraphIndex(), nodeSet), false);
   }
 
   /**
@@ -4,9 +4,12 @@ import java.util.*;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.*;
-import com.stevewedig.blog.digraph.alg.TraverseLib;
+import com.stevewedig.blog.digraph.alg.*;
 import com.stevewedig.blog.digraph.errors.*;
 import com.stevewedig.blog.digraph.id_graph.IdGraph;
+import com.stevewedig.blog.digraph.id_graph.IdGraphCondensation;
+import com.stevewedig.blog.digraph.id_graph.IdGraphDiff;
+import com.stevewedig.blog.digraph.id_graph.IdGraphIndex;
 import com.stevewedig.blog.errors.*;
 import com.stevewedig.blog.util.LambdaLib.Fn1;
 import com.stevewedig.blog.value_objects.ValueMixin;
@@ -21,11 +24,12 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
   // ===========================================================================
 
   private final IdGraph<Id> idGraph;
-  private ImmutableBiMap<Id, Node> id__node;
+  private final NodeTable<Id, Node> nodeTable;
 
+  // the mapping is only built for indexed node tables if equality or hashing needs it
   @Override
   public Object[] fields() {
-    return array("idGraph", idGraph, "id__node", id__node);
+    return array("idGraph", idGraph, "id__node", id__node());
   }
 
   // ===========================================================================
@@ -33,8 +37,15 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
   // ===========================================================================
 
   public GraphClass(IdGraph<Id> idGraph, ImmutableBiMap<Id, Node> id__node, boolean allowPartial) {
+    this(idGraph, NodeTable.fromBiMap(id__node), allowPartial);
+  }
+
+  /**
+   * Create a graph whose nodes are kept in a node table (see NodeTable).
+   */
+  GraphClass(IdGraph<Id> idGraph, NodeTable<Id, Node> nodeTable, boolean allowPartial) {
     this.idGraph = idGraph;
-    this.id__node = id__node;
+    this.nodeTable = nodeTable;
 
     validate(allowPartial);
   }
@@ -50,15 +61,11 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
     // =============
 
-    Set<Id> graphIds = idGraph.idSet();
-
-    Set<Id> nodeMapIds = id__node.keySet();
-
-    Set<Id> unexpectedIds = Sets.difference(nodeMapIds, graphIds);
+    Set<Id> unexpectedIds = nodeTable.unexpectedIdSet(idGraph, allowPartial);
 
     if (!unexpectedIds.isEmpty())
       throw new GraphHadUnexpectedIds("unexpectedIds = %s, graphIds = %s, nodeMapIds = %s",
-          unexpectedIds, graphIds, nodeMapIds);
+          unexpectedIds, idGraph.idSet(), nodeTable.id__node().keySet());
   }
 
   // ===========================================================================
@@ -70,6 +77,26 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph;
   }
 
+  // ===========================================================================
+  // warming
+  // ===========================================================================
+
+  // node derivations are computed once like the id graph's (see IdGraphClass), but only when every
+  // id is bound, since a partial graph's node derivations throw for its unbound ids
+
+  @Override
+  public void warm() {
+
+    idGraph.warm();
+
+    if (!unboundIdSet().isEmpty())
+      return;
+
+    rootNodeSet();
+    leafNodeSet();
+    optionalTopsortNodeList();
+  }
+
   // ===========================================================================
   // ids
   // ===========================================================================
@@ -99,18 +126,72 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.filterIdGraph(ids);
   }
 
+  @Override
+  public IdGraph<Id> filterIdGraphView(Set<Id> ids) {
+    return idGraph.filterIdGraphView(ids);
+  }
+
+  @Override
+  public IdGraphIndex<Id> idGraphIndex() {
+    return idGraph.idGraphIndex();
+  }
+
+  // the nodes aren't included
+  @Override
+  public long fingerprint() {
+    return idGraph.fingerprint();
+  }
+
+  // ===========================================================================
+  // diff (nodes aren't compared)
+  // ===========================================================================
+
+  @Override
+  public IdGraphDiff<Id> diff(IdGraph<Id> newer) {
+
+    // compare id graphs, so a newer node graph's shared structure is still found
+    if (newer instanceof Graph)
+      newer = ((Graph<Id, ?>) newer).idGraph();
+
+    return idGraph.diff(newer);
+  }
+
+  // ===========================================================================
+  // persistent updates (nodes aren't carried over)
+  // ===========================================================================
+
+  @Override
+  public IdGraph<Id> withId(Id id) {
+    return idGraph.withId(id);
+  }
+
+  @Override
+  public IdGraph<Id> withoutId(Id id) {
+    return idGraph.withoutId(id);
+  }
+
+  @Override
+  public IdGraph<Id> withArc(Id parentId, Id childId) {
+    return idGraph.withArc(parentId, childId);
+  }
+
+  @Override
+  public IdGraph<Id> withoutArc(Id parentId, Id childId) {
+    return idGraph.withoutArc(parentId, childId);
+  }
+
   // ===========================================================================
   // nodeSet
   // ===========================================================================
 
   @Override
   public ImmutableSet<Node> nodeSet() {
-    return id__node.values();
+    return nodeTable.nodeSet();
   }
 
   @Override
   public int nodeSize() {
-    return id__node.size();
+    return nodeTable.size();
   }
 
   // ===========================================================================
@@ -119,21 +200,21 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
   @Override
   public ImmutableBiMap<Id, Node> id__node() {
-    return id__node;
+    return nodeTable.id__node();
   }
 
   // ===================================
 
   @Override
   public boolean containsNodeForId(Id id) {
-    return id__node.containsKey(id);
+    return nodeTable.node(id) != null;
   }
 
   // ===================================
 
   @Override
   public Id getId(Node node) {
-    return id__node.inverse().get(node);
+    return id__node().inverse().get(node);
   }
 
   // ===================================
@@ -141,10 +222,12 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
   @Override
   public Node getNode(Id id) {
 
-    if (!containsNodeForId(id))
+    Node node = nodeTable.node(id);
+
+    if (node == null)
       throw new NotContained("id = %s", id);
 
-    return id__node.get(id);
+    return node;
   }
 
   // ===================================
@@ -160,18 +243,21 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return nodeLambda;
   }
 
-  private Fn1<Id, Node> nodeLambda;
+  private volatile Fn1<Id, Node> nodeLambda;
 
   // ===================================
 
   @Override
   public ImmutableSet<Id> unboundIdSet() {
     if (unboundIds == null)
-      unboundIds = ImmutableSet.copyOf(Sets.difference(idSet(), id__node.keySet()));
+      synchronized (this) {
+        if (unboundIds == null)
+          unboundIds = nodeTable.unboundIdSet(idGraph);
+      }
     return unboundIds;
   }
 
-  private ImmutableSet<Id> unboundIds;
+  private volatile ImmutableSet<Id> unboundIds;
 
   // ===========================================================================
   // parents
@@ -234,6 +320,11 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.isAncestorOf(id, potentialDescendant, inclusive);
   }
 
+  @Override
+  public boolean isAncestorWithin(Id id, Id potentialDescendant, int maxDistance) {
+    return idGraph.isAncestorWithin(id, potentialDescendant, maxDistance);
+  }
+
   @Override
   public Iterable<Id> ancestorIdIterable(Id id, boolean inclusive) {
     return idGraph.ancestorIdIterable(id, inclusive);
@@ -244,6 +335,18 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.ancestorIdIterable(ids, inclusive);
   }
 
+  @Override
+  public ImmutableMap<Id, Integer> ancestorIdDistanceMap(Id id, boolean inclusive,
+      int maxDistance) {
+    return idGraph.ancestorIdDistanceMap(id, inclusive, maxDistance);
+  }
+
+  @Override
+  public ImmutableMap<Id, Integer> ancestorIdDistanceMap(Set<Id> ids, boolean inclusive,
+      int maxDistance, int maxSize) {
+    return idGraph.ancestorIdDistanceMap(ids, inclusive, maxDistance, maxSize);
+  }
+
   @Override
   public ImmutableSet<Id> ancestorIdSet(Id id, boolean inclusive) {
     return idGraph.ancestorIdSet(id, inclusive);
@@ -264,6 +367,16 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.ancestorIdGraph(ids, inclusive);
   }
 
+  @Override
+  public void visitAncestorIds(Id id, TraverseVisitor<Id> visitor) {
+    idGraph.visitAncestorIds(id, visitor);
+  }
+
+  @Override
+  public void visitAncestorIds(Set<Id> ids, TraverseVisitor<Id> visitor) {
+    idGraph.visitAncestorIds(ids, visitor);
+  }
+
   // ===================================
 
   @Override
@@ -295,11 +408,28 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.isDescendantOf(id, potentialAncestor, inclusive);
   }
 
+  @Override
+  public boolean isDescendantWithin(Id id, Id potentialAncestor, int maxDistance) {
+    return idGraph.isDescendantWithin(id, potentialAncestor, maxDistance);
+  }
+
   @Override
   public Iterable<Id> descendantIdIterable(Id id, boolean inclusive) {
     return idGraph.descendantIdIterable(id, inclusive);
   }
 
+  @Override
+  public ImmutableMap<Id, Integer> descendantIdDistanceMap(Id id, boolean inclusive,
+      int maxDistance) {
+    return idGraph.descendantIdDistanceMap(id, inclusive, maxDistance);
+  }
+
+  @Override
+  public ImmutableMap<Id, Integer> descendantIdDistanceMap(Set<Id> ids, boolean inclusive,
+      int maxDistance, int maxSize) {
+    return idGraph.descendantIdDistanceMap(ids, inclusive, maxDistance, maxSize);
+  }
+
   @Override
   public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive) {
     return idGraph.descendantIdSet(id, inclusive);
@@ -325,6 +455,16 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.descendantIdGraph(ids, inclusive);
   }
 
+  @Override
+  public void visitDescendantIds(Id id, TraverseVisitor<Id> visitor) {
+    idGraph.visitDescendantIds(id, visitor);
+  }
+
+  @Override
+  public void visitDescendantIds(Set<Id> ids, TraverseVisitor<Id> visitor) {
+    idGraph.visitDescendantIds(ids, visitor);
+  }
+
   // ===================================
 
   @Override
@@ -368,11 +508,14 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
   @Override
   public ImmutableSet<Node> rootNodeSet() {
     if (rootNodes == null)
-      rootNodes = transformSet(rootIdSet(), false);
+      synchronized (this) {
+        if (rootNodes == null)
+          rootNodes = transformSet(rootIdSet(), false);
+      }
     return rootNodes;
   }
 
-  private ImmutableSet<Node> rootNodes;
+  private volatile ImmutableSet<Node> rootNodes;
 
   // ===========================================================================
   // leaves (sinks)
@@ -395,11 +538,14 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
   @Override
   public ImmutableSet<Node> leafNodeSet() {
     if (leafNodes == null)
-      leafNodes = transformSet(leafIdSet(), false);
+      synchronized (this) {
+        if (leafNodes == null)
+          leafNodes = transformSet(leafIdSet(), false);
+      }
     return leafNodes;
   }
 
-  private ImmutableSet<Node> leafNodes;
+  private volatile ImmutableSet<Node> leafNodes;
 
   // ===========================================================================
   // topological sort
@@ -422,17 +568,43 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
   @Override
   public Optional<ImmutableList<Node>> optionalTopsortNodeList() {
 
-    if (optionalTopsortNodeList == null) {
-      if (optionalTopsortIdList().isPresent())
-        optionalTopsortNodeList = Optional.of(transformList(optionalTopsortIdList().get(), false));
-      else
-        optionalTopsortNodeList = Optional.absent();
-    }
-
+    if (optionalTopsortNodeList == null)
+      synchronized (this) {
+        if (optionalTopsortNodeList == null) {
+          if (optionalTopsortIdList().isPresent())
+            optionalTopsortNodeList =
+                Optional.of(transformList(optionalTopsortIdList().get(), false));
+          else
+            optionalTopsortNodeList = Optional.absent();
+        }
+      }
     return optionalTopsortNodeList;
   }
 
-  private Optional<ImmutableList<Node>> optionalTopsortNodeList;
+  private volatile Optional<ImmutableList<Node>> optionalTopsortNodeList;
+
+  // ===========================================================================
+  // strongly connected components
+  // ===========================================================================
+
+  @Override
+  public IdGraphCondensation<Id> condensation() {
+    return idGraph.condensation();
+  }
+
+  // ===========================================================================
+  // weakly connected components
+  // ===========================================================================
+
+  @Override
+  public ImmutableList<ImmutableSet<Id>> weakComponentList() {
+    return idGraph.weakComponentList();
+  }
+
+  @Override
+  public ImmutableList<IdGraph<Id>> componentIdGraphs() {
+    return idGraph.componentIdGraphs();
+  }
 
   // ===========================================================================
   // generic traversal
@@ -466,6 +638,13 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
     return idGraph.traverseIdList(depthFirst, inclusive, startId, expand);
   }
 
+  @Override
+  public void visitIds(ImmutableList<Id> startIds, Fn1<Id, List<Id>> expand,
+      TraverseVisitor<Id> visitor) {
+
+    idGraph.visitIds(startIds, expand, visitor);
+  }
+
   // ===================================
 
   @Override
@@ -511,14 +690,16 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
     ImmutableSet.Builder<Node> nodeSet = ImmutableSet.builder();
 
-    for (Id id : ids)
-      if (!containsNodeForId(id))
-        if (skipMissingNodes)
-          continue;
-        else
-          throw new NotContained("graph does not have node with id = %s", id);
-      else
-        nodeSet.add(id__node.get(id));
+    // one lookup per id
+    for (Id id : ids) {
+
+      Node node = nodeTable.node(id);
+
+      if (node != null)
+        nodeSet.add(node);
+      else if (!skipMissingNodes)
+        throw new NotContained("graph does not have node with id = %s", id);
+    }
 
     return nodeSet.build();
   }
@@ -535,14 +716,16 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
     ImmutableList.Builder<Node> nodeList = ImmutableList.builder();
 
-    for (Id id : ids)
-      if (!containsNodeForId(id))
-        if (skipMissingNodes)
-          continue;
-        else
-          throw new NotContained("graph does not have node with id = %s", id);
-      else
-        nodeList.add(id__node.get(id));
+    // one lookup per id
+    for (Id id : ids) {
+
+      Node node = nodeTable.node(id);
+
+      if (node != null)
+        nodeList.add(node);
+      else if (!skipMissingNodes)
+        throw new NotContained("graph does not have node with id = %s", id);
+    }
 
     return nodeList.build();
   }
@@ -562,13 +745,15 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
     Id id = optionalId.get();
 
-    if (!containsNodeForId(id))
+    Node node = nodeTable.node(id);
+
+    if (node == null)
       if (skipMissingNode)
         return Optional.absent();
       else
         throw new NotContained("graph does not have node with id = %s", id);
 
-    return Optional.of(getNode(id));
+    return Optional.of(node);
   }
 
   // ===================================
@@ -608,22 +793,22 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
       @Override
       public boolean hasNext() {
 
-        findNextIdWithNode();
+        findNextNode();
 
-        return nextId != null;
+        return nextNode != null;
       }
 
       @Override
       public Node next() {
 
-        findNextIdWithNode();
+        findNextNode();
 
-        if (nextId == null)
+        if (nextNode == null)
           throw new NoSuchElementException();
 
-        Node node = getNode(nextId);
+        Node node = nextNode;
 
-        nextId = null;
+        nextNode = null;
 
         return node;
       }
@@ -635,23 +820,20 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
       // ===========
 
-      private void findNextIdWithNode() {
+      private void findNextNode() {
 
-        while (nextId == null && idIterator.hasNext()) {
+        while (nextNode == null && idIterator.hasNext()) {
 
           Id id = idIterator.next();
 
-          if (!containsNodeForId(id))
-            if(skipMissingNodes)
-              continue;
-            else
-              throw new NotContained("graph does not have node with id = %s", id);
+          nextNode = nodeTable.node(id);
 
-          nextId = id;
+          if (nextNode == null && !skipMissingNodes)
+            throw new NotContained("graph does not have node with id = %s", id);
         }
       }
 
-      private Id nextId;
+      private Node nextNode;
 
     };
   }
@@ -667,12 +849,12 @@ public class GraphClass<Id, Node> extends ValueMixin implements Graph<Id, Node>
 
   @Override
   public int size() {
-    return nodeSet().size();
+    return nodeSize();
   }
 
   @Override
   public boolean isEmpty() {
-    return nodeSet().isEmpty();
+    return nodeSize() == 0;
   }
 
   @Override
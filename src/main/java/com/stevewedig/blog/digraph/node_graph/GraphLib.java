@@ -1,5 +1,6 @@
 package com.stevewedig.blog.digraph.node_graph;
 
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.*;
@@ -25,6 +26,14 @@ public abstract class GraphLib {
     return new GraphClass<>(idGraph, id__node, false);
   }
 
+  /**
+   * Create a Graph from the nested IdGraph (the arc structure) and a node for each id, keeping the nodes in an array aligned with the IdGraph's index instead of a bimap (which is only built if requested). Each id must have a distinct node.
+   */
+  public static <Id, Node> Graph<Id, Node> indexedGraph(IdGraph<Id> idGraph, Map<Id, Node> id__node) {
+
+    return new GraphClass<>(idGraph, NodeTable.fromMap(idGraph.idGraphIndex(), id__node), false);
+  }
+
   // ===========================================================================
   // graph from up nodes
   // ===========================================================================
@@ -36,9 +45,8 @@ public abstract class GraphLib {
 
     IdGraph<Id> idGraph = UpNodeLib.nodes__idGraph(nodeSet);
 
-    ImmutableBiMap<Id, Node> id__node = UpNodeLib.nodes__nodeMap(nodeSet);
-
-    return graph(idGraph, id__node);
+    // the nodes are placed at their ids' indexes, so they aren't hashed into a bimap
+    return new GraphClass<>(idGraph, NodeTable.fromNodes(idGraph.idGraphIndex(), nodeSet), false);
   }
 
   /**
@@ -76,9 +84,8 @@ public abstract class GraphLib {
 
     IdGraph<Id> idGraph = DownNodeLib.nodes__idGraph(nodeSet);
 
-    ImmutableBiMap<Id, Node> id__node = DownNodeLib.nodes__nodeMap(nodeSet);
-
-    return graph(idGraph, id__node);
+    // the nodes are placed at their ids' indexes, so they aren't hashed into a bimap
+    return new GraphClass<>(idGraph, NodeTable.fromNodes(idGraph.idGraphIndex(), nodeSet), false);
   }
 
   /**
@@ -0,0 +1,192 @@
+package com.stevewedig.blog.digraph.node_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.errors.NotContained;
+import com.stevewedig.blog.util.LongIterator;
+
+/**
+ * The nodes of a graph with long ids, keyed by primitive longs.
+ *
+ * Nodes are kept in an array aligned with a LongIdGraph's sorted ids, so getting a node is a
+ * binary search over a long array, and neither ids nor nodes are hashed.
+ */
+public class LongNodeMap<Node> {
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final LongIdGraph idGraph;
+
+  // nodes[i] is the node of idGraph.id(i)
+  private final Object[] nodes;
+
+  // ===========================================================================
+  // constructor
+  // ===========================================================================
+
+  /**
+   * Create a node map from a graph and a node for each of its ids.
+   */
+  public LongNodeMap(LongIdGraph idGraph, Map<Long, Node> id__node) throws GraphIsMissingNodes,
+      GraphHadUnexpectedIds {
+
+    this.idGraph = idGraph;
+
+    nodes = new Object[idGraph.idSize()];
+
+    List<Long> unboundIds = new ArrayList<>();
+
+    for (int index = 0; index < nodes.length; index++) {
+
+      nodes[index] = id__node.get(idGraph.id(index));
+
+      if (nodes[index] == null)
+        unboundIds.add(idGraph.id(index));
+    }
+
+    if (!unboundIds.isEmpty())
+      throw new GraphIsMissingNodes("unbound ids = %s", unboundIds);
+
+    // every graph id is bound, so the node map has extra ids iff it's bigger
+    if (id__node.size() != nodes.length)
+      for (Long id : id__node.keySet())
+        if (!idGraph.containsId(id))
+          throw new GraphHadUnexpectedIds("unexpectedId = %s", id);
+  }
+
+  /**
+   * Create a node map with the ids, arcs, and nodes of a graph (dags and trees stay dags and
+   * trees, without being validated again).
+   */
+  public static <Node> LongNodeMap<Node> fromGraph(Graph<Long, Node> graph) {
+
+    IdGraph<Long> idGraph = graph.idGraph();
+
+    LongIdGraph longIdGraph;
+
+    if (idGraph instanceof IdTree)
+      longIdGraph = LongIdGraphLib.fromIdTree((IdTree<Long>) idGraph);
+    else if (idGraph instanceof IdDag)
+      longIdGraph = LongIdGraphLib.fromIdDag((IdDag<Long>) idGraph);
+    else
+      longIdGraph = LongIdGraphLib.fromIdGraph(idGraph);
+
+    return new LongNodeMap<Node>(longIdGraph, graph.id__node());
+  }
+
+  // ===========================================================================
+  // idGraph
+  // ===========================================================================
+
+  public LongIdGraph idGraph() {
+    return idGraph;
+  }
+
+  // ===========================================================================
+  // nodes
+  // ===========================================================================
+
+  public int nodeSize() {
+    return nodes.length;
+  }
+
+  public boolean containsNodeForId(long id) {
+    return idGraph.containsId(id);
+  }
+
+  /**
+   * Getting an id's node.
+   */
+  public Node getNode(long id) throws NotContained {
+    return node(idGraph.index(id));
+  }
+
+  /**
+   * The nodes, in ascending id order.
+   */
+  public ImmutableList<Node> nodeList() {
+
+    ImmutableList.Builder<Node> nodeList = ImmutableList.builder();
+
+    for (int index = 0; index < nodes.length; index++)
+      nodeList.add(node(index));
+
+    return nodeList.build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Node node(int index) {
+    return (Node) nodes[index];
+  }
+
+  // ===========================================================================
+  // transform
+  // ===========================================================================
+
+  /**
+   * Getting the node of each id.
+   */
+  public ImmutableList<Node> transformList(long[] ids) throws NotContained {
+
+    ImmutableList.Builder<Node> nodeList = ImmutableList.builder();
+
+    for (long id : ids)
+      nodeList.add(getNode(id));
+
+    return nodeList.build();
+  }
+
+  /**
+   * Iterating the node of each id.
+   */
+  public Iterator<Node> transformIterator(final LongIterator idIterator) {
+    return new UnmodifiableIterator<Node>() {
+
+      @Override
+      public boolean hasNext() {
+        return idIterator.hasNext();
+      }
+
+      @Override
+      public Node next() {
+        return getNode(idIterator.nextLong());
+      }
+    };
+  }
+
+  // ===========================================================================
+  // parents / children
+  // ===========================================================================
+
+  public ImmutableList<Node> parentNodeList(long id) {
+    return transformList(idGraph.parentIdArray(id));
+  }
+
+  public ImmutableList<Node> childNodeList(long id) {
+    return transformList(idGraph.childIdArray(id));
+  }
+
+  // ===========================================================================
+  // ancestors / descendants
+  // ===========================================================================
+
+  /**
+   * Iterating an id's ancestor nodes, depth first (see LongIdGraph.ancestorIdIterator).
+   */
+  public Iterator<Node> ancestorNodeIterator(long id, boolean inclusive) {
+    return transformIterator(idGraph.ancestorIdIterator(id, inclusive));
+  }
+
+  /**
+   * Iterating an id's descendant nodes, depth first (see LongIdGraph.descendantIdIterator).
+   */
+  public Iterator<Node> descendantNodeIterator(long id, boolean inclusive) {
+    return transformIterator(idGraph.descendantIdIterator(id, inclusive));
+  }
+
+}
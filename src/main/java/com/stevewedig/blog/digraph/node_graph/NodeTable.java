@@ -0,0 +1,233 @@
+package com.stevewedig.blog.digraph.node_graph;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.digraph.node.BaseNode;
+
+/**
+ * Where a GraphClass keeps its nodes.
+ *
+ * A bimap table keeps the ImmutableBiMap it was created with. An indexed table keeps the nodes in
+ * an array aligned with an IdGraphIndex, so nodes are never hashed while the graph is queried by id
+ * (or built from nodes that know their ids), and the bimap is only built if it is requested.
+ */
+abstract class NodeTable<Id, Node> {
+
+  // ===========================================================================
+  // reading
+  // ===========================================================================
+
+  abstract int size();
+
+  /**
+   * An id's node, or null if the id has no node (one lookup, instead of containsKey and get).
+   */
+  abstract Node node(Id id);
+
+  abstract ImmutableBiMap<Id, Node> id__node();
+
+  abstract ImmutableSet<Node> nodeSet();
+
+  /**
+   * The graph's ids that have no node.
+   */
+  abstract ImmutableSet<Id> unboundIdSet(IdGraph<Id> idGraph);
+
+  /**
+   * The ids with nodes that aren't in the graph.
+   */
+  abstract Set<Id> unexpectedIdSet(IdGraph<Id> idGraph, boolean allowPartial);
+
+  // ===========================================================================
+  // creating
+  // ===========================================================================
+
+  static <Id, Node> NodeTable<Id, Node> fromBiMap(ImmutableBiMap<Id, Node> id__node) {
+    return new BiMapNodeTable<>(id__node);
+  }
+
+  /**
+   * Place each node at its id's index (ids that aren't in the index are unexpected, and a node can
+   * only belong to one id, since the bimap is built from the table).
+   */
+  static <Id, Node> NodeTable<Id, Node> fromMap(IdGraphIndex<Id> index, Map<Id, Node> id__node)
+      throws GraphHadUnexpectedIds, NodeIdConflict {
+
+    Object[] nodes = new Object[index.idSize()];
+    Map<Node, Id> node__id = new HashMap<>();
+
+    for (Map.Entry<Id, Node> entry : id__node.entrySet()) {
+
+      int i = index.indexOf(entry.getKey());
+
+      if (i == -1)
+        throw new GraphHadUnexpectedIds("unexpectedId = %s, graphIds = %s", entry.getKey(),
+            index.idSet());
+
+      Id otherId = node__id.put(entry.getValue(), entry.getKey());
+
+      if (otherId != null)
+        throw new NodeIdConflict("node = %s, ids = %s, %s", entry.getValue(), otherId,
+            entry.getKey());
+
+      nodes[i] = entry.getValue();
+    }
+
+    return new IndexedNodeTable<>(index, nodes, id__node.size());
+  }
+
+  /**
+   * Place each node at its id's index, without hashing the nodes (ids that aren't in the index
+   * would be unexpected, but nodes are only indexed against graphs created from them).
+   */
+  static <Id, Node extends BaseNode<Id>> NodeTable<Id, Node> fromNodes(IdGraphIndex<Id> index,
+      Iterable<Node> nodes) throws NodeIdConflict {
+
+    Object[] nodeArray = new Object[index.idSize()];
+    int size = 0;
+
+    for (Node node : nodes) {
+
+      int i = index.index(node.id());
+
+      if (nodeArray[i] != null)
+        throw new NodeIdConflict("id = %s", node.id());
+
+      nodeArray[i] = node;
+      size++;
+    }
+
+    return new IndexedNodeTable<>(index, nodeArray, size);
+  }
+
+  // ===========================================================================
+  // implementations
+  // ===========================================================================
+
+  private static class BiMapNodeTable<Id, Node> extends NodeTable<Id, Node> {
+
+    private final ImmutableBiMap<Id, Node> id__node;
+
+    public BiMapNodeTable(ImmutableBiMap<Id, Node> id__node) {
+      this.id__node = id__node;
+    }
+
+    @Override
+    int size() {
+      return id__node.size();
+    }
+
+    @Override
+    Node node(Id id) {
+      return id__node.get(id);
+    }
+
+    @Override
+    ImmutableBiMap<Id, Node> id__node() {
+      return id__node;
+    }
+
+    @Override
+    ImmutableSet<Node> nodeSet() {
+      return id__node.values();
+    }
+
+    @Override
+    ImmutableSet<Id> unboundIdSet(IdGraph<Id> idGraph) {
+      return ImmutableSet.copyOf(Sets.difference(idGraph.idSet(), id__node.keySet()));
+    }
+
+    // every graph id is bound (checked first when not partial), so the node map has extra ids iff
+    // it's bigger
+    @Override
+    Set<Id> unexpectedIdSet(IdGraph<Id> idGraph, boolean allowPartial) {
+
+      Set<Id> graphIds = idGraph.idSet();
+      Set<Id> nodeMapIds = id__node.keySet();
+
+      if (!allowPartial && nodeMapIds.size() == graphIds.size())
+        return ImmutableSet.of();
+
+      return Sets.difference(nodeMapIds, graphIds);
+    }
+  }
+
+  // ===================================
+
+  // nodes[i] is the node of index.id(i), or null if it has none
+  private static class IndexedNodeTable<Id, Node> extends NodeTable<Id, Node> {
+
+    private final IdGraphIndex<Id> index;
+    private final Object[] nodes;
+    private final int size;
+
+    public IndexedNodeTable(IdGraphIndex<Id> index, Object[] nodes, int size) {
+      this.index = index;
+      this.nodes = nodes;
+      this.size = size;
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    Node node(Id id) {
+
+      int i = index.indexOf(id);
+
+      return i == -1 ? null : (Node) nodes[i];
+    }
+
+    // built on demand, in index order
+    @SuppressWarnings("unchecked")
+    @Override
+    ImmutableBiMap<Id, Node> id__node() {
+      if (id__node == null)
+        synchronized (this) {
+          if (id__node == null) {
+
+            ImmutableBiMap.Builder<Id, Node> builder = ImmutableBiMap.builder();
+
+            for (int i = 0; i < nodes.length; i++)
+              if (nodes[i] != null)
+                builder.put(index.id(i), (Node) nodes[i]);
+
+            id__node = builder.build();
+          }
+        }
+      return id__node;
+    }
+
+    private volatile ImmutableBiMap<Id, Node> id__node;
+
+    @Override
+    ImmutableSet<Node> nodeSet() {
+      return id__node().values();
+    }
+
+    @Override
+    ImmutableSet<Id> unboundIdSet(IdGraph<Id> idGraph) {
+
+      ImmutableSet.Builder<Id> unboundIds = ImmutableSet.builder();
+
+      for (int i = 0; i < nodes.length; i++)
+        if (nodes[i] == null)
+          unboundIds.add(index.id(i));
+
+      return unboundIds.build();
+    }
+
+    // nodes can only be placed at the graph's indexes
+    @Override
+    Set<Id> unexpectedIdSet(IdGraph<Id> idGraph, boolean allowPartial) {
+      return ImmutableSet.of();
+    }
+  }
+
+}
@@ -36,4 +36,23 @@ public interface Tree<Id, Node> extends Dag<Id, Node>, PartialTree<Id, Node> {
    */
   ImmutableList<Node> ancestorNodeList(Id id, boolean inclusive);
 
+  // ===========================================================================
+  // lowest common ancestor
+  // ===========================================================================
+
+  /**
+   * The lowest common ancestor node of two ids.
+   */
+  Node lowestCommonAncestorNode(Id id1, Id id2);
+
+  // ===========================================================================
+  // paths
+  // ===========================================================================
+
+  /**
+   * The nodes on the path between two ids, climbing from fromId to the lowest common ancestor and
+   * then descending to toId.
+   */
+  ImmutableList<Node> pathNodeList(Id fromId, Id toId);
+
 }
@@ -26,6 +26,11 @@ public class TreeClass<Id, Node> extends DagClass<Id, Node> implements Tree<Id,
     this.idTree = idTree;
   }
 
+  TreeClass(IdTree<Id> idTree, NodeTable<Id, Node> nodeTable, boolean allowPartial) {
+    super(idTree, nodeTable, allowPartial);
+    this.idTree = idTree;
+  }
+
   // ===========================================================================
   // idTree
   // ===========================================================================
@@ -73,6 +78,78 @@ public class TreeClass<Id, Node> extends DagClass<Id, Node> implements Tree<Id,
     return transformList(ancestorIdList(id, inclusive), false);
   }
 
+  // ===========================================================================
+  // lowest common ancestor
+  // ===========================================================================
+
+  @Override
+  public Id lowestCommonAncestor(Id id1, Id id2) {
+    return idTree.lowestCommonAncestor(id1, id2);
+  }
+
+  @Override
+  public Id lowestCommonAncestor(Set<Id> ids) {
+    return idTree.lowestCommonAncestor(ids);
+  }
+
+  @Override
+  public ImmutableList<Id> lowestCommonAncestorList(List<Id> ids1, List<Id> ids2) {
+    return idTree.lowestCommonAncestorList(ids1, ids2);
+  }
+
+  @Override
+  public Node lowestCommonAncestorNode(Id id1, Id id2) {
+    return getNode(lowestCommonAncestor(id1, id2));
+  }
+
+  // ===========================================================================
+  // paths
+  // ===========================================================================
+
+  @Override
+  public int distance(Id id1, Id id2) {
+    return idTree.distance(id1, id2);
+  }
+
+  @Override
+  public ImmutableList<Id> pathIdList(Id fromId, Id toId) {
+    return idTree.pathIdList(fromId, toId);
+  }
+
+  @Override
+  public ImmutableList<Node> pathNodeList(Id fromId, Id toId) {
+    return transformList(pathIdList(fromId, toId), false);
+  }
+
+  // ===========================================================================
+  // persistent updates (nodes aren't carried over)
+  // ===========================================================================
+
+  @Override
+  public IdTree<Id> withId(Id id) {
+    return idTree.withId(id);
+  }
+
+  @Override
+  public IdTree<Id> withoutId(Id id) {
+    return idTree.withoutId(id);
+  }
+
+  @Override
+  public IdTree<Id> withArc(Id parentId, Id childId) {
+    return idTree.withArc(parentId, childId);
+  }
+
+  @Override
+  public IdTree<Id> withoutArc(Id parentId, Id childId) {
+    return idTree.withoutArc(parentId, childId);
+  }
+
+  @Override
+  public IdTree<Id> withMovedId(Id id, Id newParentId) {
+    return idTree.withMovedId(id, newParentId);
+  }
+
   // ===========================================================================
   // descendants
   // ===========================================================================
@@ -82,6 +159,16 @@ public class TreeClass<Id, Node> extends DagClass<Id, Node> implements Tree<Id,
     return idTree.descendantIdTree(id);
   }
 
+  @Override
+  public ImmutableSet<Id> filterDescendantIds(Set<Id> ids, Id ancestorId, boolean inclusive) {
+    return idTree.filterDescendantIds(ids, ancestorId, inclusive);
+  }
+
+  @Override
+  public ImmutableSet<Id> descendantIdSet(Id id, boolean inclusive, int maxDistance) {
+    return idTree.descendantIdSet(id, inclusive, maxDistance);
+  }
+
   // ===========================================================================
   // root (source)
   // ===========================================================================
@@ -120,4 +207,14 @@ public class TreeClass<Id, Node> extends DagClass<Id, Node> implements Tree<Id,
     return idTree.leastDeep(ids);
   }
 
+  @Override
+  public ImmutableSet<Id> levelIdSet(int depth) {
+    return idTree.levelIdSet(depth);
+  }
+
+  @Override
+  public ImmutableList<ImmutableSet<Id>> levelIdSetList() {
+    return idTree.levelIdSetList();
+  }
+
 }
@@ -1,5 +1,6 @@
 package com.stevewedig.blog.digraph.node_graph;
 
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableBiMap;
@@ -29,6 +30,14 @@ public abstract class TreeLib {
     return new TreeClass<>(idTree, id__node, false);
   }
 
+  /**
+   * Create a Tree from the nested IdTree (the arc structure) and a node for each id, keeping the nodes in an array aligned with the IdTree's index instead of a bimap (which is only built if requested). Each id must have a distinct node.
+   */
+  public static <Id, Node> Tree<Id, Node> indexedTree(IdTree<Id> idTree, Map<Id, Node> id__node) {
+
+    return new TreeClass<>(idTree, NodeTable.fromMap(idTree.idGraphIndex(), id__node), false);
+  }
+
   // ===========================================================================
   // tree from up nodes
   // ===========================================================================
@@ -40,9 +49,8 @@ public abstract class TreeLib {
 
     IdTree<Id> idTree = UpNodeLib.nodes__idTree(nodeSet);
 
-    ImmutableBiMap<Id, Node> id__node = UpNodeLib.nodes__nodeMap(nodeSet);
-
-    return tree(idTree, id__node);
+    // the nodes are placed at their ids' indexes, so they aren't hashed into a bimap
+    return new TreeClass<>(idTree, NodeTable.fromNodes(idTree.idGraphIndex(), nodeSet), false);
   }
 
   /**
@@ -80,9 +88,8 @@ public abstract class TreeLib {
 
     IdTree<Id> idTree = DownNodeLib.nodes__idTree(nodeSet);
 
-    ImmutableBiMap<Id, Node> id__node = DownNodeLib.nodes__nodeMap(nodeSet);
-
-    return tree(idTree, id__node);
+    // the nodes are placed at their ids' indexes, so they aren't hashed into a bimap
+    return new TreeClass<>(idTree, NodeTable.fromNodes(idTree.idGraphIndex(), nodeSet), false);
   }
 
   /**
@@ -0,0 +1,444 @@
+package com.stevewedig.blog.util;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.value_objects.ValueMixin;
+
+/**
+ * An immutable map where updates return a new map sharing structure with the old one (a hash array
+ * mapped trie), so with() and without() copy O(log n) small arrays instead of the whole map.
+ *
+ * Keys need consistent hashCode() and equals(), null keys and values aren't supported.
+ */
+public class HashTrie<Key, Value> extends ValueMixin {
+
+  // 5 hash bits per level, so nodes have up to 32 slots
+  private static final int bitsPerLevel = 5;
+  private static final int levelMask = (1 << bitsPerLevel) - 1;
+
+  // ===========================================================================
+  // state
+  // ===========================================================================
+
+  private final Node root;
+  private final int size;
+
+  @Override
+  protected Object[] fields() {
+    return array("map", toMap());
+  }
+
+  private HashTrie(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  private static final HashTrie<Object, Object> empty = new HashTrie<>(new Node(0,
+      new Object[0]), 0);
+
+  /**
+   * The empty trie.
+   */
+  @SuppressWarnings("unchecked")
+  public static <Key, Value> HashTrie<Key, Value> of() {
+    return (HashTrie<Key, Value>) empty;
+  }
+
+  // ===========================================================================
+  // queries
+  // ===========================================================================
+
+  /**
+   * The number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Getting a key's value, null if the key isn't contained.
+   */
+  @SuppressWarnings("unchecked")
+  public Value get(Key key) {
+    return (Value) root.get(key, key.hashCode(), 0);
+  }
+
+  public boolean containsKey(Key key) {
+    return get(key) != null;
+  }
+
+  // ===========================================================================
+  // updates
+  // ===========================================================================
+
+  /**
+   * A trie with a key mapped to a value (returns this trie if it already was).
+   */
+  public HashTrie<Key, Value> with(Key key, Value value) {
+
+    Object current = root.get(key, key.hashCode(), 0);
+
+    if (value.equals(current))
+      return this;
+
+    Node newRoot = root.with(key, value, key.hashCode(), 0);
+
+    return new HashTrie<>(newRoot, current == null ? size + 1 : size);
+  }
+
+  /**
+   * A trie without a key (returns this trie if the key isn't contained).
+   */
+  public HashTrie<Key, Value> without(Key key) {
+
+    if (!containsKey(key))
+      return this;
+
+    Node newRoot = root.without(key, key.hashCode(), 0);
+
+    return new HashTrie<>(newRoot == null ? empty.root : newRoot, size - 1);
+  }
+
+  // ===========================================================================
+  // copying
+  // ===========================================================================
+
+  /**
+   * Copy the keys into an ImmutableSet (O(n), in trie order).
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableSet<Key> keySet() {
+
+    ImmutableSet.Builder<Object> keys = ImmutableSet.builder();
+
+    root.addKeys(keys);
+
+    return (ImmutableSet<Key>) keys.build();
+  }
+
+  /**
+   * Copy the entries into an ImmutableMap (O(n), in trie order).
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableMap<Key, Value> toMap() {
+
+    ImmutableMap.Builder<Object, Object> entries = ImmutableMap.builder();
+
+    root.addEntries(entries);
+
+    return (ImmutableMap<Key, Value>) entries.build();
+  }
+
+  // ===========================================================================
+  // comparing
+  // ===========================================================================
+
+  /**
+   * The keys whose values differ between this trie and another, including keys only one contains.
+   * Subtrees the tries share are skipped, so comparing a trie with one derived from it by updates
+   * takes time proportional to the updates rather than to the size of the tries.
+   */
+  @SuppressWarnings("unchecked")
+  public ImmutableSet<Key> changedKeySet(HashTrie<Key, Value> other) {
+
+    ImmutableSet.Builder<Object> keys = ImmutableSet.builder();
+
+    Node.addChangedKeys(root, other.root, 0, keys);
+
+    return (ImmutableSet<Key>) keys.build();
+  }
+
+  // ===========================================================================
+  // node
+  // ===========================================================================
+
+  // slots holds a (key, value) pair for each set bitmap bit, where a null key means the value is a
+  // child node; nodes past the last hash bits hold colliding keys in an unordered list (bitmap 0)
+  private static class Node {
+
+    private final int bitmap;
+    private final Object[] slots;
+
+    public Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    private boolean isCollision(int shift) {
+      return shift >= 32;
+    }
+
+    // =================================
+
+    public Object get(Object key, int hash, int shift) {
+
+      if (isCollision(shift)) {
+        for (int i = 0; i < slots.length; i += 2)
+          if (slots[i].equals(key))
+            return slots[i + 1];
+        return null;
+      }
+
+      int bit = bit(hash, shift);
+
+      if ((bitmap & bit) == 0)
+        return null;
+
+      int i = 2 * slot(bit);
+
+      if (slots[i] == null)
+        return ((Node) slots[i + 1]).get(key, hash, shift + bitsPerLevel);
+
+      return slots[i].equals(key) ? slots[i + 1] : null;
+    }
+
+    // =================================
+
+    public Node with(Object key, Object value, int hash, int shift) {
+
+      if (isCollision(shift)) {
+
+        for (int i = 0; i < slots.length; i += 2)
+          if (slots[i].equals(key))
+            return new Node(0, replaced(slots, i + 1, value));
+
+        Object[] newSlots = new Object[slots.length + 2];
+        System.arraycopy(slots, 0, newSlots, 0, slots.length);
+        newSlots[slots.length] = key;
+        newSlots[slots.length + 1] = value;
+        return new Node(0, newSlots);
+      }
+
+      int bit = bit(hash, shift);
+      int i = 2 * slot(bit);
+
+      // empty slot: insert a pair
+      if ((bitmap & bit) == 0) {
+
+        Object[] newSlots = new Object[slots.length + 2];
+        System.arraycopy(slots, 0, newSlots, 0, i);
+        newSlots[i] = key;
+        newSlots[i + 1] = value;
+        System.arraycopy(slots, i, newSlots, i + 2, slots.length - i);
+
+        return new Node(bitmap | bit, newSlots);
+      }
+
+      // child node: update it
+      if (slots[i] == null) {
+        Node child = (Node) slots[i + 1];
+        return new Node(bitmap, replaced(slots, i + 1, child.with(key, value, hash, shift
+            + bitsPerLevel)));
+      }
+
+      // same key: replace the value
+      if (slots[i].equals(key))
+        return new Node(bitmap, replaced(slots, i + 1, value));
+
+      // different key: push both pairs down into a new child node
+      Object otherKey = slots[i];
+      Object otherValue = slots[i + 1];
+
+      Node child =
+          empty.root.with(otherKey, otherValue, otherKey.hashCode(), shift + bitsPerLevel).with(
+              key, value, hash, shift + bitsPerLevel);
+
+      Object[] newSlots = replaced(slots, i + 1, child);
+      newSlots[i] = null;
+
+      return new Node(bitmap, newSlots);
+    }
+
+    // a node with the key removed (the key must be contained), null if the node becomes empty
+    public Node without(Object key, int hash, int shift) {
+
+      if (isCollision(shift)) {
+
+        if (slots.length == 2)
+          return null;
+
+        for (int i = 0; i < slots.length; i += 2)
+          if (slots[i].equals(key))
+            return new Node(0, removed(slots, i));
+
+        throw new AssertionError("key not contained");
+      }
+
+      int bit = bit(hash, shift);
+      int i = 2 * slot(bit);
+
+      if (slots[i] != null) {
+
+        if (slots.length == 2)
+          return null;
+
+        return new Node(bitmap & ~bit, removed(slots, i));
+      }
+
+      Node child = ((Node) slots[i + 1]).without(key, hash, shift + bitsPerLevel);
+
+      if (child == null) {
+
+        if (slots.length == 2)
+          return null;
+
+        return new Node(bitmap & ~bit, removed(slots, i));
+      }
+
+      // a child left with a single pair is inlined, keeping the trie as shallow as possible
+      if (child.slots.length == 2 && child.slots[0] != null) {
+        Object[] newSlots = replaced(slots, i + 1, child.slots[1]);
+        newSlots[i] = child.slots[0];
+        return new Node(bitmap, newSlots);
+      }
+
+      return new Node(bitmap, replaced(slots, i + 1, child));
+    }
+
+    // =================================
+
+    public void addKeys(ImmutableSet.Builder<Object> keys) {
+      for (int i = 0; i < slots.length; i += 2)
+        if (slots[i] == null)
+          ((Node) slots[i + 1]).addKeys(keys);
+        else
+          keys.add(slots[i]);
+    }
+
+    public void addEntries(ImmutableMap.Builder<Object, Object> entries) {
+      for (int i = 0; i < slots.length; i += 2)
+        if (slots[i] == null)
+          ((Node) slots[i + 1]).addEntries(entries);
+        else
+          entries.put(slots[i], slots[i + 1]);
+    }
+
+    // =================================
+
+    // nodes at the same level, compared slot by slot: pairs of child nodes are recursed into, and
+    // anything else compares entries (the same key can be stored at different depths)
+    public static void addChangedKeys(Node node, Node other, int shift,
+        ImmutableSet.Builder<Object> keys) {
+
+      if (node == other)
+        return;
+
+      if (node.isCollision(shift)) {
+        addChangedKeys(node.entries(), other.entries(), keys);
+        return;
+      }
+
+      for (int bits = node.bitmap | other.bitmap; bits != 0; bits &= bits - 1) {
+
+        int bit = bits & -bits;
+
+        boolean inNode = (node.bitmap & bit) != 0;
+        boolean inOther = (other.bitmap & bit) != 0;
+
+        int i = 2 * node.slot(bit);
+        int j = 2 * other.slot(bit);
+
+        if (inNode && inOther) {
+
+          Object key = node.slots[i];
+          Object otherKey = other.slots[j];
+
+          // two child nodes
+          if (key == null && otherKey == null) {
+            addChangedKeys((Node) node.slots[i + 1], (Node) other.slots[j + 1], shift
+                + bitsPerLevel, keys);
+            continue;
+          }
+
+          // two pairs with the same key
+          if (key != null && key.equals(otherKey)) {
+            if (!sameValue(node.slots[i + 1], other.slots[j + 1]))
+              keys.add(key);
+            continue;
+          }
+        }
+
+        Map<Object, Object> entries = new HashMap<>();
+        Map<Object, Object> otherEntries = new HashMap<>();
+
+        if (inNode)
+          putEntries(node.slots[i], node.slots[i + 1], entries);
+
+        if (inOther)
+          putEntries(other.slots[j], other.slots[j + 1], otherEntries);
+
+        addChangedKeys(entries, otherEntries, keys);
+      }
+    }
+
+    private static void addChangedKeys(Map<Object, Object> entries,
+        Map<Object, Object> otherEntries, ImmutableSet.Builder<Object> keys) {
+
+      for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+        Object otherValue = otherEntries.get(entry.getKey());
+        if (otherValue == null || !sameValue(entry.getValue(), otherValue))
+          keys.add(entry.getKey());
+      }
+
+      for (Object otherKey : otherEntries.keySet())
+        if (!entries.containsKey(otherKey))
+          keys.add(otherKey);
+    }
+
+    private static boolean sameValue(Object value, Object otherValue) {
+      return value == otherValue || value.equals(otherValue);
+    }
+
+    // a slot's pair, or the entries of its child node
+    private static void putEntries(Object key, Object value, Map<Object, Object> entries) {
+      if (key == null)
+        entries.putAll(((Node) value).entries());
+      else
+        entries.put(key, value);
+    }
+
+    private Map<Object, Object> entries() {
+
+      Map<Object, Object> entries = new HashMap<>();
+
+      for (int i = 0; i < slots.length; i += 2)
+        putEntries(slots[i], slots[i + 1], entries);
+
+      return entries;
+    }
+
+    // =================================
+
+    private int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & levelMask);
+    }
+
+    private int slot(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+  }
+
+  // ===========================================================================
+  // array helpers
+  // ===========================================================================
+
+  private static Object[] replaced(Object[] slots, int i, Object value) {
+    Object[] newSlots = slots.clone();
+    newSlots[i] = value;
+    return newSlots;
+  }
+
+  // removes the pair starting at i
+  private static Object[] removed(Object[] slots, int i) {
+    Object[] newSlots = new Object[slots.length - 2];
+    System.arraycopy(slots, 0, newSlots, 0, i);
+    System.arraycopy(slots, i + 2, newSlots, i, slots.length - i - 2);
+    return newSlots;
+  }
+
+}
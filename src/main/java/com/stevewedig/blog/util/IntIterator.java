@@ -0,0 +1,16 @@
+package com.stevewedig.blog.util;
+
+/**
+ * An iterator over primitive ints, so nothing is boxed (the same methods as Java 8's
+ * PrimitiveIterator.OfInt, which isn't available here).
+ */
+public interface IntIterator {
+
+  boolean hasNext();
+
+  /**
+   * The next int (throws NoSuchElementException if there isn't one).
+   */
+  int nextInt();
+
+}
@@ -0,0 +1,16 @@
+package com.stevewedig.blog.util;
+
+/**
+ * An iterator over primitive longs, so nothing is boxed (the same methods as Java 8's
+ * PrimitiveIterator.OfLong, which isn't available here).
+ */
+public interface LongIterator {
+
+  boolean hasNext();
+
+  /**
+   * The next long (throws NoSuchElementException if there isn't one).
+   */
+  long nextLong();
+
+}
@@ -36,19 +36,21 @@ class ObjectHelperClass implements ObjectHelper {
   public Object[] classAndFieldValues() {
     if (classAndFieldValues == null) {
 
-      classAndFieldValues = new Object[fieldCount() + 1];
+      Object[] values = new Object[fieldCount() + 1];
 
-      classAndFieldValues[0] = objectClass;
+      values[0] = objectClass;
 
       for (int i = 0; i < fieldCount(); i++)
-        classAndFieldValues[i + 1] = fieldNamesAndValues[i * 2 + 1];
+        values[i + 1] = fieldNamesAndValues[i * 2 + 1];
+
+      classAndFieldValues = values;
     }
 
     return classAndFieldValues;
   }
 
-  // created lazily and cached
-  private Object[] classAndFieldValues;
+  // created lazily and cached (filled before it's published, so threads never see a partial array)
+  private volatile Object[] classAndFieldValues;
 
   // ===========================================================================
   // fieldValues
@@ -58,17 +60,19 @@ class ObjectHelperClass implements ObjectHelper {
   public Object[] fieldValues() {
     if (fieldValues == null) {
 
-      fieldValues = new Object[fieldCount()];
+      Object[] values = new Object[fieldCount()];
 
       for (int i = 0; i < fieldCount(); i++)
-        fieldValues[i] = fieldNamesAndValues[i * 2 + 1];
+        values[i] = fieldNamesAndValues[i * 2 + 1];
+
+      fieldValues = values;
     }
 
     return fieldValues;
   }
 
-  // created lazily and cached
-  private Object[] fieldValues;
+  // created lazily and cached (filled before it's published)
+  private volatile Object[] fieldValues;
 
   // ===========================================================================
   // fieldMap
@@ -93,7 +97,7 @@ class ObjectHelperClass implements ObjectHelper {
   }
 
   // created lazily and cached
-  private ImmutableMap<String, Object> fieldMap;
+  private volatile ImmutableMap<String, Object> fieldMap;
 
   // ===========================================================================
   // objectString
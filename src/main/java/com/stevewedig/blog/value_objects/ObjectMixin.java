@@ -61,7 +61,9 @@ public abstract class ObjectMixin implements HasObjectHelper {
     return ObjectHelperLib.helper(getClass(), fields());
   }
 
-  private ObjectHelper cachedHelper;
+  // the helper's fields are final, and its lazy parts are safely published, so threads racing to
+  // create it just create equal helpers
+  private volatile ObjectHelper cachedHelper;
 
   // ===========================================================================
   // delegating to objectHelper
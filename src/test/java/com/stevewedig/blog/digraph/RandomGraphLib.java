@@ -0,0 +1,45 @@
+package com.stevewedig.blog.digraph;
+
+import java.util.Random;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+
+/**
+ * Random graphs over the ids 0 ... idSize - 1, for tests comparing implementations on many shapes.
+ */
+abstract class RandomGraphLib {
+
+  /**
+   * The ids 0 ... idSize - 1.
+   */
+  public static ImmutableSet<Integer> idSet(int idSize) {
+
+    ImmutableSet.Builder<Integer> ids = ImmutableSet.builder();
+    for (int id = 0; id < idSize; id++)
+      ids.add(id);
+
+    return ids.build();
+  }
+
+  /**
+   * Up to arcSize random arcs (repeated arcs are only kept once, and self arcs are allowed).
+   */
+  public static Multimap<Integer, Integer> id__parentIds(Random random, int idSize, int arcSize) {
+
+    Multimap<Integer, Integer> id__parentIds = HashMultimap.create();
+    for (int n = 0; n < arcSize; n++)
+      id__parentIds.put(random.nextInt(idSize), random.nextInt(idSize));
+
+    return id__parentIds;
+  }
+
+  public static IdGraph<Integer> randomGraph(Random random, int idSize, int arcSize) {
+    return IdGraphLib.fromParentMap(idSet(idSize), id__parentIds(random, idSize, arcSize));
+  }
+
+  public static IdGraphIndex<Integer> randomIndex(Random random, int idSize, int arcSize) {
+    return IdGraphIndex.fromParentMap(idSet(idSize), id__parentIds(random, idSize, arcSize));
+  }
+
+}
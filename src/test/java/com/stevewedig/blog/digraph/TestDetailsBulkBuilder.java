@@ -0,0 +1,132 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.digraph.node.*;
+import com.stevewedig.blog.errors.NotThrown;
+
+public class TestDetailsBulkBuilder {
+
+  @Test
+  public void testMatchesParentMap() {
+
+    Random random = new Random(0);
+
+    int idSize = 2000;
+
+    Multimap<Integer, Integer> id__parentIds =
+        RandomGraphLib.id__parentIds(random, idSize, 4 * idSize);
+
+    IdGraph<Integer> expected =
+        IdGraphLib.fromParentMap(RandomGraphLib.idSet(idSize), id__parentIds);
+
+    // presized too small, so the arrays grow, and the same arcs streamed from either direction
+    IdGraphBulkBuilder<Integer> up = IdGraphLib.bulkBuilder(1, 1);
+    IdGraphBulkBuilder<Integer> down = IdGraphLib.bulkBuilder();
+
+    for (int id = 0; id < idSize; id++) {
+      up.addParentIds(id, id__parentIds.get(id));
+      down.addId(id);
+    }
+
+    for (Map.Entry<Integer, Integer> entry : id__parentIds.entries())
+      down.addChildIds(entry.getValue(), ImmutableList.of(entry.getKey()));
+
+    assertEquals(idSize, up.idSize());
+    assertEquals(id__parentIds.size(), up.addedArcSize());
+
+    for (IdGraphBulkBuilder<Integer> builder : ImmutableList.of(up, down)) {
+
+      IdGraph<Integer> graph = builder.buildIdGraph();
+
+      assertEquals(expected, graph);
+      assertEquals(expected.id__childIds(), graph.id__childIds());
+      assertEquals(expected.idGraphIndex().arcSize(), graph.idGraphIndex().arcSize());
+    }
+  }
+
+  @Test
+  public void testDuplicatesAndIdOrder() {
+
+    IdGraphBulkBuilder<String> builder = IdGraphLib.bulkBuilder();
+
+    builder.addArc("a", "b").addArc("a", "b").addParentIds("c", ImmutableList.of("b", "a", "b"))
+        .addId("d").addChildIds("a", ImmutableList.of("c"));
+
+    assertTrue(builder.containsId("d"));
+    assertFalse(builder.containsId("e"));
+    assertEquals(6, builder.addedArcSize());
+
+    IdGraph<String> graph = builder.buildIdGraph();
+
+    // ids keep the order they were first seen in
+    assertEquals(ImmutableList.of("a", "b", "c", "d"), graph.idSet().asList());
+    assertEquals(3, graph.idGraphIndex().arcSize());
+    assertEquals(ImmutableSet.of("a", "b"), graph.parentIdSet("c"));
+
+    // the builder can keep being used
+    builder.addArc("d", "a");
+    assertEquals(ImmutableSet.of("d"), builder.buildIdGraph().parentIdSet("a"));
+    assertEquals(ImmutableSet.of(), graph.parentIdSet("a"));
+  }
+
+  @Test
+  public void testDagAndTreeValidation() {
+
+    IdGraphBulkBuilder<String> builder = IdGraphLib.bulkBuilder();
+    builder.addArc("a", "b").addArc("a", "c").addArc("b", "d");
+
+    IdTree<String> tree = builder.buildIdTree();
+    assertEquals(IdTreeLib.fromParentMap("b", "a", "c", "a", "d", "b"), tree);
+    assertEquals("a", tree.rootId());
+
+    builder.addArc("c", "d");
+
+    try {
+      builder.buildIdTree();
+      throw new NotThrown(TreeNodesCannotHaveMultipleParents.class);
+    } catch (TreeNodesCannotHaveMultipleParents e) {
+    }
+
+    IdDag<String> dag = builder.buildIdDag();
+    assertEquals(IdDagLib.fromParentMap("b", "a", "c", "a", "d", "b", "d", "c"), dag);
+
+    builder.addArc("d", "a");
+
+    try {
+      builder.buildIdDag();
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    try {
+      IdGraphLib.<String>bulkBuilder().buildIdTree();
+      throw new NotThrown(TreeCannotBeEmpty.class);
+    } catch (TreeCannotBeEmpty e) {
+    }
+  }
+
+  @Test
+  public void testNodesUseBulkBuilder() {
+
+    ImmutableSet<UpNode<String>> upNodes =
+        ImmutableSet.of(UpNodeLib.upNode("b", "a"), UpNodeLib.upNode("c", "a", "b"));
+
+    IdDag<String> upDag = UpNodeLib.nodes__idDag(upNodes);
+    assertEquals(IdDagLib.fromParentMap("b", "a", "c", "a", "c", "b"), upDag);
+
+    ImmutableSet<DownNode<String>> downNodes =
+        ImmutableSet.of(DownNodeLib.downNode("a", "b", "c"), DownNodeLib.downNode("b", "c"));
+
+    assertEquals(upDag, DownNodeLib.nodes__idDag(downNodes));
+    assertEquals(upDag.idSet(), DownNodeLib.nodes__idGraph(downNodes).idSet());
+  }
+
+}
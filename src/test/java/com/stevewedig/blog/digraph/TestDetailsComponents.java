@@ -0,0 +1,237 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+
+public class TestDetailsComponents {
+
+  @Test
+  public void testStrongComponentsMatchMutualReachability() {
+
+    Random random = new Random(0);
+
+    for (int arcSize : new int[] {0, 100, 200, 400, 2000}) {
+
+      IdGraph<Integer> graph = RandomGraphLib.randomGraph(random, 200, arcSize);
+
+      IdGraphCondensation<Integer> condensation = graph.condensation();
+
+      // ids share a component exactly when each is an ancestor of the other
+      for (int id = 0; id < 200; id++) {
+
+        Set<Integer> expected =
+            Sets.intersection(graph.ancestorIdSet(id, true), graph.descendantIdSet(id, true));
+
+        assertEquals(expected, condensation.component(id));
+      }
+
+      // the components partition the ids
+      int idCount = 0;
+      for (ImmutableSet<Integer> component : condensation.componentList())
+        idCount += component.size();
+      assertEquals(graph.idSize(), idCount);
+      assertEquals(graph.idSet(), condensation.id__component().keySet());
+
+      // the condensation has an arc for each arc between different components
+      IdDag<ImmutableSet<Integer>> dag = condensation.idDag();
+
+      Multimap<ImmutableSet<Integer>, ImmutableSet<Integer>> expectedParents =
+          HashMultimap.create();
+
+      for (Map.Entry<Integer, Integer> arc : graph.id__parentIds().entries()) {
+
+        ImmutableSet<Integer> component = condensation.component(arc.getKey());
+        ImmutableSet<Integer> parentComponent = condensation.component(arc.getValue());
+
+        if (!component.equals(parentComponent))
+          expectedParents.put(component, parentComponent);
+      }
+
+      assertEquals(expectedParents, dag.id__parentIds());
+
+      // the component list is a topological sort of the condensation
+      List<ImmutableSet<Integer>> componentList = condensation.componentList();
+      for (Map.Entry<ImmutableSet<Integer>, ImmutableSet<Integer>> arc : dag.id__parentIds()
+          .entries())
+        assertTrue(componentList.indexOf(arc.getValue()) < componentList.indexOf(arc.getKey()));
+
+      assertEquals(!graph.containsCycle(), condensation.isTrivial() && !containsSelfArc(graph));
+    }
+  }
+
+  @Test
+  public void testLongCycleDoesNotOverflowStack() {
+
+    int idSize = 200000;
+
+    // 0 -> 1 -> ... -> idSize - 1 -> 0, plus a tail idSize -> idSize + 1 -> ... hanging off 0
+    Multimap<Integer, Integer> id__parentIds = ArrayListMultimap.create();
+    for (int id = 1; id < idSize; id++)
+      id__parentIds.put(id, id - 1);
+    id__parentIds.put(0, idSize - 1);
+
+    id__parentIds.put(idSize, 0);
+    for (int id = idSize + 1; id < 2 * idSize; id++)
+      id__parentIds.put(id, id - 1);
+
+    ImmutableSet.Builder<Integer> ids = ImmutableSet.builder();
+    for (int id = 0; id < 2 * idSize; id++)
+      ids.add(id);
+
+    IdGraph<Integer> graph = IdGraphLib.indexedFromParentMap(ids.build(), id__parentIds);
+
+    IdGraphCondensation<Integer> condensation = graph.condensation();
+
+    // the cycle, then each tail id
+    assertEquals(idSize + 1, condensation.componentSize());
+    assertEquals(idSize, condensation.componentList().get(0).size());
+    assertEquals(ImmutableSet.of(2 * idSize - 1), condensation.componentList().get(idSize));
+
+    // dag algorithms work on the condensation
+    IdDag<ImmutableSet<Integer>> dag = condensation.idDag();
+    assertEquals(ImmutableSet.of(condensation.component(0)), dag.rootIdSet());
+    assertTrue(dag.isAncestorOf(condensation.component(123), condensation.component(
+        2 * idSize - 1), false));
+  }
+
+  @Test
+  public void testStrongComponentList() {
+
+    // a <-> b -> c <-> d, e
+    IdGraphIndex<String> index =
+        IdGraphIndex.fromParentMap(ImmutableSet.of("a", "b", "c", "d", "e"), ImmutableSetMultimap
+            .of("a", "b", "b", "a", "c", "b", "c", "d", "d", "c"));
+
+    List<ImmutableSet<String>> components = IdGraphComponentLib.strongComponentList(index);
+
+    assertEquals(3, components.size());
+    assertTrue(components.indexOf(ImmutableSet.of("a", "b")) < components.indexOf(ImmutableSet
+        .of("c", "d")));
+    assertTrue(components.contains(ImmutableSet.of("e")));
+  }
+
+  @Test
+  public void testWeakComponentsMatchUndirectedSearch() {
+
+    Random random = new Random(0);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      for (int arcSize : new int[] {0, 50, 100, 150, 400}) {
+
+        IdGraph<Integer> graph = RandomGraphLib.randomGraph(random, 200, arcSize);
+
+        // ids share a component exactly when an undirected search from one reaches the other
+        Set<Set<Integer>> expected = new HashSet<>();
+        for (Integer id : graph.idSet())
+          expected.add(undirectedIdSet(graph, id));
+
+        List<ImmutableSet<Integer>> components = graph.weakComponentList();
+        assertEquals(expected, new HashSet<>(components));
+        assertEquals(expected.size(), components.size());
+
+        // the parallel version produces the same list
+        IdGraphIndex<Integer> index = graph.idGraphIndex();
+        assertEquals(components, IdGraphParallelComponentLib.weakComponentList(index, pool));
+
+        // the component graphs are the filtered components (split directly from indexed graphs)
+        IdGraph<Integer> indexedGraph = IdGraphLib.fromIndex(index);
+
+        for (IdGraph<Integer> someGraph : ImmutableList.of(graph, indexedGraph)) {
+
+          List<IdGraph<Integer>> componentIdGraphs = someGraph.componentIdGraphs();
+          assertEquals(components.size(), componentIdGraphs.size());
+
+          for (int n = 0; n < components.size(); n++)
+            assertEquals(graph.filterIdGraph(components.get(n)), componentIdGraphs.get(n));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testParallelWeakComponents() {
+
+    Random random = new Random(0);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      // large enough to split across workers, sparse enough to leave many components
+      int idSize = 100000;
+
+      IdGraph<Integer> graph = RandomGraphLib.randomGraph(random, idSize, idSize / 2);
+      IdGraphIndex<Integer> index = graph.idGraphIndex();
+
+      int[] expected = IdGraphComponentLib.weakComponentNumbers(index);
+
+      for (int n = 0; n < 5; n++)
+        assertTrue(Arrays.equals(expected,
+            IdGraphParallelComponentLib.weakComponentNumbers(index, pool)));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testComponentsOfDagAreDags() {
+
+    IdDag<String> dag = IdDagLib.fromParentMap("b", "a", "c", "b", "y", "x");
+    IdDag<String> indexedDag = IdDagLib.fromIndex(dag.idGraphIndex());
+
+    for (IdDag<String> someDag : ImmutableList.of(dag, indexedDag)) {
+
+      ImmutableList<IdGraph<String>> componentIdGraphs = someDag.componentIdGraphs();
+
+      assertEquals(2, componentIdGraphs.size());
+
+      for (IdGraph<String> componentIdGraph : componentIdGraphs)
+        assertTrue(componentIdGraph instanceof IdDag);
+
+      assertEquals(ImmutableSet.of(IdDagLib.fromParentMap("b", "a", "c", "b"), IdDagLib
+          .fromParentMap("y", "x")), ImmutableSet.copyOf(componentIdGraphs));
+    }
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static Set<Integer> undirectedIdSet(IdGraph<Integer> graph, Integer startId) {
+
+    Set<Integer> seen = new HashSet<>();
+    Deque<Integer> open = new ArrayDeque<>();
+
+    seen.add(startId);
+    open.push(startId);
+
+    while (!open.isEmpty()) {
+
+      Integer id = open.pop();
+
+      for (Integer next : Sets.union(graph.parentIdSet(id), graph.childIdSet(id)))
+        if (seen.add(next))
+          open.push(next);
+    }
+
+    return seen;
+  }
+
+  private static boolean containsSelfArc(IdGraph<Integer> graph) {
+    for (Integer id : graph.idSet())
+      if (graph.isParentOf(id, id))
+        return true;
+    return false;
+  }
+
+}
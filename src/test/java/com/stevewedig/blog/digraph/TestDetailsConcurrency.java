@@ -0,0 +1,169 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.digraph.node.*;
+import com.stevewedig.blog.digraph.node_graph.*;
+import com.stevewedig.blog.digraph.node_graph_partial.*;
+
+public class TestDetailsConcurrency {
+
+  @Test
+  public void testRacingReadersShareOneDerivation() throws Exception {
+
+    for (final IdTree<Integer> tree : ImmutableList.of(IdTreeLib.fromParentMap(treeParentMap(
+        5000)), IdTreeLib.indexedFromParentMap(treeIdSet(5000), treeParentMap(5000)))) {
+
+      int threadCount = 8;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+      List<Future<List<Object>>> futures = new ArrayList<>();
+
+      for (int n = 0; n < threadCount; n++)
+        futures.add(executor.submit(new Callable<List<Object>>() {
+          @Override
+          public List<Object> call() throws Exception {
+            start.await();
+            return Arrays.<Object>asList(tree.id__childIds(), tree.rootIdSet(), tree.leafIdSet(),
+                tree.topsortIdList(), tree.topsortLevelList(), tree.depthIdList());
+          }
+        }));
+
+      start.countDown();
+
+      List<Object> first = futures.get(0).get();
+
+      // every thread sees the same (complete) instances, each was computed once
+      for (Future<List<Object>> future : futures) {
+        List<Object> derived = future.get();
+        for (int i = 0; i < first.size(); i++)
+          assertSame(first.get(i), derived.get(i));
+      }
+
+      executor.shutdown();
+
+      assertEquals(ImmutableSet.of(0), first.get(1));
+      assertEquals(5000, ((List<?>) first.get(3)).size());
+    }
+  }
+
+  @Test
+  public void testWarm() throws Exception {
+
+    final CountingIdGraph<Integer> graph =
+        new CountingIdGraph<>(treeIdSet(100), treeParentMap(100));
+    graph.warm();
+
+    int reads = graph.reads;
+    final List<Object> warmed =
+        Arrays.<Object>asList(graph.id__childIds(), graph.rootIdSet(), graph.leafIdSet(),
+            graph.optionalTopsortIdList());
+
+    // warming computed everything, so later reads (from any thread) don't read arcs again
+    assertEquals(reads, graph.reads);
+    assertEquals(ImmutableSet.of(0), graph.rootIdSet());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<Object>>> futures = new ArrayList<>();
+
+      for (int n = 0; n < 4; n++)
+        futures.add(executor.submit(new Callable<List<Object>>() {
+          @Override
+          public List<Object> call() throws Exception {
+            return Arrays.<Object>asList(graph.id__childIds(), graph.rootIdSet(),
+                graph.leafIdSet(), graph.optionalTopsortIdList());
+          }
+        }));
+
+      for (Future<List<Object>> future : futures) {
+        List<Object> derived = future.get();
+        for (int i = 0; i < warmed.size(); i++)
+          assertSame(warmed.get(i), derived.get(i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(reads, graph.reads);
+
+    IdTree<Integer> tree = IdTreeLib.fromParentMap(treeParentMap(100));
+    tree.warm();
+    assertTrue(tree.isDescendantOf(99, 0, false));
+
+    Graph<String, UpNode<String>> nodeGraph =
+        GraphLib.up(UpNodeLib.upNode("a"), UpNodeLib.upNode("b", "a"));
+    nodeGraph.warm();
+    assertEquals(ImmutableSet.of(UpNodeLib.upNode("a")), nodeGraph.rootNodeSet());
+
+    // partial graphs (whose root a has no node) can be warmed too
+    UpNode<String> b = UpNodeLib.upNode("b", "a");
+
+    for (PartialGraph<String, UpNode<String>> partial : ImmutableList
+        .<PartialGraph<String, UpNode<String>>>of(PartialGraphLib.up(b), PartialDagLib.up(b),
+            PartialTreeLib.up(b))) {
+      partial.warm();
+      assertEquals(ImmutableSet.of("a"), partial.unboundIdSet());
+      assertEquals(ImmutableSet.of("a"), partial.rootIdSet());
+    }
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  // a random tree rooted at 0
+  private static ImmutableSetMultimap<Integer, Integer> treeParentMap(int idSize) {
+
+    Random random = new Random(0);
+
+    ImmutableSetMultimap.Builder<Integer, Integer> id__parentIds = ImmutableSetMultimap.builder();
+
+    for (int id = 1; id < idSize; id++)
+      id__parentIds.put(id, random.nextInt(id));
+
+    return id__parentIds.build();
+  }
+
+  private static ImmutableSet<Integer> treeIdSet(int idSize) {
+
+    ImmutableSet.Builder<Integer> ids = ImmutableSet.builder();
+
+    for (int id = 0; id < idSize; id++)
+      ids.add(id);
+
+    return ids.build();
+  }
+
+  // counts the arc reads that computing the derived state needs
+  private static class CountingIdGraph<Id> extends IdGraphClass<Id> {
+
+    volatile int reads;
+
+    public CountingIdGraph(ImmutableSet<Id> idSet, ImmutableSetMultimap<Id, Id> id__parentIds) {
+      super(idSet, id__parentIds);
+    }
+
+    @Override
+    public ImmutableSet<Id> parentIdSet(Id id) {
+      reads++;
+      return super.parentIdSet(id);
+    }
+
+    @Override
+    public ImmutableSet<Id> childIdSet(Id id) {
+      reads++;
+      return super.childIdSet(id);
+    }
+  }
+
+}
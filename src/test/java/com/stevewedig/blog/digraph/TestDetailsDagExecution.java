@@ -0,0 +1,157 @@
+package com.stevewedig.blog.digraph;
+
+import static com.stevewedig.blog.translate.FormatLib.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.dag_execution.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.util.LambdaLib.Act1;
+
+public class TestDetailsDagExecution {
+
+  // runs tasks on the submitting thread, so execution order is deterministic
+  private static final Executor sameThread = new Executor() {
+    @Override
+    public void execute(Runnable runnable) {
+      runnable.run();
+    }
+  };
+
+  // ===========================================================================
+  // tests
+  // ===========================================================================
+
+  @Test
+  public void testParentsFinishFirst() throws InterruptedException {
+
+    final IdDag<String> dag = IdDagLib.fromParentMap("b", "a", "c", "a", "d", "b", "d", "c", "e",
+        "d", "g", "f");
+
+    final Set<String> finished = Collections.synchronizedSet(new HashSet<String>());
+    final AtomicInteger violations = new AtomicInteger();
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    DagExecution<String> execution = DagExecutionLib.start(dag, pool, 2, new Act1<String>() {
+      @Override
+      public void apply(String id) {
+
+        if (!finished.containsAll(dag.parentIdSet(id)))
+          violations.incrementAndGet();
+
+        finished.add(id);
+      }
+    });
+
+    execution.await();
+
+    pool.shutdown();
+
+    assertTrue(execution.isDone());
+    assertTrue(execution.succeeded());
+    assertEquals(0, violations.get());
+    assertEquals(dag.idSet(), execution.completedIdSet());
+    assertEquals(parseSet(""), execution.cancelledIdSet());
+  }
+
+  @Test
+  public void testCriticalPathFirst() {
+
+    // a -> b -> c is longer than x
+    IdDag<String> dag = IdDagLib.fromParentMap(parseSet("x, a, b, c"), "b", "a", "c", "b");
+
+    final List<String> order = new ArrayList<>();
+
+    DagExecutionLib.start(dag, sameThread, 1, new Act1<String>() {
+      @Override
+      public void apply(String id) {
+        order.add(id);
+      }
+    });
+
+    // x is first in the id set but waits for the longer path (c and x tie, so id set order wins)
+    assertEquals(parseList("a, b, x, c"), order);
+  }
+
+  @Test
+  public void testFailureCancelsDescendants() {
+
+    IdDag<String> dag = IdDagLib.fromParentMap("b", "a", "c", "b", "d", "a", "y", "x");
+
+    final RuntimeException error = new RuntimeException();
+
+    DagExecution<String> execution = DagExecutionLib.start(dag, sameThread, 1, new Act1<String>() {
+      @Override
+      public void apply(String id) {
+        if (id.equals("b"))
+          throw error;
+      }
+    });
+
+    assertTrue(execution.isDone());
+    assertFalse(execution.succeeded());
+    assertEquals(parseSet("a, d, x, y"), execution.completedIdSet());
+    assertEquals(ImmutableMap.of("b", error), execution.id__error());
+    assertEquals(parseSet("c"), execution.cancelledIdSet());
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+
+    IdDag<String> dag = IdDagLib.fromParentMap("b", "a", "c", "b");
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    DagExecution<String> execution = DagExecutionLib.start(dag, pool, 1, new Act1<String>() {
+      @Override
+      public void apply(String id) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+
+    // cancel while a is running
+    started.await();
+    execution.cancel();
+    assertFalse(execution.isDone());
+
+    release.countDown();
+    assertTrue(execution.await(10, TimeUnit.SECONDS));
+
+    pool.shutdown();
+
+    assertEquals(parseSet("a"), execution.completedIdSet());
+    assertEquals(parseSet("b, c"), execution.cancelledIdSet());
+  }
+
+  @Test
+  public void testEmpty() {
+
+    IdDag<String> dag = IdDagLib.fromParentMap(parseSet(""), parseMultimap(""));
+
+    DagExecution<String> execution = DagExecutionLib.start(dag, sameThread, 1, new Act1<String>() {
+      @Override
+      public void apply(String id) {
+        throw new AssertionError();
+      }
+    });
+
+    assertTrue(execution.isDone());
+    assertTrue(execution.succeeded());
+  }
+
+}
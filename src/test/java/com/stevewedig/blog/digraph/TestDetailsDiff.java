@@ -0,0 +1,132 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+
+public class TestDetailsDiff {
+
+  @Test
+  public void testTreeVersions() {
+
+    // a
+    // |-b
+    // | |-d
+    // |-c
+    IdTree<String> older = IdTreeLib.fromParentMap("b", "a", "c", "a", "d", "b");
+
+    // d moves under c, and e is added under d
+    IdTree<String> newer = older.withoutId("d").withArc("c", "d").withArc("d", "e");
+
+    IdGraphDiff<String> diff = older.diff(newer);
+
+    assertFalse(diff.isEmpty());
+    assertEquals(ImmutableSet.of("e"), diff.addedIdSet());
+    assertEquals(ImmutableSet.of(), diff.removedIdSet());
+    assertEquals(ImmutableSetMultimap.of("d", "c", "e", "d"), diff.addedId__parentIds());
+    assertEquals(ImmutableSetMultimap.of("d", "b"), diff.removedId__parentIds());
+
+    // e isn't in both versions
+    assertEquals(ImmutableSet.of("d"), diff.changedAncestorIdSet());
+    assertEquals(ImmutableSet.of("a", "b", "c", "d"), diff.changedDescendantIdSet());
+
+    // versions without shared structure compare the same
+    IdGraph<String> rebuilt = IdGraphLib.fromParentMap(newer.idSet(), newer.id__parentIds());
+    assertDiffsEqual(diff, older.diff(rebuilt));
+
+    // reversed
+    IdGraphDiff<String> reversed = newer.diff(older);
+    assertEquals(diff.addedIdSet(), reversed.removedIdSet());
+    assertEquals(diff.addedId__parentIds(), reversed.removedId__parentIds());
+    assertEquals(diff.changedDescendantIdSet(), reversed.changedDescendantIdSet());
+
+    assertTrue(newer.diff(newer).isEmpty());
+    assertTrue(older.diff(IdTreeLib.fromParentMap("b", "a", "c", "a", "d", "b")).isEmpty());
+  }
+
+  @Test
+  public void testClosureOnlyChangesWhenReachabilityDoes() {
+
+    // a -> b -> c and a -> c, so dropping a -> c changes no ancestors or descendants
+    IdDag<String> older = IdDagLib.fromParentMap("b", "a", "c", "b", "c", "a");
+
+    IdGraphDiff<String> diff = older.diff(older.withoutArc("a", "c"));
+
+    assertEquals(ImmutableSetMultimap.of("c", "a"), diff.removedId__parentIds());
+    assertEquals(ImmutableSet.of(), diff.changedAncestorIdSet());
+    assertEquals(ImmutableSet.of(), diff.changedDescendantIdSet());
+  }
+
+  @Test
+  public void testRandomVersions() {
+
+    Random random = new Random(0);
+
+    IdGraph<Integer> older = IdGraphLib.fromParentMap(ImmutableSet.of(0),
+        ImmutableSetMultimap.<Integer, Integer>of());
+
+    for (int n = 0; n < 300; n++)
+      older = older.withArc(random.nextInt(100), random.nextInt(100));
+
+    IdGraph<Integer> newer = older;
+
+    for (int n = 0; n < 20; n++) {
+
+      int parentId = random.nextInt(110);
+      int childId = random.nextInt(110);
+
+      if (random.nextInt(5) == 0)
+        newer = newer.withoutId(parentId);
+      else if (random.nextBoolean())
+        newer = newer.withoutArc(parentId, childId);
+      else
+        newer = newer.withArc(parentId, childId);
+    }
+
+    IdGraphDiff<Integer> diff = older.diff(newer);
+
+    // same as comparing every id of separately built versions
+    IdGraph<Integer> olderRebuilt = IdGraphLib.fromParentMap(older.idSet(), older.id__parentIds());
+    IdGraph<Integer> newerRebuilt = IdGraphLib.fromParentMap(newer.idSet(), newer.id__parentIds());
+    assertDiffsEqual(diff, olderRebuilt.diff(newerRebuilt));
+
+    assertEquals(Sets.difference(newer.idSet(), older.idSet()), diff.addedIdSet());
+    assertEquals(Sets.difference(older.idSet(), newer.idSet()), diff.removedIdSet());
+    assertEquals(ImmutableSet.copyOf(Sets.difference(ImmutableSet.copyOf(newer.id__parentIds()
+        .entries()), ImmutableSet.copyOf(older.id__parentIds().entries()))), ImmutableSet
+        .copyOf(diff.addedId__parentIds().entries()));
+
+    // closures compared for every id in both versions
+    Set<Integer> changedAncestorIds = new HashSet<>();
+    Set<Integer> changedDescendantIds = new HashSet<>();
+
+    for (Integer id : Sets.intersection(older.idSet(), newer.idSet())) {
+      if (!older.ancestorIdSet(id, false).equals(newer.ancestorIdSet(id, false)))
+        changedAncestorIds.add(id);
+      if (!older.descendantIdSet(id, false).equals(newer.descendantIdSet(id, false)))
+        changedDescendantIds.add(id);
+    }
+
+    assertEquals(changedAncestorIds, diff.changedAncestorIdSet());
+    assertEquals(changedDescendantIds, diff.changedDescendantIdSet());
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static <Id> void assertDiffsEqual(IdGraphDiff<Id> expected, IdGraphDiff<Id> actual) {
+    assertEquals(expected.addedIdSet(), actual.addedIdSet());
+    assertEquals(expected.removedIdSet(), actual.removedIdSet());
+    assertEquals(expected.addedId__parentIds(), actual.addedId__parentIds());
+    assertEquals(expected.removedId__parentIds(), actual.removedId__parentIds());
+    assertEquals(expected.changedAncestorIdSet(), actual.changedAncestorIdSet());
+    assertEquals(expected.changedDescendantIdSet(), actual.changedDescendantIdSet());
+  }
+
+}
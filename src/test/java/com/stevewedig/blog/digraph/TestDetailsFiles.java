@@ -0,0 +1,185 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.google.common.primitives.Bytes;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.errors.NotThrown;
+import com.stevewedig.blog.translate.*;
+
+public class TestDetailsFiles {
+
+  @Test
+  public void testGraphRoundTrip() throws IOException {
+
+    File file = tempFile();
+
+    // a cycle, a self arc, and an isolated id
+    IdGraph<String> graph =
+        IdGraphLib.fromParentMap(ImmutableSet.of("a", "b", "c", "d", "e"), ImmutableSetMultimap
+            .of("b", "a", "c", "b", "a", "c", "d", "d", "c", "a"));
+
+    IdGraphFileLib.write(graph, FormatLib.strFormat, file);
+
+    IdGraph<String> loaded = IdGraphFileLib.readIdGraph(file, FormatLib.strFormat);
+    assertEquals(graph, loaded);
+    assertTrue(loaded.containsCycle());
+
+    // a graph file is validated when loaded as a dag
+    try {
+      IdGraphFileLib.readIdDag(file, FormatLib.strFormat);
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    file.delete();
+  }
+
+  @Test
+  public void testDagAndTreeRoundTrip() throws IOException {
+
+    File file = tempFile();
+
+    IdDag<Integer> dag = IdDagLib.fromParentMap(2, 1, 3, 1, 4, 2, 4, 3, 5, 4);
+
+    IdGraphFileLib.write(dag, FormatLib.intFormat, file);
+
+    // dags are saved in topological order, which becomes the loaded dag's topological sort
+    IdDag<Integer> loadedDag = IdGraphFileLib.readIdDag(file, FormatLib.intFormat);
+    assertEquals(dag, loadedDag);
+    assertEquals(dag.topsortIdList(), loadedDag.topsortIdList());
+    assertEquals(IdGraphLib.fromParentMap(dag.idSet(), dag.id__parentIds()), IdGraphFileLib
+        .readIdGraph(file, FormatLib.intFormat));
+
+    // a dag file is validated when loaded as a tree
+    try {
+      IdGraphFileLib.readIdTree(file, FormatLib.intFormat);
+      throw new NotThrown(TreeNodesCannotHaveMultipleParents.class);
+    } catch (TreeNodesCannotHaveMultipleParents e) {
+    }
+
+    IdTree<String> tree = IdTreeLib.fromParentMap("b", "a", "c", "a", "d", "b");
+
+    IdGraphFileLib.write(tree, FormatLib.strFormat, file);
+
+    IdTree<String> loadedTree = IdGraphFileLib.readIdTree(file, FormatLib.strFormat);
+    assertEquals(tree, loadedTree);
+    assertEquals("a", loadedTree.rootId());
+    assertEquals(IdDagLib.fromParentMap(tree.idSet(), tree.id__parentIds()), IdGraphFileLib
+        .readIdDag(file, FormatLib.strFormat));
+
+    file.delete();
+  }
+
+  @Test
+  public void testLargeRoundTrip() throws IOException {
+
+    File file = tempFile();
+
+    Random random = new Random(0);
+
+    int idSize = 50000;
+
+    IdGraph<Integer> graph =
+        IdGraphLib.indexedFromParentMap(RandomGraphLib.idSet(idSize), RandomGraphLib.id__parentIds(
+            random, idSize, 4 * idSize));
+
+    IdGraphFileLib.write(graph, FormatLib.intFormat, file);
+
+    // a few bytes per arc, rather than the 8 bytes per arc of the loaded index
+    assertTrue(file.length() < 4L * graph.idGraphIndex().arcSize());
+
+    IdGraph<Integer> loaded = IdGraphFileLib.readIdGraph(file, FormatLib.intFormat);
+    assertEquals(graph, loaded);
+    assertEquals(graph.descendantIdSet(7, false), loaded.descendantIdSet(7, false));
+
+    file.delete();
+  }
+
+  @Test
+  public void testInvalidFiles() throws IOException {
+
+    File file = tempFile();
+
+    // not a saved graph
+    write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    verifyParseError(file);
+
+    // truncated
+    IdGraphFileLib.write(IdGraphLib.fromParentMap("b", "a", "c", "b"), FormatLib.strFormat, file);
+
+    byte[] bytes = read(file);
+    write(file, Arrays.copyOf(bytes, bytes.length - 1));
+    verifyParseError(file);
+
+    // a parent index outside the id table
+    bytes[bytes.length - 1] = 100;
+    write(file, bytes);
+    verifyParseError(file);
+
+    // sizes far beyond the file (rejected before anything is allocated for them)
+    byte[] header = {0x49, 0x44, 0x47, 0x01, 0};
+
+    write(file, Bytes.concat(header, new byte[] {-1, -1, -1, -1, 0x07, 0}));
+    verifyParseError(file);
+
+    write(file, Bytes.concat(header, new byte[] {0, -1, -1, -1, -1, 0x07}));
+    verifyParseError(file);
+
+    // an id length far beyond the file
+    write(file, Bytes.concat(header, new byte[] {1, 0, -1, -1, -1, -1, 0x07, 0}));
+    verifyParseError(file);
+
+    // a varint with bits beyond 32 (which would otherwise be dropped, leaving an id size of 0)
+    write(file, Bytes.concat(header, new byte[] {-128, -128, -128, -128, 0x10, 0}));
+    verifyParseError(file);
+
+    file.delete();
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static File tempFile() throws IOException {
+    File file = File.createTempFile("TestDetailsFiles", ".graph");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static void verifyParseError(File file) throws IOException {
+    try {
+      IdGraphFileLib.readIdGraph(file, FormatLib.strFormat);
+      throw new NotThrown(ParseError.class);
+    } catch (ParseError e) {
+    }
+  }
+
+  private static byte[] read(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      in.readFully(bytes);
+      return bytes;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void write(File file, byte[] bytes) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+
+public class TestDetailsFingerprint {
+
+  @Test
+  public void testEqualGraphsHaveEqualFingerprints() {
+
+    ImmutableSet<String> ids = ImmutableSet.of("a", "b", "c", "d");
+    ImmutableSetMultimap<String, String> id__parentIds =
+        ImmutableSetMultimap.of("b", "a", "c", "a", "c", "b");
+
+    IdGraph<String> multimapGraph = new IdGraphClass<>(ids, id__parentIds);
+    IdGraph<String> indexedGraph = IdGraphLib.fromParentMap(ids, id__parentIds);
+    IdGraph<String> updatedGraph =
+        IdGraphLib.fromParentMap(ImmutableSet.of("d"), ImmutableSetMultimap.<String, String>of())
+            .withArc("a", "c").withArc("b", "c").withArc("a", "b");
+
+    assertEquals(multimapGraph.fingerprint(), indexedGraph.fingerprint());
+    assertEquals(multimapGraph.fingerprint(), updatedGraph.fingerprint());
+
+    assertEquals(multimapGraph, indexedGraph);
+    assertEquals(indexedGraph, updatedGraph);
+    assertEquals(multimapGraph.hashCode(), updatedGraph.hashCode());
+
+    // arc direction, moved arcs, and extra ids all change the fingerprint
+    assertNotEquals(indexedGraph.fingerprint(), indexedGraph.withoutArc("a", "b")
+        .withArc("b", "a").fingerprint());
+    assertNotEquals(indexedGraph.fingerprint(), indexedGraph.withoutArc("a", "b")
+        .withArc("a", "d").fingerprint());
+    assertNotEquals(indexedGraph.fingerprint(), indexedGraph.withId("e").fingerprint());
+    assertNotEquals(indexedGraph, indexedGraph.withId("e").withoutId("d"));
+
+    // updates that are undone restore the fingerprint
+    assertEquals(indexedGraph.fingerprint(), indexedGraph.withId("e").withArc("e", "a")
+        .withoutId("e").fingerprint());
+    assertEquals(indexedGraph, indexedGraph.withoutId("b").withArc("a", "b").withArc("b", "c"));
+  }
+
+  @Test
+  public void testIncrementalMatchesRecomputed() {
+
+    Random random = new Random(0);
+
+    IdGraph<Integer> graph = IdGraphLib.fromParentMap(ImmutableSet.of(0),
+        ImmutableSetMultimap.<Integer, Integer>of());
+
+    for (int n = 0; n < 500; n++) {
+
+      int parentId = random.nextInt(50);
+      int childId = random.nextInt(50);
+
+      if (random.nextInt(4) == 0)
+        graph = graph.withoutId(parentId);
+      else if (random.nextBoolean())
+        graph = graph.withoutArc(parentId, childId);
+      else
+        graph = graph.withArc(parentId, childId);
+    }
+
+    IdGraph<Integer> recomputed = IdGraphLib.fromParentMap(graph.idSet(), graph.id__parentIds());
+
+    assertEquals(recomputed.fingerprint(), graph.fingerprint());
+    assertEquals(recomputed, graph);
+    assertEquals(recomputed.hashCode(), graph.hashCode());
+  }
+
+  @Test
+  public void testDagsAndTrees() {
+
+    IdDag<String> dag = IdDagLib.fromParentMap("b", "a", "c", "b");
+    IdTree<String> tree = IdTreeLib.fromParentMap("b", "a", "c", "b");
+
+    // equality still includes the class, but equal structures hash the same
+    assertEquals(dag.fingerprint(), tree.fingerprint());
+    assertEquals(dag.hashCode(), tree.hashCode());
+    assertNotEquals(dag, tree);
+
+    assertEquals(tree, tree.withArc("c", "d").withoutId("d"));
+    assertEquals(tree.fingerprint(), tree.withArc("c", "d").withoutId("d").fingerprint());
+  }
+
+}
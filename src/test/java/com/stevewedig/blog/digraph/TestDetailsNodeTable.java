@@ -0,0 +1,102 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.digraph.node.*;
+import com.stevewedig.blog.digraph.node_graph.*;
+import com.stevewedig.blog.errors.*;
+
+public class TestDetailsNodeTable {
+
+  @Test
+  public void testIndexedMatchesBiMap() {
+
+    ImmutableSet<UpNode<String>> nodes =
+        ImmutableSet.of(UpNodeLib.upNode("a"), UpNodeLib.upNode("b", "a"),
+            UpNodeLib.upNode("c", "a", "b"));
+
+    // up() keeps its nodes in an indexed table
+    Dag<String, UpNode<String>> indexed = DagLib.up(nodes);
+    Dag<String, UpNode<String>> biMap =
+        DagLib.dag(UpNodeLib.nodes__idDag(nodes), UpNodeLib.nodes__nodeMap(nodes));
+
+    assertEquals(biMap, indexed);
+    assertEquals(indexed, biMap);
+    assertEquals(biMap.hashCode(), indexed.hashCode());
+    assertEquals(nodes, indexed.nodeSet());
+    assertEquals(3, indexed.size());
+    assertEquals(UpNodeLib.upNode("b", "a"), indexed.getNode("b"));
+    assertEquals("c", indexed.getId(UpNodeLib.upNode("c", "a", "b")));
+    assertTrue(indexed.containsNodeForId("a"));
+    assertFalse(indexed.containsNodeForId("d"));
+    assertEquals(biMap.id__node(), indexed.id__node());
+    assertEquals(biMap.transformList(ImmutableList.of("c", "a")),
+        indexed.transformList(ImmutableList.of("c", "a")));
+    assertEquals(ImmutableList.copyOf(biMap.descendantNodeIterable("a", true)),
+        ImmutableList.copyOf(indexed.descendantNodeIterable("a", true)));
+
+    try {
+      indexed.getNode("d");
+      throw new NotThrown(NotContained.class);
+    } catch (NotContained e) {
+    }
+
+    try {
+      DagLib.up(UpNodeLib.upNode("a"), UpNodeLib.upNode("a", "b"), UpNodeLib.upNode("b"));
+      throw new NotThrown(NodeIdConflict.class);
+    } catch (NodeIdConflict e) {
+    }
+  }
+
+  @Test
+  public void testIndexedFromMap() {
+
+    IdGraph<String> idGraph = IdGraphLib.fromParentMap("b", "a", "c", "b");
+
+    Graph<String, Integer> graph =
+        GraphLib.indexedGraph(idGraph, ImmutableMap.of("a", 1, "b", 2, "c", 3));
+
+    assertEquals(GraphLib.graph(idGraph, ImmutableBiMap.of("a", 1, "b", 2, "c", 3)), graph);
+    assertEquals(Integer.valueOf(2), graph.getNode("b"));
+    assertEquals(Optional.absent(), graph.transformOptional(Optional.of("d"), true));
+    assertEquals(ImmutableList.of(1, 3),
+        graph.transformList(ImmutableList.of("a", "d", "c"), true));
+
+    try {
+      graph.transformList(ImmutableList.of("a", "d"));
+      throw new NotThrown(NotContained.class);
+    } catch (NotContained e) {
+    }
+
+    try {
+      GraphLib.indexedGraph(idGraph, ImmutableMap.of("a", 1, "b", 2));
+      throw new NotThrown(GraphIsMissingNodes.class);
+    } catch (GraphIsMissingNodes e) {
+    }
+
+    try {
+      GraphLib.indexedGraph(idGraph, ImmutableMap.of("a", 1, "b", 2, "c", 3, "d", 4));
+      throw new NotThrown(GraphHadUnexpectedIds.class);
+    } catch (GraphHadUnexpectedIds e) {
+    }
+
+    // rejected when created, not later when the bimap is built
+    try {
+      GraphLib.indexedGraph(idGraph, ImmutableMap.of("a", 1, "b", 1, "c", 3));
+      throw new NotThrown(NodeIdConflict.class);
+    } catch (NodeIdConflict e) {
+    }
+
+    Tree<String, Integer> tree =
+        TreeLib.indexedTree(IdTreeLib.fromParentMap("b", "a", "c", "b"),
+            ImmutableMap.of("a", 1, "b", 2, "c", 3));
+    assertEquals(Integer.valueOf(1), tree.rootNode());
+  }
+
+}
@@ -0,0 +1,215 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.errors.*;
+import com.stevewedig.blog.translate.*;
+
+public class TestDetailsOffHeap {
+
+  @Test
+  public void testOffHeapIndexMatchesHeapIndex() {
+
+    Random random = new Random(0);
+
+    for (int arcSize : new int[] {0, 100, 1000, 5000}) {
+
+      IdGraph<Integer> graph = RandomGraphLib.randomGraph(random, 1000, arcSize);
+      IdGraphIndex<Integer> heap = graph.idGraphIndex();
+
+      IdGraphIndex<Integer> offHeap = IdGraphOffHeapLib.offHeapIndex(heap, FormatLib.intFormat);
+      verifySameIndex(heap, offHeap);
+
+      // the read api works the same on an off heap graph
+      IdGraph<Integer> offHeapGraph = IdGraphOffHeapLib.offHeapIdGraph(graph, FormatLib.intFormat);
+      assertEquals(graph, offHeapGraph);
+      assertEquals(graph.idSize(), offHeapGraph.idSize());
+      assertEquals(graph.rootIdSet(), offHeapGraph.rootIdSet());
+      assertEquals(graph.containsCycle(), offHeapGraph.containsCycle());
+      assertEquals(graph.condensation().componentList(), offHeapGraph.condensation()
+          .componentList());
+      assertEquals(graph.weakComponentList(), offHeapGraph.weakComponentList());
+
+      for (int id = 0; id < 1000; id += 37) {
+        assertEquals(graph.descendantIdSet(id, true), offHeapGraph.descendantIdSet(id, true));
+        assertEquals(graph.ancestorIdDistanceMap(id, false, 2), offHeapGraph
+            .ancestorIdDistanceMap(id, false, 2));
+      }
+    }
+  }
+
+  @Test
+  public void testOffHeapDagAndTree() {
+
+    IdDag<String> dag = IdDagLib.fromParentMap("b", "a", "c", "a", "d", "b", "d", "c");
+    IdDag<String> offHeapDag = IdGraphOffHeapLib.offHeapIdDag(dag, FormatLib.strFormat);
+
+    assertEquals(dag, offHeapDag);
+    assertEquals(dag.topsortIdList(), offHeapDag.topsortIdList());
+    assertEquals(dag.topsortLevelList(), offHeapDag.topsortLevelList());
+    assertTrue(offHeapDag.isAncestorOf("a", "d", false));
+
+    IdTree<String> tree = IdTreeLib.fromParentMap("b", "a", "c", "a", "d", "b");
+    IdTree<String> offHeapTree = IdGraphOffHeapLib.offHeapIdTree(tree, FormatLib.strFormat);
+
+    assertEquals(tree, offHeapTree);
+    assertEquals("a", offHeapTree.rootId());
+    assertEquals(tree.ancestorIdList("d", true), offHeapTree.ancestorIdList("d", true));
+  }
+
+  @Test
+  public void testUnicodeAndMissingIds() {
+
+    IdGraph<String> graph = IdGraphLib.fromParentMap("\u00e9", "\u65e5\u672c", "", "\u00e9");
+    IdGraphIndex<String> offHeap =
+        IdGraphOffHeapLib.offHeapIndex(graph.idGraphIndex(), FormatLib.strFormat);
+
+    verifySameIndex(graph.idGraphIndex(), offHeap);
+
+    assertFalse(offHeap.containsId("x"));
+    assertEquals(ImmutableSet.of(), offHeap.parentIdSet("x"));
+
+    try {
+      offHeap.index("x");
+      throw new NotThrown(NotContained.class);
+    } catch (NotContained e) {
+    }
+  }
+
+  @Test
+  public void testFormatMustWriteDistinctStrings() {
+
+    Format<Integer> lossyFormat = new Format<Integer>() {
+      @Override
+      public Integer parse(String syntax) {
+        return Integer.parseInt(syntax);
+      }
+
+      @Override
+      public String write(Integer model) {
+        return String.valueOf(model / 2);
+      }
+    };
+
+    try {
+      IdGraphOffHeapLib.offHeapIndex(IdGraphLib.fromParentMap(1, 0).idGraphIndex(), lossyFormat);
+      throw new NotThrown(AssertionError.class);
+    } catch (AssertionError e) {
+    }
+  }
+
+  @Test
+  public void testReadOffHeap() throws IOException {
+
+    File file = File.createTempFile("TestDetailsOffHeap", ".graph");
+    file.deleteOnExit();
+
+    Random random = new Random(0);
+
+    IdGraph<Integer> graph = RandomGraphLib.randomGraph(random, 5000, 20000);
+
+    IdGraphFileLib.write(graph, FormatLib.intFormat, file);
+
+    IdGraph<Integer> offHeapGraph = IdGraphOffHeapLib.readIdGraph(file, FormatLib.intFormat);
+    assertEquals(graph, offHeapGraph);
+    verifySameIndex(IdGraphFileLib.readIdGraph(file, FormatLib.intFormat).idGraphIndex(),
+        offHeapGraph.idGraphIndex());
+
+    // parallel traversal reads the buffers concurrently
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      assertEquals(graph.descendantIdSet(3, true), IdGraphParallelTraverseLib.descendantIdSet(
+          offHeapGraph.idGraphIndex(), ImmutableList.of(3), true, pool));
+    } finally {
+      pool.shutdown();
+    }
+
+    // graph files are validated when loaded as dags
+    try {
+      IdGraphOffHeapLib.readIdDag(file, FormatLib.intFormat);
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    // tree files aren't revalidated
+    IdTree<String> tree = IdTreeLib.fromParentMap("b", "a", "c", "a", "d", "b");
+    IdGraphFileLib.write(tree, FormatLib.strFormat, file);
+
+    IdTree<String> offHeapTree = IdGraphOffHeapLib.readIdTree(file, FormatLib.strFormat);
+    assertEquals(tree, offHeapTree);
+    assertEquals(tree.topsortLevelList(), offHeapTree.topsortLevelList());
+
+    // truncated files are rejected
+    IdGraphFileLib.write(graph, FormatLib.intFormat, file);
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    randomAccessFile.setLength(file.length() / 2);
+    randomAccessFile.close();
+
+    try {
+      IdGraphOffHeapLib.readIdGraph(file, FormatLib.intFormat);
+      throw new NotThrown(ParseError.class);
+    } catch (ParseError e) {
+    }
+
+    // so are sizes far beyond the file (before any buffer is allocated for them)
+    OutputStream out = new FileOutputStream(file);
+    out.write(new byte[] {0x49, 0x44, 0x47, 0x01, 0, -1, -1, -1, -1, 0x07, 0});
+    out.close();
+
+    try {
+      IdGraphOffHeapLib.readIdGraph(file, FormatLib.intFormat);
+      throw new NotThrown(ParseError.class);
+    } catch (ParseError e) {
+    }
+
+    // and padded length prefixes (0x81 0x00 is a non minimal 1), which would shift the id bytes
+    out = new FileOutputStream(file);
+    out.write(new byte[] {0x49, 0x44, 0x47, 0x01, 0, 1, 0, -127, 0, '7', 0});
+    out.close();
+
+    try {
+      IdGraphOffHeapLib.readIdGraph(file, FormatLib.intFormat);
+      throw new NotThrown(ParseError.class);
+    } catch (ParseError e) {
+    }
+
+    file.delete();
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static <Id> void verifySameIndex(IdGraphIndex<Id> expected, IdGraphIndex<Id> actual) {
+
+    assertEquals(expected.idSize(), actual.idSize());
+    assertEquals(expected.arcSize(), actual.arcSize());
+    assertEquals(expected.idList(), actual.idList());
+
+    for (int index = 0; index < expected.idSize(); index++) {
+
+      Id id = expected.id(index);
+
+      assertEquals(id, actual.id(index));
+      assertEquals(index, actual.index(id));
+      assertTrue(actual.containsId(id));
+
+      assertEquals(expected.parentIdList(id), actual.parentIdList(id));
+      assertEquals(expected.childIdList(id), actual.childIdList(id));
+    }
+
+    assertEquals(expected.id__parentIds(), actual.id__parentIds());
+    assertEquals(expected.id__childIds(), actual.id__childIds());
+  }
+
+}
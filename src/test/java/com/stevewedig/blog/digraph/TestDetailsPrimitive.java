@@ -0,0 +1,267 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.google.common.primitives.*;
+import com.stevewedig.blog.digraph.errors.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.digraph.node.*;
+import com.stevewedig.blog.digraph.node_graph.*;
+import com.stevewedig.blog.errors.*;
+import com.stevewedig.blog.util.*;
+
+public class TestDetailsPrimitive {
+
+  @Test
+  public void testMatchesGenericGraph() {
+
+    Random random = new Random(0);
+
+    int idSize = 1000;
+
+    // sparse ids, so sorting and renumbering matters
+    ImmutableSet.Builder<Long> ids = ImmutableSet.builder();
+    for (int n = 0; n < idSize; n++)
+      ids.add((n * 7919L) % 1000003 - 500000);
+    List<Long> idList = ids.build().asList();
+
+    Multimap<Long, Long> id__parentIds = HashMultimap.create();
+    for (int n = 0; n < 3 * idSize; n++)
+      id__parentIds.put(idList.get(random.nextInt(idSize)), idList.get(random.nextInt(idSize)));
+
+    IdGraph<Long> expected = IdGraphLib.fromParentMap(ImmutableSet.copyOf(idList), id__parentIds);
+
+    LongIdGraph graph = LongIdGraphLib.fromIdGraph(expected);
+
+    assertEquals(idSize, graph.idSize());
+    assertEquals(id__parentIds.size(), graph.arcSize());
+    assertEquals(expected.containsCycle(), graph.containsCycle());
+    assertEquals(ImmutableSet.copyOf(Longs.asList(graph.rootIdArray())), expected.rootIdSet());
+    assertEquals(ImmutableSet.copyOf(Longs.asList(graph.leafIdArray())), expected.leafIdSet());
+
+    // converting back shares the arrays, and is equal to the original
+    IdGraph<Long> converted = graph.idGraph();
+    assertEquals(expected, converted);
+    assertSame(converted, graph.idGraph());
+
+    for (int n = 0; n < idSize; n += 17) {
+
+      long id = idList.get(n);
+
+      assertEquals(expected.parentIdSet(id), ImmutableSet.copyOf(Longs.asList(graph
+          .parentIdArray(id))));
+      assertEquals(expected.childIdSet(id), ImmutableSet.copyOf(Longs.asList(graph
+          .childIdArray(id))));
+
+      // same depth first order as the generic traversal of the same arcs
+      assertEquals(ImmutableList.copyOf(converted.ancestorIdIterable(id, false)), Longs
+          .asList(graph.ancestorIdArray(id, false)));
+      assertEquals(ImmutableList.copyOf(converted.descendantIdIterable(id, true)),
+          list(graph.descendantIdIterator(id, true)));
+
+      assertEquals(expected.descendantIdSet(id, false), ImmutableSet.copyOf(Longs.asList(graph
+          .descendantIdArray(id, false))));
+
+      long other = idList.get((n * 31) % idSize);
+      assertEquals(expected.isAncestorOf(id, other, false), graph.isAncestorOf(id, other, false));
+      assertEquals(expected.isParentOf(id, other), graph.isParentOf(id, other));
+      assertEquals(expected.isChildOf(id, other), graph.isChildOf(id, other));
+    }
+  }
+
+  @Test
+  public void testFromArcs() {
+
+    // duplicate ids and arcs are dropped, and arc order doesn't matter
+    LongIdGraph graph =
+        LongIdGraphLib.fromArcs(new long[] {3, 1, 2, 9, 2}, new long[] {1, 1, 2}, new long[] {2,
+            2, 3});
+    LongIdGraph same = LongIdGraphLib.fromArcs(new long[] {9, 1, 2, 3}, new long[] {2, 1},
+        new long[] {3, 2});
+
+    assertEquals(graph, same);
+    assertEquals(graph.hashCode(), same.hashCode());
+    assertEquals(4, graph.idSize());
+    assertEquals(2, graph.arcSize());
+    assertEquals(Longs.asList(1, 2, 3, 9), Longs.asList(graph.idArray()));
+    assertEquals(Longs.asList(1, 2, 3, 9), list(graph.idIterator()));
+    assertEquals(2, graph.index(3));
+    assertEquals(9, graph.id(3));
+    assertTrue(graph.isRoot(9));
+    assertTrue(graph.isLeaf(9));
+
+    assertEquals(LongIdGraphLib.fromArcs(new long[] {1, 2}, new long[] {2, 3}), LongIdGraphLib
+        .fromArcs(new long[] {1, 2, 3}, new long[] {1, 2}, new long[] {2, 3}));
+
+    try {
+      graph.parentIdArray(4);
+      throw new NotThrown(NotContained.class);
+    } catch (NotContained e) {
+    }
+
+    try {
+      LongIdGraphLib.fromArcs(new long[] {1}, new long[] {1}, new long[] {2});
+      throw new NotThrown(GraphHadUnexpectedIds.class);
+    } catch (GraphHadUnexpectedIds e) {
+    }
+
+    try {
+      LongIdGraphLib.fromArcs(new long[] {1}, new long[] {});
+      throw new NotThrown(AssertionError.class);
+    } catch (AssertionError e) {
+    }
+  }
+
+  @Test
+  public void testDag() {
+
+    LongIdDag dag = LongIdGraphLib.dagFromArcs(new long[] {10, 10, 20, 30}, new long[] {20, 30, 40,
+        40});
+
+    long[] topsort = dag.topsortIdArray();
+    assertEquals(4, topsort.length);
+    assertEquals(Longs.asList(topsort), list(dag.topsortIdIterator()));
+    assertEquals(10, topsort[0]);
+    assertEquals(40, topsort[3]);
+
+    assertTrue(dag.isAncestorOf(10, 40, false));
+    assertFalse(dag.isAncestorOf(20, 30, true));
+
+    IdDag<Long> idDag = dag.idGraph();
+    assertEquals(Longs.asList(topsort), idDag.topsortIdList());
+    assertEquals(IdDagLib.fromParentMap(20L, 10L, 30L, 10L, 40L, 20L, 40L, 30L), idDag);
+    assertEquals(dag, LongIdGraphLib.fromIdDag(idDag));
+
+    try {
+      LongIdGraphLib.dagFromArcs(new long[] {1, 2}, new long[] {2, 1});
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+  }
+
+  @Test
+  public void testTree() {
+
+    LongIdTree tree = LongIdGraphLib.treeFromArcs(new long[] {1, 1, 2}, new long[] {2, 3, 4});
+
+    assertEquals(1, tree.rootId());
+    assertEquals(2, tree.parentId(4));
+    assertEquals(2, tree.depth(4));
+    assertEquals(0, tree.depth(1));
+    assertTrue(tree.isDescendantOf(4, 1, false));
+    assertFalse(tree.isDescendantOf(4, 3, true));
+    assertTrue(tree.isDescendantOf(4, 4, true));
+    assertEquals(Longs.asList(4, 2, 1), Longs.asList(tree.ancestorIdArray(4, true)));
+
+    IdTree<Long> idTree = tree.idGraph();
+    assertEquals(IdTreeLib.fromParentMap(2L, 1L, 3L, 1L, 4L, 2L).id__parentIds(), idTree
+        .id__parentIds());
+    assertEquals(Long.valueOf(1), idTree.rootId());
+    assertEquals(tree, LongIdGraphLib.fromIdTree(idTree));
+
+    try {
+      tree.parentId(1);
+      throw new NotThrown(NotContained.class);
+    } catch (NotContained e) {
+    }
+
+    // same precedence as IdTree
+    try {
+      LongIdGraphLib.treeFromArcs(new long[] {1, 2, 3}, new long[] {2, 1, 1});
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    try {
+      LongIdGraphLib.treeFromArcs(new long[] {}, new long[] {});
+      throw new NotThrown(TreeCannotBeEmpty.class);
+    } catch (TreeCannotBeEmpty e) {
+    }
+
+    try {
+      LongIdGraphLib.treeFromArcs(new long[] {1, 2}, new long[] {3, 3});
+      throw new NotThrown(TreeCannotHaveMultipleRoots.class);
+    } catch (TreeCannotHaveMultipleRoots e) {
+    }
+
+    try {
+      LongIdGraphLib.treeFromArcs(new long[] {1, 1, 2, 3}, new long[] {2, 3, 4, 4});
+      throw new NotThrown(TreeNodesCannotHaveMultipleParents.class);
+    } catch (TreeNodesCannotHaveMultipleParents e) {
+    }
+  }
+
+  @Test
+  public void testIntGraphs() {
+
+    IntIdGraph graph = IntIdGraphLib.fromArcs(new int[] {5, 6, 6}, new int[] {6, 5, 7});
+
+    assertTrue(graph.containsCycle());
+    assertEquals(Ints.asList(5, 6, 7), Ints.asList(graph.idArray()));
+    // non inclusive traversals skip the start id even when a cycle reaches it (as IdGraph does)
+    assertEquals(Ints.asList(6, 7), Ints.asList(graph.descendantIdArray(5, false)));
+    assertEquals(Ints.asList(7), Ints.asList(graph.leafIdArray()));
+    assertEquals(IdGraphLib.fromParentMap(6, 5, 5, 6, 7, 6), graph.idGraph());
+
+    IntIdTree tree = IntIdGraphLib.fromIdTree(IdTreeLib.fromParentMap(1, 0, 2, 0, 3, 2));
+    assertEquals(0, tree.rootId());
+    assertEquals(2, tree.parentId(3));
+    assertEquals(Ints.asList(3, 2, 0), Ints.asList(tree.ancestorIdArray(3, true)));
+    assertEquals(tree, IntIdGraphLib.treeFromArcs(new int[] {0, 0, 2}, new int[] {1, 2, 3}));
+  }
+
+  @Test
+  public void testLongNodeMap() {
+
+    Graph<Long, UpNode<Long>> graph =
+        GraphLib.up(UpNodeLib.upNode(1L), UpNodeLib.upNode(2L, 1L), UpNodeLib.upNode(3L, 1L, 2L));
+
+    LongNodeMap<UpNode<Long>> nodeMap = LongNodeMap.fromGraph(graph);
+
+    assertEquals(3, nodeMap.nodeSize());
+    assertEquals(UpNodeLib.upNode(2L, 1L), nodeMap.getNode(2));
+    assertFalse(nodeMap.containsNodeForId(4));
+    assertEquals(graph.transformList(ImmutableList.of(1L, 2L, 3L)), nodeMap.nodeList());
+    assertEquals(graph.parentNodeSet(3L), ImmutableSet.copyOf(nodeMap.parentNodeList(3)));
+    assertEquals(ImmutableList.copyOf(graph.descendantNodeIterable(1L, true)), ImmutableList
+        .copyOf(nodeMap.descendantNodeIterator(1, true)));
+
+    // dags stay dags
+    LongNodeMap<UpNode<Long>> dagNodeMap =
+        LongNodeMap.fromGraph(DagLib.up(UpNodeLib.upNode(1L), UpNodeLib.upNode(2L, 1L)));
+    assertTrue(dagNodeMap.idGraph() instanceof LongIdDag);
+
+    try {
+      new LongNodeMap<String>(nodeMap.idGraph(), ImmutableMap.of(1L, "a", 2L, "b"));
+      throw new NotThrown(GraphIsMissingNodes.class);
+    } catch (GraphIsMissingNodes e) {
+    }
+
+    try {
+      new LongNodeMap<String>(nodeMap.idGraph(), ImmutableMap.of(1L, "a", 2L, "b", 3L, "c", 4L,
+          "d"));
+      throw new NotThrown(GraphHadUnexpectedIds.class);
+    } catch (GraphHadUnexpectedIds e) {
+    }
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static List<Long> list(LongIterator iterator) {
+
+    List<Long> list = new ArrayList<>();
+
+    while (iterator.hasNext())
+      list.add(iterator.nextLong());
+
+    return list;
+  }
+
+}
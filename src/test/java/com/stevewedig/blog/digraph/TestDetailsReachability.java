@@ -0,0 +1,155 @@
+package com.stevewedig.blog.digraph;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.alg.ReachabilityLib;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.errors.NotThrown;
+import com.stevewedig.blog.util.LambdaLib.Fn1;
+
+public class TestDetailsReachability {
+
+  @Test
+  public void testDistancesMatchBreadthFirstSearch() {
+
+    Random random = new Random(0);
+
+    int idSize = 200;
+
+    final IdGraphIndex<Integer> index = RandomGraphLib.randomIndex(random, idSize, 300);
+
+    Fn1<Integer, List<Integer>> children = new Fn1<Integer, List<Integer>>() {
+      @Override
+      public List<Integer> apply(Integer id) {
+        return index.childIdList(id);
+      }
+    };
+
+    Fn1<Integer, List<Integer>> parents = new Fn1<Integer, List<Integer>>() {
+      @Override
+      public List<Integer> apply(Integer id) {
+        return index.parentIdList(id);
+      }
+    };
+
+    for (int from = 0; from < idSize; from += 7) {
+
+      Map<Integer, Integer> distances = breadthFirstDistances(index, from);
+
+      for (int to = 0; to < idSize; to++)
+        for (int maxDistance : new int[] {0, 1, 2, 4, Integer.MAX_VALUE}) {
+
+          Integer distance = distances.get(to);
+
+          Optional<Integer> expected =
+              distance != null && distance <= maxDistance ? Optional.of(distance) : Optional
+                  .<Integer>absent();
+
+          assertEquals(expected, IdGraphReachabilityLib.distance(index, from, to, maxDistance));
+          assertEquals(expected, ReachabilityLib.distance(from, to, maxDistance, children, parents));
+        }
+    }
+  }
+
+  @Test
+  public void testReachabilityIndexMatchesTraversal() {
+
+    Random random = new Random(0);
+
+    // sparse and dense closures (arcs only go from smaller to larger ids)
+    for (int arcSize : new int[] {300, 3000}) {
+
+      int idSize = 400;
+
+      ImmutableSet<Integer> ids = RandomGraphLib.idSet(idSize);
+
+      Multimap<Integer, Integer> id__parentIds = HashMultimap.create();
+      for (int n = 0; n < arcSize; n++) {
+        int id1 = random.nextInt(idSize);
+        int id2 = random.nextInt(idSize);
+        if (id1 != id2)
+          id__parentIds.put(Math.max(id1, id2), Math.min(id1, id2));
+      }
+
+      IdDag<Integer> traversed = IdDagLib.fromParentMap(ids, id__parentIds);
+      IdDag<Integer> indexed = IdDagLib.fromParentMap(ids, id__parentIds);
+
+      IdDagReachabilityIndex<Integer> index = indexed.reachabilityIndex();
+
+      long pairSize = 0;
+
+      for (int id = 0; id < idSize; id++) {
+
+        for (boolean inclusive : new boolean[] {true, false}) {
+          assertEquals(traversed.ancestorIdSet(id, inclusive), indexed.ancestorIdSet(id, inclusive));
+          assertEquals(traversed.descendantIdSet(id, inclusive), indexed.descendantIdSet(id,
+              inclusive));
+        }
+
+        pairSize += traversed.descendantIdSet(id, false).size();
+
+        for (int other = 0; other < idSize; other += 13)
+          assertEquals(traversed.isAncestorOf(id, other, false), indexed.isAncestorOf(id, other,
+              false));
+      }
+
+      ImmutableSet<Integer> someIds = ImmutableSet.of(3, 50, 51, 200);
+
+      assertEquals(traversed.descendantIdSet(someIds, false), indexed.descendantIdSet(someIds,
+          false));
+      assertEquals(traversed.ancestorIdSet(someIds, true), indexed.ancestorIdSet(someIds, true));
+
+      assertEquals(pairSize, index.pairSize());
+    }
+  }
+
+  @Test
+  public void testUnindexedIds() {
+
+    IdGraphIndex<Integer> index =
+        IdGraphIndex.fromParentMap(ImmutableSet.of(1, 2), ImmutableSetMultimap.of(2, 1));
+
+    assertEquals(Optional.of(0), IdGraphReachabilityLib.distance(index, 3, 3, 0));
+    assertEquals(Optional.<Integer>absent(), IdGraphReachabilityLib.distance(index, 1, 3, 5));
+
+    try {
+      IdGraphReachabilityLib.distance(index, 1, 2, -1);
+      throw new NotThrown(AssertionError.class);
+    } catch (AssertionError e) {
+    }
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static Map<Integer, Integer> breadthFirstDistances(IdGraphIndex<Integer> index,
+      int fromId) {
+
+    Map<Integer, Integer> distances = new HashMap<>();
+    distances.put(fromId, 0);
+
+    Deque<Integer> open = new ArrayDeque<>();
+    open.add(fromId);
+
+    while (!open.isEmpty()) {
+
+      int id = open.remove();
+
+      for (int childId : index.childIdList(id))
+        if (!distances.containsKey(childId)) {
+          distances.put(childId, distances.get(id) + 1);
+          open.add(childId);
+        }
+    }
+
+    return distances;
+  }
+
+}
@@ -4,9 +4,17 @@ import static com.stevewedig.blog.digraph.alg.TopsortLib.sort;
 import static com.stevewedig.blog.translate.FormatLib.*;
 import static org.junit.Assert.*;
 
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.alg.*;
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.util.MultimapLib;
 
 public class TestDetailsTopsortLib {
 
@@ -49,4 +57,134 @@ public class TestDetailsTopsortLib {
     assertFalse(sort(parseMultimap("a = b, b = c, c = a, d = e, a = a, b = e, c = e")).isPresent());
 
   }
+
+  @Test
+  public void testTopsortLevels() {
+
+    // empty
+    assertEquals(ImmutableList.of(), levels(""));
+
+    // 3 chain
+    assertEquals(ImmutableList.of(parseSet("a"), parseSet("b"), parseSet("c")),
+        levels("b = a, c = b"));
+
+    // diamond
+    assertEquals(ImmutableList.of(parseSet("a"), parseSet("b, c"), parseSet("d"), parseSet("e")),
+        levels("b = a, c = a, d = b, d = c, e = d"));
+
+    // an id's level is its longest path from a root
+    assertEquals(ImmutableList.of(parseSet("a, c"), parseSet("b"), parseSet("d")),
+        levels("b = a, d = b, d = c"));
+
+    // cycle
+    assertFalse(IdGraphTopsortLib.sortLevels(index("a = b, b = c, c = a, d = e")).isPresent());
+  }
+
+  @Test
+  public void testParallelTopsortLevels() {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      // small (processed on the calling thread)
+      IdGraphIndex<String> diamond = index("b = a, c = a, d = b, d = c, e = d");
+      assertEquals(IdGraphTopsortLib.sortLevels(diamond),
+          IdGraphParallelTopsortLib.sortLevels(diamond, pool));
+      assertEquals(parseList("a, b, c, d, e"), IdGraphParallelTopsortLib.sort(diamond, pool).get());
+
+      // wide enough for frontiers to be split across the pool
+      int width = 10000;
+      int depth = 5;
+
+      Multimap<Integer, Integer> id__parentIds = HashMultimap.create();
+      for (int level = 1; level < depth; level++)
+        for (int i = 0; i < width; i++) {
+          int id = level * width + i;
+          id__parentIds.put(id, id - width);
+          id__parentIds.put(id, (level - 1) * width + (i * 7) % width);
+        }
+
+      IdGraphIndex<Integer> wide =
+          IdGraphIndex.fromParentMap(MultimapLib.keysAndValues(id__parentIds), id__parentIds);
+
+      Optional<ImmutableList<ImmutableSet<Integer>>> levels =
+          IdGraphParallelTopsortLib.sortLevels(wide, pool);
+
+      assertEquals(IdGraphTopsortLib.sortLevels(wide), levels);
+      assertEquals(depth, levels.get().size());
+      for (ImmutableSet<Integer> level : levels.get())
+        assertEquals(width, level.size());
+
+      // cycle
+      id__parentIds.put(0, width);
+
+      IdGraphIndex<Integer> cyclic =
+          IdGraphIndex.fromParentMap(MultimapLib.keysAndValues(id__parentIds), id__parentIds);
+
+      assertFalse(IdGraphParallelTopsortLib.sortLevels(cyclic, pool).isPresent());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testIncrementalTopsort() {
+
+    // random arcs, the builder accepts exactly the arcs that keep the graph acyclic
+    Random random = new Random(0);
+
+    IdDagBuilder<Integer> builder = IdDagLib.builder();
+    Multimap<Integer, Integer> id__parentIds = HashMultimap.create();
+
+    for (int n = 0; n < 2000; n++) {
+
+      int parentId = random.nextInt(200);
+      int childId = random.nextInt(200);
+
+      id__parentIds.put(childId, parentId);
+
+      boolean acyclic = sort(ImmutableSetMultimap.copyOf(id__parentIds)).isPresent();
+
+      try {
+        builder.addArc(parentId, childId);
+        assertTrue(acyclic);
+      } catch (DagCannotHaveCycle e) {
+        assertFalse(acyclic);
+        id__parentIds.remove(childId, parentId);
+      }
+
+      // the maintained order stays a topological sort
+      if (n % 100 == 0)
+        assertTopsort(id__parentIds, builder.topsortIdList());
+    }
+
+    IdDag<Integer> dag = builder.build();
+
+    assertEquals(IdDagLib.fromParentMap(MultimapLib.keysAndValues(id__parentIds), id__parentIds),
+        dag);
+    assertTopsort(id__parentIds, dag.topsortIdList());
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static <Id> void assertTopsort(Multimap<Id, Id> id__parentIds, ImmutableList<Id> sorted) {
+
+    for (Id id : id__parentIds.keySet())
+      for (Id parentId : id__parentIds.get(id))
+        assertTrue(sorted.indexOf(parentId) < sorted.indexOf(id));
+  }
+
+  private static IdGraphIndex<String> index(String parentMap) {
+
+    Multimap<String, String> id__parentIds = parseMultimap(parentMap);
+
+    return IdGraphIndex.fromParentMap(MultimapLib.keysAndValues(id__parentIds), id__parentIds);
+  }
+
+  private static ImmutableList<ImmutableSet<String>> levels(String parentMap) {
+    return IdGraphTopsortLib.sortLevels(index(parentMap)).get();
+  }
+
 }
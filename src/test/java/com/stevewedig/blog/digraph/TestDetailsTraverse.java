@@ -0,0 +1,243 @@
+package com.stevewedig.blog.digraph;
+
+import static com.stevewedig.blog.translate.FormatLib.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.alg.*;
+import com.stevewedig.blog.digraph.id_graph.*;
+import com.stevewedig.blog.errors.NotThrown;
+import com.stevewedig.blog.util.LambdaLib.Fn1;
+
+public class TestDetailsTraverse {
+
+  // ===========================================================================
+  // iterable
+  // ===========================================================================
+
+  @Test
+  public void testIndexedTraversalMatchesTraverseLib() {
+
+    final IdGraphIndex<Integer> index = RandomGraphLib.randomIndex(new Random(0), 300, 600);
+
+    Fn1<Integer, List<Integer>> expand = new Fn1<Integer, List<Integer>>() {
+      @Override
+      public List<Integer> apply(Integer id) {
+        return index.childIdList(id);
+      }
+    };
+
+    // includes a duplicate, and ids that aren't indexed
+    ImmutableList<Integer> startIds = ImmutableList.of(5, -1, 17, 5, 250, -1, -2);
+
+    for (boolean depthFirst : new boolean[] {true, false})
+      for (boolean inclusive : new boolean[] {true, false})
+        assertEquals(
+            ImmutableList.copyOf(TraverseLib.idIterable(depthFirst, inclusive, startIds, expand)),
+            ImmutableList.copyOf(index.descendantIdIterable(depthFirst, inclusive, startIds)));
+  }
+
+  @Test
+  public void testIndexedIdGraphTraversal() {
+
+    IdGraph<String> graph =
+        IdGraphLib.fromIndex(IdGraphIndex.fromParentMap(parseSet("a, b, c, d, e"),
+            parseMultimap("b = a, c = a, d = b, d = c, e = d")));
+
+    assertEquals(parseList("a, b, d, e, c"), ImmutableList.copyOf(graph.descendantIdIterable("a",
+        true)));
+    assertEquals(parseList("d, b, a, c"), ImmutableList.copyOf(graph.ancestorIdIterable("e",
+        false)));
+  }
+
+  // ===========================================================================
+  // visitor
+  // ===========================================================================
+
+  @Test
+  public void testVisit() {
+
+    IdGraphIndex<String> index =
+        IdGraphIndex.fromParentMap(parseSet("a, b, c, d, e, x"),
+            parseMultimap("b = a, c = a, d = b, d = c, e = d"));
+
+    IdGraph<String> indexed = IdGraphLib.fromIndex(index);
+    IdGraph<String> multimap = IdGraphLib.fromParentMap(index.idSet(), index.id__parentIds());
+
+    // true depth first, so d and e are exited before b
+    Recorder recorder = new Recorder(parseSet(""));
+    indexed.visitDescendantIds(parseSet("a, x, y"), recorder);
+    assertEquals(parseList("+a, +b, +d, +e, -e, -d, -b, +c, -c, -a, +x, -x, +y, -y"),
+        recorder.events);
+
+    recorder = new Recorder(parseSet(""));
+    indexed.visitAncestorIds("e", recorder);
+    assertEquals(parseList("+e, +d, +b, +a, -a, -b, +c, -c, -d, -e"), recorder.events);
+
+    // skipping b's subtree still reaches d through c
+    recorder = new Recorder(parseSet("b"));
+    indexed.visitDescendantIds("a", recorder);
+    assertEquals(parseList("+a, +b, -b, +c, +d, +e, -e, -d, -c, -a"), recorder.events);
+
+    // the multimap backend visits the same ids, each entered once and exited after its subtree
+    recorder = new Recorder(parseSet(""));
+    multimap.visitDescendantIds(parseSet("a, x, y"), recorder);
+    assertEquals(14, recorder.events.size());
+    assertEquals(parseSet("+a, +b, +c, +d, +e, +x, +y, -a, -b, -c, -d, -e, -x, -y"),
+        ImmutableSet.copyOf(recorder.events));
+    assertTrue(recorder.events.indexOf("-e") < recorder.events.indexOf("-d"));
+    assertEquals(recorder.events.indexOf("-a"), 9);
+  }
+
+  // ===========================================================================
+  // distances
+  // ===========================================================================
+
+  @Test
+  public void testIndexedDistanceMapsMatchTraverseLib() {
+
+    // the larger index keeps reached ids in a hash set for longer
+    verifyIndexedDistanceMaps(RandomGraphLib.randomIndex(new Random(0), 300, 600));
+    verifyIndexedDistanceMaps(RandomGraphLib.randomIndex(new Random(0), 20000, 30000));
+  }
+
+  private static void verifyIndexedDistanceMaps(final IdGraphIndex<Integer> index) {
+
+    Fn1<Integer, List<Integer>> expand = new Fn1<Integer, List<Integer>>() {
+      @Override
+      public List<Integer> apply(Integer id) {
+        return index.childIdList(id);
+      }
+    };
+
+    // includes a duplicate, and ids that aren't indexed
+    ImmutableList<Integer> startIds = ImmutableList.of(5, -1, 17, 5, 250, -1, -2);
+
+    for (boolean inclusive : new boolean[] {true, false}) {
+
+      ImmutableMap<Integer, Integer> all =
+          TraverseLib.distanceMap(inclusive, startIds, Integer.MAX_VALUE, Integer.MAX_VALUE,
+              expand);
+
+      // without bounds, the same ids as a traversal
+      assertEquals(ImmutableSet.copyOf(TraverseLib.idIterable(false, inclusive, startIds, expand)),
+          all.keySet());
+
+      for (int maxDistance : new int[] {0, 1, 2, 3, Integer.MAX_VALUE})
+        for (int maxSize : new int[] {0, 1, 5, 40, Integer.MAX_VALUE}) {
+
+          ImmutableMap<Integer, Integer> bounded =
+              TraverseLib.distanceMap(inclusive, startIds, maxDistance, maxSize, expand);
+
+          // same entries in the same order
+          assertEquals(bounded.entrySet().asList(),
+              index.descendantIdDistanceMap(startIds, inclusive, maxDistance, maxSize).entrySet()
+                  .asList());
+
+          // the nearest entries within maxDistance
+          List<Map.Entry<Integer, Integer>> within = new ArrayList<>();
+          for (Map.Entry<Integer, Integer> entry : all.entrySet())
+            if (entry.getValue() <= maxDistance)
+              within.add(entry);
+
+          assertEquals(within.subList(0, Math.min(maxSize, within.size())), bounded.entrySet()
+              .asList());
+        }
+    }
+  }
+
+  @Test
+  public void testDistanceMap() {
+
+    // a -> b -> c -> d, a -> d
+    IdGraph<String> graph = IdGraphLib.fromParentMap("b", "a", "c", "b", "d", "c", "d", "a");
+
+    assertEquals(ImmutableMap.of("b", 1, "d", 1, "c", 2), graph.descendantIdDistanceMap("a",
+        false, 5));
+    assertEquals(ImmutableMap.of("a", 0, "b", 1, "d", 1), graph.descendantIdDistanceMap("a",
+        true, 1));
+    assertEquals(ImmutableMap.of("c", 1, "a", 1, "b", 2), graph.ancestorIdDistanceMap("d", false,
+        2));
+    assertEquals(1, graph.ancestorIdDistanceMap(parseSet("d"), false, 2, 1).size());
+
+    try {
+      graph.descendantIdDistanceMap("a", false, -1);
+      throw new NotThrown(AssertionError.class);
+    } catch (AssertionError e) {
+    }
+
+    try {
+      graph.descendantIdDistanceMap(parseSet("a"), false, 1, -1);
+      throw new NotThrown(AssertionError.class);
+    } catch (AssertionError e) {
+    }
+  }
+
+  // ===========================================================================
+  // parallel
+  // ===========================================================================
+
+  @Test
+  public void testParallelTraversalMatchesIndexedTraversal() {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      Random random = new Random(0);
+
+      // sparse graphs stay top down, dense ones switch to bottom up for their middle levels
+      for (IdGraphIndex<Integer> index : ImmutableList.of(
+          RandomGraphLib.randomIndex(random, 300, 600),
+          RandomGraphLib.randomIndex(random, 50000, 40000),
+          RandomGraphLib.randomIndex(random, 50000, 400000))) {
+
+        // includes a duplicate, and ids that aren't indexed
+        ImmutableList<Integer> startIds = ImmutableList.of(5, -1, 17, 5, 250, -2);
+
+        for (boolean inclusive : new boolean[] {true, false}) {
+
+          assertEquals(index.descendantIdSet(startIds, inclusive),
+              IdGraphParallelTraverseLib.descendantIdSet(index, startIds, inclusive, pool));
+
+          assertEquals(index.ancestorIdSet(startIds, inclusive),
+              IdGraphParallelTraverseLib.ancestorIdSet(index, startIds, inclusive, pool));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  // records "+id" on enter and "-id" on exit
+  private static class Recorder implements TraverseVisitor<String> {
+
+    private final Set<String> skipped;
+
+    public final List<String> events = new ArrayList<>();
+
+    public Recorder(Set<String> skipped) {
+      this.skipped = skipped;
+    }
+
+    @Override
+    public boolean enter(String id) {
+      events.add("+" + id);
+      return !skipped.contains(id);
+    }
+
+    @Override
+    public void exit(String id) {
+      events.add("-" + id);
+    }
+  }
+
+}
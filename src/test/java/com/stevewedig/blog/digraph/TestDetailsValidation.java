@@ -1,6 +1,9 @@
 package com.stevewedig.blog.digraph;
 
-import java.util.Set;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
@@ -10,6 +13,7 @@ import com.stevewedig.blog.digraph.id_graph.*;
 import com.stevewedig.blog.digraph.node.*;
 import com.stevewedig.blog.digraph.node_graph.*;
 import com.stevewedig.blog.errors.NotThrown;
+import com.stevewedig.blog.util.MultimapLib;
 
 public class TestDetailsValidation {
 
@@ -119,4 +123,138 @@ public class TestDetailsValidation {
     }
   }
 
+
+  // ===========================================================================
+  // indexed, parallel, and trusted validation
+  // ===========================================================================
+
+  @Test
+  public void testValidation__indexedAndParallelAgree() {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      // a wide random tree, so the parallel levels are large
+      Random random = new Random(0);
+
+      Multimap<Integer, Integer> id__parentIds = HashMultimap.create();
+      for (int id = 1; id < 20000; id++)
+        id__parentIds.put(id, random.nextInt(id));
+
+      IdGraphIndex<Integer> index =
+          IdGraphIndex.fromParentMap(MultimapLib.keysAndValues(id__parentIds), id__parentIds);
+
+      IdTree<Integer> tree = IdTreeLib.fromIndex(index);
+      IdTree<Integer> parallelTree = IdGraphParallelLib.idTree(index, pool);
+      IdDag<Integer> parallelDag = IdGraphParallelLib.idDag(index, pool);
+
+      assertEquals(tree, parallelTree);
+      assertEquals(tree.id__parentIds(), parallelDag.id__parentIds());
+      assertEquals(Integer.valueOf(0), parallelTree.rootId());
+      assertEquals(tree.topsortLevelList(), parallelTree.topsortLevelList());
+      assertEquals(IdGraphTopsortLib.sortLevels(index).get(), parallelDag.topsortLevelList());
+
+      verifyTopsort(tree);
+      verifyTopsort(parallelTree);
+      verifyTopsort(parallelDag);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testValidation__indexedAndParallelErrors() {
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+
+    try {
+      // a cycle is reported first, even when there are also multiple roots and parents
+      verifyTreeError(DagCannotHaveCycle.class, pool, "b", "a", "c", "b", "c", "d", "d", "c", "e",
+          "x");
+
+      verifyTreeError(TreeCannotHaveMultipleRoots.class, pool, "b", "a", "c", "b", "c", "x");
+
+      verifyTreeError(TreeNodesCannotHaveMultipleParents.class, pool, "b", "a", "c", "a", "d", "b",
+          "d", "c");
+
+      verifyTreeError(TreeCannotBeEmpty.class, pool);
+
+      try {
+        IdGraphParallelLib.idDag(IdGraphIndex.fromParentMap(ImmutableSet.of("a", "b"),
+            ImmutableSetMultimap.of("a", "b", "b", "a")), pool);
+        throw new NotThrown(DagCannotHaveCycle.class);
+      } catch (DagCannotHaveCycle e) {
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testValidation__trustedIndexesAreNotValidated() {
+
+    IdGraphIndex<String> cyclic =
+        IdGraphIndex.fromParentMap(ImmutableSet.of("a", "b"), ImmutableSetMultimap.of("a", "b",
+            "b", "a"));
+
+    // the caller is responsible for only trusting valid indexes
+    IdDagLib.fromTrustedIndex(cyclic);
+    IdTreeLib.fromTrustedIndex(cyclic);
+
+    IdGraphIndex<String> index =
+        IdGraphIndex.fromParentMap(ImmutableSet.of("a", "b", "c"), ImmutableSetMultimap.of("b",
+            "a", "c", "b"));
+
+    assertEquals(IdTreeLib.fromIndex(index), IdTreeLib.fromTrustedIndex(index));
+    assertEquals(IdDagLib.fromIndex(index).topsortIdList(), IdDagLib.fromTrustedIndex(index)
+        .topsortIdList());
+  }
+
+  // ===========================================================================
+  // helpers
+  // ===========================================================================
+
+  private static <Error extends RuntimeException> void verifyTreeError(Class<Error> errorClass,
+      ForkJoinPool pool, String... alternatingIdsAndParentIds) {
+
+    Multimap<String, String> id__parentIds = MultimapLib.of(alternatingIdsAndParentIds);
+
+    IdGraphIndex<String> index =
+        IdGraphIndex.fromParentMap(MultimapLib.keysAndValues(id__parentIds), id__parentIds);
+
+    try {
+      IdTreeLib.fromIndex(index);
+      throw new NotThrown(errorClass);
+    } catch (RuntimeException e) {
+      assertEquals(errorClass, e.getClass());
+    }
+
+    try {
+      IdGraphParallelLib.idTree(index, pool);
+      throw new NotThrown(errorClass);
+    } catch (RuntimeException e) {
+      assertEquals(errorClass, e.getClass());
+    }
+
+    try {
+      IdTreeLib.fromParentMap(id__parentIds);
+      throw new NotThrown(errorClass);
+    } catch (RuntimeException e) {
+      assertEquals(errorClass, e.getClass());
+    }
+  }
+
+  private static <Id> void verifyTopsort(IdDag<Id> dag) {
+
+    Map<Id, Integer> id__position = new HashMap<>();
+
+    for (Id id : dag.topsortIdList())
+      id__position.put(id, id__position.size());
+
+    assertEquals(dag.idSize(), id__position.size());
+
+    for (Map.Entry<Id, Id> entry : dag.id__parentIds().entries())
+      assertTrue(id__position.get(entry.getValue()) < id__position.get(entry.getKey()));
+  }
+
 }
@@ -37,6 +37,8 @@ public class TestExampleTwitterGraph {
 
     void addFollowing(String follower, String following);
 
+    ImmutableMap<String, Integer> followersWithin(String name, int hops);
+
   }
 
   // ===========================================================================
@@ -158,6 +160,19 @@ public class TestExampleTwitterGraph {
       return new TwitterAccountClass(name, following, followers, authority);
     }
 
+    // =================================
+    // followersWithin
+    // =================================
+
+    // followers, followers of followers, and so on up to a number of hops, mapped to their hops
+    @Override
+    public ImmutableMap<String, Integer> followersWithin(String name, int hops) {
+
+      assertContains(name);
+
+      return graph().descendantIdDistanceMap(name, false, hops);
+    }
+
     // =================================
     // assertContains
     // =================================
@@ -265,6 +280,18 @@ public class TestExampleTwitterGraph {
 
     assertEquals(steveWedig, service.getAccount("wedig"));
 
+    // =================================
+    // followers of followers
+    // =================================
+
+    assertEquals(ImmutableMap.of("charlierose", 1), service.followersWithin("BarackObama", 1));
+
+    assertEquals(ImmutableMap.of("charlierose", 1, "tim_cook", 2), service.followersWithin(
+        "BarackObama", 2));
+
+    assertEquals(ImmutableMap.of("charlierose", 1, "tim_cook", 2, "wedig", 3), service
+        .followersWithin("BarackObama", 10));
+
   }
 
 }
@@ -6,6 +6,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import com.google.common.collect.*;
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
 import com.stevewedig.blog.digraph.id_graph.*;
 import com.stevewedig.blog.errors.NotThrown;
 
@@ -94,12 +95,136 @@ public class TestSampleIdDag {
     verifyIdDag(idDagFromParentMap());
   }
 
+  @Test
+  public void testIndexedIdDagFromParentMap() {
+
+    IdDag<String> indexed = IdDagLib.indexedFromParentMap(idSet, getParentMap());
+
+    // equal to the multimap backed version
+    assertEquals(idDagFromParentMap(), indexed);
+
+    verifyIdDag(indexed);
+  }
+
+  @Test
+  public void testIdDagFromUpdates() {
+
+    IdDag<String> dag =
+        IdDagLib.fromParentMap(parseSet("a"), parseMultimap("")).withArc("a", "b")
+            .withArc("a", "c").withArc("b", "d").withArc("c", "d").withArc("d", "e");
+
+    // equal to the multimap backed version
+    assertEquals(idDagFromParentMap(), dag);
+
+    verifyIdDag(dag);
+
+    // arcs that would create cycles are rejected
+    try {
+      dag.withArc("e", "a");
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    try {
+      dag.withArc("c", "c");
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    // arcs that don't
+    IdDag<String> updated = dag.withArc("a", "e").withArc("e", "x").withoutArc("b", "d");
+
+    assertEquals(IdDagLib.fromParentMap("b", "a", "c", "a", "d", "c", "e", "d", "e", "a", "x",
+        "e"), updated);
+    assertEquals(ImmutableList.of(parseSet("a"), parseSet("b, c"), parseSet("d"), parseSet("e"),
+        parseSet("x")), updated.topsortLevelList());
+  }
+
+  @Test
+  public void testIdDagFromBuilder() {
+
+    // arcs added against the insertion order, so the builder has to reorder
+    IdDagBuilder<String> builder =
+        IdDagLib.<String>builder().addId("e").addId("d").addArc("d", "e").addArc("b", "d")
+            .addArc("c", "d").addArc("a", "b").addArc("a", "c").addArc("a", "c");
+
+    assertEquals(5, builder.idSize());
+    assertEquals(5, builder.arcSize());
+    assertTrue(builder.containsId("a"));
+    assertFalse(builder.containsId("x"));
+    assertTrue(builder.wouldCreateCycle("e", "a"));
+    assertFalse(builder.wouldCreateCycle("a", "e"));
+
+    IdDag<String> dag = builder.build();
+
+    // equal to the multimap backed version
+    assertEquals(idDagFromParentMap(), dag);
+
+    verifyIdDag(dag);
+
+    // arcs that would create cycles are rejected, leaving the builder unchanged
+    try {
+      builder.addArc("e", "a");
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    try {
+      builder.addArc("c", "c");
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    assertEquals(dag, builder.build());
+
+    // the builder can keep being used
+    builder.addArc("x", "a");
+
+    assertEquals(parseList("x, a"), builder.topsortIdList().subList(0, 2));
+    assertEquals(dag.withArc("x", "a"), builder.build());
+  }
+
+  @Test
+  public void testIdDagWithReachabilityIndex() {
+
+    IdDag<String> dag = idDagFromParentMap();
+
+    IdDagReachabilityIndex<String> index = dag.reachabilityIndex();
+
+    // a reaches 4 ids, b and c reach 2, d reaches 1
+    assertEquals(9, index.pairSize());
+    assertTrue(index.memoryBytes() > 0);
+
+    assertTrue(index.isAncestorOf("a", "e", false));
+    assertFalse(index.isAncestorOf("b", "c", true));
+    assertEquals(parseSet("b, c, d, e"), index.descendantIdSet(parseSet("a"), false));
+    assertEquals(parseSet("a, b, c, d"), index.ancestorIdSet(parseSet("e"), false));
+
+    // in topological order
+    assertEquals(parseList("d, e"), index.descendantIdSet(parseSet("a"), false).asList()
+        .subList(2, 4));
+
+    // the dag's queries are now answered from the index
+    verifyIdDag(dag);
+  }
+
   @Test
   public void testIdDagFromChildMap() {
 
     verifyIdDag(idDagFromChildMap());
   }
 
+  @Test
+  public void testIndexedIdDagFromChildMap() {
+
+    IdDag<String> indexed = IdDagLib.indexedFromChildMap(idSet, getChildMap());
+
+    // equal to the multimap backed version
+    assertEquals(idDagFromChildMap(), indexed);
+
+    verifyIdDag(indexed);
+  }
+
   // ===========================================================================
   // verify dag
   // ===========================================================================
@@ -125,6 +250,20 @@ public class TestSampleIdDag {
     assertEquals(IdDagLib.fromParentMap(parseMultimap("b = a, c = a")),
         dag.filterIdGraph(parseSet("a, b, c")));
 
+    // views filter parent and child sets on request, but are equal to the copied subgraph
+    IdDag<String> view = dag.filterIdGraphView(parseSet("a, b, c"));
+    assertEquals(dag.filterIdGraph(parseSet("a, b, c")), view);
+    assertEquals(parseSet("b, c"), view.childIdSet("a"));
+    assertEquals(parseSet(""), view.childIdSet("b"));
+    assertEquals(parseSet(""), view.parentIdSet("d"));
+    assertEquals(parseSet("b, c"), view.leafIdSet());
+    assertEquals(parseList("a"), view.topsortIdList().subList(0, 1));
+
+    // the dag is connected, so it's its own only component
+    assertEquals(ImmutableList.of(idSet), dag.weakComponentList());
+    assertEquals(1, dag.componentIdGraphs().size());
+    assertEquals(dag.id__parentIds(), dag.componentIdGraphs().get(0).id__parentIds());
+
     // =================================
     // parents
     // =================================
@@ -279,6 +418,10 @@ public class TestSampleIdDag {
     // same instance
     assertTrue(dag.topsortIdList() == dag.optionalTopsortIdList().get());
 
+    // levels
+    assertEquals(ImmutableList.of(parseSet("a"), parseSet("b, c"), parseSet("d"), parseSet("e")),
+        dag.topsortLevelList());
+
     // =================================
     // depth first
     // =================================
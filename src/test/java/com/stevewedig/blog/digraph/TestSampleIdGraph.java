@@ -9,7 +9,7 @@ import org.junit.Test;
 
 import com.google.common.collect.*;
 import com.stevewedig.blog.digraph.id_graph.*;
-import com.stevewedig.blog.errors.NotThrown;
+import com.stevewedig.blog.errors.*;
 import com.stevewedig.blog.util.LambdaLib.Fn1;
 
 // example graph containing cycles (a->b->c->d->a, and a->e->a)
@@ -99,12 +99,69 @@ public class TestSampleIdGraph {
     verifyIdGraph(idGraphFromParentMap());
   }
 
+  @Test
+  public void testIndexedIdGraphFromParentMap() {
+
+    IdGraph<String> indexed = IdGraphLib.indexedFromParentMap(idSet, getParentMap());
+
+    // equal to the multimap backed version
+    assertEquals(idGraphFromParentMap(), indexed);
+
+    verifyIdGraph(indexed);
+  }
+
+  @Test
+  public void testIdGraphFromUpdates() {
+
+    IdGraph<String> empty = IdGraphLib.fromParentMap(parseSet(""), parseMultimap(""));
+
+    IdGraph<String> graph =
+        empty.withArc("d", "a").withArc("e", "a").withArc("a", "b").withArc("b", "c")
+            .withArc("c", "d").withArc("a", "e").withId("f");
+
+    // equal to the multimap backed version
+    assertEquals(idGraphFromParentMap(), graph);
+
+    verifyIdGraph(graph);
+
+    // updates don't change the original
+    assertEquals(0, empty.idSize());
+
+    // no-op updates return the same graph
+    assertSame(graph, graph.withId("a"));
+    assertSame(graph, graph.withArc("a", "b"));
+    assertSame(graph, graph.withoutArc("f", "a"));
+    assertSame(graph, graph.withoutId("x"));
+
+    // removing arcs and ids
+    IdGraph<String> smaller = graph.withoutArc("a", "e").withoutId("c").withoutId("f");
+
+    assertEquals(IdGraphLib.fromParentMap(parseSet("a, b, d, e"), "a", "d", "a", "e", "b", "a"),
+        smaller);
+    assertEquals(parseSet("d, e"), smaller.rootIdSet());
+    assertEquals(parseSet("b"), smaller.leafIdSet());
+
+    // updating a multimap backed graph copies it once
+    assertEquals(graph.withoutId("f"), idGraphFromParentMap().withoutId("f"));
+  }
+
   @Test
   public void testIdGraphFromChildMap() {
 
     verifyIdGraph(idGraphFromChildMap());
   }
 
+  @Test
+  public void testIndexedIdGraphFromChildMap() {
+
+    IdGraph<String> indexed = IdGraphLib.indexedFromChildMap(idSet, getChildMap());
+
+    // equal to the multimap backed version
+    assertEquals(idGraphFromChildMap(), indexed);
+
+    verifyIdGraph(indexed);
+  }
+
   // ===========================================================================
   // verify graph
   // ===========================================================================
@@ -130,6 +187,9 @@ public class TestSampleIdGraph {
     assertEquals(IdGraphLib.fromParentMap(parseMultimap("a = e, e = a")),
         graph.filterIdGraph(parseSet("a, e")));
 
+    assertEquals(IdGraphLib.fromParentMap(parseMultimap("a = e, e = a")),
+        graph.filterIdGraphView(parseSet("a, e")));
+
     // =================================
     // parents
     // =================================
@@ -183,6 +243,16 @@ public class TestSampleIdGraph {
     assertFalse(graph.isAncestorOf("a", "a", false));
     assertTrue(graph.isAncestorOf("a", "a", true));
 
+    // bounded ancestor checks (a -> b -> c -> d -> a -> e)
+    assertTrue(graph.isAncestorWithin("a", "d", 3));
+    assertFalse(graph.isAncestorWithin("a", "d", 2));
+    assertTrue(graph.isAncestorWithin("d", "e", 2));
+    assertFalse(graph.isAncestorWithin("d", "e", 1));
+    assertTrue(graph.isAncestorWithin("a", "a", 0));
+    assertFalse(graph.isAncestorWithin("f", "a", 10));
+    assertTrue(graph.isDescendantWithin("b", "d", 2));
+    assertFalse(graph.isDescendantWithin("b", "d", 1));
+
     // ancestor set, not inclusive
     assertEquals(parseSet("b, c, d, e"), graph.ancestorIdSet("a", false));
     assertEquals(parseSet("a, c, d, e"), graph.ancestorIdSet("b", false));
@@ -191,6 +261,13 @@ public class TestSampleIdGraph {
     assertEquals(parseSet("a, b, c, d"), graph.ancestorIdSet("e", false));
     assertEquals(parseSet(""), graph.ancestorIdSet("f", false));
 
+    // ancestors within a distance (a <- d, e <- c <- b)
+    assertEquals(ImmutableMap.of("d", 1, "e", 1, "c", 2), graph.ancestorIdDistanceMap("a", false,
+        2));
+    assertEquals(ImmutableMap.of("a", 0, "d", 1, "e", 1), graph.ancestorIdDistanceMap("a", true,
+        1));
+    assertEquals(ImmutableMap.of("f", 0), graph.ancestorIdDistanceMap("f", true, 3));
+
     // ancestor set, inclusive
     assertEquals(parseSet("a, b, c, d, e"), graph.ancestorIdSet("a", true));
     assertEquals(parseSet("a, b, c, d, e"), graph.ancestorIdSet("b", true));
@@ -230,6 +307,13 @@ public class TestSampleIdGraph {
     assertEquals(parseSet("a, b, c, d"), graph.descendantIdSet("e", false));
     assertEquals(parseSet(""), graph.descendantIdSet("f", false));
 
+    // descendants within a distance (a -> b, e -> c -> d)
+    assertEquals(ImmutableMap.of("b", 1, "e", 1, "c", 2, "d", 3), graph.descendantIdDistanceMap(
+        "a", false, 10));
+    assertEquals(2, graph.descendantIdDistanceMap(parseSet("a"), true, 10, 2).size());
+    assertEquals(Integer.valueOf(0), graph.descendantIdDistanceMap(parseSet("a"), true, 10, 2).get(
+        "a"));
+
     // descendant set, inclusive
     assertEquals(parseSet("a, b, c, d, e"), graph.descendantIdSet("a", true));
     assertEquals(parseSet("a, b, c, d, e"), graph.descendantIdSet("b", true));
@@ -275,6 +359,46 @@ public class TestSampleIdGraph {
 
     assertFalse(graph.optionalTopsortIdList().isPresent());
 
+    // =================================
+    // strongly connected components
+    // =================================
+
+    IdGraphCondensation<String> condensation = graph.condensation();
+
+    ImmutableSet<String> cycle = parseSet("a, b, c, d, e");
+    ImmutableSet<String> f = parseSet("f");
+
+    assertEquals(2, condensation.componentSize());
+    assertEquals(ImmutableSet.of(cycle, f), ImmutableSet.copyOf(condensation.componentList()));
+    assertEquals(cycle, condensation.component("c"));
+    assertEquals(f, condensation.component("f"));
+    assertEquals(idSet, condensation.id__component().keySet());
+    assertFalse(condensation.isTrivial());
+
+    try {
+      condensation.component("x");
+      throw new NotThrown(NotContained.class);
+    } catch (NotContained e) {
+    }
+
+    // the condensation has no arcs (f isn't connected to the cycle)
+    IdDag<ImmutableSet<String>> condensationDag = condensation.idDag();
+    condensationDag.assertIdsEqual(ImmutableSet.of(cycle, f));
+    assertEquals(ImmutableSet.of(cycle, f), condensationDag.rootIdSet());
+    assertEquals(condensation.componentList(), condensationDag.topsortIdList());
+
+    // computed once
+    assertSame(condensation, graph.condensation());
+
+    // =================================
+    // weakly connected components
+    // =================================
+
+    assertEquals(ImmutableSet.of(cycle, f), ImmutableSet.copyOf(graph.weakComponentList()));
+
+    assertEquals(ImmutableSet.of(graph.filterIdGraph(cycle), graph.filterIdGraph(f)), ImmutableSet
+        .copyOf(graph.componentIdGraphs()));
+
     // =================================
     // generic traversal
     // =================================
@@ -18,6 +18,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.stevewedig.blog.digraph.errors.DagCannotHaveCycle;
+import com.stevewedig.blog.digraph.errors.TreeCannotBeEmpty;
+import com.stevewedig.blog.digraph.errors.TreeCannotHaveMultipleRoots;
+import com.stevewedig.blog.digraph.errors.TreeNodesCannotHaveMultipleParents;
 import com.stevewedig.blog.digraph.id_graph.IdDagLib;
 import com.stevewedig.blog.digraph.id_graph.IdTree;
 import com.stevewedig.blog.digraph.id_graph.IdTreeLib;
@@ -118,18 +122,111 @@ public class TestSampleIdTree {
   // tests
   // ===========================================================================
 
+  @Test
+  public void testIdTreeFromUpdates() {
+
+    IdTree<String> root = IdTreeLib.fromParentMap(parseSet("a"), parseMultimap(""));
+
+    IdTree<String> tree =
+        root.withArc("a", "b").withArc("b", "c").withArc("c", "d").withArc("b", "e")
+            .withArc("a", "f").withArc("f", "g").withArc("a", "h");
+
+    // equal to the multimap backed version
+    assertEquals(idTreeFromParentMap(), tree);
+
+    verifyIdTree(tree);
+
+    // moving a subtree
+    IdTree<String> moved = tree.withMovedId("c", "g");
+
+    assertEquals(parseList("a, f, g, c, d"), moved.ancestorIdList("d", true));
+    assertEquals(parseSet("e"), moved.childIdSet("b"));
+    assertEquals(4, moved.maxDepth());
+
+    // adding a new root
+    IdTree<String> rerooted = tree.withArc("z", "a");
+    assertEquals("z", rerooted.rootId());
+    assertEquals(4, rerooted.depth("d"));
+
+    // removing leaves and the root (when it has a single child)
+    assertEquals(IdTreeLib.fromParentMap("c", "b", "e", "b"), tree.withoutId("g").withoutId("f")
+        .withoutId("h").withoutId("a").withoutId("d"));
+
+    // invalid updates
+    try {
+      tree.withMovedId("b", "d");
+      throw new NotThrown(DagCannotHaveCycle.class);
+    } catch (DagCannotHaveCycle e) {
+    }
+
+    try {
+      tree.withArc("f", "c");
+      throw new NotThrown(TreeNodesCannotHaveMultipleParents.class);
+    } catch (TreeNodesCannotHaveMultipleParents e) {
+    }
+
+    try {
+      tree.withId("x");
+      throw new NotThrown(TreeCannotHaveMultipleRoots.class);
+    } catch (TreeCannotHaveMultipleRoots e) {
+    }
+
+    try {
+      tree.withoutArc("b", "c");
+      throw new NotThrown(TreeCannotHaveMultipleRoots.class);
+    } catch (TreeCannotHaveMultipleRoots e) {
+    }
+
+    try {
+      tree.withoutId("a");
+      throw new NotThrown(TreeCannotHaveMultipleRoots.class);
+    } catch (TreeCannotHaveMultipleRoots e) {
+    }
+
+    try {
+      root.withoutId("a");
+      throw new NotThrown(TreeCannotBeEmpty.class);
+    } catch (TreeCannotBeEmpty e) {
+    }
+
+    // the original tree is unchanged
+    assertEquals(idTreeFromParentMap(), tree);
+  }
+
   @Test
   public void testIdTreeFromParentMap() {
 
     verifyIdTree(idTreeFromParentMap());
   }
 
+  @Test
+  public void testIndexedIdTreeFromParentMap() {
+
+    IdTree<String> indexed = IdTreeLib.indexedFromParentMap(idSet, getParentMap());
+
+    // equal to the multimap backed version
+    assertEquals(idTreeFromParentMap(), indexed);
+
+    verifyIdTree(indexed);
+  }
+
   @Test
   public void testIdTreeFromChildMap() {
 
     verifyIdTree(idTreeFromChildMap());
   }
 
+  @Test
+  public void testIndexedIdTreeFromChildMap() {
+
+    IdTree<String> indexed = IdTreeLib.indexedFromChildMap(idSet, getChildMap());
+
+    // equal to the multimap backed version
+    assertEquals(idTreeFromChildMap(), indexed);
+
+    verifyIdTree(indexed);
+  }
+
   // ===========================================================================
   // verify tree
   // ===========================================================================
@@ -155,6 +252,9 @@ public class TestSampleIdTree {
     assertEquals(IdDagLib.fromParentMap(parseMultimap("b = a, f = a")),
         tree.filterIdGraph(parseSet("a, b, f")));
 
+    assertEquals(IdDagLib.fromParentMap(parseMultimap("b = a, f = a")),
+        tree.filterIdGraphView(parseSet("a, b, f")));
+
     // =================================
     // parents
     // =================================
@@ -268,6 +368,20 @@ public class TestSampleIdTree {
     // ancestor graph, inclusive
     assertEquals(idTreeFromParentMap(), tree.ancestorIdGraph(parseSet("d, e, g, h"), true));
 
+    // ancestor graph, ids outside the tree would be extra roots
+    try {
+      tree.ancestorIdGraph(parseSet("c, x"), true);
+      throw new NotThrown(TreeCannotHaveMultipleRoots.class);
+    } catch (TreeCannotHaveMultipleRoots e) {
+    }
+
+    // ancestor graph, empty
+    try {
+      tree.ancestorIdGraph(parseSet("a"), false);
+      throw new NotThrown(TreeCannotBeEmpty.class);
+    } catch (TreeCannotBeEmpty e) {
+    }
+
     // depth
     assertEquals(0, tree.depth("a"));
     assertEquals(1, tree.depth("b"));
@@ -284,6 +398,31 @@ public class TestSampleIdTree {
     
     assertEquals("a", tree.leastDeep(idSet));
 
+    // levels
+    assertEquals(parseSet("a"), tree.levelIdSet(0));
+    assertEquals(parseSet("b, f, h"), tree.levelIdSet(1));
+    assertEquals(parseSet("c, e, g"), tree.levelIdSet(2));
+    assertEquals(parseSet("d"), tree.levelIdSet(3));
+    assertEquals(parseSet(""), tree.levelIdSet(4));
+
+    assertEquals(ImmutableList.of(parseSet("a"), parseSet("b, f, h"), parseSet("c, e, g"),
+        parseSet("d")), tree.levelIdSetList());
+
+    // descendants within a distance
+    assertEquals(parseSet(""), tree.descendantIdSet("a", false, 0));
+    assertEquals(parseSet("a"), tree.descendantIdSet("a", true, 0));
+    assertEquals(parseSet("b, f, h"), tree.descendantIdSet("a", false, 1));
+    assertEquals(parseSet("a, b, c, e, f, g, h"), tree.descendantIdSet("a", true, 2));
+    assertEquals(idSet, tree.descendantIdSet("a", true, 10));
+    assertEquals(parseSet("c, e"), tree.descendantIdSet("b", false, 1));
+    assertEquals(parseSet("b, c, d, e"), tree.descendantIdSet("b", true, 2));
+    assertEquals(parseSet("g"), tree.descendantIdSet("f", false, 5));
+    assertEquals(parseSet(""), tree.descendantIdSet("h", false, 5));
+
+    // unbounded distances below the root don't overflow
+    assertEquals(parseSet("b, c, d, e"), tree.descendantIdSet("b", true, Integer.MAX_VALUE));
+    assertEquals(parseSet("d"), tree.descendantIdSet("c", false, Integer.MAX_VALUE));
+
     // =================================
     // descendants
     // =================================
@@ -305,6 +444,42 @@ public class TestSampleIdTree {
     assertEquals(parseSet(""), tree.descendantIdSet("g", false));
     assertEquals(parseSet(""), tree.descendantIdSet("h", false));
 
+    // descendant set, inclusive
+    assertEquals(parseSet("a, b, c, d, e, f, g, h"), tree.descendantIdSet("a", true));
+    assertEquals(parseSet("b, c, d, e"), tree.descendantIdSet("b", true));
+    assertEquals(parseSet("h"), tree.descendantIdSet("h", true));
+
+    // descendant checks
+    assertTrue(tree.isDescendantOf("d", "a", false));
+    assertTrue(tree.isDescendantOf("d", "b", false));
+    assertTrue(tree.isDescendantOf("e", "b", false));
+    assertFalse(tree.isDescendantOf("e", "c", false));
+    assertFalse(tree.isDescendantOf("b", "d", false));
+    assertFalse(tree.isDescendantOf("g", "b", false));
+    assertFalse(tree.isDescendantOf("b", "b", false));
+    assertTrue(tree.isDescendantOf("b", "b", true));
+
+    // ancestor checks
+    assertTrue(tree.isAncestorOf("a", "g", false));
+    assertTrue(tree.isAncestorOf("f", "g", false));
+    assertFalse(tree.isAncestorOf("g", "f", false));
+    assertFalse(tree.isAncestorOf("h", "g", false));
+    assertFalse(tree.isAncestorOf("h", "h", false));
+    assertTrue(tree.isAncestorOf("h", "h", true));
+
+    // bounded checks
+    assertTrue(tree.isDescendantWithin("d", "a", 3));
+    assertFalse(tree.isDescendantWithin("d", "a", 2));
+    assertFalse(tree.isDescendantWithin("g", "b", 5));
+    assertTrue(tree.isDescendantWithin("b", "b", 0));
+    assertTrue(tree.isAncestorWithin("f", "g", 1));
+    assertFalse(tree.isAncestorWithin("g", "f", 1));
+
+    // bulk descendant checks
+    assertEquals(parseSet("c, d, e"), tree.filterDescendantIds(idSet, "b", false));
+    assertEquals(parseSet("b, d"), tree.filterDescendantIds(parseSet("a, b, d, g"), "b", true));
+    assertEquals(parseSet(""), tree.filterDescendantIds(parseSet("a, f"), "h", true));
+
     // descendant graph, not inclusive
     assertEquals(IdDagLib.fromParentMap(parseSet("c, d, e"), "d", "c"),
         tree.descendantIdGraph(parseSet("b"), false));
@@ -316,6 +491,40 @@ public class TestSampleIdTree {
     assertEquals(IdTreeLib.fromParentMap("d", "c"), tree.descendantIdTree("c"));
     assertEquals(idTreeFromParentMap(), tree.descendantIdTree("a"));
 
+    // =================================
+    // lowest common ancestor
+    // =================================
+
+    assertEquals("b", tree.lowestCommonAncestor("d", "e"));
+    assertEquals("a", tree.lowestCommonAncestor("d", "g"));
+    assertEquals("c", tree.lowestCommonAncestor("c", "d"));
+    assertEquals("c", tree.lowestCommonAncestor("d", "c"));
+    assertEquals("h", tree.lowestCommonAncestor("h", "h"));
+    assertEquals("a", tree.lowestCommonAncestor("a", "g"));
+
+    assertEquals("b", tree.lowestCommonAncestor(parseSet("c, d, e")));
+    assertEquals("a", tree.lowestCommonAncestor(parseSet("d, e, h")));
+    assertEquals("g", tree.lowestCommonAncestor(parseSet("g")));
+
+    assertEquals(parseList("b, a, f"),
+        tree.lowestCommonAncestorList(parseList("d, b, g"), parseList("e, h, f")));
+
+    // =================================
+    // paths
+    // =================================
+
+    assertEquals(0, tree.distance("d", "d"));
+    assertEquals(1, tree.distance("c", "d"));
+    assertEquals(3, tree.distance("d", "e"));
+    assertEquals(5, tree.distance("d", "g"));
+    assertEquals(3, tree.distance("h", "g"));
+
+    assertEquals(parseList("d"), tree.pathIdList("d", "d"));
+    assertEquals(parseList("d, c, b, e"), tree.pathIdList("d", "e"));
+    assertEquals(parseList("g, f, a, b, c, d"), tree.pathIdList("g", "d"));
+    assertEquals(parseList("a, b, c"), tree.pathIdList("a", "c"));
+    assertEquals(parseList("c, b, a"), tree.pathIdList("c", "a"));
+
     // =================================
     // root (source)
     // =================================
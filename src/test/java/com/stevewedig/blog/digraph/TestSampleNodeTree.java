@@ -263,6 +263,19 @@ public class TestSampleNodeTree {
     assertEquals(ImmutableSet.of(g), tree.descendantNodeSet("g", true));
     assertEquals(ImmutableSet.of(h), tree.descendantNodeSet("h", true));
 
+    // =================================
+    // lowest common ancestor
+    // =================================
+
+    assertEquals(b, tree.lowestCommonAncestorNode("d", "e"));
+    assertEquals(a, tree.lowestCommonAncestorNode("d", "g"));
+
+    // =================================
+    // paths
+    // =================================
+
+    assertEquals(ImmutableList.of(d, c, b, e), tree.pathNodeList("d", "e"));
+
     // =================================
     // root (source)
     // =================================
@@ -0,0 +1,155 @@
+package com.stevewedig.blog.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class TestHashTrie {
+
+  // ===========================================================================
+  // with / without
+  // ===========================================================================
+
+  @Test
+  public void testWithAndWithout() {
+
+    HashTrie<String, Integer> empty = HashTrie.of();
+
+    assertTrue(empty.isEmpty());
+    assertNull(empty.get("a"));
+
+    HashTrie<String, Integer> ab = empty.with("a", 1).with("b", 2);
+
+    assertEquals(ImmutableMap.of("a", 1, "b", 2), ab.toMap());
+    assertEquals(2, ab.size());
+
+    // replacing a value keeps the size
+    HashTrie<String, Integer> ab2 = ab.with("b", 3);
+    assertEquals(ImmutableMap.of("a", 1, "b", 3), ab2.toMap());
+    assertEquals(2, ab2.size());
+
+    // updates don't change the original
+    assertEquals(ImmutableMap.of("a", 1, "b", 2), ab.toMap());
+
+    HashTrie<String, Integer> b = ab.without("a");
+    assertEquals(ImmutableMap.of("b", 2), b.toMap());
+    assertFalse(b.containsKey("a"));
+
+    // no-op updates return the same trie
+    assertSame(ab, ab.with("a", 1));
+    assertSame(ab, ab.without("c"));
+
+    // equality is by contents
+    assertEquals(ab, empty.with("b", 2).with("a", 1));
+    assertEquals(empty, b.without("b"));
+  }
+
+  // ===========================================================================
+  // many keys
+  // ===========================================================================
+
+  @Test
+  public void testAgainstHashMap() {
+
+    Random random = new Random(0);
+
+    Map<Integer, Integer> expected = new HashMap<>();
+    HashTrie<Integer, Integer> trie = HashTrie.of();
+
+    for (int i = 0; i < 20000; i++) {
+
+      int key = random.nextInt(5000);
+
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        trie = trie.without(key);
+      } else {
+        expected.put(key, i);
+        trie = trie.with(key, i);
+      }
+    }
+
+    assertEquals(expected.size(), trie.size());
+    assertEquals(expected, trie.toMap());
+    assertEquals(expected.keySet(), trie.keySet());
+
+    for (int key = 0; key < 5000; key++)
+      assertEquals(expected.get(key), trie.get(key));
+  }
+
+  @Test
+  public void testHashCollisions() {
+
+    // "Aa" and "BB" have the same hashCode
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+
+    HashTrie<String, Integer> trie = HashTrie.<String, Integer>of().with("Aa", 1).with("BB", 2);
+
+    assertEquals(Integer.valueOf(1), trie.get("Aa"));
+    assertEquals(Integer.valueOf(2), trie.get("BB"));
+    assertEquals(2, trie.size());
+
+    assertEquals(ImmutableMap.of("BB", 2), trie.without("Aa").toMap());
+    assertEquals(ImmutableMap.of("Aa", 1), trie.without("BB").toMap());
+    assertTrue(trie.without("Aa").without("BB").isEmpty());
+  }
+
+  // ===========================================================================
+  // comparing
+  // ===========================================================================
+
+  @Test
+  public void testChangedKeySet() {
+
+    Random random = new Random(0);
+
+    HashTrie<Integer, Integer> base = HashTrie.of();
+
+    for (int key = 0; key < 5000; key++)
+      base = base.with(key, key);
+
+    HashTrie<Integer, Integer> trie = base;
+    Map<Integer, Integer> expected = new HashMap<>(base.toMap());
+
+    for (int i = 0; i < 200; i++) {
+
+      int key = random.nextInt(6000);
+
+      if (random.nextBoolean()) {
+        expected.remove(key);
+        trie = trie.without(key);
+      } else {
+        expected.put(key, -key);
+        trie = trie.with(key, -key);
+      }
+    }
+
+    Set<Integer> changedKeys = new HashSet<>();
+    for (int key = 0; key < 6000; key++)
+      if (!Objects.equals(base.get(key), expected.get(key)))
+        changedKeys.add(key);
+
+    assertEquals(changedKeys, trie.changedKeySet(base));
+    assertEquals(changedKeys, base.changedKeySet(trie));
+    assertTrue(trie.changedKeySet(trie).isEmpty());
+
+    // tries built separately share no structure, but compare the same
+    HashTrie<Integer, Integer> rebuilt = HashTrie.of();
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+      rebuilt = rebuilt.with(entry.getKey(), entry.getValue());
+    assertEquals(changedKeys, rebuilt.changedKeySet(base));
+    assertTrue(rebuilt.changedKeySet(trie).isEmpty());
+
+    // colliding keys
+    HashTrie<String, Integer> collisions =
+        HashTrie.<String, Integer>of().with("Aa", 1).with("BB", 2);
+    assertEquals(ImmutableSet.of("BB"), collisions.changedKeySet(collisions.with("BB", 3)));
+    assertEquals(ImmutableSet.of("Aa"), collisions.changedKeySet(collisions.without("Aa")));
+  }
+
+}